@@ -0,0 +1,95 @@
+package io.siddhi.extension.store.s3.benchmark;
+
+import io.siddhi.extension.store.s3.codec.RecordMapper;
+import io.siddhi.extension.store.s3.util.RecordBufferPool;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import io.siddhi.query.api.definition.Attribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time taken, and with {@code -prof gc} heap allocated, to build the body of a record and the stream it is uploaded
+ * from, for records carrying a byte array payload of {@code payloadSize} bytes. The allocation per record is the
+ * {@code gc.alloc.rate.norm} result of the profiler.
+ * <p>
+ * {@code pooledBody} builds them the way the table does, in a buffer taken from a pool, which large byte arrays are
+ * referenced from instead of copied into. {@code copiedBody} copies the body out of a new buffer and streams the
+ * copy, as the table did before its buffers were pooled. Both streams are drained into a scratch array, as the
+ * client would drain them into its socket.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BodyAllocationBenchmark {
+
+    private static final List<Attribute> ATTRIBUTES = Arrays.asList(
+            new Attribute("symbol", Attribute.Type.STRING),
+            new Attribute("price", Attribute.Type.DOUBLE),
+            new Attribute("volume", Attribute.Type.LONG),
+            new Attribute("payload", Attribute.Type.OBJECT));
+
+    @Param({"binary", "json"})
+    public String codec;
+
+    @Param({"100", "65536"})
+    public int payloadSize;
+
+    private RecordMapper mapper;
+    private RecordBufferPool pool;
+    private Object[] record;
+    private final byte[] scratch = new byte[8192];
+
+    @Setup
+    public void setup() {
+        mapper = new RecordMapper(ATTRIBUTES, 0, Arrays.asList(1, 2, 3), codec);
+        pool = new RecordBufferPool(4, 1024, 256 * 1024);
+        byte[] payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+        record = new Object[]{"WSO2", 55.6, 100L, payload};
+    }
+
+    @Benchmark
+    public long pooledBody() throws IOException {
+        RecordOutputBuffer buffer = pool.acquire();
+        try {
+            mapper.encodeBody(record, buffer);
+            return drain(buffer.newInputStream());
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    @Benchmark
+    public long copiedBody() throws IOException {
+        return drain(new ByteArrayInputStream(mapper.encodeBody(record)));
+    }
+
+    private long drain(InputStream body) throws IOException {
+        long total = 0;
+        int read;
+        while ((read = body.read(scratch, 0, scratch.length)) > 0) {
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,83 @@
+package io.siddhi.extension.store.s3.benchmark;
+
+import io.siddhi.extension.store.s3.InMemoryAmazonS3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations per second of {@value #THREADS} threads inserting into, or looking up, an S3 table at once, by the
+ * number of requests the table sends in parallel, with every request to S3 taking {@code latencyMillis}. Run with
+ * {@code -t} to scale the number of threads instead.
+ * <p>
+ * A {@code throttleRate} above 0 makes the stand-in throttle the requests to each prefix beyond that rate, as S3
+ * does, and turns on the rate limiter of the table, which then has to find the rate S3 accepts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(ConcurrencyBenchmark.THREADS)
+@Fork(1)
+public class ConcurrencyBenchmark {
+
+    static final int THREADS = 16;
+    private static final int RECORDS = 10_000;
+
+    @Param({"1", "4", "16", "64"})
+    public int workerCount;
+
+    @Param({"5"})
+    public long latencyMillis;
+
+    @Param({"0"})
+    public int throttleRate;
+
+    private StockTableApp app;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        InMemoryAmazonS3 s3 = new InMemoryAmazonS3();
+        Map<String, String> options = new HashMap<>();
+        options.put("worker.count", String.valueOf(workerCount));
+        options.put("max.in.flight.requests", String.valueOf(Math.max(workerCount, THREADS)));
+        if (throttleRate > 0) {
+            options.put("rate.limit.enabled", "true");
+        }
+        app = new StockTableApp(s3, options);
+        app.load(RECORDS);
+        s3.setLatencyMillis(latencyMillis);
+        s3.setThrottleRate(throttleRate);
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.shutdown();
+    }
+
+    @Benchmark
+    public void insert() throws InterruptedException {
+        app.insert(StockTableApp.stock(ThreadLocalRandom.current().nextInt(RECORDS)));
+    }
+
+    @Benchmark
+    public void lookup() throws InterruptedException {
+        app.lookup(StockTableApp.symbol(ThreadLocalRandom.current().nextInt(RECORDS)));
+    }
+}
@@ -0,0 +1,114 @@
+package io.siddhi.extension.store.s3.benchmark;
+
+import io.siddhi.extension.store.s3.condition.ConditionNode;
+import io.siddhi.extension.store.s3.condition.RecordPredicate;
+import io.siddhi.extension.store.s3.condition.S3ConditionVisitor;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.condition.Compare;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second of evaluating a scan condition against decoded records, with the records turned into maps for the
+ * condition tree, as the store used to, and with the condition compiled to a {@link RecordPredicate}.
+ * <p>
+ * The condition is {@code price > 50 and volume >= volumeParam and symbol != 'IBM'}, over records of which about
+ * half match each comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionEvaluationBenchmark {
+
+    private static final int ROWS = 4096;
+    private static final List<Attribute> ATTRIBUTES = Arrays.asList(
+            new Attribute("symbol", Attribute.Type.STRING),
+            new Attribute("price", Attribute.Type.DOUBLE),
+            new Attribute("volume", Attribute.Type.LONG),
+            new Attribute("exchange", Attribute.Type.STRING));
+    private static final String[] SYMBOLS = {"WSO2", "IBM", "ORCL", "MSFT"};
+
+    private Object[][] records;
+    private Map<String, Object> parameters;
+    private ConditionNode condition;
+    private RecordPredicate predicate;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        records = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            records[i] = new Object[]{SYMBOLS[random.nextInt(SYMBOLS.length)], random.nextDouble() * 100,
+                    (long) random.nextInt(1000), "NYSE"};
+        }
+        parameters = Collections.singletonMap("volume-param", 500L);
+
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.beginVisitAnd();
+        visitor.beginVisitAnd();
+        visitor.beginVisitCompare(Compare.Operator.GREATER_THAN);
+        visitor.endVisitStoreVariable("StockTable", "price", Attribute.Type.DOUBLE);
+        visitor.endVisitConstant(50, Attribute.Type.INT);
+        visitor.endVisitCompare(Compare.Operator.GREATER_THAN);
+        visitor.beginVisitCompare(Compare.Operator.GREATER_THAN_EQUAL);
+        visitor.endVisitStoreVariable("StockTable", "volume", Attribute.Type.LONG);
+        visitor.endVisitStreamVariable("volume-param", "StockStream", "volume", Attribute.Type.LONG);
+        visitor.endVisitCompare(Compare.Operator.GREATER_THAN_EQUAL);
+        visitor.endVisitAnd();
+        visitor.beginVisitCompare(Compare.Operator.NOT_EQUAL);
+        visitor.endVisitStoreVariable("StockTable", "symbol", Attribute.Type.STRING);
+        visitor.endVisitConstant("IBM", Attribute.Type.STRING);
+        visitor.endVisitCompare(Compare.Operator.NOT_EQUAL);
+        visitor.endVisitAnd();
+        condition = visitor.getCondition();
+        predicate = RecordPredicate.compile(condition, ATTRIBUTES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int mapBased() {
+        int matches = 0;
+        for (Object[] record : records) {
+            Map<String, Object> recordMap = new HashMap<>();
+            for (int i = 0; i < record.length; i++) {
+                recordMap.put(ATTRIBUTES.get(i).getName(), record[i]);
+            }
+            if (Boolean.TRUE.equals(condition.evaluate(recordMap, parameters))) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int compiled() {
+        int matches = 0;
+        for (Object[] record : records) {
+            if (predicate.test(record, parameters)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
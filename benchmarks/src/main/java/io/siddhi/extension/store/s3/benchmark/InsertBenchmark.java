@@ -0,0 +1,91 @@
+package io.siddhi.extension.store.s3.benchmark;
+
+import io.siddhi.core.event.Event;
+import io.siddhi.extension.store.s3.InMemoryAmazonS3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second inserted into an S3 table through a Siddhi app, one event at a time and in batches of
+ * {@value #BATCH_SIZE}, which the table uploads in parallel.
+ * <p>
+ * Inserts cycle over {@value #KEYS} symbols, hence most of them overwrite an object. With a {@code writeBehind}
+ * buffer the inserts return once buffered and the uploads are flushed in the background.
+ * <p>
+ * Run with {@code -prof gc} to measure the heap allocated per inserted event, the {@code gc.alloc.rate.norm} result,
+ * which includes the allocations of Siddhi and of the stand-in next to those of the table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertBenchmark {
+
+    private static final int KEYS = 100_000;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"0", "10"})
+    public long latencyMillis;
+
+    @Param({"binary", "json"})
+    public String codec;
+
+    @Param({"0", "10000"})
+    public int writeBehind;
+
+    private StockTableApp app;
+    private int next;
+
+    @Setup
+    public void setup() {
+        InMemoryAmazonS3 s3 = new InMemoryAmazonS3();
+        s3.setLatencyMillis(latencyMillis);
+        Map<String, String> options = new HashMap<>();
+        options.put("codec", codec);
+        options.put("write.behind.max.size", String.valueOf(writeBehind));
+        app = new StockTableApp(s3, options);
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.shutdown();
+    }
+
+    @Benchmark
+    public void insert() throws InterruptedException {
+        app.insert(StockTableApp.stock(nextIndex()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insertBatch() throws InterruptedException {
+        Event[] batch = new Event[BATCH_SIZE];
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch[i] = new Event(timestamp, StockTableApp.stock(nextIndex()));
+        }
+        app.insert(batch);
+    }
+
+    private int nextIndex() {
+        next = next == KEYS - 1 ? 0 : next + 1;
+        return next;
+    }
+}
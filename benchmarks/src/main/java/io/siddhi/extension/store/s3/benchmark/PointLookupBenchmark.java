@@ -0,0 +1,73 @@
+package io.siddhi.extension.store.s3.benchmark;
+
+import io.siddhi.extension.store.s3.InMemoryAmazonS3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microseconds per lookup of a record by its primary key, through a stream joined with an S3 table holding
+ * {@value #RECORDS} records, and per check of whether the table contains a key, with and without the record cache.
+ * <p>
+ * Keys are drawn uniformly, one in eleven of them missing from the table. The cache, when sized to the table, is filled
+ * during the warmup iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointLookupBenchmark {
+
+    private static final int RECORDS = 10_000;
+
+    @Param({"0", "10"})
+    public long latencyMillis;
+
+    @Param({"0", "10000"})
+    public int cacheSize;
+
+    private StockTableApp app;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        app = new StockTableApp(new InMemoryAmazonS3(),
+                Collections.singletonMap("record.cache.size", String.valueOf(cacheSize)));
+        app.load(RECORDS);
+        // Records are loaded before the latency applies, to keep the setup short
+        app.getS3().setLatencyMillis(latencyMillis);
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.shutdown();
+    }
+
+    @Benchmark
+    public void lookup() throws InterruptedException {
+        app.lookup(nextSymbol());
+    }
+
+    @Benchmark
+    public void contains() throws InterruptedException {
+        app.contains(nextSymbol());
+    }
+
+    private String nextSymbol() {
+        return StockTableApp.symbol(ThreadLocalRandom.current().nextInt(RECORDS + RECORDS / 10));
+    }
+}
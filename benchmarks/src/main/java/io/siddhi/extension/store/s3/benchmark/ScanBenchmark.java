@@ -0,0 +1,66 @@
+package io.siddhi.extension.store.s3.benchmark;
+
+import io.siddhi.core.event.Event;
+import io.siddhi.extension.store.s3.InMemoryAmazonS3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Milliseconds per on-demand query scanning an S3 table of {@code records} records, by the number of objects the
+ * table downloads in parallel.
+ * <p>
+ * The query {@code from StockTable on price > 60 select symbol, price} matches about half of the records and cannot
+ * be answered by key, hence every object of the table is listed and downloaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScanBenchmark {
+
+    private static final String QUERY = "from StockTable on price > 60 select symbol, price";
+
+    @Param({"1000"})
+    public int records;
+
+    @Param({"0", "5"})
+    public long latencyMillis;
+
+    @Param({"1", "8", "32"})
+    public int scanParallelism;
+
+    private StockTableApp app;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        app = new StockTableApp(new InMemoryAmazonS3(),
+                Collections.singletonMap("scan.parallelism", String.valueOf(scanParallelism)));
+        app.load(records);
+        app.getS3().setLatencyMillis(latencyMillis);
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.shutdown();
+    }
+
+    @Benchmark
+    public Event[] scan() {
+        return app.query(QUERY);
+    }
+}
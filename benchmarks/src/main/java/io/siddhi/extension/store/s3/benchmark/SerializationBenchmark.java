@@ -0,0 +1,127 @@
+package io.siddhi.extension.store.s3.benchmark;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import io.siddhi.extension.store.s3.codec.RecordMapper;
+import io.siddhi.extension.store.s3.util.RecordBufferPool;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import io.siddhi.query.api.definition.Attribute;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records per second turned into the body and metadata of their S3 object and back, by codec and compression, for
+ * records carrying a text payload of {@code payloadSize} characters.
+ * <p>
+ * The payload is made of words drawn from a small vocabulary, so that it compresses about as well as log lines do.
+ * Bodies below the default compression threshold of the store are not compressed.
+ * <p>
+ * Next to its throughput, {@code serialize} reports the {@code records} it serialized and the {@code storedBytes} of
+ * their bodies, whose ratio is the number of bytes each record takes in S3 with the codec and compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private static final List<Attribute> ATTRIBUTES = Arrays.asList(
+            new Attribute("symbol", Attribute.Type.STRING),
+            new Attribute("price", Attribute.Type.DOUBLE),
+            new Attribute("volume", Attribute.Type.LONG),
+            new Attribute("exchange", Attribute.Type.STRING),
+            new Attribute("payload", Attribute.Type.STRING));
+    private static final String[] WORDS = {"order", "filled", "cancelled", "price", "volume", "WSO2", "IBM",
+            "NYSE", "NASDAQ", "at", "of", "for", "buy", "sell", "limit", "market"};
+    private static final int COMPRESSION_THRESHOLD = 1024;
+
+    @Param({"binary", "json", "java"})
+    public String codec;
+
+    @Param({"none", "lz4", "zstd", "gzip"})
+    public String compression;
+
+    @Param({"100", "10000"})
+    public int payloadSize;
+
+    private RecordMapper mapper;
+    private RecordBufferPool pool;
+    private Object[] record;
+    private ObjectMetadata metadata;
+    private byte[] body;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = new RecordMapper(ATTRIBUTES, 0, Arrays.asList(1, 2, 4), codec, compression, COMPRESSION_THRESHOLD);
+        pool = new RecordBufferPool(4, 1024, 1024 * 1024);
+        Random random = new Random(42);
+        StringBuilder payload = new StringBuilder(payloadSize + 16);
+        while (payload.length() < payloadSize) {
+            payload.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        payload.setLength(payloadSize);
+        record = new Object[]{"WSO2", 55.6, 100L, "NYSE", payload.toString()};
+
+        metadata = mapper.createMetadata(record);
+        RecordOutputBuffer buffer = encode(metadata);
+        body = buffer.toByteArray();
+        pool.release(buffer);
+    }
+
+    @Benchmark
+    public int serialize(StoredSize storedSize) throws IOException {
+        RecordOutputBuffer buffer = encode(mapper.createMetadata(record));
+        int length = buffer.length();
+        pool.release(buffer);
+        storedSize.records++;
+        storedSize.storedBytes += length;
+        return length;
+    }
+
+    @Benchmark
+    public Object[] deserialize() throws IOException {
+        return mapper.toRecord("WSO2", metadata, body, 0, body.length);
+    }
+
+    private RecordOutputBuffer encode(ObjectMetadata objectMetadata) throws IOException {
+        RecordOutputBuffer buffer = pool.acquire();
+        mapper.encodeBody(record, buffer);
+        return mapper.compressBody(buffer, objectMetadata, pool);
+    }
+
+    /**
+     * Counters of the records serialized in an iteration and of the bytes of their bodies. JMH sums the counters
+     * over the iterations, which leaves their ratio as is.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class StoredSize {
+
+        public long records;
+        public long storedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            records = 0;
+            storedBytes = 0;
+        }
+    }
+}
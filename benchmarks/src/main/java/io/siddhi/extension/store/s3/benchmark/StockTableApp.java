@@ -0,0 +1,154 @@
+package io.siddhi.extension.store.s3.benchmark;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.extension.store.s3.InMemoryAmazonS3;
+import io.siddhi.extension.store.s3.S3EventTable;
+import io.siddhi.extension.store.s3.client.S3ClientRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Siddhi app holding a stock table stored in an {@link InMemoryAmazonS3}, through which the benchmarks drive the
+ * {@link S3EventTable} the way a deployed app does, offline.
+ * <p>
+ * Events sent to {@code StockStream} are inserted into the table. Symbols sent to {@code LookupStream} are joined
+ * with the table by its primary key and symbols sent to {@code ContainsStream} are checked against it, both emitting
+ * the matches to streams whose events are counted. The rate limiter of the table is off unless the store options
+ * turn it on, so that it does not cap the request rate of benchmarks the stand-in does not throttle.
+ */
+public class StockTableApp {
+
+    static final String BUCKET = "siddhi-benchmark";
+
+    private final InMemoryAmazonS3 s3;
+    private final SiddhiManager siddhiManager;
+    private final SiddhiAppRuntime runtime;
+    private final InputHandler stockStream;
+    private final InputHandler lookupStream;
+    private final InputHandler containsStream;
+    private final AtomicLong matches = new AtomicLong();
+
+    /**
+     * @param s3           stand-in the table stores its records in
+     * @param storeOptions store parameters of the table, in addition to the bucket and the object fields
+     */
+    public StockTableApp(InMemoryAmazonS3 s3, Map<String, String> storeOptions) {
+        this.s3 = s3;
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("bucket.name", BUCKET);
+        options.put("object.fields", "price,volume");
+        options.put("rate.limit.enabled", "false");
+        options.putAll(storeOptions);
+        StringBuilder store = new StringBuilder("@store(type='s3'");
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            store.append(", ").append(option.getKey()).append("='").append(option.getValue()).append('\'');
+        }
+        store.append(')');
+        String app = "@app:name('S3StoreBenchmark')\n"
+                + "define stream StockStream (symbol string, price double, volume long, exchange string);\n"
+                + "define stream LookupStream (symbol string);\n"
+                + "define stream ContainsStream (symbol string);\n"
+                + store + "\n"
+                + "@PrimaryKey('symbol')\n"
+                + "define table StockTable (symbol string, price double, volume long, exchange string);\n"
+                + "from StockStream\n"
+                + "insert into StockTable;\n"
+                + "from LookupStream join StockTable on StockTable.symbol == LookupStream.symbol\n"
+                + "select StockTable.symbol, StockTable.price, StockTable.volume\n"
+                + "insert into LookupResultStream;\n"
+                + "from ContainsStream[(StockTable.symbol == symbol) in StockTable]\n"
+                + "insert into ContainsResultStream;\n";
+
+        // Every client the table asks for is the stand-in
+        S3ClientRegistry.getInstance().setClientFactory(settings -> s3);
+        this.siddhiManager = new SiddhiManager();
+        siddhiManager.setExtension("store:s3", S3EventTable.class);
+        this.runtime = siddhiManager.createSiddhiAppRuntime(app);
+        StreamCallback counter = new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                matches.addAndGet(events.length);
+            }
+        };
+        runtime.addCallback("LookupResultStream", counter);
+        runtime.addCallback("ContainsResultStream", counter);
+        runtime.start();
+        this.stockStream = runtime.getInputHandler("StockStream");
+        this.lookupStream = runtime.getInputHandler("LookupStream");
+        this.containsStream = runtime.getInputHandler("ContainsStream");
+    }
+
+    public InMemoryAmazonS3 getS3() {
+        return s3;
+    }
+
+    /**
+     * @return event of {@code StockStream} for the stock with the given index, whose symbol the index determines
+     */
+    public static Object[] stock(int index) {
+        return new Object[]{symbol(index), 10 + index % 100 + 0.5, (long) index, index % 2 == 0 ? "NYSE" : "NASDAQ"};
+    }
+
+    public static String symbol(int index) {
+        return "STOCK-" + index;
+    }
+
+    /**
+     * Insert the stocks with indices from 0 up to the given count, in batches that the table writes in parallel.
+     */
+    public void load(int count) throws InterruptedException {
+        int batchSize = 256;
+        for (int start = 0; start < count; start += batchSize) {
+            Event[] batch = new Event[Math.min(batchSize, count - start)];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = new Event(System.currentTimeMillis(), stock(start + i));
+            }
+            stockStream.send(batch);
+        }
+    }
+
+    public void insert(Object[] stock) throws InterruptedException {
+        stockStream.send(stock);
+    }
+
+    public void insert(Event[] stocks) throws InterruptedException {
+        stockStream.send(stocks);
+    }
+
+    public void lookup(String symbol) throws InterruptedException {
+        lookupStream.send(new Object[]{symbol});
+    }
+
+    public void contains(String symbol) throws InterruptedException {
+        containsStream.send(new Object[]{symbol});
+    }
+
+    /**
+     * Run an on-demand query against the table.
+     */
+    public Event[] query(String query) {
+        return runtime.query(query);
+    }
+
+    /**
+     * @return events emitted by lookups and containment checks so far
+     */
+    public long getMatches() {
+        return matches.get();
+    }
+
+    public void shutdown() {
+        try {
+            runtime.shutdown();
+            siddhiManager.shutdown();
+        } finally {
+            S3ClientRegistry.getInstance().setClientFactory(null);
+        }
+    }
+}
@@ -1,13 +1,31 @@
 package io.siddhi.extension.store.s3;
 
+import com.amazonaws.SdkClientException;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompressionType;
 import com.amazonaws.services.s3.model.CreateBucketRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.ExpressionType;
+import com.amazonaws.services.s3.model.InputSerialization;
+import com.amazonaws.services.s3.model.JSONInput;
+import com.amazonaws.services.s3.model.JSONOutput;
+import com.amazonaws.services.s3.model.JSONType;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.OutputSerialization;
 import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.SelectObjectContentEventException;
+import com.amazonaws.services.s3.model.SelectObjectContentRequest;
+import com.amazonaws.services.s3.model.SelectObjectContentResult;
+import com.amazonaws.util.IOUtils;
 import io.siddhi.annotation.Example;
 import io.siddhi.annotation.Extension;
 import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.SystemParameter;
 import io.siddhi.annotation.util.DataType;
 import io.siddhi.core.exception.ConnectionUnavailableException;
 import io.siddhi.core.table.record.AbstractRecordTable;
@@ -17,21 +35,64 @@ import io.siddhi.core.util.SiddhiConstants;
 import io.siddhi.core.util.collection.operator.CompiledCondition;
 import io.siddhi.core.util.collection.operator.CompiledExpression;
 import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.extension.store.s3.buffer.WriteBehindBuffer;
+import io.siddhi.extension.store.s3.cache.RecordCache;
+import io.siddhi.extension.store.s3.client.S3ClientRegistry;
+import io.siddhi.extension.store.s3.client.S3ClientSettings;
+import io.siddhi.extension.store.s3.codec.JsonRecordCodec;
+import io.siddhi.extension.store.s3.codec.RecordMapper;
+import io.siddhi.extension.store.s3.compression.CompressionCodecFactory;
+import io.siddhi.extension.store.s3.condition.S3CompiledCondition;
+import io.siddhi.extension.store.s3.condition.S3CompiledExpression;
+import io.siddhi.extension.store.s3.condition.S3ConditionVisitor;
+import io.siddhi.extension.store.s3.condition.S3SelectQuery;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+import io.siddhi.extension.store.s3.index.KeyIndex;
+import io.siddhi.extension.store.s3.key.KeyLayout;
+import io.siddhi.extension.store.s3.key.KeyLayoutFactory;
+import io.siddhi.extension.store.s3.metrics.InstrumentedAmazonS3;
+import io.siddhi.extension.store.s3.metrics.S3StoreMetrics;
+import io.siddhi.extension.store.s3.parquet.ParquetPartitioner;
+import io.siddhi.extension.store.s3.parquet.ParquetStore;
+import io.siddhi.extension.store.s3.scan.S3ScanEngine;
+import io.siddhi.extension.store.s3.scan.ScanIterator;
+import io.siddhi.extension.store.s3.segment.RecordStore;
+import io.siddhi.extension.store.s3.segment.SegmentStore;
+import io.siddhi.extension.store.s3.throttle.AdaptiveRateLimiter;
+import io.siddhi.extension.store.s3.throttle.RateLimitedAmazonS3;
+import io.siddhi.extension.store.s3.transfer.ObjectTransfer;
+import io.siddhi.extension.store.s3.update.ConditionalUpdater;
+import io.siddhi.extension.store.s3.update.RecordUpdate;
+import io.siddhi.extension.store.s3.update.UpdateSet;
+import io.siddhi.extension.store.s3.util.ListRecordIterator;
+import io.siddhi.extension.store.s3.util.RecordBufferPool;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import io.siddhi.extension.store.s3.util.S3Constants;
+import io.siddhi.extension.store.s3.util.S3RequestPipeline;
 import io.siddhi.query.api.annotation.Annotation;
 import io.siddhi.query.api.annotation.Element;
 import io.siddhi.query.api.definition.Attribute;
 import io.siddhi.query.api.definition.TableDefinition;
 import io.siddhi.query.api.util.AnnotationHelper;
-import jdk.nashorn.internal.IntDeque;
+import org.apache.log4j.Logger;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 /**
  * This is a sample class-level comment, explaining what the Sink extension class does.
@@ -91,7 +152,10 @@ import java.util.Map;
                 @Parameter(
                         name = "credential.provider",
                         type = DataType.STRING,
-                        description = "AWS credential provider to be used. If blank, default chain will be triggered."
+                        description = "Class name of the AWS credentials provider to be used. If blank, the default "
+                                + "provider chain is used",
+                        optional = true,
+                        defaultValue = "null"
                 ),
                 @Parameter(
                         name = "bucket.name",
@@ -116,6 +180,561 @@ import java.util.Map;
                         description = "The content type of the object",
                         optional = true,
                         defaultValue = "application/octet-stream"
+                ),
+                @Parameter(
+                        name = "worker.count",
+                        type = DataType.INT,
+                        description = "Number of worker threads used to execute S3 requests of a table in parallel",
+                        optional = true,
+                        defaultValue = "16"
+                ),
+                @Parameter(
+                        name = "max.in.flight.requests",
+                        type = DataType.INT,
+                        description = "Maximum number of S3 requests of a table that can be outstanding at a time. "
+                                + "Inserts block once this limit is reached until earlier requests complete",
+                        optional = true,
+                        defaultValue = "64"
+                ),
+                @Parameter(
+                        name = "codec",
+                        type = DataType.STRING,
+                        description = "Codec used to encode the object fields into the object body. 'binary' writes "
+                                + "the values positionally based on the attribute types, 'json' writes a JSON object "
+                                + "keyed by attribute name and 'java' uses Java serialization of a map, which is the "
+                                + "format of objects written by earlier versions",
+                        optional = true,
+                        defaultValue = "binary"
+                ),
+                @Parameter(
+                        name = "record.cache.size",
+                        type = DataType.INT,
+                        description = "Maximum number of records kept in the in-memory cache of records looked up "
+                                + "by their primary key. The cache is disabled when set to 0",
+                        optional = true,
+                        defaultValue = "0"
+                ),
+                @Parameter(
+                        name = "record.cache.max.weight",
+                        type = DataType.LONG,
+                        description = "Maximum total size in bytes of the encoded records held by the record "
+                                + "cache. No limit other than 'record.cache.size' applies when set to 0",
+                        optional = true,
+                        defaultValue = "0"
+                ),
+                @Parameter(
+                        name = "record.cache.expiry.time",
+                        type = DataType.LONG,
+                        description = "Time in milliseconds after which a cached record expires. Records do not "
+                                + "expire when set to 0",
+                        optional = true,
+                        defaultValue = "0"
+                ),
+                @Parameter(
+                        name = "record.cache.missing.keys",
+                        type = DataType.BOOL,
+                        description = "Whether primary keys that have no record should be cached as well, so that "
+                                + "repeated lookups of them are answered without a request",
+                        optional = true,
+                        defaultValue = "true"
+                ),
+                @Parameter(
+                        name = "write.behind.max.size",
+                        type = DataType.INT,
+                        description = "Enables write-behind when set to a value above 0. Inserted records are then "
+                                + "buffered in memory, keeping only the latest record of each primary key, and "
+                                + "written to S3 once this many keys are buffered, periodically, or when the table "
+                                + "disconnects. Buffered records are visible to lookups on the same node",
+                        optional = true,
+                        defaultValue = "0"
+                ),
+                @Parameter(
+                        name = "write.behind.flush.interval",
+                        type = DataType.LONG,
+                        description = "Interval in milliseconds at which buffered records are written to S3 when "
+                                + "write-behind is enabled",
+                        optional = true,
+                        defaultValue = "1000"
+                ),
+                @Parameter(
+                        name = "scan.prefixes",
+                        type = DataType.STRING,
+                        description = "Comma separated list of key prefixes that together cover all the keys of "
+                                + "the table. Queries that cannot be answered by a primary key lookup list each "
+                                + "prefix in parallel. When not given, the prefixes of the key layout are listed, "
+                                + "or the whole bucket if the layout has none",
+                        optional = true,
+                        defaultValue = "<empty>"
+                ),
+                @Parameter(
+                        name = "scan.parallelism",
+                        type = DataType.INT,
+                        description = "Maximum number of objects fetched at a time by a query that scans the bucket",
+                        optional = true,
+                        defaultValue = "32"
+                ),
+                @Parameter(
+                        name = "scan.buffer.size",
+                        type = DataType.INT,
+                        description = "Maximum number of scanned records held in memory until they are consumed. "
+                                + "Scanning pauses once this limit is reached",
+                        optional = true,
+                        defaultValue = "1000"
+                ),
+                @Parameter(
+                        name = "key.layout",
+                        type = DataType.STRING,
+                        description = "Layout of the object keys. 'raw' stores each record under its primary key, "
+                                + "'hash' prefixes the primary key with hex characters of its hash, spreading "
+                                + "sequential keys over many prefixes to raise the request rate S3 sustains, and "
+                                + "'date' prefixes the primary key with the date of the timestamp attribute. "
+                                + "The 'date' layout requires the key index, which records the object of each key",
+                        optional = true,
+                        defaultValue = "raw"
+                ),
+                @Parameter(
+                        name = "key.layout.hash.length",
+                        type = DataType.INT,
+                        description = "Number of hex characters, from 1 to 8, prefixed by the 'hash' key layout",
+                        optional = true,
+                        defaultValue = "2"
+                ),
+                @Parameter(
+                        name = "key.layout.timestamp.attribute",
+                        type = DataType.STRING,
+                        description = "LONG attribute holding the epoch millisecond timestamp that the 'date' key "
+                                + "layout derives the date from. Updates cannot change it, whereas inserting a record "
+                                + "again with another date moves it to the object of that date",
+                        optional = true,
+                        defaultValue = "<empty>"
+                ),
+                @Parameter(
+                        name = "key.layout.date.format",
+                        type = DataType.STRING,
+                        description = "Pattern of the UTC date prefixed by the 'date' key layout",
+                        optional = true,
+                        defaultValue = "yyyy/MM/dd"
+                ),
+                @Parameter(
+                        name = "compression",
+                        type = DataType.STRING,
+                        description = "Compression of the object bodies, one of 'none', 'gzip', 'lz4' and 'zstd'. "
+                                + "The compression is recorded in the metadata of each object, so objects are "
+                                + "read back regardless of the compression configured when reading them",
+                        optional = true,
+                        defaultValue = "none"
+                ),
+                @Parameter(
+                        name = "compression.threshold",
+                        type = DataType.INT,
+                        description = "Minimum size in bytes of an encoded object body to be compressed. Smaller "
+                                + "bodies, and bodies that do not shrink, are stored uncompressed",
+                        optional = true,
+                        defaultValue = "1024"
+                ),
+                @Parameter(
+                        name = "storage.mode",
+                        type = DataType.STRING,
+                        description = "'object' stores each record as an object of its own. 'segment' appends "
+                                + "records to segment objects packing many records each, which are uploaded once "
+                                + "full or when the roll interval elapses. Records not uploaded yet are lost if the "
+                                + "node fails. Point reads of segments are ranged requests located by an in-memory "
+                                + "index of all keys, and superseded records are dropped by background compaction. "
+                                + "'parquet' writes the records into columnar Parquet files, partitioned the way "
+                                + "Athena, Hive and Spark expect, for analytical queries of the bucket. Files are "
+                                + "never rewritten, hence records updated or deleted by the table stay in the files "
+                                + "they were written to. Requires parquet-hadoop and hadoop-common",
+                        optional = true,
+                        defaultValue = "object"
+                ),
+                @Parameter(
+                        name = "segment.prefix",
+                        type = DataType.STRING,
+                        description = "Key prefix of the segment objects. Only one table may write to a prefix",
+                        optional = true,
+                        defaultValue = "segments/"
+                ),
+                @Parameter(
+                        name = "segment.max.size",
+                        type = DataType.INT,
+                        description = "Size in bytes at which a segment is uploaded",
+                        optional = true,
+                        defaultValue = "8388608"
+                ),
+                @Parameter(
+                        name = "segment.roll.interval",
+                        type = DataType.LONG,
+                        description = "Interval in milliseconds at which the current segment is uploaded, even "
+                                + "if not full",
+                        optional = true,
+                        defaultValue = "10000"
+                ),
+                @Parameter(
+                        name = "segment.compaction.interval",
+                        type = DataType.LONG,
+                        description = "Interval in milliseconds at which the need for compaction is checked. "
+                                + "Compaction is disabled when set to 0",
+                        optional = true,
+                        defaultValue = "600000"
+                ),
+                @Parameter(
+                        name = "segment.compaction.garbage.ratio",
+                        type = DataType.DOUBLE,
+                        description = "Share of the segment bytes held by superseded and deleted records at which "
+                                + "the segments are compacted",
+                        optional = true,
+                        defaultValue = "0.5"
+                ),
+                @Parameter(
+                        name = "parquet.prefix",
+                        type = DataType.STRING,
+                        description = "Key prefix of the Parquet files, and the location of the table to be "
+                                + "declared to Athena or Spark. Only one table may write to a prefix",
+                        optional = true,
+                        defaultValue = "parquet/"
+                ),
+                @Parameter(
+                        name = "parquet.partition.attribute",
+                        type = DataType.STRING,
+                        description = "Attribute by whose value the Parquet files are partitioned, into "
+                                + "'<attribute>=<value>/' key prefixes. With 'parquet.partition.date.format' the "
+                                + "attribute has to be a LONG holding epoch milliseconds",
+                        optional = true,
+                        defaultValue = "<none>"
+                ),
+                @Parameter(
+                        name = "parquet.partition.date.format",
+                        type = DataType.STRING,
+                        description = "Partition the Parquet files by time, into 'dt=<date>/' key prefixes "
+                                + "formatted in UTC with the given pattern, for example 'yyyy-MM-dd'. The date is "
+                                + "taken from 'parquet.partition.attribute' if set, else from the time the file is "
+                                + "written",
+                        optional = true,
+                        defaultValue = "<none>"
+                ),
+                @Parameter(
+                        name = "parquet.max.size",
+                        type = DataType.INT,
+                        description = "Estimated size in bytes of the records held in memory at which they are "
+                                + "written to Parquet files",
+                        optional = true,
+                        defaultValue = "67108864"
+                ),
+                @Parameter(
+                        name = "parquet.roll.interval",
+                        type = DataType.LONG,
+                        description = "Interval in milliseconds at which the records held in memory are written to "
+                                + "Parquet files, even if their size did not reach 'parquet.max.size'. Each roll "
+                                + "also writes a key file, and every 64 key files are merged into a snapshot of the "
+                                + "keys, so start up reads at most that many key files",
+                        optional = true,
+                        defaultValue = "300000"
+                ),
+                @Parameter(
+                        name = "parquet.row.group.size",
+                        type = DataType.INT,
+                        description = "Size in bytes of the row groups of the Parquet files, at most 1048576. A "
+                                + "point read downloads the columns of one row group and decodes them up to the "
+                                + "row, hence row groups are kept smaller than query engines would favour for "
+                                + "scanning",
+                        optional = true,
+                        defaultValue = "1048576"
+                ),
+                @Parameter(
+                        name = "parquet.compression",
+                        type = DataType.STRING,
+                        description = "Compression of the Parquet column chunks. Supported values are 'none', "
+                                + "'snappy' and 'gzip'",
+                        optional = true,
+                        defaultValue = "snappy"
+                ),
+                @Parameter(
+                        name = "key.index",
+                        type = DataType.BOOL,
+                        description = "Maintain an index of the keys stored in the bucket, so that lookups of keys "
+                                + "that do not exist are answered without a request. Applies to the object storage "
+                                + "mode, where the 'date' key layout requires it, and assumes the bucket is written "
+                                + "by this table only",
+                        optional = true,
+                        defaultValue = "false"
+                ),
+                @Parameter(
+                        name = "key.index.prefix",
+                        type = DataType.STRING,
+                        description = "Prefix of the objects holding the key index",
+                        optional = true,
+                        defaultValue = "_index/"
+                ),
+                @Parameter(
+                        name = "key.index.cache.directory",
+                        type = DataType.STRING,
+                        description = "Local directory caching the key index, so that it is not downloaded again "
+                                + "on restart",
+                        optional = true,
+                        defaultValue = "siddhi-s3-key-index in the temporary directory"
+                ),
+                @Parameter(
+                        name = "key.index.snapshot.interval",
+                        type = DataType.LONG,
+                        description = "Interval in milliseconds at which the key index is rewritten as a single "
+                                + "object, merging the changes recorded since",
+                        optional = true,
+                        defaultValue = "300000"
+                ),
+                @Parameter(
+                        name = "select.pushdown",
+                        type = DataType.BOOL,
+                        description = "Filter the objects scanned for conditions on object fields on the server "
+                                + "side with S3 Select, so that only the matching records are downloaded. Requires "
+                                + "the json codec without compression. Parts of a condition that S3 Select cannot "
+                                + "evaluate are evaluated on the client side. Tables storing attributes as user "
+                                + "metadata are scanned with plain downloads, as S3 Select does not return the "
+                                + "metadata",
+                        optional = true,
+                        defaultValue = "false"
+                ),
+                @Parameter(
+                        name = "select.pushdown.min.size",
+                        type = DataType.LONG,
+                        description = "Size in bytes below which objects are downloaded rather than filtered with "
+                                + "S3 Select, which costs more than a download for small objects",
+                        optional = true,
+                        defaultValue = "65536"
+                ),
+                @Parameter(
+                        name = "enable.versioning",
+                        type = DataType.BOOL,
+                        description = "Stamp every object with a version in its metadata, and check that version "
+                                + "right before writing an updated record, instead of making the write conditional "
+                                + "on the ETag of the object. For S3 compatible stores that do not support "
+                                + "conditional writes",
+                        optional = true,
+                        defaultValue = "false"
+                ),
+                @Parameter(
+                        name = "update.max.attempts",
+                        type = DataType.INT,
+                        description = "Maximum number of times a record is read, updated and written before the "
+                                + "update gives up on concurrent changes to the record",
+                        optional = true,
+                        defaultValue = "5"
+                ),
+                @Parameter(
+                        name = "multipart.threshold",
+                        type = DataType.INT,
+                        description = "Object bodies of at least this many bytes are uploaded with a multipart "
+                                + "upload of parts sent in parallel. Objects are read back with ranged GETs of "
+                                + "parts fetched in parallel. 0 disables multipart transfers",
+                        optional = true,
+                        defaultValue = "67108864"
+                ),
+                @Parameter(
+                        name = "multipart.part.size",
+                        type = DataType.INT,
+                        description = "Size in bytes of the parts of multipart uploads and ranged GETs, at least "
+                                + "5242880",
+                        optional = true,
+                        defaultValue = "8388608"
+                ),
+                @Parameter(
+                        name = "multipart.concurrency",
+                        type = DataType.INT,
+                        description = "Number of parts of large objects transferred in parallel, across all the "
+                                + "objects of the table",
+                        optional = true,
+                        defaultValue = "4"
+                ),
+                @Parameter(
+                        name = "endpoint",
+                        type = DataType.STRING,
+                        description = "Endpoint of the S3 service, overriding the one of the region, such as the "
+                                + "one of an S3 compatible store",
+                        optional = true,
+                        defaultValue = "null"
+                ),
+                @Parameter(
+                        name = "path.style.access",
+                        type = DataType.BOOL,
+                        description = "Whether buckets are addressed in the path of requests rather than in the "
+                                + "host name, as S3 compatible stores often require",
+                        optional = true,
+                        defaultValue = "false"
+                ),
+                @Parameter(
+                        name = "aws.access.key",
+                        type = DataType.STRING,
+                        description = "AWS access key. Static credentials take precedence over the credential "
+                                + "provider",
+                        optional = true,
+                        defaultValue = "null"
+                ),
+                @Parameter(
+                        name = "aws.secret.key",
+                        type = DataType.STRING,
+                        description = "AWS secret key, required along with the access key",
+                        optional = true,
+                        defaultValue = "null"
+                ),
+                @Parameter(
+                        name = "client.max.connections",
+                        type = DataType.INT,
+                        description = "Maximum number of open HTTP connections of the S3 client",
+                        optional = true,
+                        defaultValue = "64"
+                ),
+                @Parameter(
+                        name = "client.connection.timeout",
+                        type = DataType.INT,
+                        description = "Time in milliseconds to wait for a connection to be established, 0 for no "
+                                + "limit",
+                        optional = true,
+                        defaultValue = "10000"
+                ),
+                @Parameter(
+                        name = "client.socket.timeout",
+                        type = DataType.INT,
+                        description = "Time in milliseconds to wait for data on an open connection, 0 for no limit",
+                        optional = true,
+                        defaultValue = "50000"
+                ),
+                @Parameter(
+                        name = "client.request.timeout",
+                        type = DataType.INT,
+                        description = "Time in milliseconds a single request may take, 0 for no limit",
+                        optional = true,
+                        defaultValue = "0"
+                ),
+                @Parameter(
+                        name = "client.connection.ttl",
+                        type = DataType.LONG,
+                        description = "Time in milliseconds a pooled connection is reused for, 0 for no limit",
+                        optional = true,
+                        defaultValue = "0"
+                ),
+                @Parameter(
+                        name = "client.tcp.keep.alive",
+                        type = DataType.BOOL,
+                        description = "Whether TCP keep-alive is enabled on the connections",
+                        optional = true,
+                        defaultValue = "true"
+                ),
+                @Parameter(
+                        name = "client.max.error.retry",
+                        type = DataType.INT,
+                        description = "Maximum number of times the client retries a failed request, with backoff",
+                        optional = true,
+                        defaultValue = "3"
+                ),
+                @Parameter(
+                        name = "rate.limit.enabled",
+                        type = DataType.BOOL,
+                        description = "Pace the requests to each prefix of the bucket, lowering the pace whenever "
+                                + "S3 throttles requests and raising it again as requests succeed. Throttled "
+                                + "requests are held back and sent again, blocking the callers, instead of failing",
+                        optional = true,
+                        defaultValue = "true"
+                ),
+                @Parameter(
+                        name = "rate.limit.read.rate",
+                        type = DataType.INT,
+                        description = "Highest rate of GET, HEAD and LIST requests per prefix, in requests per "
+                                + "second",
+                        optional = true,
+                        defaultValue = "5500"
+                ),
+                @Parameter(
+                        name = "rate.limit.write.rate",
+                        type = DataType.INT,
+                        description = "Highest rate of PUT and DELETE requests per prefix, in requests per second",
+                        optional = true,
+                        defaultValue = "3500"
+                ),
+                @Parameter(
+                        name = "rate.limit.min.rate",
+                        type = DataType.INT,
+                        description = "Lowest rate throttling may bring a prefix down to, in requests per second",
+                        optional = true,
+                        defaultValue = "10"
+                ),
+                @Parameter(
+                        name = "rate.limit.increase",
+                        type = DataType.INT,
+                        description = "Requests per second a throttled prefix regains every second of successful "
+                                + "requests",
+                        optional = true,
+                        defaultValue = "50"
+                ),
+                @Parameter(
+                        name = "rate.limit.max.wait",
+                        type = DataType.LONG,
+                        description = "Time in milliseconds a request may be held back by the rate limit before "
+                                + "failing, or 0 to hold it back for as long as S3 throttles it",
+                        optional = true,
+                        defaultValue = "60000"
+                )
+        },
+        systemParameter = {
+                @SystemParameter(
+                        name = "credential.provider",
+                        description = "Class name of the AWS credentials provider used by tables that do not set one",
+                        defaultValue = "null",
+                        possibleParameters = "Class name implementing com.amazonaws.auth.AWSCredentialsProvider"
+                ),
+                @SystemParameter(
+                        name = "endpoint",
+                        description = "Endpoint of the S3 service used by tables that do not set one",
+                        defaultValue = "null",
+                        possibleParameters = "Any S3 compatible endpoint URL"
+                ),
+                @SystemParameter(
+                        name = "path.style.access",
+                        description = "Whether tables that do not set it address buckets in the path of requests",
+                        defaultValue = "false",
+                        possibleParameters = "true, false"
+                ),
+                @SystemParameter(
+                        name = "client.max.connections",
+                        description = "Maximum number of open HTTP connections of S3 clients of tables that do not "
+                                + "set it",
+                        defaultValue = "64",
+                        possibleParameters = "Any positive integer"
+                ),
+                @SystemParameter(
+                        name = "client.connection.timeout",
+                        description = "Connection timeout in milliseconds of S3 clients of tables that do not set it",
+                        defaultValue = "10000",
+                        possibleParameters = "Any non negative integer"
+                ),
+                @SystemParameter(
+                        name = "client.socket.timeout",
+                        description = "Socket timeout in milliseconds of S3 clients of tables that do not set it",
+                        defaultValue = "50000",
+                        possibleParameters = "Any non negative integer"
+                ),
+                @SystemParameter(
+                        name = "client.request.timeout",
+                        description = "Request timeout in milliseconds of S3 clients of tables that do not set it",
+                        defaultValue = "0",
+                        possibleParameters = "Any non negative integer"
+                ),
+                @SystemParameter(
+                        name = "client.connection.ttl",
+                        description = "Connection time to live in milliseconds of S3 clients of tables that do not "
+                                + "set it",
+                        defaultValue = "0",
+                        possibleParameters = "Any non negative integer"
+                ),
+                @SystemParameter(
+                        name = "client.tcp.keep.alive",
+                        description = "Whether S3 clients of tables that do not set it enable TCP keep-alive",
+                        defaultValue = "true",
+                        possibleParameters = "true, false"
+                ),
+                @SystemParameter(
+                        name = "client.max.error.retry",
+                        description = "Maximum retries of failed requests of S3 clients of tables that do not set it",
+                        defaultValue = "3",
+                        possibleParameters = "Any non negative integer"
                 )
         },
         examples = {
@@ -130,11 +749,38 @@ import java.util.Map;
 
 public class S3EventTable extends AbstractRecordTable {
 
+    private static final Logger log = Logger.getLogger(S3EventTable.class);
+    private static final int MAX_KEYS_PER_DELETE_REQUEST = 1000;
+    private static final int INITIAL_RECORD_BUFFER_SIZE = 1024;
+    private static final int MAX_RETAINED_RECORD_BUFFER_SIZE = 256 * 1024;
+    private static final int UPDATE_LOCK_STRIPES = 64;
+    // Version passed when a record read must not be cached, record cache versions never being negative
+    private static final long NOT_CACHED = -1;
+    private static final Set<String> RETRYABLE_DELETE_ERRORS =
+            new HashSet<>(Arrays.asList("InternalError", "ServiceUnavailable", "SlowDown"));
+
     private S3StoreConfig config;
     private AmazonS3 client;
+    private S3ClientSettings clientSettings;
+    private S3RequestPipeline requestPipeline;
+    private S3ScanEngine scanEngine;
     private List<Attribute> attributes;
     private int primaryKeyIndex;
     private List<Integer> objectIndices;
+    private RecordMapper recordMapper;
+    private RecordBufferPool recordBufferPool;
+    private KeyLayout keyLayout;
+    private RecordCache recordCache;
+    private WriteBehindBuffer writeBehindBuffer;
+    private RecordStore recordStore;
+    private ParquetPartitioner parquetPartitioner;
+    private KeyIndex keyIndex;
+    private Map<String, Attribute.Type> selectFields;
+    private ConditionalUpdater conditionalUpdater;
+    private ObjectTransfer objectTransfer;
+    private Object[] updateLocks;
+    private S3StoreMetrics metrics;
+    private AdaptiveRateLimiter rateLimiter;
 
     /**
      * Initializing the Record Table
@@ -144,7 +790,6 @@ public class S3EventTable extends AbstractRecordTable {
      */
     @Override
     protected void init(TableDefinition tableDefinition, ConfigReader configReader) {
-        System.out.println(">>>>>>>>>> s3:init()");
         // Get attributes
         this.attributes = tableDefinition.getAttributeList();
 
@@ -155,7 +800,7 @@ public class S3EventTable extends AbstractRecordTable {
                 tableDefinition.getAnnotations());
 
         if (primaryKeyAnnotation == null) {
-            throw new IllegalArgumentException("Primary key cannot be null")
+            throw new IllegalArgumentException("Primary key cannot be null");
         }
 
         if (primaryKeyAnnotation.getElements().size() > 1) {
@@ -163,10 +808,10 @@ public class S3EventTable extends AbstractRecordTable {
         }
 
         Element primaryKey = primaryKeyAnnotation.getElements().get(0);
-        int primaryKeyIndex = -1;
+        this.primaryKeyIndex = -1;
         for (int i = 0; i < this.attributes.size(); i++) {
             if (this.attributes.get(i).getName().equalsIgnoreCase(primaryKey.getValue())) {
-                primaryKeyIndex = i;
+                this.primaryKeyIndex = i;
                 break;
             }
         }
@@ -176,13 +821,108 @@ public class S3EventTable extends AbstractRecordTable {
         }
 
         // Initialize store configurations from the store annotation
-        this.config = new S3StoreConfig(storeAnnotation);
+        this.config = new S3StoreConfig(storeAnnotation, configReader);
 
+        this.objectIndices = new ArrayList<>();
         for (int i = 0; i < this.attributes.size(); i++) {
             if (this.config.getObjectFields().contains(this.attributes.get(i).getName().toLowerCase())) {
                 this.objectIndices.add(i);
             }
         }
+        this.recordMapper = new RecordMapper(this.attributes, this.primaryKeyIndex, this.objectIndices,
+                this.config.getCodec(), this.config.getCompression(), this.config.getCompressionThreshold());
+        // Every in-flight upload holds on to a buffer until it completes
+        this.recordBufferPool = new RecordBufferPool(this.config.getMaxInFlightRequests(),
+                INITIAL_RECORD_BUFFER_SIZE, MAX_RETAINED_RECORD_BUFFER_SIZE);
+        this.keyLayout = KeyLayoutFactory.create(this.config.getKeyLayout(), this.config.getKeyLayoutHashLength(),
+                this.config.getKeyLayoutTimestampAttribute(), this.config.getKeyLayoutDateFormat(), this.attributes);
+        if (this.config.getRecordCacheSize() > 0) {
+            this.recordCache = new RecordCache(this.config.getRecordCacheSize(),
+                    this.config.getRecordCacheMaxWeight(), this.config.getRecordCacheExpiryTime(),
+                    this.config.isRecordCacheMissingKeys());
+        }
+        if (isSegmentMode()) {
+            // Segments buffer writes and place records by themselves
+            if (this.config.getWriteBehindMaxSize() > 0) {
+                throw new IllegalArgumentException("Write-behind cannot be enabled with the "
+                        + S3Constants.STORAGE_MODE_SEGMENT + " storage mode.");
+            }
+            if (!this.config.getKeyLayout().equalsIgnoreCase(S3Constants.Defaults.KEY_LAYOUT)) {
+                throw new IllegalArgumentException("Key layouts do not apply to the "
+                        + S3Constants.STORAGE_MODE_SEGMENT + " storage mode.");
+            }
+            if (this.config.isKeyIndex()) {
+                throw new IllegalArgumentException("The " + S3Constants.STORAGE_MODE_SEGMENT + " storage mode "
+                        + "keeps an index of the keys by itself, hence the key index cannot be enabled.");
+            }
+        }
+        if (isParquetMode()) {
+            // Parquet files are written from buffered records and indexed like segments
+            if (this.config.getWriteBehindMaxSize() > 0 || this.config.isKeyIndex()
+                    || !this.config.getKeyLayout().equalsIgnoreCase(S3Constants.Defaults.KEY_LAYOUT)) {
+                throw new IllegalArgumentException("Write-behind, key layouts and the key index do not apply to "
+                        + "the " + S3Constants.STORAGE_MODE_PARQUET + " storage mode.");
+            }
+            try {
+                Class.forName("org.apache.parquet.hadoop.ParquetWriter", false, S3EventTable.class.getClassLoader());
+                Class.forName("org.apache.hadoop.conf.Configuration", false, S3EventTable.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("The " + S3Constants.STORAGE_MODE_PARQUET + " storage mode "
+                        + "requires parquet-hadoop and hadoop-common, which are not available: " + e.getMessage(), e);
+            }
+            for (Attribute attribute : this.attributes) {
+                if (attribute.getType() == Attribute.Type.OBJECT) {
+                    throw new IllegalArgumentException("Attribute '" + attribute.getName() + "' of type OBJECT "
+                            + "cannot be stored with the " + S3Constants.STORAGE_MODE_PARQUET + " storage mode.");
+                }
+            }
+            if (this.config.getParquetRowGroupSize() > ParquetStore.MAX_ROW_GROUP_SIZE) {
+                throw new IllegalArgumentException("Parquet row groups of " + this.config.getParquetRowGroupSize()
+                        + " bytes exceed the maximum of " + ParquetStore.MAX_ROW_GROUP_SIZE + " bytes.");
+            }
+            this.parquetPartitioner = new ParquetPartitioner(this.attributes,
+                    this.config.getParquetPartitionAttribute(), this.config.getParquetPartitionDateFormat());
+        }
+        if (!this.keyLayout.isKeyAddressable() && !this.config.isKeyIndex()) {
+            // Without the object key of each primary key, every lookup would have to list the bucket
+            throw new IllegalArgumentException("The " + this.keyLayout.getName() + " key layout requires the key "
+                    + "index to be enabled.");
+        }
+        if (this.config.isSelectPushdown()) {
+            // S3 Select parses the object bodies, hence they have to be plain JSON
+            if (!JsonRecordCodec.NAME.equalsIgnoreCase(this.config.getCodec())
+                    || !CompressionCodecFactory.NONE.equalsIgnoreCase(this.config.getCompression())
+                    || isSegmentMode() || isParquetMode()) {
+                throw new IllegalArgumentException("S3 Select pushdown requires the " + JsonRecordCodec.NAME
+                        + " codec, no compression and the " + S3Constants.STORAGE_MODE_OBJECT + " storage mode.");
+            }
+            this.selectFields = new HashMap<>();
+            for (int index : this.objectIndices) {
+                this.selectFields.put(this.attributes.get(index).getName(), this.attributes.get(index).getType());
+            }
+        }
+        this.updateLocks = new Object[UPDATE_LOCK_STRIPES];
+        for (int i = 0; i < this.updateLocks.length; i++) {
+            this.updateLocks[i] = new Object();
+        }
+        if (this.config.getWriteBehindMaxSize() > 0) {
+            this.writeBehindBuffer = new WriteBehindBuffer("s3-store-" + this.config.getBucketName(),
+                    this.config.getWriteBehindMaxSize(), this.config.getWriteBehindFlushInterval(),
+                    this::flushBufferedWrites);
+        }
+        if (this.config.isRateLimitEnabled()) {
+            // Kept across reconnections, along with the rates learnt
+            this.rateLimiter = new AdaptiveRateLimiter(this.config.getRateLimitReadRate(),
+                    this.config.getRateLimitWriteRate(), this.config.getRateLimitMinRate(),
+                    this.config.getRateLimitIncrease());
+        }
+        this.metrics = new S3StoreMetrics();
+        this.metrics.enableSiddhiStatistics(siddhiAppContext, tableDefinition.getId());
+        this.metrics.register(siddhiAppContext == null ? null : siddhiAppContext.getName(), tableDefinition.getId());
+        if (log.isDebugEnabled()) {
+            log.debug("Initialized S3 table '" + tableDefinition.getId() + "' of bucket " + config.getBucketName()
+                    + ".");
+        }
     }
 
     /**
@@ -193,43 +933,221 @@ public class S3EventTable extends AbstractRecordTable {
      */
     @Override
     protected void add(List<Object[]> records) throws ConnectionUnavailableException {
-        records.forEach(record -> {
-            System.out.println(">>>>>>>>>>> records inserted...");
-            // Get the key field value
+        long start = System.nanoTime();
+        try {
+            addRecords(records);
+        } finally {
+            metrics.recordOperation(S3StoreMetrics.Operation.ADD, start);
+        }
+    }
+
+    private void addRecords(List<Object[]> records) throws ConnectionUnavailableException {
+        if (recordStore != null) {
+            List<Object[]> keyedRecords = new ArrayList<>(records.size());
+            for (Object[] record : records) {
+                if (record[primaryKeyIndex] == null) {
+                    log.warn("Cannot execute insert: null value detected for "
+                            + this.attributes.get(primaryKeyIndex).getName() + " field.");
+                    continue;
+                }
+                keyedRecords.add(record);
+            }
+            recordStore.write(keyedRecords);
+            if (recordCache != null) {
+                for (Object[] record : keyedRecords) {
+                    recordCache.invalidate((String) record[primaryKeyIndex]);
+                }
+            }
+            return;
+        }
+        if (writeBehindBuffer == null) {
+            writeRecords(records);
+            return;
+        }
+        for (Object[] record : records) {
             Object key = record[primaryKeyIndex];
             if (key == null) {
-                System.out.println("Cannot execute insert: null value detected for " + this.attributes.get(primaryKeyIndex).getName() + " field.");
-                return;
+                log.warn("Cannot execute insert: null value detected for "
+                        + this.attributes.get(primaryKeyIndex).getName() + " field.");
+                continue;
             }
+            writeBehindBuffer.put((String) key, record.clone());
+        }
+        writeBehindBuffer.flushIfFull();
+    }
 
-            // Build the payload
-            HashMap<String, Object> payload = new HashMap<>();
-            objectIndices.forEach(index -> {
-                payload.put(this.attributes.get(index).getName(), record[index]);
-            });
+    private void flushBufferedWrites(Map<String, Object[]> bufferedWrites) throws ConnectionUnavailableException {
+        if (requestPipeline == null) {
+            throw new ConnectionUnavailableException("S3 table of bucket " + config.getBucketName()
+                    + " is not connected.");
+        }
+        List<Object[]> records = new ArrayList<>(bufferedWrites.size());
+        List<String> deletedKeys = new ArrayList<>();
+        for (Map.Entry<String, Object[]> entry : bufferedWrites.entrySet()) {
+            if (entry.getValue() == WriteBehindBuffer.TOMBSTONE) {
+                deletedKeys.add(entry.getKey());
+            } else {
+                records.add(entry.getValue());
+            }
+        }
+        writeRecords(records);
+        deleteKeys(deletedKeys);
+    }
 
-            // Convert the payload into an input stream
-            InputStream inputStream = null;
-            try {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                ObjectOutputStream oos = new ObjectOutputStream(baos);
-                oos.writeObject(payload);
-                oos.flush();
-                oos.close();
-                inputStream = new ByteArrayInputStream(baos.toByteArray());
-            } catch (IOException e) {
-                e.printStackTrace();
+    private void writeRecords(List<Object[]> records) throws ConnectionUnavailableException {
+        List<Callable<String>> uploads = new ArrayList<>(records.size());
+        List<Integer> lengths = new ArrayList<>(records.size());
+        List<String> addedKeys = new ArrayList<>(records.size());
+        List<Object[]> addedRecords = new ArrayList<>(records.size());
+        Map<String, String> indexedObjectKeys = new LinkedHashMap<>();
+        List<String> movedObjectKeys = new ArrayList<>();
+        for (Object[] record : records) {
+            // Get the key field value
+            Object key = record[primaryKeyIndex];
+            if (key == null) {
+                log.warn("Cannot execute insert: null value detected for "
+                        + this.attributes.get(primaryKeyIndex).getName() + " field.");
+                continue;
+            }
+            String objectKey = keyLayout.toObjectKey((String) key, record);
+            if (objectKey == null) {
+                log.warn("Cannot execute insert: record with key '" + key + "' lacks the values needed by the "
+                        + keyLayout.getName() + " key layout.");
+                continue;
+            }
+            if (keyIndex != null) {
+                if (!keyLayout.isKeyAddressable()) {
+                    // A record written again with another date moves to another object, the previous one is deleted
+                    String previousObjectKey = indexedObjectKeys.containsKey(key) ? indexedObjectKeys.get(key)
+                            : keyIndex.getObjectKey((String) key);
+                    if (previousObjectKey != null && !previousObjectKey.equals(objectKey)) {
+                        movedObjectKeys.add(previousObjectKey);
+                    }
+                }
+                indexedObjectKeys.put((String) key, toIndexedObjectKey(objectKey));
+            }
+            ObjectMetadata metadata = recordMapper.createMetadata(record);
+            if (config.isEnableVersioning()) {
+                ConditionalUpdater.stampVersion(metadata);
+            }
+            RecordOutputBuffer body = encodeBody(record, metadata);
+            if (objectTransfer.isMultipart(body.length())) {
+                metadata.setContentType(config.getContentType());
+                uploads.add(() -> {
+                    try {
+                        return objectTransfer.upload(objectKey, metadata, body);
+                    } finally {
+                        recordBufferPool.release(body);
+                    }
+                });
+            } else {
+                PutObjectRequest request = buildPutObjectRequest(objectKey, metadata, body);
+                uploads.add(() -> {
+                    try {
+                        return client.putObject(request).getETag();
+                    } finally {
+                        // The client has read the body by now, successfully or not
+                        recordBufferPool.release(body);
+                    }
+                });
+            }
+            lengths.add(body.length());
+            addedKeys.add((String) key);
+            addedRecords.add(record);
+        }
+        // Returns only after every object of the batch has been written
+        try {
+            if (keyIndex != null) {
+                keyIndex.recordWrites(indexedObjectKeys);
+            }
+            requestPipeline.executeAll(uploads);
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            // Some of the objects might have been written, hence cached values of the batch can no longer be trusted
+            if (recordCache != null) {
+                addedKeys.forEach(recordCache::invalidate);
             }
+            throw e;
+        }
+        if (recordCache != null) {
+            for (int i = 0; i < lengths.size(); i++) {
+                recordCache.put(addedKeys.get(i), addedRecords.get(i).clone(), lengths.get(i));
+            }
+        }
+        deleteMovedObjects(movedObjectKeys);
+        if (log.isDebugEnabled()) {
+            log.debug(uploads.size() + " records inserted to bucket " + config.getBucketName());
+        }
+    }
+
+    /**
+     * Object key recorded in the key index, which is left out when the key layout derives it from the primary key.
+     */
+    private String toIndexedObjectKey(String objectKey) {
+        return keyLayout.isKeyAddressable() ? null : objectKey;
+    }
 
-            // Populate object metadtaa
-            ObjectMetadata metadata = new ObjectMetadata();
-            metadata.setContentType(config.getContentType());
+    /**
+     * Delete the previous objects of records that got written to other objects. The key index no longer refers to
+     * them, hence objects that fail to be deleted are left behind and only logged.
+     */
+    private void deleteMovedObjects(List<String> objectKeys) throws ConnectionUnavailableException {
+        if (objectKeys.isEmpty()) {
+            return;
+        }
+        List<Callable<List<MultiObjectDeleteException.DeleteError>>> deletes = new ArrayList<>();
+        for (int from = 0; from < objectKeys.size(); from += MAX_KEYS_PER_DELETE_REQUEST) {
+            List<DeleteObjectsRequest.KeyVersion> chunk = new ArrayList<>(MAX_KEYS_PER_DELETE_REQUEST);
+            for (String objectKey : objectKeys.subList(from,
+                    Math.min(from + MAX_KEYS_PER_DELETE_REQUEST, objectKeys.size()))) {
+                chunk.add(new DeleteObjectsRequest.KeyVersion(objectKey));
+            }
+            deletes.add(createDeleteRequest(chunk));
+        }
+        List<String> failedObjectKeys = new ArrayList<>();
+        try {
+            for (List<MultiObjectDeleteException.DeleteError> errors : requestPipeline.executeAll(deletes)) {
+                errors.forEach(error -> failedObjectKeys.add(error.getKey()));
+            }
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            log.error("Failed to delete the previous objects of " + objectKeys.size() + " records moved to other "
+                    + "objects in bucket " + config.getBucketName() + ", which are left behind: " + objectKeys
+                    + ". " + e.getMessage(), e);
+            return;
+        }
+        if (!failedObjectKeys.isEmpty()) {
+            log.error("Failed to delete the previous objects of " + failedObjectKeys.size() + " records moved to "
+                    + "other objects in bucket " + config.getBucketName() + ", which are left behind: "
+                    + failedObjectKeys + ".");
+        }
+    }
 
-            // todo set metadata fields
+    /**
+     * Encode, and compress if configured, the object body of a record into a buffer taken from the pool.
+     */
+    private RecordOutputBuffer encodeBody(Object[] record, ObjectMetadata metadata) {
+        RecordOutputBuffer buffer = recordBufferPool.acquire();
+        long start = System.nanoTime();
+        try {
+            recordMapper.encodeBody(record, buffer);
+            return recordMapper.compressBody(buffer, metadata, recordBufferPool);
+        } catch (IOException e) {
+            recordBufferPool.release(buffer);
+            throw new S3TableException("Failed to encode the record with key '" + record[primaryKeyIndex] + "'.",
+                    e);
+        } finally {
+            metrics.recordSerialization(start);
+        }
+    }
 
-            PutObjectRequest req = new PutObjectRequest(config.getBucketName(), (String) key, inputStream, metadata);
-            this.client.putObject(req);
-        });
+    /**
+     * Build the request that uploads a record, with the body streamed from the given buffer. Setting the content
+     * length keeps the client from buffering the body once more.
+     */
+    private PutObjectRequest buildPutObjectRequest(String objectKey, ObjectMetadata metadata,
+                                                   RecordOutputBuffer body) {
+        metadata.setContentType(config.getContentType());
+        metadata.setContentLength(body.length());
+        return new PutObjectRequest(config.getBucketName(), objectKey, body.newInputStream(), metadata);
     }
 
     /**
@@ -243,8 +1161,26 @@ public class S3EventTable extends AbstractRecordTable {
     @Override
     protected RecordIterator<Object[]> find(Map<String, Object> findConditionParameterMap,
                                             CompiledCondition compiledCondition) throws ConnectionUnavailableException {
-        System.out.println(">>>>>>>>>> s3:find()");
-        return null;
+        long start = System.nanoTime();
+        try {
+            return findRecords(findConditionParameterMap, (S3CompiledCondition) compiledCondition);
+        } finally {
+            // Scans are timed until they are started, their records are streamed to the caller afterwards
+            metrics.recordOperation(S3StoreMetrics.Operation.FIND, start);
+        }
+    }
+
+    private RecordIterator<Object[]> findRecords(Map<String, Object> findConditionParameterMap,
+                                                 S3CompiledCondition condition) throws ConnectionUnavailableException {
+        if (condition.isPrimaryKeyLookup()) {
+            Object[] record = findByKey(condition.getPrimaryKey(findConditionParameterMap));
+            if (record != null && condition.matches(record, findConditionParameterMap)) {
+                return new ListRecordIterator(Collections.singletonList(record));
+            }
+            return new ListRecordIterator(Collections.emptyList());
+        }
+        // Records are streamed to the caller while the scan is still in progress
+        return scan(condition, Collections.singletonList(findConditionParameterMap));
     }
 
     /**
@@ -258,7 +1194,317 @@ public class S3EventTable extends AbstractRecordTable {
     @Override
     protected boolean contains(Map<String, Object> containsConditionParameterMap,
                                CompiledCondition compiledCondition) throws ConnectionUnavailableException {
-        System.out.println(">>>>>>>>>> s3:contains()");
+        long start = System.nanoTime();
+        try {
+            return containsRecord(containsConditionParameterMap, (S3CompiledCondition) compiledCondition);
+        } finally {
+            metrics.recordOperation(S3StoreMetrics.Operation.CONTAINS, start);
+        }
+    }
+
+    private boolean containsRecord(Map<String, Object> containsConditionParameterMap,
+                                   S3CompiledCondition condition) throws ConnectionUnavailableException {
+        if (condition.isPrimaryKeyLookup()) {
+            String key = condition.getPrimaryKey(containsConditionParameterMap);
+            if (key == null) {
+                return false;
+            }
+            if (condition.isPrimaryKeyOnly()) {
+                if (writeBehindBuffer != null) {
+                    Object[] buffered = writeBehindBuffer.get(key);
+                    if (buffered != null) {
+                        return buffered != WriteBehindBuffer.TOMBSTONE;
+                    }
+                }
+                long cacheVersion = NOT_CACHED;
+                if (recordCache != null) {
+                    RecordCache.Entry entry = recordCache.get(key);
+                    if (entry != null) {
+                        return entry.getRecord() != null;
+                    }
+                    cacheVersion = recordCache.getVersion(key);
+                }
+                boolean exists;
+                if (keyIndex != null && !keyIndex.contains(key)) {
+                    exists = false;
+                } else if (recordStore != null) {
+                    // Answered by the index of the store, without a request
+                    exists = recordStore.contains(key);
+                } else {
+                    String objectKey = keyLayout.isKeyAddressable() ? keyLayout.toObjectKey(key, null)
+                            : keyIndex == null ? null : keyIndex.getObjectKey(key);
+                    if (objectKey != null) {
+                        // A HEAD request is enough, no need to download the object
+                        exists = requestPipeline.execute(() -> client.doesObjectExist(config.getBucketName(),
+                                objectKey));
+                    } else {
+                        exists = !resolveObjectKeys(Collections.singleton(key)).isEmpty();
+                    }
+                }
+                if (!exists && recordCache != null) {
+                    recordCache.putMissingIfAbsent(key, cacheVersion);
+                }
+                return exists;
+            }
+            Object[] record = findByKey(key);
+            return record != null && condition.matches(record, containsConditionParameterMap);
+        }
+        try (ScanIterator iterator = scan(condition, Collections.singletonList(containsConditionParameterMap))) {
+            return iterator.hasNext();
+        } catch (S3TableException e) {
+            throw unwrapScanFailure(e);
+        }
+    }
+
+    private Object[] findByKey(String key) throws ConnectionUnavailableException {
+        if (key == null) {
+            return null;
+        }
+        if (writeBehindBuffer != null) {
+            Object[] buffered = writeBehindBuffer.get(key);
+            if (buffered != null) {
+                return buffered == WriteBehindBuffer.TOMBSTONE ? null : buffered.clone();
+            }
+        }
+        long cacheVersion = NOT_CACHED;
+        if (recordCache != null) {
+            RecordCache.Entry entry = recordCache.get(key);
+            if (entry != null) {
+                return entry.getRecord() == null ? null : entry.getRecord().clone();
+            }
+            // Taken before the lookup, so that a write completing during it keeps what was read out of the cache
+            cacheVersion = recordCache.getVersion(key);
+        }
+        if (recordStore != null) {
+            Object[] record = recordStore.get(key);
+            if (recordCache != null) {
+                if (record == null) {
+                    recordCache.putMissingIfAbsent(key, cacheVersion);
+                } else {
+                    recordCache.putIfAbsent(key, record.clone(), estimateWeight(record), cacheVersion);
+                }
+            }
+            return record;
+        }
+        if (keyIndex != null && !keyIndex.contains(key)) {
+            if (recordCache != null) {
+                recordCache.putMissingIfAbsent(key, cacheVersion);
+            }
+            return null;
+        }
+        String objectKey = keyLayout.isKeyAddressable() ? keyLayout.toObjectKey(key, null)
+                : resolveObjectKeys(Collections.singleton(key)).get(key);
+        if (objectKey == null) {
+            if (recordCache != null) {
+                recordCache.putMissingIfAbsent(key, cacheVersion);
+            }
+            return null;
+        }
+        long version = cacheVersion;
+        return requestPipeline.execute(() -> getRecord(key, objectKey, version));
+    }
+
+    /**
+     * Weight of a record read from a record store in the record cache, which is the encoded size of its body as for
+     * the records read from objects.
+     */
+    private long estimateWeight(Object[] record) {
+        RecordOutputBuffer buffer = recordBufferPool.acquire();
+        try {
+            recordMapper.encodeBody(record, buffer);
+            return buffer.length();
+        } catch (IOException e) {
+            throw new S3TableException("Failed to encode the record with key '" + record[primaryKeyIndex] + "'.",
+                    e);
+        } finally {
+            recordBufferPool.release(buffer);
+        }
+    }
+
+    private Object[] getRecord(String key, String objectKey) throws IOException {
+        return getRecord(key, objectKey, NOT_CACHED);
+    }
+
+    /**
+     * @param cacheVersion version of the key in the record cache taken before the lookup started, or
+     *                     {@link #NOT_CACHED} for the record not to be cached
+     */
+    private Object[] getRecord(String key, String objectKey, long cacheVersion) throws IOException {
+        try {
+            ObjectTransfer.Download object = objectTransfer.download(objectKey);
+            byte[] body = object.getBody();
+            long start = System.nanoTime();
+            Object[] record = recordMapper.toRecord(key, object.getMetadata(), body, 0, body.length);
+            metrics.recordDeserialization(start);
+            if (cacheVersion != NOT_CACHED) {
+                recordCache.putIfAbsent(key, record.clone(), body.length, cacheVersion);
+            }
+            return record;
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                if (cacheVersion != NOT_CACHED) {
+                    recordCache.putMissingIfAbsent(key, cacheVersion);
+                }
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Find the object keys of the given primary keys. Key layouts that cannot derive object keys from primary keys
+     * alone need the bucket to be listed, which stops once all the keys are found.
+     *
+     * @return object keys of the primary keys that have an object, by primary key
+     */
+    private Map<String, String> resolveObjectKeys(Collection<String> keys) throws ConnectionUnavailableException {
+        Map<String, String> objectKeys = new LinkedHashMap<>();
+        if (keyLayout.isKeyAddressable()) {
+            for (String key : keys) {
+                objectKeys.put(key, keyLayout.toObjectKey(key, null));
+            }
+            return objectKeys;
+        }
+        Set<String> remainingKeys = new HashSet<>(keys);
+        if (keyIndex != null) {
+            remainingKeys.removeIf(key -> !keyIndex.contains(key));
+            // The bucket is listed only for keys whose object keys were not recorded
+            Iterator<String> iterator = remainingKeys.iterator();
+            while (iterator.hasNext()) {
+                String key = iterator.next();
+                String objectKey = keyIndex.getObjectKey(key);
+                if (objectKey != null) {
+                    objectKeys.put(key, objectKey);
+                    iterator.remove();
+                }
+            }
+            if (remainingKeys.isEmpty()) {
+                return objectKeys;
+            }
+        }
+        ListObjectsV2Request listRequest = new ListObjectsV2Request().withBucketName(config.getBucketName());
+        ListObjectsV2Result listResult;
+        do {
+            listResult = requestPipeline.execute(() -> client.listObjectsV2(listRequest));
+            for (S3ObjectSummary summary : listResult.getObjectSummaries()) {
+                String key = isRecordObject(summary.getKey()) ? keyLayout.toKey(summary.getKey()) : null;
+                if (key != null && remainingKeys.remove(key)) {
+                    objectKeys.put(key, summary.getKey());
+                    if (remainingKeys.isEmpty()) {
+                        return objectKeys;
+                    }
+                }
+            }
+            listRequest.setContinuationToken(listResult.getNextContinuationToken());
+        } while (listResult.isTruncated());
+        return objectKeys;
+    }
+
+    /**
+     * Scan the bucket for records matching the condition with any of the given parameters. Writes that are still
+     * buffered take precedence over the objects in the bucket, and are returned first.
+     */
+    private ScanIterator scan(S3CompiledCondition condition, List<Map<String, Object>> parameterMaps)
+            throws ConnectionUnavailableException {
+        if (recordStore != null) {
+            return ScanIterator.of(recordStore.scan(record -> matchesAny(condition, record, parameterMaps),
+                    getAttributeIndices(condition.getStoreAttributes())));
+        }
+        if (scanEngine == null) {
+            throw new ConnectionUnavailableException("S3 table of bucket " + config.getBucketName()
+                    + " is not connected.");
+        }
+        Map<String, Object[]> bufferedWrites = writeBehindBuffer == null
+                ? Collections.emptyMap() : writeBehindBuffer.snapshot();
+        List<Object[]> bufferedMatches = new ArrayList<>();
+        for (Object[] record : bufferedWrites.values()) {
+            if (record != WriteBehindBuffer.TOMBSTONE && matchesAny(condition, record, parameterMaps)) {
+                bufferedMatches.add(record.clone());
+            }
+        }
+        Predicate<Object[]> filter = record -> !bufferedWrites.containsKey((String) record[primaryKeyIndex])
+                && matchesAny(condition, record, parameterMaps);
+        // S3 Select returns no user metadata, which would take a HEAD request per match on top of the query
+        String selectSql = condition.getSelectQuery() == null || recordMapper.hasMetadataAttributes() ? null
+                : condition.getSelectQuery().toSql(parameterMaps);
+        if (selectSql == null) {
+            return scanEngine.scan(filter, bufferedMatches);
+        }
+        return scanEngine.scan(filter, bufferedMatches, (objectKey, size) -> {
+            String key = isRecordObject(objectKey) ? keyLayout.toKey(objectKey) : null;
+            if (key == null) {
+                return null;
+            }
+            // A query costs more than downloading a small object, and takes longer
+            return size < config.getSelectPushdownMinSize() ? getRecord(key, objectKey)
+                    : selectRecord(key, objectKey, selectSql);
+        });
+    }
+
+    /**
+     * Read the record of an object if it matches the given S3 Select query, so that objects that do not match are
+     * not downloaded. Objects S3 Select cannot parse, such as ones written with another codec, are read in full.
+     * The table must store no attributes as user metadata, which the query does not return.
+     *
+     * @return the record, or null if the object does not match or does not exist
+     */
+    private Object[] selectRecord(String key, String objectKey, String sql) throws IOException {
+        SelectObjectContentRequest request = new SelectObjectContentRequest()
+                .withBucketName(config.getBucketName())
+                .withKey(objectKey)
+                .withExpression(sql)
+                .withExpressionType(ExpressionType.SQL)
+                .withInputSerialization(new InputSerialization()
+                        .withJson(new JSONInput().withType(JSONType.DOCUMENT))
+                        .withCompressionType(CompressionType.NONE))
+                .withOutputSerialization(new OutputSerialization().withJson(new JSONOutput()));
+        byte[] output;
+        try (SelectObjectContentResult result = client.selectObjectContent(request)) {
+            output = IOUtils.toByteArray(result.getPayload().getRecordsInputStream());
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            if (e.getStatusCode() == 400) {
+                return getRecord(key, objectKey);
+            }
+            throw e;
+        } catch (SelectObjectContentEventException e) {
+            return getRecord(key, objectKey);
+        }
+        if (isBlank(output)) {
+            return null;
+        }
+        return recordMapper.fromSelectOutput(key, null, output);
+    }
+
+    private static boolean isBlank(byte[] bytes) {
+        for (byte b : bytes) {
+            if (!Character.isWhitespace(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scan failures surface from the iterator as unchecked exceptions, hence the ones that Siddhi should retry are
+     * unwrapped again.
+     */
+    private static S3TableException unwrapScanFailure(S3TableException e) throws ConnectionUnavailableException {
+        if (e.getCause() instanceof ConnectionUnavailableException) {
+            throw (ConnectionUnavailableException) e.getCause();
+        }
+        return e;
+    }
+
+    private static boolean matchesAny(S3CompiledCondition condition, Object[] record,
+                                      List<Map<String, Object>> parameterMaps) {
+        for (Map<String, Object> parameters : parameterMaps) {
+            if (condition.matches(record, parameters)) {
+                return true;
+            }
+        }
         return false;
     }
 
@@ -274,44 +1520,398 @@ public class S3EventTable extends AbstractRecordTable {
     @Override
     protected void delete(List<Map<String, Object>> deleteConditionParameterMaps, CompiledCondition compiledCondition)
             throws ConnectionUnavailableException {
-        System.out.println(">>>>>>>>>> s3:delete()");
+        long start = System.nanoTime();
+        try {
+            deleteRecords(deleteConditionParameterMaps, (S3CompiledCondition) compiledCondition);
+        } finally {
+            metrics.recordOperation(S3StoreMetrics.Operation.DELETE, start);
+        }
+    }
+
+    private void deleteRecords(List<Map<String, Object>> deleteConditionParameterMaps, S3CompiledCondition condition)
+            throws ConnectionUnavailableException {
+        Set<String> keys = new LinkedHashSet<>();
+        if (condition.isPrimaryKeyOnly()) {
+            for (Map<String, Object> parameters : deleteConditionParameterMaps) {
+                String key = condition.getPrimaryKey(parameters);
+                if (key != null) {
+                    keys.add(key);
+                }
+            }
+        } else if (condition.isPrimaryKeyLookup()) {
+            // Only the records that satisfy the rest of the condition are to be deleted
+            for (Map<String, Object> parameters : deleteConditionParameterMaps) {
+                Object[] record = findByKey(condition.getPrimaryKey(parameters));
+                if (record != null && condition.matches(record, parameters)) {
+                    keys.add((String) record[primaryKeyIndex]);
+                }
+            }
+        } else {
+            try (ScanIterator iterator = scan(condition, deleteConditionParameterMaps)) {
+                while (iterator.hasNext()) {
+                    keys.add((String) iterator.next()[primaryKeyIndex]);
+                }
+            } catch (S3TableException e) {
+                throw unwrapScanFailure(e);
+            }
+        }
+
+        if (recordStore != null) {
+            recordStore.delete(keys);
+            if (recordCache != null) {
+                keys.forEach(recordCache::invalidate);
+            }
+        } else if (writeBehindBuffer != null) {
+            keys.forEach(writeBehindBuffer::delete);
+            writeBehindBuffer.flushIfFull();
+        } else {
+            deleteKeys(keys);
+        }
+    }
+
+    /**
+     * Delete the objects of the given keys using multi-object delete requests, which are executed in parallel.
+     * Failures of individual keys are collected across all the requests and reported together.
+     */
+    private void deleteKeys(Collection<String> keys) throws ConnectionUnavailableException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        Map<String, String> objectKeys;
+        try {
+            objectKeys = resolveObjectKeys(keys);
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            if (recordCache != null) {
+                keys.forEach(recordCache::invalidate);
+            }
+            throw e;
+        }
+        List<Callable<List<MultiObjectDeleteException.DeleteError>>> deletes = new ArrayList<>();
+        List<DeleteObjectsRequest.KeyVersion> chunk = new ArrayList<>(MAX_KEYS_PER_DELETE_REQUEST);
+        for (String objectKey : objectKeys.values()) {
+            chunk.add(new DeleteObjectsRequest.KeyVersion(objectKey));
+            if (chunk.size() == MAX_KEYS_PER_DELETE_REQUEST) {
+                deletes.add(createDeleteRequest(chunk));
+                chunk = new ArrayList<>(MAX_KEYS_PER_DELETE_REQUEST);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            deletes.add(createDeleteRequest(chunk));
+        }
+
+        List<List<MultiObjectDeleteException.DeleteError>> results;
+        try {
+            results = requestPipeline.executeAll(deletes);
+        } finally {
+            if (recordCache != null) {
+                keys.forEach(recordCache::invalidate);
+            }
+        }
+
+        List<MultiObjectDeleteException.DeleteError> errors = new ArrayList<>();
+        results.forEach(errors::addAll);
+        if (keyIndex != null) {
+            recordDeletes(keys, objectKeys, errors);
+        }
+        if (errors.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug(keys.size() + " records deleted from bucket " + config.getBucketName());
+            }
+            return;
+        }
+        boolean retryable = false;
+        StringBuilder message = new StringBuilder("Failed to delete ").append(errors.size()).append(" of ")
+                .append(keys.size()).append(" records from bucket ").append(config.getBucketName()).append(':');
+        for (MultiObjectDeleteException.DeleteError error : errors) {
+            message.append(' ').append(error.getKey()).append(" (").append(error.getCode()).append(": ")
+                    .append(error.getMessage()).append(')');
+            retryable |= RETRYABLE_DELETE_ERRORS.contains(error.getCode());
+        }
+        if (retryable) {
+            // Deletes are idempotent, hence it is safe to let Siddhi retry the whole batch
+            throw new ConnectionUnavailableException(message.toString());
+        }
+        throw new S3TableException(message.toString());
+    }
+
+    /**
+     * Record the deleted keys in the key index, leaving out the ones whose objects failed to be deleted.
+     */
+    private void recordDeletes(Collection<String> keys, Map<String, String> objectKeys,
+                               List<MultiObjectDeleteException.DeleteError> errors)
+            throws ConnectionUnavailableException {
+        if (errors.isEmpty()) {
+            keyIndex.recordDeletes(keys);
+            return;
+        }
+        Set<String> failedObjectKeys = new HashSet<>();
+        for (MultiObjectDeleteException.DeleteError error : errors) {
+            failedObjectKeys.add(error.getKey());
+        }
+        List<String> deletedKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            if (!failedObjectKeys.contains(objectKeys.get(key))) {
+                deletedKeys.add(key);
+            }
+        }
+        keyIndex.recordDeletes(deletedKeys);
+    }
+
+    private Callable<List<MultiObjectDeleteException.DeleteError>> createDeleteRequest(
+            List<DeleteObjectsRequest.KeyVersion> keys) {
+        DeleteObjectsRequest request = new DeleteObjectsRequest(config.getBucketName())
+                .withKeys(keys)
+                .withQuiet(true);
+        return () -> {
+            try {
+                client.deleteObjects(request);
+                return Collections.emptyList();
+            } catch (MultiObjectDeleteException e) {
+                return e.getErrors();
+            }
+        };
     }
 
     /**
      * Update all matching records
      *
-     * @param compiledCondition the compiledCondition against which records should be matched for update
-     * @param list              map of matching StreamVariable Ids and their values corresponding to the
-     *                          compiled condition based on which the records will be updated
-     * @param map               the attributes and values that should be updated if the condition matches
-     * @param list1             the attributes and values that should be updated for the matching records
+     * @param compiledCondition            the compiledCondition against which records should be matched for update
+     * @param updateConditionParameterMaps map of matching StreamVariable Ids and their values corresponding to the
+     *                                     compiled condition based on which the records will be updated
+     * @param updateSetExpressions         the attributes and values that should be updated if the condition matches
+     * @param updateSetParameterMaps       the attributes and values that should be updated for the matching records
      * @throws ConnectionUnavailableException if end point is unavailable the ConnectionUnavailableException thrown
      *                                        such that the  system will take care retrying for connection
      */
     @Override
-    protected void update(CompiledCondition compiledCondition, List<Map<String, Object>> list,
-                          Map<String, CompiledExpression> map, List<Map<String, Object>> list1)
-            throws ConnectionUnavailableException {
-        System.out.println(">>>>>>>>>> s3:update()");
+    protected void update(CompiledCondition compiledCondition, List<Map<String, Object>> updateConditionParameterMaps,
+                          Map<String, CompiledExpression> updateSetExpressions,
+                          List<Map<String, Object>> updateSetParameterMaps) throws ConnectionUnavailableException {
+        long start = System.nanoTime();
+        try {
+            updateRecords((S3CompiledCondition) compiledCondition, updateConditionParameterMaps,
+                    new UpdateSet(updateSetExpressions, attributes), updateSetParameterMaps, null);
+        } finally {
+            metrics.recordOperation(S3StoreMetrics.Operation.UPDATE, start);
+        }
     }
 
     /**
      * Try updating the records if they exist else add the records
      *
-     * @param list              map of matching StreamVariable Ids and their values corresponding to the
-     *                          compiled condition based on which the records will be updated
-     * @param compiledCondition the compiledCondition against which records should be matched for update
-     * @param map               the attributes and values that should be updated if the condition matches
-     * @param list1             the values for adding new records if the update condition did not match
-     * @param list2             the attributes and values that should be updated for the matching records
+     * @param compiledCondition            the compiledCondition against which records should be matched for update
+     * @param updateConditionParameterMaps map of matching StreamVariable Ids and their values corresponding to the
+     *                                     compiled condition based on which the records will be updated
+     * @param updateSetExpressions         the attributes and values that should be updated if the condition matches
+     * @param updateSetParameterMaps       the attributes and values that should be updated for the matching records
+     * @param addingRecords                the values for adding new records if the update condition did not match
      * @throws ConnectionUnavailableException if end point is unavailable the ConnectionUnavailableException thrown
      *                                        such that the  system will take care retrying for connection
      */
     @Override
-    protected void updateOrAdd(CompiledCondition compiledCondition, List<Map<String, Object>> list,
-                               Map<String, CompiledExpression> map, List<Map<String, Object>> list1,
-                               List<Object[]> list2) throws ConnectionUnavailableException {
-        System.out.println(">>>>>>>>>> s3:updateOrAdd()");
+    protected void updateOrAdd(CompiledCondition compiledCondition,
+                               List<Map<String, Object>> updateConditionParameterMaps,
+                               Map<String, CompiledExpression> updateSetExpressions,
+                               List<Map<String, Object>> updateSetParameterMaps,
+                               List<Object[]> addingRecords) throws ConnectionUnavailableException {
+        long start = System.nanoTime();
+        try {
+            updateRecords((S3CompiledCondition) compiledCondition, updateConditionParameterMaps,
+                    new UpdateSet(updateSetExpressions, attributes), updateSetParameterMaps, addingRecords);
+        } finally {
+            metrics.recordOperation(S3StoreMetrics.Operation.UPDATE_OR_ADD, start);
+        }
+    }
+
+    /**
+     * Update the records matching the condition of each event, and add the record of each event that updates
+     * nothing if records to be added are given.
+     * <p>
+     * The events are grouped by the primary key of the records they may change, so that all the events of a batch
+     * changing a record take a single read and write of it, and the records are updated in parallel. Each record is
+     * written only if it did not change since it was read, otherwise its events are applied again to the latest
+     * record. Events adding a record under a key, whatever record the key has, are written without reading the
+     * record at all.
+     */
+    private void updateRecords(S3CompiledCondition condition, List<Map<String, Object>> conditionParameterMaps,
+                               UpdateSet updateSet, List<Map<String, Object>> setParameterMaps,
+                               List<Object[]> addingRecords) throws ConnectionUnavailableException {
+        int eventCount = conditionParameterMaps.size();
+        boolean[] handled = new boolean[eventCount];
+        Map<String, List<Integer>> eventsByKey = new LinkedHashMap<>();
+        // Records found by a scan, which object keys can be derived from with any key layout
+        Map<String, Object[]> scannedRecords = new HashMap<>();
+        Map<String, Object[]> blindWrites = new LinkedHashMap<>();
+        if (condition.isPrimaryKeyLookup()) {
+            for (int event = 0; event < eventCount; event++) {
+                String key = condition.getPrimaryKey(conditionParameterMaps.get(event));
+                if (key == null) {
+                    continue;
+                }
+                List<Integer> events = eventsByKey.computeIfAbsent(key, k -> new ArrayList<>());
+                events.add(event);
+                if (events.size() == 1 && isBlindWrite(condition, key, updateSet, setParameterMaps, addingRecords,
+                        event)) {
+                    blindWrites.put(key, addingRecords.get(event));
+                } else if (blindWrites.containsKey(key)) {
+                    // Later events of the key determine the record as well
+                    if (isBlindWrite(condition, key, updateSet, setParameterMaps, addingRecords, event)) {
+                        blindWrites.put(key, addingRecords.get(event));
+                    } else {
+                        blindWrites.remove(key);
+                    }
+                }
+            }
+            for (Map.Entry<String, Object[]> entry : blindWrites.entrySet()) {
+                eventsByKey.remove(entry.getKey()).forEach(event -> handled[event] = true);
+            }
+        } else {
+            List<Integer> allEvents = new ArrayList<>(eventCount);
+            for (int event = 0; event < eventCount; event++) {
+                allEvents.add(event);
+            }
+            try (ScanIterator iterator = scan(condition, conditionParameterMaps)) {
+                while (iterator.hasNext()) {
+                    Object[] record = iterator.next();
+                    String key = (String) record[primaryKeyIndex];
+                    eventsByKey.put(key, allEvents);
+                    scannedRecords.put(key, record);
+                }
+            } catch (S3TableException e) {
+                throw unwrapScanFailure(e);
+            }
+        }
+
+        List<RecordUpdate> updates = new ArrayList<>(eventsByKey.size());
+        for (Map.Entry<String, List<Integer>> entry : eventsByKey.entrySet()) {
+            updates.add(new RecordUpdate(entry.getKey(), primaryKeyIndex, condition, conditionParameterMaps,
+                    updateSet, setParameterMaps, addingRecords, entry.getValue()));
+        }
+        if (recordStore != null || writeBehindBuffer != null) {
+            updateLocally(updates);
+        } else {
+            updateObjects(updates, scannedRecords, addingRecords);
+        }
+        updates.forEach(update -> update.markHandled(handled));
+
+        List<Object[]> adds = new ArrayList<>(blindWrites.values());
+        if (addingRecords != null) {
+            for (int event = 0; event < eventCount; event++) {
+                if (!handled[event]) {
+                    adds.add(addingRecords.get(event));
+                }
+            }
+        }
+        if (!adds.isEmpty()) {
+            add(adds);
+        }
+    }
+
+    /**
+     * Whether the event of a key only update or add sets the record of its key to the record it adds, whether the
+     * key has a record or not, so that the record can be written without reading it.
+     */
+    private boolean isBlindWrite(S3CompiledCondition condition, String key, UpdateSet updateSet,
+                                 List<Map<String, Object>> setParameterMaps, List<Object[]> addingRecords,
+                                 int event) {
+        return addingRecords != null && condition.isPrimaryKeyOnly()
+                && key.equals(addingRecords.get(event)[primaryKeyIndex])
+                && updateSet.yields(addingRecords.get(event), setParameterMaps.get(event), primaryKeyIndex);
+    }
+
+    /**
+     * Update records that the table writes through the write-behind buffer or the record store, which are written
+     * by this table only. Updates of the same key are serialized by a lock.
+     */
+    private void updateLocally(List<RecordUpdate> updates) throws ConnectionUnavailableException {
+        for (RecordUpdate update : updates) {
+            String key = update.getKey();
+            synchronized (updateLocks[Math.floorMod(key.hashCode(), updateLocks.length)]) {
+                Object[] record = update.apply(findByKey(key));
+                if (record == null) {
+                    continue;
+                }
+                if (recordStore != null) {
+                    recordStore.write(Collections.singletonList(record));
+                    if (recordCache != null) {
+                        recordCache.invalidate(key);
+                    }
+                } else {
+                    writeBehindBuffer.put(key, record);
+                }
+            }
+        }
+        if (writeBehindBuffer != null) {
+            writeBehindBuffer.flushIfFull();
+        }
+    }
+
+    /**
+     * Update records stored as objects, each with a conditional read-modify-write, in parallel.
+     */
+    private void updateObjects(List<RecordUpdate> updates, Map<String, Object[]> scannedRecords,
+                               List<Object[]> addingRecords) throws ConnectionUnavailableException {
+        if (updates.isEmpty()) {
+            return;
+        }
+        if (conditionalUpdater == null) {
+            throw new ConnectionUnavailableException("S3 table of bucket " + config.getBucketName()
+                    + " is not connected.");
+        }
+        List<String> keys = new ArrayList<>(updates.size());
+        updates.forEach(update -> keys.add(update.getKey()));
+        Map<String, String> objectKeys = scannedRecords.isEmpty() ? resolveObjectKeys(keys) : new HashMap<>();
+        List<Callable<ConditionalUpdater.Result>> tasks = new ArrayList<>(updates.size());
+        List<String> updatedKeys = new ArrayList<>(updates.size());
+        Map<String, String> indexedObjectKeys = new LinkedHashMap<>();
+        for (RecordUpdate update : updates) {
+            String key = update.getKey();
+            String objectKey = scannedRecords.isEmpty() ? objectKeys.get(key)
+                    : keyLayout.toObjectKey(key, scannedRecords.get(key));
+            if (objectKey == null && addingRecords != null) {
+                // No record yet, the object is named after the record to be added
+                objectKey = keyLayout.toObjectKey(key, update.apply(null));
+            }
+            if (objectKey == null) {
+                continue;
+            }
+            String recordObjectKey = objectKey;
+            tasks.add(() -> conditionalUpdater.update(key, recordObjectKey, record -> {
+                Object[] updated = update.apply(record);
+                if (updated != null && !recordObjectKey.equals(keyLayout.toObjectKey(key, updated))) {
+                    throw new S3TableException("Cannot update record '" + key + "', as the update moves it out of "
+                            + "its object " + recordObjectKey + " under the " + keyLayout.getName()
+                            + " key layout.");
+                }
+                return updated;
+            }));
+            updatedKeys.add(key);
+            indexedObjectKeys.put(key, toIndexedObjectKey(objectKey));
+        }
+
+        List<ConditionalUpdater.Result> results;
+        try {
+            if (keyIndex != null && addingRecords != null) {
+                keyIndex.recordWrites(indexedObjectKeys);
+            }
+            results = requestPipeline.executeAll(tasks);
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            if (recordCache != null) {
+                updatedKeys.forEach(recordCache::invalidate);
+            }
+            throw e;
+        }
+        if (recordCache != null) {
+            for (int i = 0; i < results.size(); i++) {
+                Object[] record = results.get(i).getRecord();
+                if (record != null) {
+                    recordCache.put(updatedKeys.get(i), record.clone(), results.get(i).getLength());
+                }
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(tasks.size() + " records updated in bucket " + config.getBucketName());
+        }
     }
 
     /**
@@ -323,8 +1923,12 @@ public class S3EventTable extends AbstractRecordTable {
      */
     @Override
     protected CompiledCondition compileCondition(ExpressionBuilder expressionBuilder) {
-        System.out.println(">>>>>>>>>> s3:compileCondition()");
-        return null;
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        expressionBuilder.build(visitor);
+        S3SelectQuery selectQuery = selectFields == null ? null
+                : S3SelectQuery.translate(visitor.getCondition(), selectFields);
+        return new S3CompiledCondition(visitor.getCondition(), this.attributes,
+                this.attributes.get(this.primaryKeyIndex).getName(), selectQuery);
     }
 
     /**
@@ -336,8 +1940,9 @@ public class S3EventTable extends AbstractRecordTable {
      */
     @Override
     protected CompiledExpression compileSetAttribute(ExpressionBuilder expressionBuilder) {
-        System.out.println(">>>>>>>>>> s3:compuleSetAttribute()");
-        return null;
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        expressionBuilder.build(visitor);
+        return new S3CompiledExpression(visitor.getCondition(), this.attributes);
     }
 
     /**
@@ -349,15 +1954,118 @@ public class S3EventTable extends AbstractRecordTable {
      */
     @Override
     protected void connect() throws ConnectionUnavailableException {
-        System.out.println(">>>>>>>>>> s3:connect()");
+        if (this.client != null) {
+            // Siddhi connects again after a ConnectionUnavailableException without disconnecting first
+            disconnect();
+        }
+        try {
+            this.clientSettings = new S3ClientSettings(config);
+            // Requests are recorded by the table, whichever tables share the client
+            this.client = new InstrumentedAmazonS3(S3ClientRegistry.getInstance().acquire(clientSettings), metrics);
+            if (rateLimiter != null) {
+                this.client = new RateLimitedAmazonS3(this.client, rateLimiter, config.getRateLimitMaxWait());
+            }
+            createBucketIfNotExist(config.getBucketName(), config.getRegion());
+            this.requestPipeline = new S3RequestPipeline("s3-store-" + config.getBucketName(),
+                    config.getWorkerCount(), config.getMaxInFlightRequests());
+            this.objectTransfer = new ObjectTransfer("s3-store-" + config.getBucketName(), client,
+                    config.getBucketName(), config.getMultipartThreshold(), config.getMultipartPartSize(),
+                    config.getMultipartConcurrency());
+            List<String> scanPrefixes = config.getScanPrefixes().isEmpty()
+                    ? keyLayout.getScanPrefixes() : config.getScanPrefixes();
+            this.scanEngine = new S3ScanEngine(client, config.getBucketName(), scanPrefixes,
+                    config.getScanParallelism(), config.getScanBufferSize(), requestPipeline, (objectKey, size) -> {
+                        String key = isRecordObject(objectKey) ? keyLayout.toKey(objectKey) : null;
+                        // Objects that were not written by the table are skipped
+                        return key == null ? null : getRecord(key, objectKey);
+                    });
+            this.conditionalUpdater = new ConditionalUpdater(client, config.getBucketName(), config.getContentType(),
+                    recordMapper, recordBufferPool, config.isEnableVersioning(), config.getUpdateMaxAttempts());
+            if (isSegmentMode()) {
+                RecordStore segmentStore = new SegmentStore("s3-store-" + config.getBucketName(), client,
+                        config.getBucketName(), config.getSegmentPrefix(), attributes, primaryKeyIndex,
+                        config.getCodec(), config.getSegmentMaxSize(), config.getSegmentRollInterval(),
+                        config.getSegmentCompactionInterval(), config.getSegmentCompactionGarbageRatio(),
+                        requestPipeline);
+                segmentStore.open();
+                this.recordStore = segmentStore;
+            } else if (isParquetMode()) {
+                RecordStore parquetStore = new ParquetStore("s3-store-" + config.getBucketName(), client,
+                        config.getBucketName(), config.getParquetPrefix(), attributes, primaryKeyIndex,
+                        parquetPartitioner, config.getParquetMaxSize(), config.getParquetRollInterval(),
+                        config.getParquetRowGroupSize(), config.getParquetCompression(), requestPipeline);
+                parquetStore.open();
+                this.recordStore = parquetStore;
+            }
+            if (config.isKeyIndex()) {
+                // Tables sharing the cache directory keep their snapshots apart
+                KeyIndex index = new KeyIndex("s3-store-" + config.getBucketName(), client, config.getBucketName(),
+                        config.getKeyIndexPrefix(), Paths.get(config.getKeyIndexCacheDirectory(),
+                        config.getBucketName(), config.getKeyIndexPrefix().replaceAll("[^A-Za-z0-9._-]", "_")),
+                        config.getKeyIndexSnapshotInterval(), requestPipeline);
+                index.open(this::listKeys);
+                this.keyIndex = index;
+            }
+            this.metrics.bind(requestPipeline, recordCache, writeBehindBuffer, rateLimiter);
+            if (log.isDebugEnabled()) {
+                log.debug("Connected S3 table '" + tableDefinition.getId() + "' to bucket " + config.getBucketName()
+                        + " through the client for " + clientSettings + ".");
+            }
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            // Siddhi retries by calling connect again, hence nothing this attempt acquired may be kept. The record
+            // store and the key index are only assigned once opened, and start no threads until then.
+            closeRecordStore();
+            closeKeyIndex();
+            shutdownWorkers();
+            if (e instanceof SdkClientException) {
+                throw S3RequestPipeline.toConnectionUnavailableException(e);
+            }
+            throw e;
+        }
+    }
 
-        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
-                .withRegion(config.getRegion());
-//         if (this.config.getCredentialProvider() != null) {
-//             // todo set the correct credential provider
-//         }
-        this.client = builder.build();
-        createBucketIfNotExist(config.getBucketName(), config.getRegion());
+    private boolean isSegmentMode() {
+        return S3Constants.STORAGE_MODE_SEGMENT.equals(config.getStorageMode());
+    }
+
+    private boolean isParquetMode() {
+        return S3Constants.STORAGE_MODE_PARQUET.equals(config.getStorageMode());
+    }
+
+    private List<Integer> getAttributeIndices(Set<String> names) {
+        List<Integer> indices = new ArrayList<>(names.size());
+        for (int i = 0; i < attributes.size(); i++) {
+            if (names.contains(attributes.get(i).getName())) {
+                indices.add(i);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Whether an object of the bucket may hold a record, as opposed to the objects of the key index.
+     */
+    private boolean isRecordObject(String objectKey) {
+        return !config.isKeyIndex() || !objectKey.startsWith(config.getKeyIndexPrefix());
+    }
+
+    /**
+     * List the keys of all the records in the bucket, along with their object keys, to build the key index for the
+     * first time.
+     */
+    private void listKeys(BiConsumer<String, String> consumer) throws ConnectionUnavailableException {
+        ListObjectsV2Request listRequest = new ListObjectsV2Request().withBucketName(config.getBucketName());
+        ListObjectsV2Result listResult;
+        do {
+            listResult = requestPipeline.execute(() -> client.listObjectsV2(listRequest));
+            for (S3ObjectSummary summary : listResult.getObjectSummaries()) {
+                String key = isRecordObject(summary.getKey()) ? keyLayout.toKey(summary.getKey()) : null;
+                if (key != null) {
+                    consumer.accept(key, toIndexedObjectKey(summary.getKey()));
+                }
+            }
+            listRequest.setContinuationToken(listResult.getNextContinuationToken());
+        } while (listResult.isTruncated());
     }
 
     /**
@@ -366,7 +2074,21 @@ public class S3EventTable extends AbstractRecordTable {
      */
     @Override
     protected void disconnect() {
-        System.out.println(">>>>>>>>>> s3:disconnect()");
+        if (log.isDebugEnabled()) {
+            log.debug("Disconnecting S3 table '" + tableDefinition.getId() + "' from bucket "
+                    + config.getBucketName() + ".");
+        }
+        if (writeBehindBuffer != null) {
+            try {
+                writeBehindBuffer.flush();
+            } catch (ConnectionUnavailableException | RuntimeException e) {
+                log.error("Failed to write buffered records to bucket " + config.getBucketName()
+                        + " while disconnecting, they will be written once reconnected. " + e.getMessage(), e);
+            }
+        }
+        closeRecordStore();
+        closeKeyIndex();
+        shutdownWorkers();
     }
 
     /**
@@ -375,15 +2097,75 @@ public class S3EventTable extends AbstractRecordTable {
      */
     @Override
     protected void destroy() {
-        System.out.println(">>>>>>>>>> s3:destroy()");
+        if (log.isDebugEnabled()) {
+            log.debug("Destroying S3 table '" + tableDefinition.getId() + "' of bucket " + config.getBucketName()
+                    + ".");
+        }
+        if (writeBehindBuffer != null) {
+            writeBehindBuffer.close();
+        }
+        closeRecordStore();
+        closeKeyIndex();
+        shutdownWorkers();
+        if (metrics != null) {
+            metrics.unregister();
+        }
+    }
+
+    private void closeRecordStore() {
+        if (this.recordStore != null) {
+            try {
+                this.recordStore.close();
+            } catch (ConnectionUnavailableException | RuntimeException e) {
+                log.error("Failed to upload the last buffered records to bucket " + config.getBucketName()
+                        + " while disconnecting, they are lost. " + e.getMessage(), e);
+            }
+            this.recordStore = null;
+        }
+    }
+
+    private void closeKeyIndex() {
+        if (this.keyIndex != null) {
+            try {
+                this.keyIndex.close();
+            } catch (ConnectionUnavailableException | RuntimeException e) {
+                log.warn("Failed to write the key index snapshot of bucket " + config.getBucketName()
+                        + " while disconnecting, its journals will be replayed on the next start. "
+                        + e.getMessage(), e);
+            }
+            this.keyIndex = null;
+        }
+    }
+
+    private void shutdownWorkers() {
+        if (this.scanEngine != null) {
+            this.scanEngine.shutdown();
+            this.scanEngine = null;
+        }
+        if (this.requestPipeline != null) {
+            this.requestPipeline.shutdown();
+            this.requestPipeline = null;
+            this.metrics.bind(null, recordCache, writeBehindBuffer, rateLimiter);
+        }
+        if (this.objectTransfer != null) {
+            this.objectTransfer.shutdown();
+            this.objectTransfer = null;
+        }
+        if (this.client != null) {
+            // Other tables may still be using the client
+            S3ClientRegistry.getInstance().release(clientSettings);
+            this.client = null;
+        }
     }
 
     private void createBucketIfNotExist(String bucketName, String region) {
         if (this.client.doesBucketExistV2(bucketName)) {
-            System.out.println("Bucket " + bucketName + " already exist");
+            if (log.isDebugEnabled()) {
+                log.debug("Bucket " + bucketName + " already exists.");
+            }
             return;
         }
-        System.out.println("Bucket " + bucketName + " does not exist. Hence creating...");
+        log.info("Bucket " + bucketName + " does not exist, hence creating it in region " + region + ".");
         this.client.createBucket(new CreateBucketRequest(bucketName, region));
     }
 }
@@ -2,8 +2,12 @@ package io.siddhi.extension.store.s3;
 
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.extension.store.s3.util.S3Constants;
 import io.siddhi.query.api.annotation.Annotation;
 
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -15,9 +19,76 @@ public class S3StoreConfig {
     private String region;
     private List<String> objectFields;
     private boolean enableVersioning;
+    private int workerCount;
+    private int maxInFlightRequests;
+    private String codec;
+    private int recordCacheSize;
+    private long recordCacheMaxWeight;
+    private long recordCacheExpiryTime;
+    private boolean recordCacheMissingKeys;
+    private int writeBehindMaxSize;
+    private long writeBehindFlushInterval;
+    private List<String> scanPrefixes;
+    private int scanParallelism;
+    private int scanBufferSize;
+    private String keyLayout;
+    private int keyLayoutHashLength;
+    private String keyLayoutTimestampAttribute;
+    private String keyLayoutDateFormat;
+    private String compression;
+    private int compressionThreshold;
+    private String storageMode;
+    private String segmentPrefix;
+    private int segmentMaxSize;
+    private long segmentRollInterval;
+    private long segmentCompactionInterval;
+    private double segmentCompactionGarbageRatio;
+    private String parquetPrefix;
+    private String parquetPartitionAttribute;
+    private String parquetPartitionDateFormat;
+    private int parquetMaxSize;
+    private long parquetRollInterval;
+    private int parquetRowGroupSize;
+    private String parquetCompression;
+    private boolean keyIndex;
+    private String keyIndexPrefix;
+    private String keyIndexCacheDirectory;
+    private long keyIndexSnapshotInterval;
+    private boolean selectPushdown;
+    private long selectPushdownMinSize;
+    private int updateMaxAttempts;
+    private int multipartThreshold;
+    private int multipartPartSize;
+    private int multipartConcurrency;
+    private String endpoint;
+    private boolean pathStyleAccess;
+    private String awsAccessKey;
+    private String awsSecretKey;
+    private int clientMaxConnections;
+    private int clientConnectionTimeout;
+    private int clientSocketTimeout;
+    private int clientRequestTimeout;
+    private long clientConnectionTtl;
+    private boolean clientTcpKeepAlive;
+    private int clientMaxErrorRetry;
+    private boolean rateLimitEnabled;
+    private int rateLimitReadRate;
+    private int rateLimitWriteRate;
+    private int rateLimitMinRate;
+    private int rateLimitIncrease;
+    private long rateLimitMaxWait;
 
     public S3StoreConfig(Annotation annotation) {
-        this.credentialProvider = annotation.getElement("credential.provider");
+        this(annotation, null);
+    }
+
+    /**
+     * @param annotation   the store annotation
+     * @param configReader reader of the system configuration of the store, giving the connection settings that the
+     *                     annotation leaves out, or null
+     */
+    public S3StoreConfig(Annotation annotation, ConfigReader configReader) {
+        this.credentialProvider = getElement(annotation, configReader, S3Constants.StoreParams.CREDENTIAL_PROVIDER);
         if (this.credentialProvider != null && this.credentialProvider.isEmpty()) {
             this.credentialProvider = null;
         }
@@ -28,7 +99,7 @@ public class S3StoreConfig {
         }
 
         this.region = annotation.getElement("region");
-        if (this.region == null || this.bucketName.isEmpty()) {
+        if (this.region == null || this.region.isEmpty()) {
             this.region = Region.getRegion(Regions.DEFAULT_REGION).getName();
         }
 
@@ -45,6 +116,294 @@ public class S3StoreConfig {
             this.contentType = "application/octet-stream";
         }
 
+        this.workerCount = getPositiveInt(annotation, S3Constants.StoreParams.WORKER_COUNT,
+                S3Constants.Defaults.WORKER_COUNT);
+        this.maxInFlightRequests = getPositiveInt(annotation, S3Constants.StoreParams.MAX_IN_FLIGHT_REQUESTS,
+                S3Constants.Defaults.MAX_IN_FLIGHT_REQUESTS);
+
+        this.codec = annotation.getElement(S3Constants.StoreParams.CODEC);
+        if (this.codec == null || this.codec.isEmpty()) {
+            this.codec = S3Constants.Defaults.CODEC;
+        }
+
+        this.recordCacheSize = (int) Math.min(getNonNegativeLong(annotation,
+                S3Constants.StoreParams.RECORD_CACHE_SIZE, S3Constants.Defaults.RECORD_CACHE_SIZE), Integer.MAX_VALUE);
+        this.recordCacheMaxWeight = getNonNegativeLong(annotation, S3Constants.StoreParams.RECORD_CACHE_MAX_WEIGHT,
+                S3Constants.Defaults.RECORD_CACHE_MAX_WEIGHT);
+        this.recordCacheExpiryTime = getNonNegativeLong(annotation,
+                S3Constants.StoreParams.RECORD_CACHE_EXPIRY_TIME, S3Constants.Defaults.RECORD_CACHE_EXPIRY_TIME);
+        String recordCacheMissingKeys = annotation.getElement(S3Constants.StoreParams.RECORD_CACHE_MISSING_KEYS);
+        this.recordCacheMissingKeys = recordCacheMissingKeys == null || recordCacheMissingKeys.isEmpty()
+                ? S3Constants.Defaults.RECORD_CACHE_MISSING_KEYS : Boolean.parseBoolean(recordCacheMissingKeys);
+
+        this.writeBehindMaxSize = (int) Math.min(getNonNegativeLong(annotation,
+                S3Constants.StoreParams.WRITE_BEHIND_MAX_SIZE, S3Constants.Defaults.WRITE_BEHIND_MAX_SIZE),
+                Integer.MAX_VALUE);
+        this.writeBehindFlushInterval = getPositiveLong(annotation,
+                S3Constants.StoreParams.WRITE_BEHIND_FLUSH_INTERVAL, S3Constants.Defaults.WRITE_BEHIND_FLUSH_INTERVAL);
+
+        this.scanPrefixes = new ArrayList<>();
+        String scanPrefixList = annotation.getElement(S3Constants.StoreParams.SCAN_PREFIXES);
+        if (scanPrefixList != null) {
+            for (String prefix : scanPrefixList.split(",")) {
+                if (!prefix.trim().isEmpty()) {
+                    this.scanPrefixes.add(prefix.trim());
+                }
+            }
+        }
+        this.scanParallelism = getPositiveInt(annotation, S3Constants.StoreParams.SCAN_PARALLELISM,
+                S3Constants.Defaults.SCAN_PARALLELISM);
+        this.scanBufferSize = getPositiveInt(annotation, S3Constants.StoreParams.SCAN_BUFFER_SIZE,
+                S3Constants.Defaults.SCAN_BUFFER_SIZE);
+
+        this.keyLayout = annotation.getElement(S3Constants.StoreParams.KEY_LAYOUT);
+        if (this.keyLayout == null || this.keyLayout.isEmpty()) {
+            this.keyLayout = S3Constants.Defaults.KEY_LAYOUT;
+        }
+        this.keyLayoutHashLength = getPositiveInt(annotation, S3Constants.StoreParams.KEY_LAYOUT_HASH_LENGTH,
+                S3Constants.Defaults.KEY_LAYOUT_HASH_LENGTH);
+        this.keyLayoutTimestampAttribute = annotation.getElement(
+                S3Constants.StoreParams.KEY_LAYOUT_TIMESTAMP_ATTRIBUTE);
+        this.keyLayoutDateFormat = annotation.getElement(S3Constants.StoreParams.KEY_LAYOUT_DATE_FORMAT);
+        if (this.keyLayoutDateFormat == null || this.keyLayoutDateFormat.isEmpty()) {
+            this.keyLayoutDateFormat = S3Constants.Defaults.KEY_LAYOUT_DATE_FORMAT;
+        }
+
+        this.compression = annotation.getElement(S3Constants.StoreParams.COMPRESSION);
+        if (this.compression == null || this.compression.isEmpty()) {
+            this.compression = S3Constants.Defaults.COMPRESSION;
+        }
+        this.compressionThreshold = (int) Math.min(getNonNegativeLong(annotation,
+                S3Constants.StoreParams.COMPRESSION_THRESHOLD, S3Constants.Defaults.COMPRESSION_THRESHOLD),
+                Integer.MAX_VALUE);
+
+        this.storageMode = annotation.getElement(S3Constants.StoreParams.STORAGE_MODE);
+        if (this.storageMode == null || this.storageMode.isEmpty()) {
+            this.storageMode = S3Constants.Defaults.STORAGE_MODE;
+        }
+        this.storageMode = this.storageMode.toLowerCase();
+        if (!this.storageMode.equals(S3Constants.STORAGE_MODE_OBJECT)
+                && !this.storageMode.equals(S3Constants.STORAGE_MODE_SEGMENT)
+                && !this.storageMode.equals(S3Constants.STORAGE_MODE_PARQUET)) {
+            throw new IllegalArgumentException("Unsupported storage mode '" + this.storageMode + "'. Supported "
+                    + "storage modes are " + S3Constants.STORAGE_MODE_OBJECT + ", "
+                    + S3Constants.STORAGE_MODE_SEGMENT + " and " + S3Constants.STORAGE_MODE_PARQUET + ".");
+        }
+        this.segmentPrefix = annotation.getElement(S3Constants.StoreParams.SEGMENT_PREFIX);
+        if (this.segmentPrefix == null) {
+            this.segmentPrefix = S3Constants.Defaults.SEGMENT_PREFIX;
+        }
+        this.segmentMaxSize = getPositiveInt(annotation, S3Constants.StoreParams.SEGMENT_MAX_SIZE,
+                S3Constants.Defaults.SEGMENT_MAX_SIZE);
+        this.segmentRollInterval = getPositiveLong(annotation, S3Constants.StoreParams.SEGMENT_ROLL_INTERVAL,
+                S3Constants.Defaults.SEGMENT_ROLL_INTERVAL);
+        this.segmentCompactionInterval = getNonNegativeLong(annotation,
+                S3Constants.StoreParams.SEGMENT_COMPACTION_INTERVAL, S3Constants.Defaults.SEGMENT_COMPACTION_INTERVAL);
+        this.segmentCompactionGarbageRatio = getRatio(annotation,
+                S3Constants.StoreParams.SEGMENT_COMPACTION_GARBAGE_RATIO,
+                S3Constants.Defaults.SEGMENT_COMPACTION_GARBAGE_RATIO);
+
+        this.parquetPrefix = annotation.getElement(S3Constants.StoreParams.PARQUET_PREFIX);
+        if (this.parquetPrefix == null) {
+            this.parquetPrefix = S3Constants.Defaults.PARQUET_PREFIX;
+        }
+        this.parquetPartitionAttribute = annotation.getElement(S3Constants.StoreParams.PARQUET_PARTITION_ATTRIBUTE);
+        if (this.parquetPartitionAttribute != null && this.parquetPartitionAttribute.isEmpty()) {
+            this.parquetPartitionAttribute = null;
+        }
+        this.parquetPartitionDateFormat = annotation.getElement(
+                S3Constants.StoreParams.PARQUET_PARTITION_DATE_FORMAT);
+        if (this.parquetPartitionDateFormat != null && this.parquetPartitionDateFormat.isEmpty()) {
+            this.parquetPartitionDateFormat = null;
+        }
+        this.parquetMaxSize = getPositiveInt(annotation, S3Constants.StoreParams.PARQUET_MAX_SIZE,
+                S3Constants.Defaults.PARQUET_MAX_SIZE);
+        this.parquetRollInterval = getPositiveLong(annotation, S3Constants.StoreParams.PARQUET_ROLL_INTERVAL,
+                S3Constants.Defaults.PARQUET_ROLL_INTERVAL);
+        this.parquetRowGroupSize = getPositiveInt(annotation, S3Constants.StoreParams.PARQUET_ROW_GROUP_SIZE,
+                S3Constants.Defaults.PARQUET_ROW_GROUP_SIZE);
+        this.parquetCompression = annotation.getElement(S3Constants.StoreParams.PARQUET_COMPRESSION);
+        if (this.parquetCompression == null || this.parquetCompression.isEmpty()) {
+            this.parquetCompression = S3Constants.Defaults.PARQUET_COMPRESSION;
+        }
+        this.parquetCompression = this.parquetCompression.toLowerCase();
+        if (!this.parquetCompression.equals("none") && !this.parquetCompression.equals("snappy")
+                && !this.parquetCompression.equals("gzip")) {
+            throw new IllegalArgumentException("Unsupported parquet compression '" + this.parquetCompression
+                    + "'. Supported parquet compressions are none, snappy and gzip.");
+        }
+
+        String keyIndexValue = annotation.getElement(S3Constants.StoreParams.KEY_INDEX);
+        this.keyIndex = keyIndexValue == null || keyIndexValue.isEmpty()
+                ? S3Constants.Defaults.KEY_INDEX : Boolean.parseBoolean(keyIndexValue);
+        this.keyIndexPrefix = annotation.getElement(S3Constants.StoreParams.KEY_INDEX_PREFIX);
+        if (this.keyIndexPrefix == null || this.keyIndexPrefix.isEmpty()) {
+            // An empty prefix would claim every object of the bucket
+            this.keyIndexPrefix = S3Constants.Defaults.KEY_INDEX_PREFIX;
+        }
+        this.keyIndexCacheDirectory = annotation.getElement(S3Constants.StoreParams.KEY_INDEX_CACHE_DIRECTORY);
+        if (this.keyIndexCacheDirectory == null || this.keyIndexCacheDirectory.isEmpty()) {
+            this.keyIndexCacheDirectory = Paths.get(System.getProperty("java.io.tmpdir"),
+                    S3Constants.Defaults.KEY_INDEX_CACHE_DIRECTORY).toString();
+        }
+        this.keyIndexSnapshotInterval = getPositiveLong(annotation,
+                S3Constants.StoreParams.KEY_INDEX_SNAPSHOT_INTERVAL, S3Constants.Defaults.KEY_INDEX_SNAPSHOT_INTERVAL);
+
+        String selectPushdownValue = annotation.getElement(S3Constants.StoreParams.SELECT_PUSHDOWN);
+        this.selectPushdown = selectPushdownValue == null || selectPushdownValue.isEmpty()
+                ? S3Constants.Defaults.SELECT_PUSHDOWN : Boolean.parseBoolean(selectPushdownValue);
+        this.selectPushdownMinSize = getNonNegativeLong(annotation, S3Constants.StoreParams.SELECT_PUSHDOWN_MIN_SIZE,
+                S3Constants.Defaults.SELECT_PUSHDOWN_MIN_SIZE);
+
+        this.updateMaxAttempts = getPositiveInt(annotation, S3Constants.StoreParams.UPDATE_MAX_ATTEMPTS,
+                S3Constants.Defaults.UPDATE_MAX_ATTEMPTS);
+
+        this.multipartThreshold = (int) Math.min(getNonNegativeLong(annotation,
+                S3Constants.StoreParams.MULTIPART_THRESHOLD, S3Constants.Defaults.MULTIPART_THRESHOLD),
+                Integer.MAX_VALUE);
+        this.multipartPartSize = getPositiveInt(annotation, S3Constants.StoreParams.MULTIPART_PART_SIZE,
+                S3Constants.Defaults.MULTIPART_PART_SIZE);
+        if (this.multipartPartSize < S3Constants.MIN_MULTIPART_PART_SIZE) {
+            throw new IllegalArgumentException("Value of '" + S3Constants.StoreParams.MULTIPART_PART_SIZE
+                    + "' should be at least " + S3Constants.MIN_MULTIPART_PART_SIZE + " bytes, the smallest part "
+                    + "S3 accepts, but found " + this.multipartPartSize + ".");
+        }
+        this.multipartConcurrency = getPositiveInt(annotation, S3Constants.StoreParams.MULTIPART_CONCURRENCY,
+                S3Constants.Defaults.MULTIPART_CONCURRENCY);
+
+        this.endpoint = getElement(annotation, configReader, S3Constants.StoreParams.ENDPOINT);
+        if (this.endpoint != null && this.endpoint.isEmpty()) {
+            this.endpoint = null;
+        }
+        String pathStyleAccessValue = getElement(annotation, configReader, S3Constants.StoreParams.PATH_STYLE_ACCESS);
+        this.pathStyleAccess = pathStyleAccessValue == null || pathStyleAccessValue.isEmpty()
+                ? S3Constants.Defaults.PATH_STYLE_ACCESS : Boolean.parseBoolean(pathStyleAccessValue);
+        this.awsAccessKey = getElement(annotation, configReader, S3Constants.StoreParams.AWS_ACCESS_KEY);
+        this.awsSecretKey = getElement(annotation, configReader, S3Constants.StoreParams.AWS_SECRET_KEY);
+        if (this.awsAccessKey == null || this.awsAccessKey.isEmpty()) {
+            this.awsAccessKey = null;
+            this.awsSecretKey = null;
+        } else if (this.awsSecretKey == null || this.awsSecretKey.isEmpty()) {
+            throw new IllegalArgumentException("'" + S3Constants.StoreParams.AWS_SECRET_KEY + "' is required along "
+                    + "with '" + S3Constants.StoreParams.AWS_ACCESS_KEY + "'.");
+        }
+        this.clientMaxConnections = getPositiveInt(S3Constants.StoreParams.CLIENT_MAX_CONNECTIONS,
+                getElement(annotation, configReader, S3Constants.StoreParams.CLIENT_MAX_CONNECTIONS),
+                S3Constants.Defaults.CLIENT_MAX_CONNECTIONS);
+        this.clientConnectionTimeout = (int) Math.min(getNonNegativeLong(
+                S3Constants.StoreParams.CLIENT_CONNECTION_TIMEOUT,
+                getElement(annotation, configReader, S3Constants.StoreParams.CLIENT_CONNECTION_TIMEOUT),
+                S3Constants.Defaults.CLIENT_CONNECTION_TIMEOUT), Integer.MAX_VALUE);
+        this.clientSocketTimeout = (int) Math.min(getNonNegativeLong(S3Constants.StoreParams.CLIENT_SOCKET_TIMEOUT,
+                getElement(annotation, configReader, S3Constants.StoreParams.CLIENT_SOCKET_TIMEOUT),
+                S3Constants.Defaults.CLIENT_SOCKET_TIMEOUT), Integer.MAX_VALUE);
+        this.clientRequestTimeout = (int) Math.min(getNonNegativeLong(S3Constants.StoreParams.CLIENT_REQUEST_TIMEOUT,
+                getElement(annotation, configReader, S3Constants.StoreParams.CLIENT_REQUEST_TIMEOUT),
+                S3Constants.Defaults.CLIENT_REQUEST_TIMEOUT), Integer.MAX_VALUE);
+        this.clientConnectionTtl = getNonNegativeLong(S3Constants.StoreParams.CLIENT_CONNECTION_TTL,
+                getElement(annotation, configReader, S3Constants.StoreParams.CLIENT_CONNECTION_TTL),
+                S3Constants.Defaults.CLIENT_CONNECTION_TTL);
+        String tcpKeepAliveValue = getElement(annotation, configReader, S3Constants.StoreParams.CLIENT_TCP_KEEP_ALIVE);
+        this.clientTcpKeepAlive = tcpKeepAliveValue == null || tcpKeepAliveValue.isEmpty()
+                ? S3Constants.Defaults.CLIENT_TCP_KEEP_ALIVE : Boolean.parseBoolean(tcpKeepAliveValue);
+        this.clientMaxErrorRetry = (int) Math.min(getNonNegativeLong(S3Constants.StoreParams.CLIENT_MAX_ERROR_RETRY,
+                getElement(annotation, configReader, S3Constants.StoreParams.CLIENT_MAX_ERROR_RETRY),
+                S3Constants.Defaults.CLIENT_MAX_ERROR_RETRY), Integer.MAX_VALUE);
+
+        String rateLimitEnabledValue = annotation.getElement(S3Constants.StoreParams.RATE_LIMIT_ENABLED);
+        this.rateLimitEnabled = rateLimitEnabledValue == null || rateLimitEnabledValue.isEmpty()
+                ? S3Constants.Defaults.RATE_LIMIT_ENABLED : Boolean.parseBoolean(rateLimitEnabledValue);
+        this.rateLimitReadRate = getPositiveInt(annotation, S3Constants.StoreParams.RATE_LIMIT_READ_RATE,
+                S3Constants.Defaults.RATE_LIMIT_READ_RATE);
+        this.rateLimitWriteRate = getPositiveInt(annotation, S3Constants.StoreParams.RATE_LIMIT_WRITE_RATE,
+                S3Constants.Defaults.RATE_LIMIT_WRITE_RATE);
+        this.rateLimitMinRate = getPositiveInt(annotation, S3Constants.StoreParams.RATE_LIMIT_MIN_RATE,
+                S3Constants.Defaults.RATE_LIMIT_MIN_RATE);
+        if (this.rateLimitMinRate > Math.min(this.rateLimitReadRate, this.rateLimitWriteRate)) {
+            throw new IllegalArgumentException("Value of '" + S3Constants.StoreParams.RATE_LIMIT_MIN_RATE
+                    + "' should not exceed the ones of '" + S3Constants.StoreParams.RATE_LIMIT_READ_RATE + "' and '"
+                    + S3Constants.StoreParams.RATE_LIMIT_WRITE_RATE + "', but found " + this.rateLimitMinRate + ".");
+        }
+        this.rateLimitIncrease = getPositiveInt(annotation, S3Constants.StoreParams.RATE_LIMIT_INCREASE,
+                S3Constants.Defaults.RATE_LIMIT_INCREASE);
+        this.rateLimitMaxWait = getNonNegativeLong(annotation, S3Constants.StoreParams.RATE_LIMIT_MAX_WAIT,
+                S3Constants.Defaults.RATE_LIMIT_MAX_WAIT);
+    }
+
+    /**
+     * Get an element of the store annotation, falling back to the system configuration of the store.
+     */
+    private static String getElement(Annotation annotation, ConfigReader configReader, String name) {
+        String value = annotation.getElement(name);
+        if ((value == null || value.isEmpty()) && configReader != null) {
+            value = configReader.readConfig(name, null);
+        }
+        return value;
+    }
+
+    private static double getRatio(Annotation annotation, String name, double defaultValue) {
+        String value = annotation.getElement(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            double doubleValue = Double.parseDouble(value.trim());
+            if (doubleValue > 0 && doubleValue <= 1) {
+                return doubleValue;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Value of '" + name + "' should be a number above 0 and up to 1, but "
+                + "found '" + value + "'.");
+    }
+
+    private static long getPositiveLong(Annotation annotation, String name, long defaultValue) {
+        long value = getNonNegativeLong(annotation, name, defaultValue);
+        if (value == 0) {
+            throw new IllegalArgumentException("Value of '" + name + "' should be a positive integer, but found 0.");
+        }
+        return value;
+    }
+
+    private static long getNonNegativeLong(Annotation annotation, String name, long defaultValue) {
+        return getNonNegativeLong(name, annotation.getElement(name), defaultValue);
+    }
+
+    private static long getNonNegativeLong(String name, String value, long defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            long longValue = Long.parseLong(value.trim());
+            if (longValue >= 0) {
+                return longValue;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Value of '" + name + "' should be a non negative integer, but found '"
+                + value + "'.");
+    }
+
+    private static int getPositiveInt(Annotation annotation, String name, int defaultValue) {
+        return getPositiveInt(name, annotation.getElement(name), defaultValue);
+    }
+
+    private static int getPositiveInt(String name, String value, int defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int intValue = Integer.parseInt(value.trim());
+            if (intValue > 0) {
+                return intValue;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Value of '" + name + "' should be a positive integer, but found '"
+                + value + "'.");
     }
 
     public String getCredentialProvider() {
@@ -94,4 +453,468 @@ public class S3StoreConfig {
     public void setContentType(String contentType) {
         this.contentType = contentType;
     }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    public int getRecordCacheSize() {
+        return recordCacheSize;
+    }
+
+    public void setRecordCacheSize(int recordCacheSize) {
+        this.recordCacheSize = recordCacheSize;
+    }
+
+    public long getRecordCacheMaxWeight() {
+        return recordCacheMaxWeight;
+    }
+
+    public void setRecordCacheMaxWeight(long recordCacheMaxWeight) {
+        this.recordCacheMaxWeight = recordCacheMaxWeight;
+    }
+
+    public long getRecordCacheExpiryTime() {
+        return recordCacheExpiryTime;
+    }
+
+    public void setRecordCacheExpiryTime(long recordCacheExpiryTime) {
+        this.recordCacheExpiryTime = recordCacheExpiryTime;
+    }
+
+    public boolean isRecordCacheMissingKeys() {
+        return recordCacheMissingKeys;
+    }
+
+    public void setRecordCacheMissingKeys(boolean recordCacheMissingKeys) {
+        this.recordCacheMissingKeys = recordCacheMissingKeys;
+    }
+
+    public int getWriteBehindMaxSize() {
+        return writeBehindMaxSize;
+    }
+
+    public void setWriteBehindMaxSize(int writeBehindMaxSize) {
+        this.writeBehindMaxSize = writeBehindMaxSize;
+    }
+
+    public long getWriteBehindFlushInterval() {
+        return writeBehindFlushInterval;
+    }
+
+    public void setWriteBehindFlushInterval(long writeBehindFlushInterval) {
+        this.writeBehindFlushInterval = writeBehindFlushInterval;
+    }
+
+    public List<String> getScanPrefixes() {
+        return scanPrefixes;
+    }
+
+    public void setScanPrefixes(List<String> scanPrefixes) {
+        this.scanPrefixes = scanPrefixes;
+    }
+
+    public int getScanParallelism() {
+        return scanParallelism;
+    }
+
+    public void setScanParallelism(int scanParallelism) {
+        this.scanParallelism = scanParallelism;
+    }
+
+    public int getScanBufferSize() {
+        return scanBufferSize;
+    }
+
+    public void setScanBufferSize(int scanBufferSize) {
+        this.scanBufferSize = scanBufferSize;
+    }
+
+    public String getKeyLayout() {
+        return keyLayout;
+    }
+
+    public void setKeyLayout(String keyLayout) {
+        this.keyLayout = keyLayout;
+    }
+
+    public int getKeyLayoutHashLength() {
+        return keyLayoutHashLength;
+    }
+
+    public void setKeyLayoutHashLength(int keyLayoutHashLength) {
+        this.keyLayoutHashLength = keyLayoutHashLength;
+    }
+
+    public String getKeyLayoutTimestampAttribute() {
+        return keyLayoutTimestampAttribute;
+    }
+
+    public void setKeyLayoutTimestampAttribute(String keyLayoutTimestampAttribute) {
+        this.keyLayoutTimestampAttribute = keyLayoutTimestampAttribute;
+    }
+
+    public String getKeyLayoutDateFormat() {
+        return keyLayoutDateFormat;
+    }
+
+    public void setKeyLayoutDateFormat(String keyLayoutDateFormat) {
+        this.keyLayoutDateFormat = keyLayoutDateFormat;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public String getStorageMode() {
+        return storageMode;
+    }
+
+    public void setStorageMode(String storageMode) {
+        this.storageMode = storageMode;
+    }
+
+    public String getSegmentPrefix() {
+        return segmentPrefix;
+    }
+
+    public void setSegmentPrefix(String segmentPrefix) {
+        this.segmentPrefix = segmentPrefix;
+    }
+
+    public int getSegmentMaxSize() {
+        return segmentMaxSize;
+    }
+
+    public void setSegmentMaxSize(int segmentMaxSize) {
+        this.segmentMaxSize = segmentMaxSize;
+    }
+
+    public long getSegmentRollInterval() {
+        return segmentRollInterval;
+    }
+
+    public void setSegmentRollInterval(long segmentRollInterval) {
+        this.segmentRollInterval = segmentRollInterval;
+    }
+
+    public long getSegmentCompactionInterval() {
+        return segmentCompactionInterval;
+    }
+
+    public void setSegmentCompactionInterval(long segmentCompactionInterval) {
+        this.segmentCompactionInterval = segmentCompactionInterval;
+    }
+
+    public double getSegmentCompactionGarbageRatio() {
+        return segmentCompactionGarbageRatio;
+    }
+
+    public void setSegmentCompactionGarbageRatio(double segmentCompactionGarbageRatio) {
+        this.segmentCompactionGarbageRatio = segmentCompactionGarbageRatio;
+    }
+
+    public String getParquetPrefix() {
+        return parquetPrefix;
+    }
+
+    public void setParquetPrefix(String parquetPrefix) {
+        this.parquetPrefix = parquetPrefix;
+    }
+
+    public String getParquetPartitionAttribute() {
+        return parquetPartitionAttribute;
+    }
+
+    public void setParquetPartitionAttribute(String parquetPartitionAttribute) {
+        this.parquetPartitionAttribute = parquetPartitionAttribute;
+    }
+
+    public String getParquetPartitionDateFormat() {
+        return parquetPartitionDateFormat;
+    }
+
+    public void setParquetPartitionDateFormat(String parquetPartitionDateFormat) {
+        this.parquetPartitionDateFormat = parquetPartitionDateFormat;
+    }
+
+    public int getParquetMaxSize() {
+        return parquetMaxSize;
+    }
+
+    public void setParquetMaxSize(int parquetMaxSize) {
+        this.parquetMaxSize = parquetMaxSize;
+    }
+
+    public long getParquetRollInterval() {
+        return parquetRollInterval;
+    }
+
+    public void setParquetRollInterval(long parquetRollInterval) {
+        this.parquetRollInterval = parquetRollInterval;
+    }
+
+    public int getParquetRowGroupSize() {
+        return parquetRowGroupSize;
+    }
+
+    public void setParquetRowGroupSize(int parquetRowGroupSize) {
+        this.parquetRowGroupSize = parquetRowGroupSize;
+    }
+
+    public String getParquetCompression() {
+        return parquetCompression;
+    }
+
+    public void setParquetCompression(String parquetCompression) {
+        this.parquetCompression = parquetCompression;
+    }
+
+    public boolean isKeyIndex() {
+        return keyIndex;
+    }
+
+    public void setKeyIndex(boolean keyIndex) {
+        this.keyIndex = keyIndex;
+    }
+
+    public String getKeyIndexPrefix() {
+        return keyIndexPrefix;
+    }
+
+    public void setKeyIndexPrefix(String keyIndexPrefix) {
+        this.keyIndexPrefix = keyIndexPrefix;
+    }
+
+    public String getKeyIndexCacheDirectory() {
+        return keyIndexCacheDirectory;
+    }
+
+    public void setKeyIndexCacheDirectory(String keyIndexCacheDirectory) {
+        this.keyIndexCacheDirectory = keyIndexCacheDirectory;
+    }
+
+    public long getKeyIndexSnapshotInterval() {
+        return keyIndexSnapshotInterval;
+    }
+
+    public void setKeyIndexSnapshotInterval(long keyIndexSnapshotInterval) {
+        this.keyIndexSnapshotInterval = keyIndexSnapshotInterval;
+    }
+
+    public boolean isSelectPushdown() {
+        return selectPushdown;
+    }
+
+    public void setSelectPushdown(boolean selectPushdown) {
+        this.selectPushdown = selectPushdown;
+    }
+
+    public long getSelectPushdownMinSize() {
+        return selectPushdownMinSize;
+    }
+
+    public void setSelectPushdownMinSize(long selectPushdownMinSize) {
+        this.selectPushdownMinSize = selectPushdownMinSize;
+    }
+
+    public int getUpdateMaxAttempts() {
+        return updateMaxAttempts;
+    }
+
+    public void setUpdateMaxAttempts(int updateMaxAttempts) {
+        this.updateMaxAttempts = updateMaxAttempts;
+    }
+
+    public int getMultipartThreshold() {
+        return multipartThreshold;
+    }
+
+    public void setMultipartThreshold(int multipartThreshold) {
+        this.multipartThreshold = multipartThreshold;
+    }
+
+    public int getMultipartPartSize() {
+        return multipartPartSize;
+    }
+
+    public void setMultipartPartSize(int multipartPartSize) {
+        this.multipartPartSize = multipartPartSize;
+    }
+
+    public int getMultipartConcurrency() {
+        return multipartConcurrency;
+    }
+
+    public void setMultipartConcurrency(int multipartConcurrency) {
+        this.multipartConcurrency = multipartConcurrency;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public boolean isPathStyleAccess() {
+        return pathStyleAccess;
+    }
+
+    public void setPathStyleAccess(boolean pathStyleAccess) {
+        this.pathStyleAccess = pathStyleAccess;
+    }
+
+    public String getAwsAccessKey() {
+        return awsAccessKey;
+    }
+
+    public void setAwsAccessKey(String awsAccessKey) {
+        this.awsAccessKey = awsAccessKey;
+    }
+
+    public String getAwsSecretKey() {
+        return awsSecretKey;
+    }
+
+    public void setAwsSecretKey(String awsSecretKey) {
+        this.awsSecretKey = awsSecretKey;
+    }
+
+    public int getClientMaxConnections() {
+        return clientMaxConnections;
+    }
+
+    public void setClientMaxConnections(int clientMaxConnections) {
+        this.clientMaxConnections = clientMaxConnections;
+    }
+
+    public int getClientConnectionTimeout() {
+        return clientConnectionTimeout;
+    }
+
+    public void setClientConnectionTimeout(int clientConnectionTimeout) {
+        this.clientConnectionTimeout = clientConnectionTimeout;
+    }
+
+    public int getClientSocketTimeout() {
+        return clientSocketTimeout;
+    }
+
+    public void setClientSocketTimeout(int clientSocketTimeout) {
+        this.clientSocketTimeout = clientSocketTimeout;
+    }
+
+    public int getClientRequestTimeout() {
+        return clientRequestTimeout;
+    }
+
+    public void setClientRequestTimeout(int clientRequestTimeout) {
+        this.clientRequestTimeout = clientRequestTimeout;
+    }
+
+    public long getClientConnectionTtl() {
+        return clientConnectionTtl;
+    }
+
+    public void setClientConnectionTtl(long clientConnectionTtl) {
+        this.clientConnectionTtl = clientConnectionTtl;
+    }
+
+    public boolean isClientTcpKeepAlive() {
+        return clientTcpKeepAlive;
+    }
+
+    public void setClientTcpKeepAlive(boolean clientTcpKeepAlive) {
+        this.clientTcpKeepAlive = clientTcpKeepAlive;
+    }
+
+    public int getClientMaxErrorRetry() {
+        return clientMaxErrorRetry;
+    }
+
+    public void setClientMaxErrorRetry(int clientMaxErrorRetry) {
+        this.clientMaxErrorRetry = clientMaxErrorRetry;
+    }
+
+    public boolean isRateLimitEnabled() {
+        return rateLimitEnabled;
+    }
+
+    public void setRateLimitEnabled(boolean rateLimitEnabled) {
+        this.rateLimitEnabled = rateLimitEnabled;
+    }
+
+    public int getRateLimitReadRate() {
+        return rateLimitReadRate;
+    }
+
+    public void setRateLimitReadRate(int rateLimitReadRate) {
+        this.rateLimitReadRate = rateLimitReadRate;
+    }
+
+    public int getRateLimitWriteRate() {
+        return rateLimitWriteRate;
+    }
+
+    public void setRateLimitWriteRate(int rateLimitWriteRate) {
+        this.rateLimitWriteRate = rateLimitWriteRate;
+    }
+
+    public int getRateLimitMinRate() {
+        return rateLimitMinRate;
+    }
+
+    public void setRateLimitMinRate(int rateLimitMinRate) {
+        this.rateLimitMinRate = rateLimitMinRate;
+    }
+
+    public int getRateLimitIncrease() {
+        return rateLimitIncrease;
+    }
+
+    public void setRateLimitIncrease(int rateLimitIncrease) {
+        this.rateLimitIncrease = rateLimitIncrease;
+    }
+
+    public long getRateLimitMaxWait() {
+        return rateLimitMaxWait;
+    }
+
+    public void setRateLimitMaxWait(long rateLimitMaxWait) {
+        this.rateLimitMaxWait = rateLimitMaxWait;
+    }
 }
@@ -1,8 +1,6 @@
 package io.siddhi.extension.store.s3;
 
-import com.amazonaws.regions.Regions;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import org.apache.log4j.Logger;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -11,20 +9,19 @@ import org.osgi.service.component.annotations.Deactivate;
 @Component(immediate = true)
 public class ServiceComponent {
 
+    private static final Logger log = Logger.getLogger(ServiceComponent.class);
+
     @Activate
     protected void activate(BundleContext bundleContext) {
-        System.out.println(">>>>>>>>>> Activated");
-
-        AmazonS3 client = AmazonS3ClientBuilder.standard()
-                .withRegion(Regions.DEFAULT_REGION)
-                .build();
-
-        boolean test = client.doesBucketExistV2("test");
-        System.out.println(">>>>>>>>>>>>>>>>>> test: " + test);
+        if (log.isDebugEnabled()) {
+            log.debug("S3 store extension activated.");
+        }
     }
 
     @Deactivate
     protected void deactivate(BundleContext bundleContext) {
-        System.out.println(">>>>>>>>>> Deactivated");
+        if (log.isDebugEnabled()) {
+            log.debug("S3 store extension deactivated.");
+        }
     }
 }
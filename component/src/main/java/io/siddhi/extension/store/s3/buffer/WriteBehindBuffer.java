@@ -0,0 +1,178 @@
+package io.siddhi.extension.store.s3.buffer;
+
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import org.apache.log4j.Logger;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Buffers writes per primary key and flushes them to S3 in batches.
+ * <p>
+ * Only the last write of each key is kept, so a key rewritten many times between two flushes costs a single
+ * request. The buffer is flushed when it reaches its maximum size, periodically on a background thread, and when
+ * the table disconnects. Writes remain visible through {@link #get(String)} until their flush completes, so that
+ * reads on the node always observe its own writes.
+ */
+public class WriteBehindBuffer {
+
+    /**
+     * Marks a buffered delete of a key.
+     */
+    public static final Object[] TOMBSTONE = new Object[0];
+
+    private static final Logger log = Logger.getLogger(WriteBehindBuffer.class);
+
+    private final int maxSize;
+    private final Flusher flusher;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler;
+
+    private Map<String, Object[]> pending = new LinkedHashMap<>();
+    private Map<String, Object[]> flushing = Collections.emptyMap();
+
+    /**
+     * @param name          name used for the flushing thread
+     * @param maxSize       number of buffered keys at which the buffer gets flushed
+     * @param flushInterval interval in milliseconds between periodic flushes
+     * @param flusher       writes the buffered records to S3
+     */
+    public WriteBehindBuffer(String name, int maxSize, long flushInterval, Flusher flusher) {
+        this.maxSize = maxSize;
+        this.flusher = flusher;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Buffer a write, replacing any earlier write of the same key that has not been flushed yet.
+     *
+     * @param key    primary key of the record
+     * @param record the record
+     */
+    public synchronized void put(String key, Object[] record) {
+        pending.put(key, record);
+    }
+
+    /**
+     * Buffer a delete, replacing any earlier write of the same key that has not been flushed yet.
+     *
+     * @param key primary key of the record
+     */
+    public synchronized void delete(String key) {
+        pending.put(key, TOMBSTONE);
+    }
+
+    /**
+     * Look up the latest write of a key that has not reached S3 yet.
+     *
+     * @param key primary key
+     * @return the buffered record, {@link #TOMBSTONE} if the key is to be deleted, or null if no write of the key
+     * is buffered
+     */
+    public synchronized Object[] get(String key) {
+        Object[] record = pending.get(key);
+        return record != null ? record : flushing.get(key);
+    }
+
+    /**
+     * @return all the writes that have not reached S3 yet keyed by primary key, with {@link #TOMBSTONE}s for
+     * deletes
+     */
+    public synchronized Map<String, Object[]> snapshot() {
+        Map<String, Object[]> snapshot = new LinkedHashMap<>(flushing);
+        snapshot.putAll(pending);
+        return snapshot;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Flush the buffer if it has reached its maximum size.
+     *
+     * @throws ConnectionUnavailableException if the buffered writes could not be written
+     */
+    public void flushIfFull() throws ConnectionUnavailableException {
+        if (size() >= maxSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Write all buffered records to S3. Writes that fail stay buffered, unless the key was written again while the
+     * flush was in progress, and will be retried with the next flush.
+     *
+     * @throws ConnectionUnavailableException if the buffered writes could not be written
+     */
+    public void flush() throws ConnectionUnavailableException {
+        flushLock.lock();
+        try {
+            Map<String, Object[]> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                flushing = batch;
+                pending = new LinkedHashMap<>();
+            }
+            try {
+                flusher.flush(batch);
+            } catch (ConnectionUnavailableException | RuntimeException e) {
+                synchronized (this) {
+                    Map<String, Object[]> retained = new LinkedHashMap<>(batch);
+                    retained.putAll(pending);
+                    pending = retained;
+                }
+                throw e;
+            } finally {
+                synchronized (this) {
+                    flushing = Collections.emptyMap();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stop periodic flushing and flush whatever is left in the buffer.
+     */
+    public void close() {
+        scheduler.shutdown();
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            log.error("Failed to flush buffered writes to S3, they will be retried with the next flush. "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes a batch of buffered records to S3.
+     */
+    public interface Flusher {
+
+        /**
+         * @param records records keyed by primary key, with {@link #TOMBSTONE}s for keys to be deleted
+         * @throws ConnectionUnavailableException if S3 is not reachable
+         */
+        void flush(Map<String, Object[]> records) throws ConnectionUnavailableException;
+    }
+}
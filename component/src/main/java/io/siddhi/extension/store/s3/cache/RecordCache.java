@@ -0,0 +1,221 @@
+package io.siddhi.extension.store.s3.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, least recently used cache of decoded records keyed by their primary key.
+ * <p>
+ * The cache is bounded by the number of entries and optionally by the total weight of the entries, which callers
+ * estimate from the encoded size of each record. Entries expire after a fixed time if an expiry is configured. Keys
+ * known not to exist can be cached as well, so that repeated lookups of missing keys do not reach S3 either.
+ * <p>
+ * Records read from S3 are cached only if no write or invalidation of their key completed since the read started,
+ * as told by the version of the key taken before the read. Versions are kept per stripe of keys, so that they take
+ * no memory per key; a write of another key of the stripe only costs the read its caching.
+ */
+public class RecordCache {
+
+    private static final int VERSION_STRIPES = 1024;
+
+    private final int maxSize;
+    private final long maxWeight;
+    private final long expiryNanos;
+    private final boolean cacheMissingKeys;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Incremented by every write and invalidation of the keys of each stripe
+    private final long[] versions = new long[VERSION_STRIPES];
+    private long weight;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param maxSize          maximum number of entries
+     * @param maxWeight        maximum total weight of the entries, or 0 for no limit
+     * @param expiryMillis     time after which an entry expires, or 0 for entries not to expire
+     * @param cacheMissingKeys whether keys known not to exist should be cached
+     */
+    public RecordCache(int maxSize, long maxWeight, long expiryMillis, boolean cacheMissingKeys) {
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.expiryNanos = TimeUnit.MILLISECONDS.toNanos(expiryMillis);
+        this.cacheMissingKeys = cacheMissingKeys;
+    }
+
+    /**
+     * Look up the given key.
+     *
+     * @param key primary key
+     * @return the cached entry, or null if the key is not cached
+     */
+    public Entry get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.isExpired(System.nanoTime())) {
+                removeEntry(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Version of the given key, to be taken before its record is read from S3 and passed along when caching it.
+     *
+     * @param key primary key
+     * @return version of the key
+     */
+    public synchronized long getVersion(String key) {
+        return versions[stripe(key)];
+    }
+
+    /**
+     * Cache a record that got written.
+     *
+     * @param key    primary key of the record
+     * @param record the record
+     * @param weight estimated weight of the record
+     */
+    public void put(String key, Object[] record, long weight) {
+        Entry entry = new Entry(record, weight, expiryNanos > 0 ? System.nanoTime() + expiryNanos : 0);
+        synchronized (this) {
+            versions[stripe(key)]++;
+            put(key, entry);
+        }
+    }
+
+    /**
+     * Cache a record read from S3, unless the key got written, invalidated or cached since the read started. The
+     * record read may be older than what a write that completed in the meantime left in S3.
+     *
+     * @param key     primary key of the record
+     * @param record  the record
+     * @param weight  estimated weight of the record
+     * @param version version of the key taken before the record was read
+     */
+    public void putIfAbsent(String key, Object[] record, long weight, long version) {
+        Entry entry = new Entry(record, weight, expiryNanos > 0 ? System.nanoTime() + expiryNanos : 0);
+        synchronized (this) {
+            if (versions[stripe(key)] == version && !entries.containsKey(key)) {
+                put(key, entry);
+            }
+        }
+    }
+
+    /**
+     * Record that no object exists for the given key, unless the key got written, invalidated or cached since the
+     * lookup started.
+     *
+     * @param key     primary key
+     * @param version version of the key taken before the lookup
+     */
+    public void putMissingIfAbsent(String key, long version) {
+        if (cacheMissingKeys) {
+            putIfAbsent(key, null, 0, version);
+        }
+    }
+
+    /**
+     * Drop the entry of a key that got written or deleted. Must be called once the change completed, so that reads
+     * that started before do not cache what they read.
+     *
+     * @param key primary key
+     */
+    public synchronized void invalidate(String key) {
+        versions[stripe(key)]++;
+        removeEntry(key);
+    }
+
+    public synchronized void invalidateAll() {
+        for (int i = 0; i < versions.length; i++) {
+            versions[i]++;
+        }
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        if (maxWeight > 0 && entry.weight > maxWeight) {
+            // Caching the record would evict everything else
+            removeEntry(key);
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += entry.weight;
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext() && (entries.size() > maxSize || (maxWeight > 0 && weight > maxWeight))) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            weight -= eldest.getValue().weight;
+            iterator.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private static int stripe(String key) {
+        return Math.floorMod(key.hashCode(), VERSION_STRIPES);
+    }
+
+    private void removeEntry(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight;
+        }
+    }
+
+    /**
+     * Cached lookup result of a key.
+     */
+    public static class Entry {
+        private final Object[] record;
+        private final long weight;
+        private final long expiresAt;
+
+        private Entry(Object[] record, long weight, long expiresAt) {
+            this.record = record;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return the cached record, or null if the key is known not to exist
+         */
+        public Object[] getRecord() {
+            return record;
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAt != 0 && now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.siddhi.extension.store.s3.client;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Builds clients of the AWS SDK.
+ */
+public class DefaultS3ClientFactory implements S3ClientFactory {
+
+    @Override
+    public AmazonS3 create(S3ClientSettings settings) {
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+                .withClientConfiguration(createClientConfiguration(settings))
+                .withPathStyleAccessEnabled(settings.isPathStyleAccess());
+        if (settings.getEndpoint() != null) {
+            // The region signs the requests to the endpoint
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(settings.getEndpoint(),
+                    settings.getRegion()));
+        } else {
+            builder.withRegion(settings.getRegion());
+        }
+        AWSCredentialsProvider credentialsProvider = createCredentialsProvider(settings);
+        if (credentialsProvider != null) {
+            builder.withCredentials(credentialsProvider);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return configuration of the HTTP client, connection pool and retries of a client
+     */
+    public static ClientConfiguration createClientConfiguration(S3ClientSettings settings) {
+        ClientConfiguration configuration = new ClientConfiguration()
+                .withMaxConnections(settings.getMaxConnections())
+                .withConnectionTimeout(settings.getConnectionTimeout())
+                .withSocketTimeout(settings.getSocketTimeout())
+                .withTcpKeepAlive(settings.isTcpKeepAlive())
+                .withRetryPolicy(createRetryPolicy(settings));
+        if (settings.getRequestTimeout() > 0) {
+            configuration.setRequestTimeout(settings.getRequestTimeout());
+        }
+        if (settings.getConnectionTtl() > 0) {
+            configuration.setConnectionTTL(settings.getConnectionTtl());
+        }
+        return configuration;
+    }
+
+    private static RetryPolicy createRetryPolicy(S3ClientSettings settings) {
+        if (settings.isRetryThrottledRequests()) {
+            return PredefinedRetryPolicies.getDefaultRetryPolicyWithCustomMaxRetries(settings.getMaxErrorRetry());
+        }
+        RetryPolicy.RetryCondition retryCondition = (request, exception, retriesAttempted) ->
+                !(exception instanceof AmazonServiceException
+                        && RetryUtils.isThrottlingException((AmazonServiceException) exception))
+                        && PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION.shouldRetry(request, exception,
+                        retriesAttempted);
+        return new RetryPolicy(retryCondition, PredefinedRetryPolicies.DEFAULT_BACKOFF_STRATEGY,
+                settings.getMaxErrorRetry(), false);
+    }
+
+    /**
+     * @return the credentials provider of the settings, or null for the default provider chain
+     */
+    private static AWSCredentialsProvider createCredentialsProvider(S3ClientSettings settings) {
+        if (settings.getAccessKey() != null) {
+            return new AWSStaticCredentialsProvider(new BasicAWSCredentials(settings.getAccessKey(),
+                    settings.getSecretKey()));
+        }
+        if (settings.getCredentialProvider() == null) {
+            return null;
+        }
+        try {
+            return Class.forName(settings.getCredentialProvider()).asSubclass(AWSCredentialsProvider.class)
+                    .getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException | ClassCastException | NoSuchMethodException | InstantiationException
+                | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalArgumentException("Cannot create credential provider '"
+                    + settings.getCredentialProvider() + "', which should name a class implementing "
+                    + AWSCredentialsProvider.class.getName() + " with a public no-argument constructor.", e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package io.siddhi.extension.store.s3.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+
+/**
+ * Builds the S3 clients shared through the {@link S3ClientRegistry}.
+ */
+public interface S3ClientFactory {
+
+    /**
+     * @param settings settings of the client
+     * @return a new client
+     */
+    AmazonS3 create(S3ClientSettings settings);
+}
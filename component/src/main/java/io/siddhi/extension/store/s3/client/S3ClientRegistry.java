@@ -0,0 +1,96 @@
+package io.siddhi.extension.store.s3.client;
+
+import com.amazonaws.services.s3.AmazonS3;
+import org.apache.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Clients shared by the S3 tables of the process. Tables with equal client settings get the same client, and with it
+ * the same connection pool and threads, which is shut down once the last table releases it.
+ */
+public final class S3ClientRegistry {
+
+    private static final Logger log = Logger.getLogger(S3ClientRegistry.class);
+    private static final S3ClientRegistry INSTANCE = new S3ClientRegistry();
+
+    private final Map<S3ClientSettings, SharedClient> clients = new HashMap<>();
+    private S3ClientFactory clientFactory = new DefaultS3ClientFactory();
+
+    private S3ClientRegistry() {
+    }
+
+    public static S3ClientRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Replace the factory the clients are built with, such as with one of S3 compatible stand-ins for testing.
+     * Clients already built are kept until released.
+     *
+     * @param clientFactory the factory, or null for the one of the AWS SDK
+     */
+    public synchronized void setClientFactory(S3ClientFactory clientFactory) {
+        this.clientFactory = clientFactory == null ? new DefaultS3ClientFactory() : clientFactory;
+    }
+
+    /**
+     * Get the client of the given settings, building it if no table holds one. Every call must be paired with a
+     * call to {@link #release(S3ClientSettings)}.
+     *
+     * @param settings settings of the client
+     * @return the client
+     */
+    public synchronized AmazonS3 acquire(S3ClientSettings settings) {
+        SharedClient sharedClient = clients.get(settings);
+        if (sharedClient == null) {
+            sharedClient = new SharedClient(clientFactory.create(settings));
+            clients.put(settings, sharedClient);
+            if (log.isDebugEnabled()) {
+                log.debug("Created S3 client for " + settings + ".");
+            }
+        }
+        sharedClient.references++;
+        return sharedClient.client;
+    }
+
+    /**
+     * Release the client of the given settings, shutting it down if no other table holds it.
+     *
+     * @param settings settings the client was acquired with
+     */
+    public synchronized void release(S3ClientSettings settings) {
+        SharedClient sharedClient = clients.get(settings);
+        if (sharedClient == null) {
+            throw new IllegalStateException("No S3 client is held for " + settings + ".");
+        }
+        if (--sharedClient.references == 0) {
+            clients.remove(settings);
+            try {
+                sharedClient.client.shutdown();
+            } catch (RuntimeException e) {
+                log.warn("Failed to shut down the S3 client for " + settings + ": " + e.getMessage(), e);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Shut down S3 client for " + settings + ".");
+            }
+        }
+    }
+
+    /**
+     * @return number of clients held
+     */
+    public synchronized int size() {
+        return clients.size();
+    }
+
+    private static final class SharedClient {
+        private final AmazonS3 client;
+        private int references;
+
+        private SharedClient(AmazonS3 client) {
+            this.client = client;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.siddhi.extension.store.s3.client;
+
+import io.siddhi.extension.store.s3.S3StoreConfig;
+
+import java.util.Objects;
+
+/**
+ * Settings an S3 client is built with. Tables with equal settings share a client, along with its connection pool,
+ * through the {@link S3ClientRegistry}.
+ */
+public final class S3ClientSettings {
+
+    private final String region;
+    private final String endpoint;
+    private final boolean pathStyleAccess;
+    private final String credentialProvider;
+    private final String accessKey;
+    private final String secretKey;
+    private final int maxConnections;
+    private final int connectionTimeout;
+    private final int socketTimeout;
+    private final int requestTimeout;
+    private final long connectionTtl;
+    private final boolean tcpKeepAlive;
+    private final int maxErrorRetry;
+    private final boolean retryThrottledRequests;
+
+    public S3ClientSettings(S3StoreConfig config) {
+        this.region = config.getRegion();
+        this.endpoint = config.getEndpoint();
+        this.pathStyleAccess = config.isPathStyleAccess();
+        this.credentialProvider = config.getCredentialProvider();
+        this.accessKey = config.getAwsAccessKey();
+        this.secretKey = config.getAwsSecretKey();
+        this.maxConnections = config.getClientMaxConnections();
+        this.connectionTimeout = config.getClientConnectionTimeout();
+        this.socketTimeout = config.getClientSocketTimeout();
+        this.requestTimeout = config.getClientRequestTimeout();
+        this.connectionTtl = config.getClientConnectionTtl();
+        this.tcpKeepAlive = config.isClientTcpKeepAlive();
+        this.maxErrorRetry = config.getClientMaxErrorRetry();
+        // Throttled requests are paced and sent again by the rate limiter of the table
+        this.retryThrottledRequests = !config.isRateLimitEnabled();
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * @return endpoint overriding the one of the region, such as the one of an S3 compatible store, or null
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public boolean isPathStyleAccess() {
+        return pathStyleAccess;
+    }
+
+    /**
+     * @return class name of the credentials provider, or null for the default provider chain
+     */
+    public String getCredentialProvider() {
+        return credentialProvider;
+    }
+
+    /**
+     * @return access key of static credentials, which take precedence over the credentials provider, or null
+     */
+    public String getAccessKey() {
+        return accessKey;
+    }
+
+    public String getSecretKey() {
+        return secretKey;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    /**
+     * @return time in milliseconds a request may take, or 0 for no limit
+     */
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * @return time in milliseconds a pooled connection may be reused for, or 0 for no limit
+     */
+    public long getConnectionTtl() {
+        return connectionTtl;
+    }
+
+    public boolean isTcpKeepAlive() {
+        return tcpKeepAlive;
+    }
+
+    public int getMaxErrorRetry() {
+        return maxErrorRetry;
+    }
+
+    /**
+     * @return whether the client retries the requests S3 throttled, along with the other retryable failures
+     */
+    public boolean isRetryThrottledRequests() {
+        return retryThrottledRequests;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        S3ClientSettings that = (S3ClientSettings) o;
+        return pathStyleAccess == that.pathStyleAccess
+                && maxConnections == that.maxConnections
+                && connectionTimeout == that.connectionTimeout
+                && socketTimeout == that.socketTimeout
+                && requestTimeout == that.requestTimeout
+                && connectionTtl == that.connectionTtl
+                && tcpKeepAlive == that.tcpKeepAlive
+                && maxErrorRetry == that.maxErrorRetry
+                && retryThrottledRequests == that.retryThrottledRequests
+                && Objects.equals(region, that.region)
+                && Objects.equals(endpoint, that.endpoint)
+                && Objects.equals(credentialProvider, that.credentialProvider)
+                && Objects.equals(accessKey, that.accessKey)
+                && Objects.equals(secretKey, that.secretKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(region, endpoint, pathStyleAccess, credentialProvider, accessKey, secretKey,
+                maxConnections, connectionTimeout, socketTimeout, requestTimeout, connectionTtl, tcpKeepAlive,
+                maxErrorRetry, retryThrottledRequests);
+    }
+
+    /**
+     * @return description of where the client connects to, without the credentials
+     */
+    @Override
+    public String toString() {
+        return endpoint == null ? "region " + region : "endpoint " + endpoint + " (region " + region + ")";
+    }
+}
@@ -0,0 +1,165 @@
+package io.siddhi.extension.store.s3.codec;
+
+import io.siddhi.extension.store.s3.util.RecordInputBuffer;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+/**
+ * Schema aware binary codec. Values are written positionally using the attribute types, so no field names or class
+ * descriptors end up in the object. Each value is preceded by a single byte that marks nulls.
+ * <p>
+ * {@code OBJECT} values that are byte arrays are written as is, and large ones are not even copied into the encode
+ * buffer; any other object falls back to Java serialization.
+ */
+public class BinaryRecordCodec implements RecordCodec {
+
+    public static final String NAME = "binary";
+
+    private static final int FORMAT_VERSION = 1;
+    private static final byte NULL = 0;
+    private static final byte PRESENT = 1;
+    private static final byte BYTES = 2;
+    private static final byte SERIALIZED = 3;
+
+    private final Attribute.Type[] types;
+
+    public BinaryRecordCodec(List<Attribute> attributes) {
+        this.types = new Attribute.Type[attributes.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = attributes.get(i).getType();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void encode(Object[] values, RecordOutputBuffer out) throws IOException {
+        out.write(FORMAT_VERSION);
+        for (int i = 0; i < types.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                out.write(NULL);
+                continue;
+            }
+            switch (types[i]) {
+                case STRING:
+                    out.write(PRESENT);
+                    out.writeString((String) value);
+                    break;
+                case INT:
+                    out.write(PRESENT);
+                    out.writeInt((Integer) value);
+                    break;
+                case LONG:
+                    out.write(PRESENT);
+                    out.writeLong((Long) value);
+                    break;
+                case FLOAT:
+                    out.write(PRESENT);
+                    out.writeFloat((Float) value);
+                    break;
+                case DOUBLE:
+                    out.write(PRESENT);
+                    out.writeDouble((Double) value);
+                    break;
+                case BOOL:
+                    out.write(PRESENT);
+                    out.writeBoolean((Boolean) value);
+                    break;
+                default:
+                    encodeObject(value, out);
+            }
+        }
+    }
+
+    @Override
+    public Object[] decode(byte[] data, int offset, int length) throws IOException {
+        RecordInputBuffer in = new RecordInputBuffer(data, offset, length);
+        int version = in.read();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary record format version " + version + ".");
+        }
+        Object[] values = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            int marker = in.read();
+            if (marker == NULL) {
+                continue;
+            }
+            switch (types[i]) {
+                case STRING:
+                    values[i] = in.readString();
+                    break;
+                case INT:
+                    values[i] = in.readInt();
+                    break;
+                case LONG:
+                    values[i] = in.readLong();
+                    break;
+                case FLOAT:
+                    values[i] = in.readFloat();
+                    break;
+                case DOUBLE:
+                    values[i] = in.readDouble();
+                    break;
+                case BOOL:
+                    values[i] = in.readBoolean();
+                    break;
+                default:
+                    values[i] = decodeObject(marker, in);
+            }
+        }
+        return values;
+    }
+
+    private static void encodeObject(Object value, RecordOutputBuffer out) throws IOException {
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.write(BYTES);
+            out.writeVarInt(bytes.length);
+            if (bytes.length >= RecordOutputBuffer.REFERENCE_THRESHOLD) {
+                // Large values are streamed from the record itself rather than copied
+                out.writeReference(bytes, 0, bytes.length);
+            } else {
+                out.write(bytes, 0, bytes.length);
+            }
+            return;
+        }
+        out.write(SERIALIZED);
+        // Reserve space for the length and fill it in once the object is written
+        int lengthPosition = out.size();
+        out.writeInt(0);
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(value);
+        }
+        int serializedLength = out.size() - lengthPosition - 4;
+        byte[] buffer = out.getBuffer();
+        buffer[lengthPosition] = (byte) (serializedLength >>> 24);
+        buffer[lengthPosition + 1] = (byte) (serializedLength >>> 16);
+        buffer[lengthPosition + 2] = (byte) (serializedLength >>> 8);
+        buffer[lengthPosition + 3] = (byte) serializedLength;
+    }
+
+    private static Object decodeObject(int marker, RecordInputBuffer in) throws IOException {
+        if (marker == BYTES) {
+            return in.readBytes(in.readVarInt());
+        }
+        if (marker != SERIALIZED) {
+            throw new IOException("Unknown object marker " + marker + ".");
+        }
+        byte[] serialized = in.readBytes(in.readInt());
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Cannot deserialize object value.", e);
+        }
+    }
+}
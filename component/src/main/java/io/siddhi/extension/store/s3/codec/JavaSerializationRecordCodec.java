@@ -0,0 +1,61 @@
+package io.siddhi.extension.store.s3.codec;
+
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codec that writes the object fields as a Java serialized {@code HashMap} keyed by attribute name. This is the
+ * format the store used before codecs became configurable, and is kept so that existing objects remain readable.
+ */
+public class JavaSerializationRecordCodec implements RecordCodec {
+
+    public static final String NAME = "java";
+
+    private final String[] names;
+
+    public JavaSerializationRecordCodec(List<Attribute> attributes) {
+        this.names = new String[attributes.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = attributes.get(i).getName();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void encode(Object[] values, RecordOutputBuffer out) throws IOException {
+        HashMap<String, Object> payload = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            payload.put(names[i], values[i]);
+        }
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(payload);
+        }
+    }
+
+    @Override
+    public Object[] decode(byte[] data, int offset, int length) throws IOException {
+        Map<?, ?> payload;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data, offset, length))) {
+            payload = (Map<?, ?>) ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Cannot deserialize the record.", e);
+        }
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = payload.get(names[i]);
+        }
+        return values;
+    }
+}
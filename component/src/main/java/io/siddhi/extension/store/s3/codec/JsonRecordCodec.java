@@ -0,0 +1,132 @@
+package io.siddhi.extension.store.s3.codec;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codec that writes the object fields as a flat JSON object keyed by attribute name, so that the stored objects can
+ * be read by other tools. {@code OBJECT} attributes are supported only when they hold byte arrays, which are written
+ * as base64 strings.
+ */
+public class JsonRecordCodec implements RecordCodec {
+
+    public static final String NAME = "json";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String[] names;
+    private final Attribute.Type[] types;
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    public JsonRecordCodec(List<Attribute> attributes) {
+        this.names = new String[attributes.size()];
+        this.types = new Attribute.Type[attributes.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = attributes.get(i).getName();
+            types[i] = attributes.get(i).getType();
+            indices.put(names[i], i);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void encode(Object[] values, RecordOutputBuffer out) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            for (int i = 0; i < names.length; i++) {
+                Object value = values[i];
+                generator.writeFieldName(names[i]);
+                if (value == null) {
+                    generator.writeNull();
+                    continue;
+                }
+                switch (types[i]) {
+                    case STRING:
+                        generator.writeString((String) value);
+                        break;
+                    case INT:
+                        generator.writeNumber((Integer) value);
+                        break;
+                    case LONG:
+                        generator.writeNumber((Long) value);
+                        break;
+                    case FLOAT:
+                        generator.writeNumber((Float) value);
+                        break;
+                    case DOUBLE:
+                        generator.writeNumber((Double) value);
+                        break;
+                    case BOOL:
+                        generator.writeBoolean((Boolean) value);
+                        break;
+                    default:
+                        if (!(value instanceof byte[])) {
+                            throw new IOException("The json codec can only store byte[] values in OBJECT attribute '"
+                                    + names[i] + "', but found " + value.getClass().getName() + ".");
+                        }
+                        generator.writeBinary((byte[]) value);
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    @Override
+    public Object[] decode(byte[] data, int offset, int length) throws IOException {
+        Object[] values = new Object[names.length];
+        try (JsonParser parser = JSON_FACTORY.createParser(data, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Integer index = indices.get(parser.getCurrentName());
+                JsonToken token = parser.nextToken();
+                if (index == null) {
+                    // Unknown fields, e.g. of attributes that were removed from the definition, are ignored
+                    parser.skipChildren();
+                    continue;
+                }
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (types[index]) {
+                    case STRING:
+                        values[index] = parser.getText();
+                        break;
+                    case INT:
+                        values[index] = parser.getIntValue();
+                        break;
+                    case LONG:
+                        values[index] = parser.getLongValue();
+                        break;
+                    case FLOAT:
+                        values[index] = parser.getFloatValue();
+                        break;
+                    case DOUBLE:
+                        values[index] = parser.getDoubleValue();
+                        break;
+                    case BOOL:
+                        values[index] = parser.getBooleanValue();
+                        break;
+                    default:
+                        values[index] = parser.getBinaryValue();
+                }
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,40 @@
+package io.siddhi.extension.store.s3.codec;
+
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+
+import java.io.IOException;
+
+/**
+ * Encodes the object fields of a record into the body of an S3 object and decodes them back.
+ * <p>
+ * A codec is created for a fixed list of attributes, and the values passed to {@link #encode(Object[],
+ * RecordOutputBuffer)} and returned from {@link #decode(byte[], int, int)} are positional, in the order of those
+ * attributes. Implementations must be thread safe.
+ */
+public interface RecordCodec {
+
+    /**
+     * @return name of the codec, as given in the {@code codec} store parameter and recorded in object metadata
+     */
+    String getName();
+
+    /**
+     * Encode the given values into the buffer.
+     *
+     * @param values values of the object fields
+     * @param out    buffer to write the encoded values into
+     * @throws IOException if the values cannot be encoded
+     */
+    void encode(Object[] values, RecordOutputBuffer out) throws IOException;
+
+    /**
+     * Decode the values of the object fields from the given region of a byte array.
+     *
+     * @param data   byte array holding the encoded values
+     * @param offset start of the encoded values
+     * @param length number of bytes of the encoded values
+     * @return decoded values of the object fields
+     * @throws IOException if the data is not a valid encoding
+     */
+    Object[] decode(byte[] data, int offset, int length) throws IOException;
+}
@@ -0,0 +1,29 @@
+package io.siddhi.extension.store.s3.codec;
+
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.List;
+
+/**
+ * Creates {@link RecordCodec}s by the name given in the {@code codec} store parameter.
+ */
+public class RecordCodecFactory {
+
+    private RecordCodecFactory() {
+    }
+
+    public static RecordCodec create(String name, List<Attribute> attributes) {
+        switch (name.toLowerCase()) {
+            case BinaryRecordCodec.NAME:
+                return new BinaryRecordCodec(attributes);
+            case JsonRecordCodec.NAME:
+                return new JsonRecordCodec(attributes);
+            case JavaSerializationRecordCodec.NAME:
+                return new JavaSerializationRecordCodec(attributes);
+            default:
+                throw new IllegalArgumentException("Unsupported codec '" + name + "'. Supported codecs are "
+                        + BinaryRecordCodec.NAME + ", " + JsonRecordCodec.NAME + " and "
+                        + JavaSerializationRecordCodec.NAME + ".");
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package io.siddhi.extension.store.s3.codec;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.util.IOUtils;
+import io.siddhi.extension.store.s3.compression.CompressionCodec;
+import io.siddhi.extension.store.s3.compression.CompressionCodecFactory;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+import io.siddhi.extension.store.s3.util.RecordBufferPool;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps table records to S3 objects and back.
+ * <p>
+ * The primary key becomes the object key, the object fields are encoded into the object body with the configured
+ * {@link RecordCodec}, and the remaining attributes are stored as user metadata of the object. The name of the codec
+ * is recorded in the metadata as well, so objects written with a different codec can still be read. Bodies that reach
+ * the compression threshold are compressed, and the compression codec is recorded in the metadata in the same way.
+ */
+public class RecordMapper {
+
+    public static final String CODEC_METADATA_KEY = "siddhi-codec";
+    public static final String COMPRESSION_METADATA_KEY = "siddhi-compression";
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    // S3 limits the user metadata of an object to 2 KB, counting the UTF-8 bytes of every key and value
+    private static final int MAX_USER_METADATA_SIZE = 2048;
+    // Left for the entries added once the metadata is created, such as the compression and the version token
+    private static final int RESERVED_USER_METADATA_SIZE = 128;
+
+    private final List<Attribute> attributes;
+    private final int primaryKeyIndex;
+    private final int[] objectIndices;
+    private final int[] metadataIndices;
+    private final String[] metadataKeys;
+    private final int[] metadataKeyLengths;
+    private final List<Attribute> objectAttributes;
+    private final RecordCodec codec;
+    private final Map<String, RecordCodec> decoders = new ConcurrentHashMap<>();
+    private final CompressionCodec compression;
+    private final int compressionThreshold;
+    private final Map<String, CompressionCodec> decompressors = new ConcurrentHashMap<>();
+
+    public RecordMapper(List<Attribute> attributes, int primaryKeyIndex, List<Integer> objectIndices,
+                        String codecName) {
+        this(attributes, primaryKeyIndex, objectIndices, codecName, CompressionCodecFactory.NONE, 0);
+    }
+
+    /**
+     * @param attributes           attributes of the table
+     * @param primaryKeyIndex      index of the primary key attribute
+     * @param objectIndices        indices of the attributes stored in the object body
+     * @param codecName            name of the codec encoding the object body
+     * @param compressionName      name of the compression codec, or {@value CompressionCodecFactory#NONE}
+     * @param compressionThreshold minimum size in bytes of an encoded object body to be compressed
+     */
+    public RecordMapper(List<Attribute> attributes, int primaryKeyIndex, List<Integer> objectIndices,
+                        String codecName, String compressionName, int compressionThreshold) {
+        this.attributes = attributes;
+        this.primaryKeyIndex = primaryKeyIndex;
+        this.objectIndices = objectIndices.stream().mapToInt(Integer::intValue).toArray();
+
+        List<Integer> metadataIndexList = new ArrayList<>();
+        for (int i = 0; i < attributes.size(); i++) {
+            if (i == primaryKeyIndex || objectIndices.contains(i)) {
+                continue;
+            }
+            if (attributes.get(i).getType() == Attribute.Type.OBJECT) {
+                throw new IllegalArgumentException("Attribute '" + attributes.get(i).getName() + "' of type OBJECT "
+                        + "should be listed in 'object.fields'.");
+            }
+            metadataIndexList.add(i);
+        }
+        this.metadataIndices = metadataIndexList.stream().mapToInt(Integer::intValue).toArray();
+        this.metadataKeys = new String[metadataIndices.length];
+        this.metadataKeyLengths = new int[metadataIndices.length];
+        for (int i = 0; i < metadataIndices.length; i++) {
+            // S3 returns user metadata keys in lower case
+            metadataKeys[i] = attributes.get(metadataIndices[i]).getName().toLowerCase();
+            metadataKeyLengths[i] = metadataKeys[i].getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        this.objectAttributes = new ArrayList<>(this.objectIndices.length);
+        for (int index : this.objectIndices) {
+            objectAttributes.add(attributes.get(index));
+        }
+        this.codec = RecordCodecFactory.create(codecName, objectAttributes);
+        this.decoders.put(codec.getName(), codec);
+        this.compression = CompressionCodecFactory.create(compressionName);
+        this.compressionThreshold = compressionThreshold;
+        if (compression != null) {
+            this.decompressors.put(compression.getName(), compression);
+        }
+    }
+
+    public RecordCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return whether some attributes are stored as user metadata rather than in the object body
+     */
+    public boolean hasMetadataAttributes() {
+        return metadataIndices.length > 0;
+    }
+
+    /**
+     * Encode the object fields of the given record into a byte array.
+     *
+     * @param record record to be encoded
+     * @return encoded object body
+     * @throws IOException if the object fields cannot be encoded
+     */
+    public byte[] encodeBody(Object[] record) throws IOException {
+        RecordOutputBuffer buffer = new RecordOutputBuffer(INITIAL_BUFFER_SIZE);
+        encodeBody(record, buffer);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Encode the object fields of the given record into a buffer, which may end up referencing large values of the
+     * record instead of holding a copy of them.
+     *
+     * @param record record to be encoded
+     * @param out    buffer to write the encoded object body into
+     * @throws IOException if the object fields cannot be encoded
+     */
+    public void encodeBody(Object[] record, RecordOutputBuffer out) throws IOException {
+        Object[] values = new Object[objectIndices.length];
+        for (int i = 0; i < objectIndices.length; i++) {
+            values[i] = record[objectIndices[i]];
+        }
+        codec.encode(values, out);
+    }
+
+    /**
+     * Compress an encoded object body if it reaches the compression threshold, recording the compression codec in
+     * the metadata of the object. Bodies that do not get smaller are stored as they are.
+     *
+     * @param body     encoded object body, which is released to the pool if a compressed body is returned
+     * @param metadata metadata of the object
+     * @param pool     pool to take the buffer of the compressed body from
+     * @return buffer holding the body to be stored
+     * @throws IOException if the body cannot be compressed
+     */
+    public RecordOutputBuffer compressBody(RecordOutputBuffer body, ObjectMetadata metadata, RecordBufferPool pool)
+            throws IOException {
+        if (compression == null || body.length() < compressionThreshold) {
+            return body;
+        }
+        RecordOutputBuffer compressed = pool.acquire();
+        try (InputStream in = body.newInputStream(); OutputStream out = compression.compress(compressed)) {
+            IOUtils.copy(in, out);
+        } catch (IOException | RuntimeException e) {
+            pool.release(compressed);
+            throw e;
+        }
+        if (compressed.length() >= body.length()) {
+            pool.release(compressed);
+            return body;
+        }
+        pool.release(body);
+        metadata.addUserMetadata(COMPRESSION_METADATA_KEY, compression.getName());
+        return compressed;
+    }
+
+    /**
+     * Create the metadata of the object that holds the given record, carrying the attributes that are neither the
+     * primary key nor object fields.
+     *
+     * @param record record to be stored
+     * @return metadata of the object
+     * @throws S3TableException if the attributes exceed the user metadata S3 allows per object
+     */
+    public ObjectMetadata createMetadata(Object[] record) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.addUserMetadata(CODEC_METADATA_KEY, codec.getName());
+        int size = CODEC_METADATA_KEY.length() + codec.getName().length() + RESERVED_USER_METADATA_SIZE;
+        for (int i = 0; i < metadataIndices.length; i++) {
+            Object value = record[metadataIndices[i]];
+            if (value != null) {
+                // Metadata values are US-ASCII, hence their length is their size
+                String metadataValue = toMetadataValue(value);
+                metadata.addUserMetadata(metadataKeys[i], metadataValue);
+                size += metadataKeyLengths[i] + metadataValue.length();
+            }
+        }
+        if (size > MAX_USER_METADATA_SIZE) {
+            throw new S3TableException("Attributes of the record with key '" + record[primaryKeyIndex] + "' stored "
+                    + "as user metadata take " + (size - RESERVED_USER_METADATA_SIZE) + " bytes, whereas S3 allows "
+                    + (MAX_USER_METADATA_SIZE - RESERVED_USER_METADATA_SIZE) + " bytes per object. Large attributes "
+                    + "should be listed in 'object.fields' to be stored in the object body.");
+        }
+        return metadata;
+    }
+
+    /**
+     * Materialize a record from an S3 object.
+     *
+     * @param key      object key
+     * @param metadata metadata of the object
+     * @param body     byte array holding the object body
+     * @param offset   start of the object body
+     * @param length   length of the object body
+     * @return the record
+     * @throws IOException if the object body cannot be decoded
+     */
+    public Object[] toRecord(String key, ObjectMetadata metadata, byte[] body, int offset, int length)
+            throws IOException {
+        Object[] record = new Object[attributes.size()];
+        record[primaryKeyIndex] = key;
+
+        Map<String, String> userMetadata = metadata.getUserMetadata();
+        for (int i = 0; i < metadataIndices.length; i++) {
+            String value = userMetadata.get(metadataKeys[i]);
+            if (value != null) {
+                record[metadataIndices[i]] = fromMetadataValue(value,
+                        attributes.get(metadataIndices[i]).getType());
+            }
+        }
+
+        if (objectIndices.length > 0) {
+            String compressionName = userMetadata.get(COMPRESSION_METADATA_KEY);
+            if (compressionName != null) {
+                CompressionCodec decompressor = decompressors.computeIfAbsent(compressionName,
+                        CompressionCodecFactory::create);
+                try (InputStream in = decompressor.decompress(new ByteArrayInputStream(body, offset, length))) {
+                    body = IOUtils.toByteArray(in);
+                }
+                offset = 0;
+                length = body.length;
+            }
+            Object[] values = getDecoder(userMetadata.get(CODEC_METADATA_KEY)).decode(body, offset, length);
+            for (int i = 0; i < objectIndices.length; i++) {
+                record[objectIndices[i]] = values[i];
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Materialize a record from the output of an S3 Select query, which holds the object fields as an uncompressed
+     * JSON object regardless of how the object body got stored.
+     *
+     * @param key      object key
+     * @param metadata metadata of the object, needed only if attributes are stored as user metadata
+     * @param output   output of the query
+     * @return the record
+     * @throws IOException if the output cannot be decoded
+     */
+    public Object[] fromSelectOutput(String key, ObjectMetadata metadata, byte[] output) throws IOException {
+        ObjectMetadata selectMetadata = new ObjectMetadata();
+        Map<String, String> userMetadata = new HashMap<>();
+        if (metadata != null) {
+            userMetadata.putAll(metadata.getUserMetadata());
+        }
+        userMetadata.remove(COMPRESSION_METADATA_KEY);
+        userMetadata.put(CODEC_METADATA_KEY, JsonRecordCodec.NAME);
+        selectMetadata.setUserMetadata(userMetadata);
+        return toRecord(key, selectMetadata, output, 0, output.length);
+    }
+
+    private RecordCodec getDecoder(String codecName) {
+        if (codecName == null) {
+            // Objects written before the codec got recorded were Java serialized
+            codecName = JavaSerializationRecordCodec.NAME;
+        }
+        return decoders.computeIfAbsent(codecName, name -> RecordCodecFactory.create(name, objectAttributes));
+    }
+
+    private static String toMetadataValue(Object value) {
+        if (value instanceof String) {
+            // User metadata is sent as HTTP headers, hence only US-ASCII is safe
+            try {
+                return URLEncoder.encode((String) value, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return String.valueOf(value);
+    }
+
+    private static Object fromMetadataValue(String value, Attribute.Type type) {
+        switch (type) {
+            case STRING:
+                try {
+                    return URLDecoder.decode(value, "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+            case INT:
+                return Integer.parseInt(value);
+            case LONG:
+                return Long.parseLong(value);
+            case FLOAT:
+                return Float.parseFloat(value);
+            case DOUBLE:
+                return Double.parseDouble(value);
+            case BOOL:
+                return Boolean.parseBoolean(value);
+            default:
+                return value;
+        }
+    }
+}
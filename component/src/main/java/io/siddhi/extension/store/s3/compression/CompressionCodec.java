@@ -0,0 +1,31 @@
+package io.siddhi.extension.store.s3.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compresses the bodies of stored objects. The name of the codec is recorded in the metadata of each compressed
+ * object, so objects are decompressed with the codec they were written with. Implementations must be thread safe.
+ */
+public interface CompressionCodec {
+
+    /**
+     * @return name of the codec, as given in the {@code compression} store parameter and recorded in object metadata
+     */
+    String getName();
+
+    /**
+     * @param out stream to write the compressed bytes to; it is closed when the returned stream is closed
+     * @return stream compressing the bytes written to it
+     * @throws IOException if the stream cannot be created
+     */
+    OutputStream compress(OutputStream out) throws IOException;
+
+    /**
+     * @param in stream of compressed bytes
+     * @return stream of the decompressed bytes
+     * @throws IOException if the stream cannot be created, e.g. because the data is corrupt
+     */
+    InputStream decompress(InputStream in) throws IOException;
+}
@@ -0,0 +1,33 @@
+package io.siddhi.extension.store.s3.compression;
+
+/**
+ * Creates {@link CompressionCodec}s by the name given in the {@code compression} store parameter.
+ */
+public class CompressionCodecFactory {
+
+    public static final String NONE = "none";
+
+    private CompressionCodecFactory() {
+    }
+
+    /**
+     * @param name name of the codec
+     * @return the codec, or null if compression is disabled with {@value #NONE}
+     */
+    public static CompressionCodec create(String name) {
+        switch (name.toLowerCase()) {
+            case NONE:
+                return null;
+            case GzipCompressionCodec.NAME:
+                return new GzipCompressionCodec();
+            case Lz4CompressionCodec.NAME:
+                return new Lz4CompressionCodec();
+            case ZstdCompressionCodec.NAME:
+                return new ZstdCompressionCodec();
+            default:
+                throw new IllegalArgumentException("Unsupported compression '" + name + "'. Supported values are "
+                        + NONE + ", " + GzipCompressionCodec.NAME + ", " + Lz4CompressionCodec.NAME + " and "
+                        + ZstdCompressionCodec.NAME + ".");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io.siddhi.extension.store.s3.compression;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compresses with zstd, which reaches gzip like ratios at a fraction of its CPU cost.
+ */
+public class ZstdCompressionCodec implements CompressionCodec {
+
+    public static final String NAME = "zstd";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+        return new ZstdOutputStream(out);
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        return new ZstdInputStream(in);
+    }
+}
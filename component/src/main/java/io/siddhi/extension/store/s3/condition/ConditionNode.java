@@ -0,0 +1,341 @@
+package io.siddhi.extension.store.s3.condition;
+
+import io.siddhi.core.table.record.ExpressionVisitor;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.condition.Compare;
+
+import java.util.Map;
+
+/**
+ * Node of a condition tree built by {@link S3ConditionVisitor}. Nodes are evaluated against a record given as a map
+ * of attribute names to values, together with the values of the stream variables referred by the condition.
+ */
+public abstract class ConditionNode {
+
+    public abstract Object evaluate(Map<String, Object> record, Map<String, Object> parameters);
+
+    static boolean isTrue(Object value) {
+        return Boolean.TRUE.equals(value);
+    }
+
+    /**
+     * Logical AND, evaluating the right operand only if the left one is true.
+     */
+    public static class And extends ConditionNode {
+        private final ConditionNode left;
+        private final ConditionNode right;
+
+        And(ConditionNode left, ConditionNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        public ConditionNode getLeft() {
+            return left;
+        }
+
+        public ConditionNode getRight() {
+            return right;
+        }
+
+        @Override
+        public Object evaluate(Map<String, Object> record, Map<String, Object> parameters) {
+            return isTrue(left.evaluate(record, parameters)) && isTrue(right.evaluate(record, parameters));
+        }
+    }
+
+    /**
+     * Logical OR, evaluating the right operand only if the left one is not true.
+     */
+    public static class Or extends ConditionNode {
+        private final ConditionNode left;
+        private final ConditionNode right;
+
+        Or(ConditionNode left, ConditionNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        public ConditionNode getLeft() {
+            return left;
+        }
+
+        public ConditionNode getRight() {
+            return right;
+        }
+
+        @Override
+        public Object evaluate(Map<String, Object> record, Map<String, Object> parameters) {
+            return isTrue(left.evaluate(record, parameters)) || isTrue(right.evaluate(record, parameters));
+        }
+    }
+
+    /**
+     * Logical NOT.
+     */
+    public static class Not extends ConditionNode {
+        private final ConditionNode operand;
+
+        Not(ConditionNode operand) {
+            this.operand = operand;
+        }
+
+        public ConditionNode getOperand() {
+            return operand;
+        }
+
+        @Override
+        public Object evaluate(Map<String, Object> record, Map<String, Object> parameters) {
+            return !isTrue(operand.evaluate(record, parameters));
+        }
+    }
+
+    /**
+     * Comparison of two operands. Comparisons involving nulls are false, as in Siddhi.
+     */
+    public static class Comparison extends ConditionNode {
+        private final Compare.Operator operator;
+        private final ConditionNode left;
+        private final ConditionNode right;
+
+        Comparison(Compare.Operator operator, ConditionNode left, ConditionNode right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        public Compare.Operator getOperator() {
+            return operator;
+        }
+
+        public ConditionNode getLeft() {
+            return left;
+        }
+
+        public ConditionNode getRight() {
+            return right;
+        }
+
+        @Override
+        public Object evaluate(Map<String, Object> record, Map<String, Object> parameters) {
+            return compare(operator, left.evaluate(record, parameters), right.evaluate(record, parameters));
+        }
+
+        static boolean compare(Compare.Operator operator, Object leftValue, Object rightValue) {
+            if (leftValue == null || rightValue == null) {
+                return false;
+            }
+            int result;
+            if (leftValue instanceof Number && rightValue instanceof Number) {
+                result = compareNumbers((Number) leftValue, (Number) rightValue);
+            } else if (leftValue instanceof String && rightValue instanceof String) {
+                result = ((String) leftValue).compareTo((String) rightValue);
+            } else if (operator == Compare.Operator.EQUAL) {
+                return leftValue.equals(rightValue);
+            } else if (operator == Compare.Operator.NOT_EQUAL) {
+                return !leftValue.equals(rightValue);
+            } else {
+                return false;
+            }
+            switch (operator) {
+                case LESS_THAN:
+                    return result < 0;
+                case GREATER_THAN:
+                    return result > 0;
+                case LESS_THAN_EQUAL:
+                    return result <= 0;
+                case GREATER_THAN_EQUAL:
+                    return result >= 0;
+                case EQUAL:
+                    return result == 0;
+                default:
+                    return result != 0;
+            }
+        }
+
+        static int compareNumbers(Number left, Number right) {
+            if (isIntegral(left) && isIntegral(right)) {
+                return Long.compare(left.longValue(), right.longValue());
+            }
+            return Double.compare(left.doubleValue(), right.doubleValue());
+        }
+
+        /**
+         * @return the operator giving the same result with the operands swapped, as in 10 &lt; price for price &gt; 10
+         */
+        static Compare.Operator flip(Compare.Operator operator) {
+            switch (operator) {
+                case LESS_THAN:
+                    return Compare.Operator.GREATER_THAN;
+                case GREATER_THAN:
+                    return Compare.Operator.LESS_THAN;
+                case LESS_THAN_EQUAL:
+                    return Compare.Operator.GREATER_THAN_EQUAL;
+                case GREATER_THAN_EQUAL:
+                    return Compare.Operator.LESS_THAN_EQUAL;
+                default:
+                    return operator;
+            }
+        }
+    }
+
+    /**
+     * Null check of an operand.
+     */
+    public static class IsNull extends ConditionNode {
+        private final ConditionNode operand;
+
+        IsNull(ConditionNode operand) {
+            this.operand = operand;
+        }
+
+        public ConditionNode getOperand() {
+            return operand;
+        }
+
+        @Override
+        public Object evaluate(Map<String, Object> record, Map<String, Object> parameters) {
+            return operand.evaluate(record, parameters) == null;
+        }
+    }
+
+    /**
+     * Arithmetic on two numeric operands.
+     */
+    public static class Arithmetic extends ConditionNode {
+        private final ExpressionVisitor.MathOperator operator;
+        private final ConditionNode left;
+        private final ConditionNode right;
+
+        Arithmetic(ExpressionVisitor.MathOperator operator, ConditionNode left, ConditionNode right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        public ExpressionVisitor.MathOperator getOperator() {
+            return operator;
+        }
+
+        public ConditionNode getLeft() {
+            return left;
+        }
+
+        public ConditionNode getRight() {
+            return right;
+        }
+
+        @Override
+        public Object evaluate(Map<String, Object> record, Map<String, Object> parameters) {
+            return apply(operator, left.evaluate(record, parameters), right.evaluate(record, parameters));
+        }
+
+        static Object apply(ExpressionVisitor.MathOperator operator, Object leftValue, Object rightValue) {
+            if (!(leftValue instanceof Number) || !(rightValue instanceof Number)) {
+                return null;
+            }
+            Number l = (Number) leftValue;
+            Number r = (Number) rightValue;
+            if (isIntegral(l) && isIntegral(r)) {
+                long a = l.longValue();
+                long b = r.longValue();
+                switch (operator) {
+                    case ADD:
+                        return a + b;
+                    case SUBTRACT:
+                        return a - b;
+                    case MULTIPLY:
+                        return a * b;
+                    case DIVIDE:
+                        return b == 0 ? null : a / b;
+                    default:
+                        return b == 0 ? null : a % b;
+                }
+            }
+            double a = l.doubleValue();
+            double b = r.doubleValue();
+            switch (operator) {
+                case ADD:
+                    return a + b;
+                case SUBTRACT:
+                    return a - b;
+                case MULTIPLY:
+                    return a * b;
+                case DIVIDE:
+                    return a / b;
+                default:
+                    return a % b;
+            }
+        }
+    }
+
+    /**
+     * Constant value.
+     */
+    public static class Constant extends ConditionNode {
+        private final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object evaluate(Map<String, Object> record, Map<String, Object> parameters) {
+            return value;
+        }
+    }
+
+    /**
+     * Attribute of the table record.
+     */
+    public static class StoreVariable extends ConditionNode {
+        private final String attributeName;
+
+        StoreVariable(String attributeName) {
+            this.attributeName = attributeName;
+        }
+
+        public String getAttributeName() {
+            return attributeName;
+        }
+
+        @Override
+        public Object evaluate(Map<String, Object> record, Map<String, Object> parameters) {
+            return record.get(attributeName);
+        }
+    }
+
+    /**
+     * Attribute of the matching stream event, resolved from the condition parameters.
+     */
+    public static class StreamVariable extends ConditionNode {
+        private final String id;
+        private final Attribute.Type type;
+
+        StreamVariable(String id, Attribute.Type type) {
+            this.id = id;
+            this.type = type;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Attribute.Type getType() {
+            return type;
+        }
+
+        @Override
+        public Object evaluate(Map<String, Object> record, Map<String, Object> parameters) {
+            return parameters.get(id);
+        }
+    }
+
+    static boolean isIntegral(Object number) {
+        return number instanceof Integer || number instanceof Long;
+    }
+}
@@ -0,0 +1,474 @@
+package io.siddhi.extension.store.s3.condition;
+
+import io.siddhi.core.table.record.ExpressionVisitor;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.condition.Compare;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Condition compiled for evaluation against records held as arrays of attribute values.
+ * <p>
+ * A {@link ConditionNode} tree is evaluated against a record keyed by attribute name, which takes a map per record,
+ * and boxes the result of every node. A predicate instead reads store attributes by their index in the record, and
+ * is built of boolean tests, with the comparison of each operand pair chosen up front from the declared attribute
+ * types and constant values, so testing a record allocates nothing unless the condition does arithmetic. AND and OR
+ * short-circuit, and every test gives the same result as the condition tree it is compiled from; the chosen
+ * comparisons fall back to the general one for values of other types than expected.
+ */
+public abstract class RecordPredicate {
+
+    /**
+     * Test a record.
+     *
+     * @param record     the record, with values in the order of the table attributes
+     * @param parameters values of the stream variables of the condition
+     * @return whether the record matches the condition
+     */
+    public abstract boolean test(Object[] record, Map<String, Object> parameters);
+
+    /**
+     * Compile a condition.
+     *
+     * @param condition  the condition
+     * @param attributes attributes of the table, in the order of the record values
+     * @return the predicate
+     */
+    public static RecordPredicate compile(ConditionNode condition, List<Attribute> attributes) {
+        return new Compiler(attributes).toPredicate(condition);
+    }
+
+    /**
+     * Compile an expression giving a value rather than a truth value, such as the value a set clause assigns.
+     */
+    static Operand compileOperand(ConditionNode expression, List<Attribute> attributes) {
+        return new Compiler(attributes).toOperand(expression);
+    }
+
+    /**
+     * Translates condition nodes to predicates and operands.
+     */
+    private static final class Compiler {
+        private final Map<String, Integer> indices;
+        private final List<Attribute> attributes;
+
+        private Compiler(List<Attribute> attributes) {
+            this.indices = new HashMap<>();
+            for (int i = 0; i < attributes.size(); i++) {
+                indices.put(attributes.get(i).getName(), i);
+            }
+            this.attributes = attributes;
+        }
+
+        private RecordPredicate toPredicate(ConditionNode node) {
+            if (node instanceof ConditionNode.And) {
+                ConditionNode.And and = (ConditionNode.And) node;
+                return new And(toPredicate(and.getLeft()), toPredicate(and.getRight()));
+            }
+            if (node instanceof ConditionNode.Or) {
+                ConditionNode.Or or = (ConditionNode.Or) node;
+                return new Or(toPredicate(or.getLeft()), toPredicate(or.getRight()));
+            }
+            if (node instanceof ConditionNode.Not) {
+                return new Not(toPredicate(((ConditionNode.Not) node).getOperand()));
+            }
+            if (node instanceof ConditionNode.IsNull) {
+                return new IsNull(toOperand(((ConditionNode.IsNull) node).getOperand()));
+            }
+            if (node instanceof ConditionNode.Comparison) {
+                return toComparison((ConditionNode.Comparison) node);
+            }
+            return new IsTrue(toOperand(node));
+        }
+
+        private RecordPredicate toComparison(ConditionNode.Comparison comparison) {
+            Compare.Operator operator = comparison.getOperator();
+            Operand left = toOperand(comparison.getLeft());
+            Operand right = toOperand(comparison.getRight());
+            if (left instanceof Constant && right instanceof Field) {
+                Operand field = left;
+                left = right;
+                right = field;
+                operator = ConditionNode.Comparison.flip(operator);
+            }
+            if (left instanceof Field && right instanceof Constant) {
+                int index = ((Field) left).index;
+                Object constant = ((Constant) right).value;
+                if (constant instanceof Number && isNumeric(left.type)) {
+                    return new FieldNumberComparison(operator, index, (Number) constant);
+                }
+                if (constant instanceof String && left.type == Attribute.Type.STRING) {
+                    return new FieldStringComparison(operator, index, (String) constant);
+                }
+            }
+            if (isNumeric(left.type) && isNumeric(right.type)) {
+                return new NumberComparison(operator, left, right);
+            }
+            if (left.type == Attribute.Type.STRING && right.type == Attribute.Type.STRING) {
+                return new StringComparison(operator, left, right);
+            }
+            return new GeneralComparison(operator, left, right);
+        }
+
+        private Operand toOperand(ConditionNode node) {
+            if (node instanceof ConditionNode.StoreVariable) {
+                Integer index = indices.get(((ConditionNode.StoreVariable) node).getAttributeName());
+                if (index == null) {
+                    // Never set, as with the attribute missing from a record map
+                    return new Constant(null);
+                }
+                return new Field(index, attributes.get(index).getType());
+            }
+            if (node instanceof ConditionNode.Constant) {
+                return new Constant(((ConditionNode.Constant) node).getValue());
+            }
+            if (node instanceof ConditionNode.StreamVariable) {
+                ConditionNode.StreamVariable variable = (ConditionNode.StreamVariable) node;
+                return new Parameter(variable.getId(), variable.getType());
+            }
+            if (node instanceof ConditionNode.Arithmetic) {
+                ConditionNode.Arithmetic arithmetic = (ConditionNode.Arithmetic) node;
+                return new Arithmetic(arithmetic.getOperator(), toOperand(arithmetic.getLeft()),
+                        toOperand(arithmetic.getRight()));
+            }
+            return new PredicateValue(toPredicate(node));
+        }
+
+        private static boolean isNumeric(Attribute.Type type) {
+            return type == Attribute.Type.INT || type == Attribute.Type.LONG || type == Attribute.Type.FLOAT
+                    || type == Attribute.Type.DOUBLE;
+        }
+    }
+
+    private static final class And extends RecordPredicate {
+        private final RecordPredicate left;
+        private final RecordPredicate right;
+
+        private And(RecordPredicate left, RecordPredicate right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Object[] record, Map<String, Object> parameters) {
+            return left.test(record, parameters) && right.test(record, parameters);
+        }
+    }
+
+    private static final class Or extends RecordPredicate {
+        private final RecordPredicate left;
+        private final RecordPredicate right;
+
+        private Or(RecordPredicate left, RecordPredicate right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Object[] record, Map<String, Object> parameters) {
+            return left.test(record, parameters) || right.test(record, parameters);
+        }
+    }
+
+    private static final class Not extends RecordPredicate {
+        private final RecordPredicate operand;
+
+        private Not(RecordPredicate operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean test(Object[] record, Map<String, Object> parameters) {
+            return !operand.test(record, parameters);
+        }
+    }
+
+    private static final class IsNull extends RecordPredicate {
+        private final Operand operand;
+
+        private IsNull(Operand operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean test(Object[] record, Map<String, Object> parameters) {
+            return operand.get(record, parameters) == null;
+        }
+    }
+
+    /**
+     * Operand used as a condition by itself, such as a BOOL attribute, which holds only if it is true.
+     */
+    private static final class IsTrue extends RecordPredicate {
+        private final Operand operand;
+
+        private IsTrue(Operand operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean test(Object[] record, Map<String, Object> parameters) {
+            return ConditionNode.isTrue(operand.get(record, parameters));
+        }
+    }
+
+    /**
+     * Comparison, with the operator resolved to the outcome of each ordering of the operands.
+     */
+    private abstract static class Comparison extends RecordPredicate {
+        final Compare.Operator operator;
+        private final boolean whenLess;
+        private final boolean whenEqual;
+        private final boolean whenGreater;
+
+        Comparison(Compare.Operator operator) {
+            this.operator = operator;
+            this.whenLess = operator == Compare.Operator.LESS_THAN || operator == Compare.Operator.LESS_THAN_EQUAL
+                    || operator == Compare.Operator.NOT_EQUAL;
+            this.whenEqual = operator == Compare.Operator.EQUAL || operator == Compare.Operator.LESS_THAN_EQUAL
+                    || operator == Compare.Operator.GREATER_THAN_EQUAL;
+            this.whenGreater = operator == Compare.Operator.GREATER_THAN
+                    || operator == Compare.Operator.GREATER_THAN_EQUAL || operator == Compare.Operator.NOT_EQUAL;
+        }
+
+        final boolean outcome(int result) {
+            return result < 0 ? whenLess : result == 0 ? whenEqual : whenGreater;
+        }
+    }
+
+    /**
+     * Comparison of a numeric attribute with a numeric constant.
+     */
+    private static final class FieldNumberComparison extends Comparison {
+        private final int index;
+        private final Number constant;
+        private final boolean integralConstant;
+        private final long longConstant;
+        private final double doubleConstant;
+
+        private FieldNumberComparison(Compare.Operator operator, int index, Number constant) {
+            super(operator);
+            this.index = index;
+            this.constant = constant;
+            this.integralConstant = ConditionNode.isIntegral(constant);
+            this.longConstant = constant.longValue();
+            this.doubleConstant = constant.doubleValue();
+        }
+
+        @Override
+        public boolean test(Object[] record, Map<String, Object> parameters) {
+            Object value = record[index];
+            if (integralConstant && ConditionNode.isIntegral(value)) {
+                return outcome(Long.compare(((Number) value).longValue(), longConstant));
+            }
+            if (value instanceof Number) {
+                return outcome(Double.compare(((Number) value).doubleValue(), doubleConstant));
+            }
+            return ConditionNode.Comparison.compare(operator, value, constant);
+        }
+    }
+
+    /**
+     * Comparison of a STRING attribute with a string constant.
+     */
+    private static final class FieldStringComparison extends Comparison {
+        private final int index;
+        private final String constant;
+
+        private FieldStringComparison(Compare.Operator operator, int index, String constant) {
+            super(operator);
+            this.index = index;
+            this.constant = constant;
+        }
+
+        @Override
+        public boolean test(Object[] record, Map<String, Object> parameters) {
+            Object value = record[index];
+            if (value instanceof String) {
+                return outcome(((String) value).compareTo(constant));
+            }
+            return ConditionNode.Comparison.compare(operator, value, constant);
+        }
+    }
+
+    /**
+     * Comparison of numeric operands.
+     */
+    private static final class NumberComparison extends Comparison {
+        private final Operand left;
+        private final Operand right;
+
+        private NumberComparison(Compare.Operator operator, Operand left, Operand right) {
+            super(operator);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Object[] record, Map<String, Object> parameters) {
+            Object leftValue = left.get(record, parameters);
+            Object rightValue = right.get(record, parameters);
+            if (leftValue instanceof Number && rightValue instanceof Number) {
+                return outcome(ConditionNode.Comparison.compareNumbers((Number) leftValue, (Number) rightValue));
+            }
+            return ConditionNode.Comparison.compare(operator, leftValue, rightValue);
+        }
+    }
+
+    /**
+     * Comparison of STRING operands.
+     */
+    private static final class StringComparison extends Comparison {
+        private final Operand left;
+        private final Operand right;
+
+        private StringComparison(Compare.Operator operator, Operand left, Operand right) {
+            super(operator);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Object[] record, Map<String, Object> parameters) {
+            Object leftValue = left.get(record, parameters);
+            Object rightValue = right.get(record, parameters);
+            if (leftValue instanceof String && rightValue instanceof String) {
+                return outcome(((String) leftValue).compareTo((String) rightValue));
+            }
+            return ConditionNode.Comparison.compare(operator, leftValue, rightValue);
+        }
+    }
+
+    /**
+     * Comparison of operands of any other types.
+     */
+    private static final class GeneralComparison extends Comparison {
+        private final Operand left;
+        private final Operand right;
+
+        private GeneralComparison(Compare.Operator operator, Operand left, Operand right) {
+            super(operator);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Object[] record, Map<String, Object> parameters) {
+            return ConditionNode.Comparison.compare(operator, left.get(record, parameters),
+                    right.get(record, parameters));
+        }
+    }
+
+    /**
+     * Value of a condition operand.
+     */
+    abstract static class Operand {
+        /**
+         * Declared type of the value, or null if it is not known up front.
+         */
+        final Attribute.Type type;
+
+        Operand(Attribute.Type type) {
+            this.type = type;
+        }
+
+        abstract Object get(Object[] record, Map<String, Object> parameters);
+    }
+
+    private static final class Field extends Operand {
+        private final int index;
+
+        private Field(int index, Attribute.Type type) {
+            super(type);
+            this.index = index;
+        }
+
+        @Override
+        Object get(Object[] record, Map<String, Object> parameters) {
+            return record[index];
+        }
+    }
+
+    private static final class Constant extends Operand {
+        private final Object value;
+
+        private Constant(Object value) {
+            super(typeOf(value));
+            this.value = value;
+        }
+
+        @Override
+        Object get(Object[] record, Map<String, Object> parameters) {
+            return value;
+        }
+
+        private static Attribute.Type typeOf(Object value) {
+            if (value instanceof Integer) {
+                return Attribute.Type.INT;
+            } else if (value instanceof Long) {
+                return Attribute.Type.LONG;
+            } else if (value instanceof Float) {
+                return Attribute.Type.FLOAT;
+            } else if (value instanceof Double) {
+                return Attribute.Type.DOUBLE;
+            } else if (value instanceof String) {
+                return Attribute.Type.STRING;
+            } else if (value instanceof Boolean) {
+                return Attribute.Type.BOOL;
+            }
+            return null;
+        }
+    }
+
+    private static final class Parameter extends Operand {
+        private final String id;
+
+        private Parameter(String id, Attribute.Type type) {
+            super(type);
+            this.id = id;
+        }
+
+        @Override
+        Object get(Object[] record, Map<String, Object> parameters) {
+            return parameters.get(id);
+        }
+    }
+
+    private static final class Arithmetic extends Operand {
+        private final ExpressionVisitor.MathOperator operator;
+        private final Operand left;
+        private final Operand right;
+
+        private Arithmetic(ExpressionVisitor.MathOperator operator, Operand left, Operand right) {
+            super(null);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object get(Object[] record, Map<String, Object> parameters) {
+            return ConditionNode.Arithmetic.apply(operator, left.get(record, parameters),
+                    right.get(record, parameters));
+        }
+    }
+
+    /**
+     * Outcome of a condition used as an operand, as in (price &gt; 10) == active.
+     */
+    private static final class PredicateValue extends Operand {
+        private final RecordPredicate predicate;
+
+        private PredicateValue(RecordPredicate predicate) {
+            super(Attribute.Type.BOOL);
+            this.predicate = predicate;
+        }
+
+        @Override
+        Object get(Object[] record, Map<String, Object> parameters) {
+            return predicate.test(record, parameters);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package io.siddhi.extension.store.s3.condition;
+
+import io.siddhi.core.util.collection.operator.CompiledCondition;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.condition.Compare;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled condition of the S3 store.
+ * <p>
+ * When the condition requires the primary key to be equal to a value, that value is all that is needed to find the
+ * matching object, so the condition can be answered with a single request on the key instead of a bucket scan.
+ * The whole condition is still evaluated against the fetched record, unless the key equality is the entire
+ * condition.
+ */
+public class S3CompiledCondition implements CompiledCondition {
+
+    private final ConditionNode condition;
+    private final ConditionNode primaryKeyOperand;
+    private final boolean primaryKeyOnly;
+    private final RecordPredicate predicate;
+    private final S3SelectQuery selectQuery;
+    private final Set<String> storeAttributes;
+
+    public S3CompiledCondition(ConditionNode condition, List<Attribute> attributes, String primaryKey) {
+        this(condition, attributes, primaryKey, null);
+    }
+
+    /**
+     * @param condition   the condition
+     * @param attributes  attributes of the table
+     * @param primaryKey  name of the primary key attribute
+     * @param selectQuery S3 Select query filtering the objects scanned for the condition, or null
+     */
+    public S3CompiledCondition(ConditionNode condition, List<Attribute> attributes, String primaryKey,
+                               S3SelectQuery selectQuery) {
+        this.condition = condition;
+        this.selectQuery = selectQuery;
+        this.predicate = RecordPredicate.compile(condition, attributes);
+        this.primaryKeyOperand = findPrimaryKeyOperand(condition, primaryKey);
+        this.primaryKeyOnly = primaryKeyOperand != null && getKeyOperand(condition, primaryKey) != null;
+        Set<String> names = new HashSet<>();
+        if (!primaryKeyOnly) {
+            collectStoreAttributes(condition, names);
+        }
+        this.storeAttributes = Collections.unmodifiableSet(names);
+    }
+
+    public ConditionNode getCondition() {
+        return condition;
+    }
+
+    /**
+     * @return S3 Select query narrowing down the objects a scan for the condition returns, or null if the objects
+     * have to be filtered on the client side only
+     */
+    public S3SelectQuery getSelectQuery() {
+        return selectQuery;
+    }
+
+    /**
+     * @return names of the table attributes that {@link #matches(Object[], Map)} reads
+     */
+    public Set<String> getStoreAttributes() {
+        return storeAttributes;
+    }
+
+    /**
+     * @return whether matching records can be located with their primary key
+     */
+    public boolean isPrimaryKeyLookup() {
+        return primaryKeyOperand != null;
+    }
+
+    /**
+     * @return whether the condition is nothing but an equality check on the primary key, in which case an object
+     * existing for the key is enough for it to match
+     */
+    public boolean isPrimaryKeyOnly() {
+        return primaryKeyOnly;
+    }
+
+    /**
+     * Resolve the primary key the condition requires matching records to have.
+     *
+     * @param parameters values of the stream variables of the condition
+     * @return the primary key, or null if it resolves to null, in which case nothing can match
+     */
+    public String getPrimaryKey(Map<String, Object> parameters) {
+        Object key = primaryKeyOperand.evaluate(null, parameters);
+        return key == null ? null : key.toString();
+    }
+
+    /**
+     * Evaluate the condition against a record.
+     *
+     * @param record     the record, with values in the order of the table attributes
+     * @param parameters values of the stream variables of the condition
+     * @return whether the record matches the condition
+     */
+    public boolean matches(Object[] record, Map<String, Object> parameters) {
+        if (primaryKeyOnly) {
+            // Records are located by the key, so they already match
+            return true;
+        }
+        return predicate.test(record, parameters);
+    }
+
+    /**
+     * Find an equality check on the primary key that must hold for the condition to be true, i.e. one at the root
+     * of the condition or in one of the conjuncts of a top level AND.
+     */
+    private static ConditionNode findPrimaryKeyOperand(ConditionNode node, String primaryKey) {
+        if (node instanceof ConditionNode.And) {
+            ConditionNode.And and = (ConditionNode.And) node;
+            ConditionNode operand = findPrimaryKeyOperand(and.getLeft(), primaryKey);
+            return operand != null ? operand : findPrimaryKeyOperand(and.getRight(), primaryKey);
+        }
+        return getKeyOperand(node, primaryKey);
+    }
+
+    private static void collectStoreAttributes(ConditionNode node, Set<String> names) {
+        if (node instanceof ConditionNode.StoreVariable) {
+            names.add(((ConditionNode.StoreVariable) node).getAttributeName());
+        } else if (node instanceof ConditionNode.And) {
+            collectStoreAttributes(((ConditionNode.And) node).getLeft(), names);
+            collectStoreAttributes(((ConditionNode.And) node).getRight(), names);
+        } else if (node instanceof ConditionNode.Or) {
+            collectStoreAttributes(((ConditionNode.Or) node).getLeft(), names);
+            collectStoreAttributes(((ConditionNode.Or) node).getRight(), names);
+        } else if (node instanceof ConditionNode.Comparison) {
+            collectStoreAttributes(((ConditionNode.Comparison) node).getLeft(), names);
+            collectStoreAttributes(((ConditionNode.Comparison) node).getRight(), names);
+        } else if (node instanceof ConditionNode.Arithmetic) {
+            collectStoreAttributes(((ConditionNode.Arithmetic) node).getLeft(), names);
+            collectStoreAttributes(((ConditionNode.Arithmetic) node).getRight(), names);
+        } else if (node instanceof ConditionNode.Not) {
+            collectStoreAttributes(((ConditionNode.Not) node).getOperand(), names);
+        } else if (node instanceof ConditionNode.IsNull) {
+            collectStoreAttributes(((ConditionNode.IsNull) node).getOperand(), names);
+        }
+    }
+
+    private static ConditionNode getKeyOperand(ConditionNode node, String primaryKey) {
+        if (!(node instanceof ConditionNode.Comparison)) {
+            return null;
+        }
+        ConditionNode.Comparison comparison = (ConditionNode.Comparison) node;
+        if (comparison.getOperator() != Compare.Operator.EQUAL) {
+            return null;
+        }
+        if (isPrimaryKey(comparison.getLeft(), primaryKey) && isRecordIndependent(comparison.getRight())) {
+            return comparison.getRight();
+        }
+        if (isPrimaryKey(comparison.getRight(), primaryKey) && isRecordIndependent(comparison.getLeft())) {
+            return comparison.getLeft();
+        }
+        return null;
+    }
+
+    private static boolean isPrimaryKey(ConditionNode node, String primaryKey) {
+        return node instanceof ConditionNode.StoreVariable
+                && ((ConditionNode.StoreVariable) node).getAttributeName().equals(primaryKey);
+    }
+
+    private static boolean isRecordIndependent(ConditionNode node) {
+        return node instanceof ConditionNode.Constant || node instanceof ConditionNode.StreamVariable;
+    }
+}
@@ -0,0 +1,85 @@
+package io.siddhi.extension.store.s3.condition;
+
+import io.siddhi.core.util.collection.operator.CompiledExpression;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled expression of a set clause of the S3 store, giving the value an update assigns to an attribute.
+ */
+public class S3CompiledExpression implements CompiledExpression {
+
+    private final RecordPredicate.Operand operand;
+    private final boolean recordIndependent;
+
+    /**
+     * @param expression the expression
+     * @param attributes attributes of the table
+     */
+    public S3CompiledExpression(ConditionNode expression, List<Attribute> attributes) {
+        this.operand = RecordPredicate.compileOperand(expression, attributes);
+        this.recordIndependent = !refersToStore(expression);
+    }
+
+    /**
+     * Evaluate the expression against the record being updated.
+     *
+     * @param record     the record, with values in the order of the table attributes
+     * @param parameters values of the stream variables of the expression
+     * @param type       type of the attribute the value is assigned to
+     * @return the value, converted to the type of the attribute if it is numeric
+     */
+    public Object evaluate(Object[] record, Map<String, Object> parameters, Attribute.Type type) {
+        Object value = operand.get(record, parameters);
+        if (!(value instanceof Number)) {
+            return value;
+        }
+        // Arithmetic widens INT operands to LONG and FLOAT operands to DOUBLE
+        Number number = (Number) value;
+        switch (type) {
+            case INT:
+                return number.intValue();
+            case LONG:
+                return number.longValue();
+            case FLOAT:
+                return number.floatValue();
+            case DOUBLE:
+                return number.doubleValue();
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * @return whether the value does not depend on the record being updated, in which case the expression can be
+     * evaluated without reading the record
+     */
+    public boolean isRecordIndependent() {
+        return recordIndependent;
+    }
+
+    private static boolean refersToStore(ConditionNode node) {
+        if (node instanceof ConditionNode.StoreVariable) {
+            return true;
+        } else if (node instanceof ConditionNode.And) {
+            return refersToStore(((ConditionNode.And) node).getLeft())
+                    || refersToStore(((ConditionNode.And) node).getRight());
+        } else if (node instanceof ConditionNode.Or) {
+            return refersToStore(((ConditionNode.Or) node).getLeft())
+                    || refersToStore(((ConditionNode.Or) node).getRight());
+        } else if (node instanceof ConditionNode.Comparison) {
+            return refersToStore(((ConditionNode.Comparison) node).getLeft())
+                    || refersToStore(((ConditionNode.Comparison) node).getRight());
+        } else if (node instanceof ConditionNode.Arithmetic) {
+            return refersToStore(((ConditionNode.Arithmetic) node).getLeft())
+                    || refersToStore(((ConditionNode.Arithmetic) node).getRight());
+        } else if (node instanceof ConditionNode.Not) {
+            return refersToStore(((ConditionNode.Not) node).getOperand());
+        } else if (node instanceof ConditionNode.IsNull) {
+            return refersToStore(((ConditionNode.IsNull) node).getOperand());
+        }
+        return false;
+    }
+}
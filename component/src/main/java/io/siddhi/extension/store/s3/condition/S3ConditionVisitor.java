@@ -0,0 +1,110 @@
+package io.siddhi.extension.store.s3.condition;
+
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.table.record.BaseExpressionVisitor;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.condition.Compare;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Builds a tree of {@link ConditionNode}s while the {@link io.siddhi.core.table.record.ExpressionBuilder} visits a
+ * Siddhi condition. Operands are pushed to a stack as they are visited, and each operator pops its operands and
+ * pushes itself once its visit ends.
+ */
+public class S3ConditionVisitor extends BaseExpressionVisitor {
+
+    private final Deque<ConditionNode> stack = new ArrayDeque<>();
+    private String unsupportedExpression;
+
+    public ConditionNode getCondition() {
+        if (unsupportedExpression != null) {
+            throw new OperationNotSupportedException("S3 store does not support " + unsupportedExpression
+                    + " in conditions.");
+        }
+        if (stack.size() != 1) {
+            throw new IllegalStateException("Malformed condition: " + stack.size() + " operands left unused.");
+        }
+        return stack.peek();
+    }
+
+    @Override
+    public void endVisitAnd() {
+        ConditionNode right = stack.pop();
+        ConditionNode left = stack.pop();
+        stack.push(new ConditionNode.And(left, right));
+    }
+
+    @Override
+    public void endVisitOr() {
+        ConditionNode right = stack.pop();
+        ConditionNode left = stack.pop();
+        stack.push(new ConditionNode.Or(left, right));
+    }
+
+    @Override
+    public void endVisitNot() {
+        stack.push(new ConditionNode.Not(stack.pop()));
+    }
+
+    @Override
+    public void endVisitCompare(Compare.Operator operator) {
+        ConditionNode right = stack.pop();
+        ConditionNode left = stack.pop();
+        stack.push(new ConditionNode.Comparison(operator, left, right));
+    }
+
+    @Override
+    public void beginVisitIsNull(String streamId) {
+        if (streamId != null) {
+            markUnsupported("null checks on streams");
+        }
+    }
+
+    @Override
+    public void endVisitIsNull(String streamId) {
+        if (streamId == null) {
+            stack.push(new ConditionNode.IsNull(stack.pop()));
+        }
+    }
+
+    @Override
+    public void beginVisitIn(String storeId) {
+        markUnsupported("'in' expressions");
+    }
+
+    @Override
+    public void endVisitConstant(Object value, Attribute.Type type) {
+        stack.push(new ConditionNode.Constant(value));
+    }
+
+    @Override
+    public void endVisitMath(MathOperator mathOperator) {
+        ConditionNode right = stack.pop();
+        ConditionNode left = stack.pop();
+        stack.push(new ConditionNode.Arithmetic(mathOperator, left, right));
+    }
+
+    @Override
+    public void beginVisitAttributeFunction(String namespace, String functionName) {
+        markUnsupported("function '" + (namespace == null || namespace.isEmpty() ? "" : namespace + ":")
+                + functionName + "'");
+    }
+
+    @Override
+    public void endVisitStreamVariable(String id, String streamId, String attributeName, Attribute.Type type) {
+        stack.push(new ConditionNode.StreamVariable(id, type));
+    }
+
+    @Override
+    public void endVisitStoreVariable(String storeId, String attributeName, Attribute.Type type) {
+        stack.push(new ConditionNode.StoreVariable(attributeName));
+    }
+
+    private void markUnsupported(String expression) {
+        if (unsupportedExpression == null) {
+            unsupportedExpression = expression;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package io.siddhi.extension.store.s3.condition;
+
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.condition.Compare;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * S3 Select query filtering objects on the server side, translated from the part of a condition that S3 Select can
+ * evaluate exactly as Siddhi does.
+ * <p>
+ * Comparisons of object fields with constants or stream variables, null checks of object fields, and AND / OR over
+ * those are translated. A top level AND keeps the conjuncts it can translate and leaves the others out, so the query
+ * may match objects the condition does not, but never misses one that the condition matches; the full condition is
+ * still evaluated on the records the query returns. Negations are not translated, since SQL turns comparisons with
+ * nulls into unknown instead of false, and neither are comparisons of FLOAT fields, whose stored decimal text can
+ * compare differently to the float value Siddhi compares.
+ * <p>
+ * Stream variables are bound when the query is rendered for a lookup, so a query compiled once serves every lookup.
+ */
+public class S3SelectQuery {
+
+    public static final String TABLE_ALIAS = "s";
+
+    private static final int MAX_QUERY_LENGTH = 64 * 1024;
+
+    private final Predicate predicate;
+
+    private S3SelectQuery(Predicate predicate) {
+        this.predicate = predicate;
+    }
+
+    /**
+     * Translate the given condition.
+     *
+     * @param condition       condition to be translated
+     * @param fieldAttributes attributes stored as fields of the JSON object body, by name
+     * @return the query, or null if no part of the condition can be translated
+     */
+    public static S3SelectQuery translate(ConditionNode condition, Map<String, Attribute.Type> fieldAttributes) {
+        List<Predicate> conjuncts = new ArrayList<>();
+        collectConjuncts(condition, fieldAttributes, conjuncts);
+        if (conjuncts.isEmpty()) {
+            return null;
+        }
+        Predicate predicate = conjuncts.get(0);
+        for (int i = 1; i < conjuncts.size(); i++) {
+            predicate = new Junction("AND", predicate, conjuncts.get(i));
+        }
+        return new S3SelectQuery(predicate);
+    }
+
+    /**
+     * Render the query matching any of the given stream variable bindings.
+     *
+     * @param parameterMaps values of the stream variables, one map per lookup
+     * @return the SQL expression, or null if a stream variable holds a value of a type the query cannot compare, in
+     * which case the objects have to be filtered on the client side
+     */
+    public String toSql(List<Map<String, Object>> parameterMaps) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM S3Object ").append(TABLE_ALIAS).append(" WHERE ");
+        for (int i = 0; i < parameterMaps.size(); i++) {
+            if (i > 0) {
+                sql.append(" OR ");
+            }
+            sql.append('(');
+            if (!predicate.render(sql, parameterMaps.get(i))) {
+                return null;
+            }
+            sql.append(')');
+            if (sql.length() > MAX_QUERY_LENGTH) {
+                return null;
+            }
+        }
+        return sql.toString();
+    }
+
+    private static void collectConjuncts(ConditionNode node, Map<String, Attribute.Type> fieldAttributes,
+                                         List<Predicate> conjuncts) {
+        if (node instanceof ConditionNode.And) {
+            collectConjuncts(((ConditionNode.And) node).getLeft(), fieldAttributes, conjuncts);
+            collectConjuncts(((ConditionNode.And) node).getRight(), fieldAttributes, conjuncts);
+            return;
+        }
+        Predicate predicate = translateExactly(node, fieldAttributes);
+        if (predicate != null) {
+            conjuncts.add(predicate);
+        }
+    }
+
+    /**
+     * @return a predicate matching exactly the records the node matches, or null if there is none
+     */
+    private static Predicate translateExactly(ConditionNode node, Map<String, Attribute.Type> fieldAttributes) {
+        if (node instanceof ConditionNode.And || node instanceof ConditionNode.Or) {
+            boolean and = node instanceof ConditionNode.And;
+            ConditionNode leftNode = and ? ((ConditionNode.And) node).getLeft() : ((ConditionNode.Or) node).getLeft();
+            ConditionNode rightNode = and ? ((ConditionNode.And) node).getRight()
+                    : ((ConditionNode.Or) node).getRight();
+            Predicate left = translateExactly(leftNode, fieldAttributes);
+            Predicate right = left == null ? null : translateExactly(rightNode, fieldAttributes);
+            return right == null ? null : new Junction(and ? "AND" : "OR", left, right);
+        }
+        if (node instanceof ConditionNode.IsNull) {
+            String field = getField(((ConditionNode.IsNull) node).getOperand(), fieldAttributes);
+            return field == null ? null : new IsNull(field);
+        }
+        if (node instanceof ConditionNode.Comparison) {
+            ConditionNode.Comparison comparison = (ConditionNode.Comparison) node;
+            Compare.Operator operator = comparison.getOperator();
+            ConditionNode fieldNode = comparison.getLeft();
+            ConditionNode valueNode = comparison.getRight();
+            if (getField(fieldNode, fieldAttributes) == null) {
+                // The field may as well be on the right, as in 10 < price
+                fieldNode = comparison.getRight();
+                valueNode = comparison.getLeft();
+                operator = ConditionNode.Comparison.flip(operator);
+            }
+            String field = getField(fieldNode, fieldAttributes);
+            if (field == null || !(valueNode instanceof ConditionNode.Constant
+                    || valueNode instanceof ConditionNode.StreamVariable)) {
+                return null;
+            }
+            Attribute.Type type = fieldAttributes.get(field);
+            if (!isComparable(type, operator)) {
+                return null;
+            }
+            return new Comparison(field, type, operator, valueNode);
+        }
+        return null;
+    }
+
+    private static String getField(ConditionNode node, Map<String, Attribute.Type> fieldAttributes) {
+        if (node instanceof ConditionNode.StoreVariable) {
+            String name = ((ConditionNode.StoreVariable) node).getAttributeName();
+            return fieldAttributes.containsKey(name) ? name : null;
+        }
+        return null;
+    }
+
+    private static boolean isComparable(Attribute.Type type, Compare.Operator operator) {
+        switch (type) {
+            case STRING:
+            case INT:
+            case LONG:
+            case DOUBLE:
+                return true;
+            case BOOL:
+                return operator == Compare.Operator.EQUAL || operator == Compare.Operator.NOT_EQUAL;
+            default:
+                return false;
+        }
+    }
+
+    private static void appendField(StringBuilder sql, String field) {
+        sql.append(TABLE_ALIAS).append(".\"").append(field.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Part of the WHERE clause, rendered once the stream variables are bound.
+     */
+    private interface Predicate {
+
+        /**
+         * @return false if the predicate cannot be rendered with the given stream variable values
+         */
+        boolean render(StringBuilder sql, Map<String, Object> parameters);
+    }
+
+    private static final class Junction implements Predicate {
+        private final String operator;
+        private final Predicate left;
+        private final Predicate right;
+
+        private Junction(String operator, Predicate left, Predicate right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean render(StringBuilder sql, Map<String, Object> parameters) {
+            sql.append('(');
+            if (!left.render(sql, parameters)) {
+                return false;
+            }
+            sql.append(' ').append(operator).append(' ');
+            if (!right.render(sql, parameters)) {
+                return false;
+            }
+            sql.append(')');
+            return true;
+        }
+    }
+
+    private static final class IsNull implements Predicate {
+        private final String field;
+
+        private IsNull(String field) {
+            this.field = field;
+        }
+
+        @Override
+        public boolean render(StringBuilder sql, Map<String, Object> parameters) {
+            appendField(sql, field);
+            sql.append(" IS NULL");
+            return true;
+        }
+    }
+
+    private static final class Comparison implements Predicate {
+        private final String field;
+        private final Attribute.Type type;
+        private final Compare.Operator operator;
+        private final ConditionNode value;
+
+        private Comparison(String field, Attribute.Type type, Compare.Operator operator, ConditionNode value) {
+            this.field = field;
+            this.type = type;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        public boolean render(StringBuilder sql, Map<String, Object> parameters) {
+            Object literal = value.evaluate(null, parameters);
+            appendField(sql, field);
+            sql.append(' ').append(toSql(operator)).append(' ');
+            return appendLiteral(sql, literal);
+        }
+
+        private boolean appendLiteral(StringBuilder sql, Object literal) {
+            if (literal == null) {
+                // Compares as unknown, which filters the object out just as the false Siddhi evaluates to
+                sql.append("NULL");
+                return true;
+            }
+            switch (type) {
+                case STRING:
+                    if (!(literal instanceof String)) {
+                        return false;
+                    }
+                    sql.append('\'').append(((String) literal).replace("'", "''")).append('\'');
+                    return true;
+                case BOOL:
+                    if (!(literal instanceof Boolean)) {
+                        return false;
+                    }
+                    sql.append(literal);
+                    return true;
+                default:
+                    if (literal instanceof Integer || literal instanceof Long) {
+                        sql.append(literal);
+                        return true;
+                    }
+                    if (literal instanceof Float || literal instanceof Double) {
+                        double doubleValue = ((Number) literal).doubleValue();
+                        if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+                            return false;
+                        }
+                        // Plain notation, since exponents are not part of every S3 Select dialect
+                        sql.append(BigDecimal.valueOf(doubleValue).toPlainString());
+                        return true;
+                    }
+                    return false;
+            }
+        }
+
+        private static String toSql(Compare.Operator operator) {
+            switch (operator) {
+                case LESS_THAN:
+                    return "<";
+                case GREATER_THAN:
+                    return ">";
+                case LESS_THAN_EQUAL:
+                    return "<=";
+                case GREATER_THAN_EQUAL:
+                    return ">=";
+                case EQUAL:
+                    return "=";
+                default:
+                    return "!=";
+            }
+        }
+    }
+}
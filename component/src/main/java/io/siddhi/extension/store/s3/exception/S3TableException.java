@@ -0,0 +1,18 @@
+package io.siddhi.extension.store.s3.exception;
+
+/**
+ * Thrown when an S3 table operation fails for a reason that a reconnect would not fix, such as an access denied
+ * error or a record that cannot be serialized.
+ */
+public class S3TableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public S3TableException(String message) {
+        super(message);
+    }
+
+    public S3TableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,89 @@
+package io.siddhi.extension.store.s3.index;
+
+import java.nio.LongBuffer;
+
+/**
+ * Bloom filter over UTF-8 encoded keys, backed by a {@link LongBuffer} so that it can be read straight out of a
+ * memory-mapped index file.
+ * <p>
+ * Bit positions are derived from two 64-bit hashes of the key with double hashing, so a lookup hashes the key once
+ * regardless of the number of hash functions.
+ */
+final class BloomFilter {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final LongBuffer words;
+    private final int hashCount;
+    private final long bitCount;
+
+    BloomFilter(LongBuffer words, int hashCount) {
+        this.words = words;
+        this.hashCount = hashCount;
+        this.bitCount = (long) words.limit() * Long.SIZE;
+    }
+
+    /**
+     * @param expectedKeys number of keys the filter is sized for
+     * @param bitsPerKey   bits spent per key, 10 of which give a false positive rate of about 1%
+     * @return an empty filter
+     */
+    static BloomFilter create(int expectedKeys, int bitsPerKey) {
+        long bits = Math.max(Long.SIZE, (long) expectedKeys * bitsPerKey);
+        int wordCount = (int) Math.min((bits + Long.SIZE - 1) / Long.SIZE, Integer.MAX_VALUE);
+        int hashCount = Math.max(1, (int) Math.round(bitsPerKey * Math.log(2)));
+        return new BloomFilter(LongBuffer.wrap(new long[wordCount]), hashCount);
+    }
+
+    int getHashCount() {
+        return hashCount;
+    }
+
+    LongBuffer getWords() {
+        return words.duplicate();
+    }
+
+    void put(byte[] key) {
+        long hash1 = hash(key);
+        long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            int word = (int) (bit >>> 6);
+            words.put(word, words.get(word) | (1L << bit));
+        }
+    }
+
+    boolean mightContain(byte[] key) {
+        long hash1 = hash(key);
+        long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * FNV-1a over the bytes, finalized with the MurmurHash3 mixer so that all the bits depend on every byte.
+     */
+    private static long hash(byte[] key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,616 @@
+package io.siddhi.extension.store.s3.index;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.util.IOUtils;
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+import io.siddhi.extension.store.s3.util.RecordInputBuffer;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import io.siddhi.extension.store.s3.util.S3RequestPipeline;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Index of the primary keys that have an object in the bucket, so that lookups of missing keys are answered without
+ * a request. For key layouts that cannot derive the object key from the primary key, the index records the object
+ * key of each primary key as well, so that the object of a known key is found without listing the bucket.
+ * <p>
+ * The index is persisted in the bucket as a snapshot object holding the sorted keys and a Bloom filter over them,
+ * plus journal objects recording the keys written and deleted since the snapshot. A journal is written before the
+ * objects of a batch are written and after the objects of a batch are deleted, so the index may claim a key exists
+ * when it does not, which only costs the request a lookup would have made anyway, but never the other way around.
+ * Snapshots are rewritten in the background from the previous snapshot and the journals, after which the journals
+ * are deleted.
+ * <p>
+ * Each snapshot is kept in a local cache directory as well and memory-mapped from there. On start up only the
+ * snapshot that is not cached yet gets downloaded, followed by the journals written since. The bucket is listed in
+ * full only the first time the index is opened, to build the first snapshot. The index assumes that the bucket is
+ * written by a single table.
+ */
+public class KeyIndex {
+
+    private static final Logger log = Logger.getLogger(KeyIndex.class);
+    private static final String SNAPSHOT_PREFIX = "snapshot.";
+    private static final String JOURNAL_PREFIX = "journal.";
+    private static final String SEQUENCE_FORMAT = "%020d";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final byte WRITE = 0;
+    private static final byte DELETE = 1;
+    private static final int MAX_KEYS_PER_DELETE_REQUEST = 1000;
+    private static final String CONTENT_TYPE = "application/octet-stream";
+
+    private final AmazonS3 client;
+    private final String bucketName;
+    private final String prefix;
+    private final Path cacheDirectory;
+    private final long snapshotInterval;
+    private final S3RequestPipeline requestPipeline;
+    private final ScheduledExecutorService scheduler;
+
+    // Changes since the snapshot, by key
+    private final Map<String, Change> changes = new ConcurrentHashMap<>();
+    private final List<String> journals = new ArrayList<>();
+    private final Object lock = new Object();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private volatile KeyIndexFile snapshot;
+    private String snapshotName;
+    private long nextSequence;
+
+    /**
+     * Source of the keys in the bucket, listed when no snapshot exists yet.
+     */
+    public interface KeySource {
+        /**
+         * @param consumer consumer of each key and of its object key, which is null if it need not be recorded
+         */
+        void forEachKey(BiConsumer<String, String> consumer) throws ConnectionUnavailableException;
+    }
+
+    /**
+     * @param name             name used for the background thread
+     * @param client           S3 client
+     * @param bucketName       bucket holding the index objects
+     * @param prefix           key prefix of the index objects
+     * @param cacheDirectory   local directory holding the cached snapshot, used by this index only
+     * @param snapshotInterval interval in milliseconds at which the snapshot is rewritten, if keys changed
+     * @param requestPipeline  pipeline executing the S3 requests
+     */
+    public KeyIndex(String name, AmazonS3 client, String bucketName, String prefix, Path cacheDirectory,
+                    long snapshotInterval, S3RequestPipeline requestPipeline) {
+        this.client = client;
+        this.bucketName = bucketName;
+        this.prefix = prefix;
+        this.cacheDirectory = cacheDirectory;
+        this.snapshotInterval = snapshotInterval;
+        this.requestPipeline = requestPipeline;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-key-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Load the latest snapshot, from the local cache if it holds it, and replay the journals written since. If the
+     * index has no snapshot yet, the keys are listed from the source and the first snapshot is written.
+     *
+     * @param source source of the keys in the bucket
+     * @throws ConnectionUnavailableException if the index objects cannot be read or written
+     */
+    public void open(KeySource source) throws ConnectionUnavailableException {
+        try {
+            Files.createDirectories(cacheDirectory);
+        } catch (IOException e) {
+            throw new S3TableException("Cannot create key index cache directory " + cacheDirectory + ".", e);
+        }
+        List<String> snapshots = new ArrayList<>();
+        List<String> journalNames = new ArrayList<>();
+        ListObjectsV2Request listRequest = new ListObjectsV2Request().withBucketName(bucketName).withPrefix(prefix);
+        ListObjectsV2Result listResult;
+        do {
+            listResult = requestPipeline.execute(() -> client.listObjectsV2(listRequest));
+            for (S3ObjectSummary summary : listResult.getObjectSummaries()) {
+                String name = summary.getKey().substring(prefix.length());
+                if (parseSequence(name, SNAPSHOT_PREFIX) >= 0) {
+                    snapshots.add(name);
+                } else if (parseSequence(name, JOURNAL_PREFIX) >= 0) {
+                    journalNames.add(name);
+                } else {
+                    log.warn("Ignoring object " + summary.getKey() + " of bucket " + bucketName
+                            + ", which is not a key index object.");
+                }
+            }
+            listRequest.setContinuationToken(listResult.getNextContinuationToken());
+        } while (listResult.isTruncated());
+        // Sequences are zero padded, hence names sort in the order they were written
+        Collections.sort(snapshots);
+        Collections.sort(journalNames);
+
+        List<String> obsolete = new ArrayList<>();
+        long lastSequence = 0;
+        if (snapshots.isEmpty()) {
+            Map<String, Change> keys = new HashMap<>();
+            source.forEachKey((key, objectKey) -> keys.put(key, Change.written(objectKey)));
+            for (String journal : journalNames) {
+                lastSequence = Math.max(lastSequence, parseSequence(journal, JOURNAL_PREFIX));
+            }
+            synchronized (lock) {
+                changes.putAll(keys);
+                // The listing already reflects every journal
+                obsolete.addAll(journalNames);
+                nextSequence = Math.max(lastSequence + 1, System.currentTimeMillis());
+            }
+            log.info("Built the key index of bucket " + bucketName + " from " + keys.size() + " listed keys.");
+        } else {
+            String latest = snapshots.get(snapshots.size() - 1);
+            obsolete.addAll(snapshots.subList(0, snapshots.size() - 1));
+            lastSequence = parseSequence(latest, SNAPSHOT_PREFIX);
+            List<String> replayed = new ArrayList<>();
+            for (String journal : journalNames) {
+                long sequence = parseSequence(journal, JOURNAL_PREFIX);
+                if (sequence < lastSequence) {
+                    obsolete.add(journal);
+                } else {
+                    replayed.add(journal);
+                    lastSequence = Math.max(lastSequence, sequence);
+                }
+            }
+            KeyIndexFile loaded = loadSnapshot(latest);
+            List<Callable<byte[]>> journalReads = new ArrayList<>(replayed.size());
+            for (String journal : replayed) {
+                journalReads.add(() -> getObject(journal));
+            }
+            List<byte[]> journalContents = requestPipeline.executeAll(journalReads);
+            synchronized (lock) {
+                for (int i = 0; i < replayed.size(); i++) {
+                    replay(replayed.get(i), journalContents.get(i));
+                }
+                journals.addAll(replayed);
+                snapshot = loaded;
+                snapshotName = latest;
+                nextSequence = Math.max(lastSequence + 1, System.currentTimeMillis());
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Loaded the key index of bucket " + bucketName + " from snapshot " + latest + " with "
+                        + loaded.size() + " keys and " + replayed.size() + " journals.");
+            }
+        }
+        if (!obsolete.isEmpty()) {
+            try {
+                deleteObjects(obsolete);
+            } catch (ConnectionUnavailableException | RuntimeException e) {
+                log.warn("Failed to delete " + obsolete.size() + " superseded key index objects of bucket "
+                        + bucketName + ", they will be deleted on the next start. " + e.getMessage());
+            }
+        }
+        if (snapshot == null) {
+            snapshot();
+        }
+        deleteCachedSnapshots();
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotInterval, snapshotInterval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Whether the key might have an object. False is definite, whereas true may be wrong after a failed write.
+     */
+    public boolean contains(String key) {
+        Change changed = changes.get(key);
+        if (changed != null) {
+            return changed.exists;
+        }
+        KeyIndexFile current = snapshot;
+        return current != null && current.contains(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Object key recorded for the given key, which may be wrong after a failed write like {@link #contains(String)}.
+     *
+     * @param key primary key
+     * @return the object key, or null if the key has no object or its object key was not recorded
+     */
+    public String getObjectKey(String key) {
+        Change changed = changes.get(key);
+        if (changed != null) {
+            return changed.objectKey;
+        }
+        KeyIndexFile current = snapshot;
+        byte[] objectKey = current == null ? null : current.getObjectKey(key.getBytes(StandardCharsets.UTF_8));
+        return objectKey == null ? null : new String(objectKey, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Record keys whose objects are about to be written, without their object keys. Must complete before the
+     * objects are written.
+     *
+     * @param keys keys of the objects
+     * @throws ConnectionUnavailableException if the journal cannot be written
+     */
+    public void recordWrites(Collection<String> keys) throws ConnectionUnavailableException {
+        Map<String, String> objectKeys = new LinkedHashMap<>();
+        keys.forEach(key -> objectKeys.put(key, null));
+        recordWrites(objectKeys);
+    }
+
+    /**
+     * Record keys whose objects are about to be written, along with their object keys. Must complete before the
+     * objects are written.
+     *
+     * @param objectKeys object key of each key, or null if it need not be recorded
+     * @throws ConnectionUnavailableException if the journal cannot be written
+     */
+    public void recordWrites(Map<String, String> objectKeys) throws ConnectionUnavailableException {
+        Map<String, Change> written = new LinkedHashMap<>();
+        objectKeys.forEach((key, objectKey) -> written.put(key, Change.written(objectKey)));
+        journal(WRITE, written);
+    }
+
+    /**
+     * Record keys whose objects got deleted. Must be called only after the objects are deleted.
+     *
+     * @param keys keys of the objects
+     * @throws ConnectionUnavailableException if the journal cannot be written
+     */
+    public void recordDeletes(Collection<String> keys) throws ConnectionUnavailableException {
+        Map<String, Change> deleted = new LinkedHashMap<>();
+        keys.forEach(key -> deleted.put(key, Change.DELETED));
+        journal(DELETE, deleted);
+    }
+
+    /**
+     * Whether the given object belongs to the index, and hence does not hold a record.
+     */
+    public boolean isIndexObject(String objectKey) {
+        return objectKey.startsWith(prefix);
+    }
+
+    public int getJournalCount() {
+        synchronized (lock) {
+            return journals.size();
+        }
+    }
+
+    /**
+     * Write a new snapshot merging the changes since the previous one, and delete the journals it covers.
+     *
+     * @throws ConnectionUnavailableException if the snapshot cannot be written
+     */
+    public void snapshot() throws ConnectionUnavailableException {
+        if (!snapshotLock.tryLock()) {
+            return;
+        }
+        try {
+            Map<String, Change> captured;
+            List<String> covered;
+            KeyIndexFile previous;
+            String previousName;
+            long sequence;
+            synchronized (lock) {
+                if (snapshot != null && journals.isEmpty() && changes.isEmpty()) {
+                    return;
+                }
+                // Every journal with a lower sequence is covered by the snapshot
+                sequence = nextSequence++;
+                captured = new HashMap<>(changes);
+                covered = new ArrayList<>(journals);
+                previous = snapshot;
+                previousName = snapshotName;
+            }
+
+            String name = SNAPSHOT_PREFIX + String.format(SEQUENCE_FORMAT, sequence);
+            Path file = cacheDirectory.resolve(name);
+            Path tempFile = cacheDirectory.resolve(name + TEMP_FILE_SUFFIX);
+            KeyIndexFile written;
+            try {
+                List<byte[]> keys = new ArrayList<>();
+                List<byte[]> objectKeys = new ArrayList<>();
+                merge(previous, captured, keys, objectKeys);
+                KeyIndexFile.write(tempFile, keys, objectKeys);
+                long length = Files.size(tempFile);
+                requestPipeline.execute(() -> {
+                    try (InputStream in = Files.newInputStream(tempFile)) {
+                        ObjectMetadata metadata = new ObjectMetadata();
+                        metadata.setContentType(CONTENT_TYPE);
+                        metadata.setContentLength(length);
+                        return client.putObject(new PutObjectRequest(bucketName, prefix + name, in, metadata));
+                    }
+                });
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                written = KeyIndexFile.open(file);
+            } catch (IOException e) {
+                throw new S3TableException("Failed to write the key index snapshot of bucket " + bucketName + ".",
+                        e);
+            } finally {
+                deleteFile(tempFile);
+            }
+
+            synchronized (lock) {
+                snapshot = written;
+                snapshotName = name;
+                journals.removeAll(covered);
+            }
+            // Changes made while the snapshot was written are newer, and are left in place, as each change is a
+            // distinct instance
+            captured.forEach(changes::remove);
+
+            List<String> obsolete = new ArrayList<>(covered);
+            if (previousName != null) {
+                obsolete.add(previousName);
+            }
+            try {
+                deleteObjects(obsolete);
+            } catch (ConnectionUnavailableException | RuntimeException e) {
+                log.warn("Failed to delete " + obsolete.size() + " superseded key index objects of bucket "
+                        + bucketName + ", they will be deleted on the next start. " + e.getMessage());
+            }
+            if (previous != null) {
+                deleteFile(previous.getPath());
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Wrote key index snapshot " + name + " of bucket " + bucketName + " with " + written.size()
+                        + " keys.");
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the background snapshots and write a final snapshot, so that the next start replays no journals.
+     *
+     * @throws ConnectionUnavailableException if the snapshot cannot be written
+     */
+    public void close() throws ConnectionUnavailableException {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+    }
+
+    /**
+     * Write a journal of the given changes, each key being followed by its object key for writes, or by an empty
+     * string if the object key is not recorded.
+     */
+    private void journal(byte operation, Map<String, Change> keys) throws ConnectionUnavailableException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        RecordOutputBuffer body = new RecordOutputBuffer(keys.size() * 16 + 8);
+        body.write(operation);
+        body.writeVarInt(keys.size());
+        for (Map.Entry<String, Change> entry : keys.entrySet()) {
+            body.writeString(entry.getKey());
+            if (operation == WRITE) {
+                String objectKey = entry.getValue().objectKey;
+                body.writeString(objectKey == null ? "" : objectKey);
+            }
+        }
+        String name;
+        synchronized (lock) {
+            name = JOURNAL_PREFIX + String.format(SEQUENCE_FORMAT, nextSequence++);
+            changes.putAll(keys);
+            journals.add(name);
+        }
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType(CONTENT_TYPE);
+        metadata.setContentLength(body.length());
+        PutObjectRequest request = new PutObjectRequest(bucketName, prefix + name, body.newInputStream(), metadata);
+        requestPipeline.execute(() -> client.putObject(request));
+    }
+
+    private void replay(String journal, byte[] content) {
+        if (content == null) {
+            // Deleted by a snapshot that was written since the listing
+            return;
+        }
+        try {
+            RecordInputBuffer in = new RecordInputBuffer(content, 0, content.length);
+            boolean exists = in.read() == WRITE;
+            int count = in.readVarInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readString();
+                if (exists) {
+                    String objectKey = in.readString();
+                    changes.put(key, Change.written(objectKey.isEmpty() ? null : objectKey));
+                } else {
+                    changes.put(key, Change.DELETED);
+                }
+            }
+        } catch (IOException e) {
+            throw new S3TableException("Key index journal " + journal + " of bucket " + bucketName
+                    + " is corrupted.", e);
+        }
+    }
+
+    /**
+     * Merge the keys of a snapshot with the changes since, in key order, into the given lists of keys and of their
+     * object keys.
+     */
+    private static void merge(KeyIndexFile previous, Map<String, Change> changes, List<byte[]> keys,
+                              List<byte[]> objectKeys) {
+        TreeMap<byte[], Change> sortedChanges = new TreeMap<>(KeyIndexFile.KEY_ORDER);
+        changes.forEach((key, change) -> sortedChanges.put(key.getBytes(StandardCharsets.UTF_8), change));
+        int previousSize = previous == null ? 0 : previous.size();
+        int i = 0;
+        for (Map.Entry<byte[], Change> change : sortedChanges.entrySet()) {
+            byte[] changedKey = change.getKey();
+            while (i < previousSize) {
+                byte[] key = previous.getKey(i);
+                int cmp = KeyIndexFile.KEY_ORDER.compare(key, changedKey);
+                if (cmp > 0) {
+                    break;
+                }
+                if (cmp < 0) {
+                    keys.add(key);
+                    objectKeys.add(previous.getObjectKey(i));
+                }
+                i++;
+            }
+            if (change.getValue().exists) {
+                String objectKey = change.getValue().objectKey;
+                keys.add(changedKey);
+                objectKeys.add(objectKey == null ? null : objectKey.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        for (; i < previousSize; i++) {
+            keys.add(previous.getKey(i));
+            objectKeys.add(previous.getObjectKey(i));
+        }
+    }
+
+    private KeyIndexFile loadSnapshot(String name) throws ConnectionUnavailableException {
+        Path file = cacheDirectory.resolve(name);
+        if (Files.exists(file)) {
+            try {
+                return KeyIndexFile.open(file);
+            } catch (IOException e) {
+                log.warn("Discarding the cached key index snapshot " + file + ". " + e.getMessage());
+            }
+        }
+        Path tempFile = cacheDirectory.resolve(name + TEMP_FILE_SUFFIX);
+        try {
+            requestPipeline.execute(() -> {
+                try (S3Object object = client.getObject(bucketName, prefix + name)) {
+                    return Files.copy(object.getObjectContent(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            });
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return KeyIndexFile.open(file);
+        } catch (IOException e) {
+            throw new S3TableException("Failed to load the key index snapshot " + name + " of bucket " + bucketName
+                    + ".", e);
+        } finally {
+            deleteFile(tempFile);
+        }
+    }
+
+    /**
+     * @return content of the index object, or null if it does not exist
+     */
+    private byte[] getObject(String name) throws IOException {
+        try (S3Object object = client.getObject(bucketName, prefix + name)) {
+            return IOUtils.toByteArray(object.getObjectContent());
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private void deleteObjects(List<String> names) throws ConnectionUnavailableException {
+        for (int from = 0; from < names.size(); from += MAX_KEYS_PER_DELETE_REQUEST) {
+            List<DeleteObjectsRequest.KeyVersion> keys = new ArrayList<>();
+            for (String name : names.subList(from, Math.min(from + MAX_KEYS_PER_DELETE_REQUEST, names.size()))) {
+                keys.add(new DeleteObjectsRequest.KeyVersion(prefix + name));
+            }
+            DeleteObjectsRequest request = new DeleteObjectsRequest(bucketName).withKeys(keys).withQuiet(true);
+            requestPipeline.execute(() -> client.deleteObjects(request));
+        }
+    }
+
+    /**
+     * Remove snapshots of earlier runs from the cache directory, keeping the one in use.
+     */
+    private void deleteCachedSnapshots() {
+        String current;
+        synchronized (lock) {
+            current = snapshotName;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDirectory, SNAPSHOT_PREFIX + "*")) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().equals(current)) {
+                    deleteFile(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up the key index cache directory " + cacheDirectory + ". " + e.getMessage());
+        }
+    }
+
+    private static void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // A mapping of the file may still be in use on some platforms, it is cleaned up on the next start
+            log.debug("Failed to delete " + file + ". " + e.getMessage());
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            log.error("Failed to write the key index snapshot of bucket " + bucketName + ", retrying in "
+                    + snapshotInterval + " ms. " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write or deletion of a key since the snapshot. Changes are compared by identity, so that a snapshot only
+     * drops the changes it captured.
+     */
+    private static final class Change {
+
+        private static final Change DELETED = new Change(false, null);
+
+        private final boolean exists;
+        private final String objectKey;
+
+        private Change(boolean exists, String objectKey) {
+            this.exists = exists;
+            this.objectKey = objectKey;
+        }
+
+        private static Change written(String objectKey) {
+            return new Change(true, objectKey);
+        }
+    }
+
+    /**
+     * @return sequence of an index object name with the given prefix, or -1 if the name does not match
+     */
+    private static long parseSequence(String name, String namePrefix) {
+        if (!name.startsWith(namePrefix) || name.length() != namePrefix.length() + 20) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(namePrefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
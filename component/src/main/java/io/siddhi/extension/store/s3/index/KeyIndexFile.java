@@ -0,0 +1,238 @@
+package io.siddhi.extension.store.s3.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Snapshot of the key index, read through a memory mapping of its local copy.
+ * <p>
+ * The keys are stored sorted by their UTF-8 bytes, preceded by a Bloom filter over them and by the offset of each
+ * key, so that a lookup probes the filter and then binary searches the keys without reading the whole file. The
+ * object key of each key follows, for key layouts that cannot derive it from the key:
+ * <pre>
+ * header             := magic (int) | key count (int) | hash count (int) | filter word count (int)
+ * filter             := word (long)*
+ * offsets            := key offset (int)* | end offset (int)
+ * keys               := UTF-8 bytes of each key, back to back
+ * object key offsets := object key offset (int)* | end offset (int)
+ * object keys        := UTF-8 bytes of the object key of each key, empty if not recorded, back to back
+ * </pre>
+ */
+final class KeyIndexFile {
+
+    static final Comparator<byte[]> KEY_ORDER = KeyIndexFile::compare;
+
+    private static final int MAGIC = 0x5333494f;
+    private static final int HEADER_LENGTH = 16;
+    private static final int BITS_PER_KEY = 10;
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final int keyCount;
+    private final BloomFilter filter;
+    private final int offsetsStart;
+    private final int keysStart;
+    private final int objectKeyOffsetsStart;
+    private final int objectKeysStart;
+
+    private KeyIndexFile(Path path, ByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+            throw new IOException("File " + path + " is not a key index.");
+        }
+        this.keyCount = buffer.getInt(4);
+        int hashCount = buffer.getInt(8);
+        int wordCount = buffer.getInt(12);
+        ByteBuffer words = buffer.duplicate();
+        words.position(HEADER_LENGTH).limit(HEADER_LENGTH + wordCount * Long.BYTES);
+        this.filter = new BloomFilter(words.slice().asLongBuffer(), hashCount);
+        this.offsetsStart = HEADER_LENGTH + wordCount * Long.BYTES;
+        this.keysStart = offsetsStart + (keyCount + 1) * Integer.BYTES;
+        if (keysStart > buffer.limit()) {
+            throw new IOException("Key index file " + path + " is truncated.");
+        }
+        this.objectKeyOffsetsStart = keysStart + offset(keyCount);
+        this.objectKeysStart = objectKeyOffsetsStart + (keyCount + 1) * Integer.BYTES;
+        if (objectKeysStart > buffer.limit() || objectKeysStart + objectKeyOffset(keyCount) != buffer.limit()) {
+            throw new IOException("Key index file " + path + " is truncated.");
+        }
+    }
+
+    /**
+     * Map an index file into memory.
+     */
+    static KeyIndexFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new KeyIndexFile(path, buffer);
+        }
+    }
+
+    /**
+     * Write an index file holding the given keys.
+     *
+     * @param path       file to be written
+     * @param sortedKeys UTF-8 encoded keys, sorted by {@link #KEY_ORDER} and without duplicates
+     * @param objectKeys UTF-8 encoded object key of each key, or null if not recorded
+     */
+    static void write(Path path, List<byte[]> sortedKeys, List<byte[]> objectKeys) throws IOException {
+        BloomFilter filter = BloomFilter.create(sortedKeys.size(), BITS_PER_KEY);
+        long keysLength = 0;
+        for (byte[] key : sortedKeys) {
+            filter.put(key);
+            keysLength += key.length;
+        }
+        for (byte[] objectKey : objectKeys) {
+            keysLength += objectKey == null ? 0 : objectKey.length;
+        }
+        LongBuffer words = filter.getWords();
+        if (HEADER_LENGTH + (long) words.limit() * Long.BYTES + 2 * (sortedKeys.size() + 1L) * Integer.BYTES
+                + keysLength > Integer.MAX_VALUE) {
+            throw new IOException("Key index of " + sortedKeys.size() + " keys exceeds the maximum index size.");
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(sortedKeys.size());
+            out.writeInt(filter.getHashCount());
+            out.writeInt(words.limit());
+            for (int i = 0; i < words.limit(); i++) {
+                out.writeLong(words.get(i));
+            }
+            int offset = 0;
+            for (byte[] key : sortedKeys) {
+                out.writeInt(offset);
+                offset += key.length;
+            }
+            out.writeInt(offset);
+            for (byte[] key : sortedKeys) {
+                out.write(key);
+            }
+            offset = 0;
+            for (byte[] objectKey : objectKeys) {
+                out.writeInt(offset);
+                offset += objectKey == null ? 0 : objectKey.length;
+            }
+            out.writeInt(offset);
+            for (byte[] objectKey : objectKeys) {
+                if (objectKey != null) {
+                    out.write(objectKey);
+                }
+            }
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int size() {
+        return keyCount;
+    }
+
+    boolean contains(byte[] key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return UTF-8 encoded object key of the given key, or null if the key is missing or its object key was not
+     * recorded
+     */
+    byte[] getObjectKey(byte[] key) {
+        int index = indexOf(key);
+        return index < 0 ? null : getObjectKey(index);
+    }
+
+    /**
+     * @return UTF-8 encoded object key of the key at the given index, or null if it was not recorded
+     */
+    byte[] getObjectKey(int index) {
+        int start = objectKeyOffset(index);
+        int length = objectKeyOffset(index + 1) - start;
+        if (length == 0) {
+            return null;
+        }
+        byte[] objectKey = new byte[length];
+        ByteBuffer objectKeys = buffer.duplicate();
+        objectKeys.position(objectKeysStart + start);
+        objectKeys.get(objectKey);
+        return objectKey;
+    }
+
+    /**
+     * @return index of the given key, or -1 if the file does not hold it
+     */
+    private int indexOf(byte[] key) {
+        if (!filter.mightContain(key)) {
+            return -1;
+        }
+        int low = 0;
+        int high = keyCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareAt(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    byte[] getKey(int index) {
+        int start = offset(index);
+        byte[] key = new byte[offset(index + 1) - start];
+        ByteBuffer keys = buffer.duplicate();
+        keys.position(keysStart + start);
+        keys.get(key);
+        return key;
+    }
+
+    private int offset(int index) {
+        return buffer.getInt(offsetsStart + index * Integer.BYTES);
+    }
+
+    private int objectKeyOffset(int index) {
+        return buffer.getInt(objectKeyOffsetsStart + index * Integer.BYTES);
+    }
+
+    /**
+     * Compare the stored key at the given index with a key, without copying the stored key out of the buffer.
+     */
+    private int compareAt(int index, byte[] key) {
+        int start = keysStart + offset(index);
+        int length = keysStart + offset(index + 1) - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+}
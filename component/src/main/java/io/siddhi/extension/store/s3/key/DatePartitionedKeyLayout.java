@@ -0,0 +1,85 @@
+package io.siddhi.extension.store.s3.key;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Prefixes each primary key with the date held by a timestamp attribute of the record, as in
+ * {@code 2019/07/24/order-1001}, which keeps the records of a day together for lifecycle rules and external tools.
+ * <p>
+ * The object key cannot be derived from the primary key alone, hence the table records the object key of each
+ * primary key in its key index. Updates cannot change the date of a record, whereas inserting a record again with
+ * another date moves it to a new object.
+ */
+public class DatePartitionedKeyLayout implements KeyLayout {
+
+    public static final String NAME = "date";
+    public static final String DEFAULT_FORMAT = "yyyy/MM/dd";
+
+    private static final char SEPARATOR = '/';
+
+    private final int timestampIndex;
+    private final DateTimeFormatter formatter;
+    private final int separatorCount;
+
+    /**
+     * @param timestampIndex index of the LONG attribute holding the timestamp of the record, in epoch milliseconds
+     * @param format         pattern of the date prefix, as accepted by {@link DateTimeFormatter}, in UTC
+     */
+    public DatePartitionedKeyLayout(int timestampIndex, String format) {
+        this.timestampIndex = timestampIndex;
+        try {
+            this.formatter = DateTimeFormatter.ofPattern(format).withZone(ZoneOffset.UTC);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid date format '" + format + "' for the key layout: "
+                    + e.getMessage(), e);
+        }
+        // Primary keys may contain separators as well, hence the date prefix is stripped by its number of segments
+        String sample = formatter.format(Instant.EPOCH);
+        int count = 0;
+        for (int i = 0; i < sample.length(); i++) {
+            if (sample.charAt(i) == SEPARATOR) {
+                count++;
+            }
+        }
+        this.separatorCount = count + 1;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isKeyAddressable() {
+        return false;
+    }
+
+    @Override
+    public String toObjectKey(String key, Object[] record) {
+        if (record == null || record[timestampIndex] == null) {
+            return null;
+        }
+        return formatter.format(Instant.ofEpochMilli((Long) record[timestampIndex])) + SEPARATOR + key;
+    }
+
+    @Override
+    public String toKey(String objectKey) {
+        int position = -1;
+        for (int i = 0; i < separatorCount; i++) {
+            position = objectKey.indexOf(SEPARATOR, position + 1);
+            if (position < 0) {
+                return null;
+            }
+        }
+        return objectKey.substring(position + 1);
+    }
+
+    @Override
+    public List<String> getScanPrefixes() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,91 @@
+package io.siddhi.extension.store.s3.key;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Prefixes each primary key with hex characters of its hash, as in {@code 3f/order-1001}, so that sequential keys
+ * are spread evenly over 16^N prefixes.
+ * <p>
+ * The hash is derived from {@link String#hashCode()}, whose value is fixed by the Java specification, so objects are
+ * found again by any node and after restarts.
+ */
+public class HashPrefixKeyLayout implements KeyLayout {
+
+    public static final String NAME = "hash";
+    public static final int MAX_PREFIX_LENGTH = 8;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final char SEPARATOR = '/';
+
+    private final int prefixLength;
+    private final List<String> scanPrefixes;
+
+    /**
+     * @param prefixLength number of hex characters of the hash to prefix the keys with, from 1 to 8
+     */
+    public HashPrefixKeyLayout(int prefixLength) {
+        if (prefixLength < 1 || prefixLength > MAX_PREFIX_LENGTH) {
+            throw new IllegalArgumentException("Hash prefix length should be between 1 and " + MAX_PREFIX_LENGTH
+                    + ", but found " + prefixLength + ".");
+        }
+        this.prefixLength = prefixLength;
+        // Partitioning scans by the first character keeps the number of listing threads bounded
+        List<String> prefixes = new ArrayList<>(HEX_DIGITS.length);
+        for (char digit : HEX_DIGITS) {
+            prefixes.add(String.valueOf(digit));
+        }
+        this.scanPrefixes = Collections.unmodifiableList(prefixes);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isKeyAddressable() {
+        return true;
+    }
+
+    @Override
+    public String toObjectKey(String key, Object[] record) {
+        int hash = mix(key.hashCode());
+        char[] objectKey = new char[prefixLength + 1 + key.length()];
+        for (int i = 0; i < prefixLength; i++) {
+            objectKey[i] = HEX_DIGITS[(hash >>> (28 - 4 * i)) & 0xF];
+        }
+        objectKey[prefixLength] = SEPARATOR;
+        key.getChars(0, key.length(), objectKey, prefixLength + 1);
+        return new String(objectKey);
+    }
+
+    @Override
+    public String toKey(String objectKey) {
+        if (objectKey.length() <= prefixLength || objectKey.charAt(prefixLength) != SEPARATOR) {
+            return null;
+        }
+        String key = objectKey.substring(prefixLength + 1);
+        // Rejects objects that merely look alike, e.g. ones written with a different prefix length
+        return objectKey.regionMatches(0, toObjectKey(key, null), 0, prefixLength) ? key : null;
+    }
+
+    @Override
+    public List<String> getScanPrefixes() {
+        return scanPrefixes;
+    }
+
+    /**
+     * Finalization step of MurmurHash3, so that keys differing only in their last characters, as sequential ones do,
+     * differ in the leading bits of the hash as well.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
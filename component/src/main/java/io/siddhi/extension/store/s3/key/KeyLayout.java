@@ -0,0 +1,43 @@
+package io.siddhi.extension.store.s3.key;
+
+import java.util.List;
+
+/**
+ * Maps primary keys of a table to the keys of the S3 objects holding the records, and back.
+ * <p>
+ * S3 scales request rates per key prefix, so a layout that spreads keys over many prefixes allows higher write
+ * throughput than storing sequential keys as they are. Implementations must be thread safe.
+ */
+public interface KeyLayout {
+
+    /**
+     * @return name of the layout, as given in the {@code key.layout} store parameter
+     */
+    String getName();
+
+    /**
+     * Whether the object key can be derived from the primary key alone. If not, {@link #toObjectKey(String,
+     * Object[])} needs the record, and objects of known primary keys can only be found through the key index.
+     *
+     * @return true if the record is not required to build the object key
+     */
+    boolean isKeyAddressable();
+
+    /**
+     * @param key    primary key of the record
+     * @param record the record, which may be null if the layout is key addressable
+     * @return key of the object holding the record, or null if the record lacks the values needed to build it
+     */
+    String toObjectKey(String key, Object[] record);
+
+    /**
+     * @param objectKey key of an object in the bucket
+     * @return primary key of the record held by the object, or null if the object was not written with this layout
+     */
+    String toKey(String objectKey);
+
+    /**
+     * @return key prefixes that partition the objects written with this layout, for scans to list in parallel
+     */
+    List<String> getScanPrefixes();
+}
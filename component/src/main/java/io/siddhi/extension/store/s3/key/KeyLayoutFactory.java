@@ -0,0 +1,56 @@
+package io.siddhi.extension.store.s3.key;
+
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.List;
+
+/**
+ * Creates {@link KeyLayout}s by the name given in the {@code key.layout} store parameter.
+ */
+public class KeyLayoutFactory {
+
+    private KeyLayoutFactory() {
+    }
+
+    /**
+     * @param name               name of the layout
+     * @param hashPrefixLength   number of hex characters prefixed by the hash layout
+     * @param timestampAttribute name of the attribute holding the timestamp used by the date layout
+     * @param dateFormat         pattern of the date prefix of the date layout
+     * @param attributes         attributes of the table
+     * @return the key layout
+     */
+    public static KeyLayout create(String name, int hashPrefixLength, String timestampAttribute, String dateFormat,
+                                   List<Attribute> attributes) {
+        switch (name.toLowerCase()) {
+            case RawKeyLayout.NAME:
+                return new RawKeyLayout();
+            case HashPrefixKeyLayout.NAME:
+                return new HashPrefixKeyLayout(hashPrefixLength);
+            case DatePartitionedKeyLayout.NAME:
+                return new DatePartitionedKeyLayout(getTimestampIndex(timestampAttribute, attributes), dateFormat);
+            default:
+                throw new IllegalArgumentException("Unsupported key layout '" + name + "'. Supported key layouts "
+                        + "are " + RawKeyLayout.NAME + ", " + HashPrefixKeyLayout.NAME + " and "
+                        + DatePartitionedKeyLayout.NAME + ".");
+        }
+    }
+
+    private static int getTimestampIndex(String timestampAttribute, List<Attribute> attributes) {
+        if (timestampAttribute == null || timestampAttribute.isEmpty()) {
+            throw new IllegalArgumentException("A timestamp attribute should be given for the "
+                    + DatePartitionedKeyLayout.NAME + " key layout.");
+        }
+        for (int i = 0; i < attributes.size(); i++) {
+            if (attributes.get(i).getName().equalsIgnoreCase(timestampAttribute)) {
+                if (attributes.get(i).getType() != Attribute.Type.LONG) {
+                    throw new IllegalArgumentException("Timestamp attribute '" + timestampAttribute + "' of the "
+                            + DatePartitionedKeyLayout.NAME + " key layout should be of type LONG.");
+                }
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Timestamp attribute '" + timestampAttribute + "' of the "
+                + DatePartitionedKeyLayout.NAME + " key layout is not an attribute of the table.");
+    }
+}
@@ -0,0 +1,37 @@
+package io.siddhi.extension.store.s3.key;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stores each record under its primary key as it is. This is the layout of objects written by earlier versions.
+ */
+public class RawKeyLayout implements KeyLayout {
+
+    public static final String NAME = "raw";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isKeyAddressable() {
+        return true;
+    }
+
+    @Override
+    public String toObjectKey(String key, Object[] record) {
+        return key;
+    }
+
+    @Override
+    public String toKey(String objectKey) {
+        return objectKey;
+    }
+
+    @Override
+    public List<String> getScanPrefixes() {
+        return Collections.emptyList();
+    }
+}
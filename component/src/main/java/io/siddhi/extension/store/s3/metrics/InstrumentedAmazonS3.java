@@ -0,0 +1,216 @@
+package io.siddhi.extension.store.s3.metrics;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.CreateBucketRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.SelectObjectContentRequest;
+import com.amazonaws.services.s3.model.SelectObjectContentResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.amazonaws.util.AWSRequestMetrics;
+import io.siddhi.extension.store.s3.metrics.S3StoreMetrics.Request;
+
+import java.util.concurrent.Callable;
+
+/**
+ * {@link AmazonS3} of a single table, recording the requests the table issues through a client that may be shared
+ * with other tables. Only the operations used by the store are supported.
+ * <p>
+ * The retries of the AWS SDK are counted through a {@link RequestMetricCollector} set on each request, which also
+ * counts the throttled attempts among them. Requests that fail after the retries are counted as throttled when S3
+ * asked to slow down, and as errors otherwise.
+ */
+public class InstrumentedAmazonS3 extends AbstractAmazonS3 {
+
+    private final AmazonS3 client;
+    private final S3StoreMetrics metrics;
+
+    public InstrumentedAmazonS3(AmazonS3 client, S3StoreMetrics metrics) {
+        this.client = client;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public PutObjectResult putObject(PutObjectRequest request) {
+        RetryCollector collector = collect(request);
+        PutObjectResult result = execute(Request.PUT, collector, () -> client.putObject(request));
+        if (request.getMetadata() != null && request.getMetadata().getContentLength() > 0) {
+            metrics.recordBytesOut(request.getMetadata().getContentLength());
+        } else if (request.getFile() != null) {
+            metrics.recordBytesOut(request.getFile().length());
+        }
+        return result;
+    }
+
+    @Override
+    public S3Object getObject(String bucketName, String key) {
+        return getObject(new GetObjectRequest(bucketName, key));
+    }
+
+    @Override
+    public S3Object getObject(GetObjectRequest request) {
+        RetryCollector collector = collect(request);
+        S3Object object = execute(Request.GET, collector, () -> client.getObject(request));
+        if (object != null) {
+            metrics.recordBytesIn(object.getObjectMetadata().getContentLength());
+        }
+        return object;
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+        return getObjectMetadata(new GetObjectMetadataRequest(bucketName, key));
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+        RetryCollector collector = collect(request);
+        return execute(Request.HEAD, collector, () -> client.getObjectMetadata(request));
+    }
+
+    @Override
+    public boolean doesObjectExist(String bucketName, String objectName) {
+        return execute(Request.HEAD, null, () -> client.doesObjectExist(bucketName, objectName));
+    }
+
+    @Override
+    public boolean doesBucketExistV2(String bucketName) {
+        return execute(Request.BUCKET, null, () -> client.doesBucketExistV2(bucketName));
+    }
+
+    @Override
+    public Bucket createBucket(CreateBucketRequest request) {
+        RetryCollector collector = collect(request);
+        return execute(Request.BUCKET, collector, () -> client.createBucket(request));
+    }
+
+    @Override
+    public ListObjectsV2Result listObjectsV2(ListObjectsV2Request request) {
+        RetryCollector collector = collect(request);
+        return execute(Request.LIST, collector, () -> client.listObjectsV2(request));
+    }
+
+    @Override
+    public DeleteObjectsResult deleteObjects(DeleteObjectsRequest request) {
+        RetryCollector collector = collect(request);
+        return execute(Request.DELETE, collector, () -> client.deleteObjects(request));
+    }
+
+    @Override
+    public SelectObjectContentResult selectObjectContent(SelectObjectContentRequest request) {
+        RetryCollector collector = collect(request);
+        return execute(Request.SELECT, collector, () -> client.selectObjectContent(request));
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+        RetryCollector collector = collect(request);
+        return execute(Request.MULTIPART, collector, () -> client.initiateMultipartUpload(request));
+    }
+
+    @Override
+    public UploadPartResult uploadPart(UploadPartRequest request) {
+        RetryCollector collector = collect(request);
+        UploadPartResult result = execute(Request.MULTIPART, collector, () -> client.uploadPart(request));
+        metrics.recordBytesOut(request.getPartSize());
+        return result;
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        RetryCollector collector = collect(request);
+        return execute(Request.MULTIPART, collector, () -> client.completeMultipartUpload(request));
+    }
+
+    @Override
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+        RetryCollector collector = collect(request);
+        execute(Request.MULTIPART, collector, () -> {
+            client.abortMultipartUpload(request);
+            return null;
+        });
+    }
+
+    /**
+     * The client is shared with other tables, hence it is released through the
+     * {@link io.siddhi.extension.store.s3.client.S3ClientRegistry} rather than shut down here.
+     */
+    @Override
+    public void shutdown() {
+    }
+
+    private <T> T execute(Request request, RetryCollector collector, Callable<T> call) {
+        long start = metrics.requestStarted(request);
+        T result;
+        try {
+            result = call.call();
+        } catch (AmazonServiceException e) {
+            boolean throttled = RetryUtils.isThrottlingException(e);
+            metrics.requestFailed(request, start, throttled);
+            if (throttled && (collector == null || !collector.collected)) {
+                // The last attempt is counted by the collector when the SDK ran it
+                metrics.recordThrottles(1);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.requestFailed(request, start, false);
+            throw e;
+        } catch (Exception e) {
+            // None of the delegated calls throw checked exceptions
+            metrics.requestFailed(request, start, false);
+            throw new IllegalStateException(e);
+        }
+        metrics.requestCompleted(request, start);
+        return result;
+    }
+
+    private RetryCollector collect(AmazonWebServiceRequest request) {
+        RetryCollector collector = new RetryCollector();
+        request.setRequestMetricCollector(collector);
+        return collector;
+    }
+
+    /**
+     * Collects the retries of a single request, once the SDK completed it.
+     */
+    private final class RetryCollector extends RequestMetricCollector {
+        private volatile boolean collected;
+
+        @Override
+        public void collectMetrics(com.amazonaws.Request<?> request, Response<?> response) {
+            AWSRequestMetrics requestMetrics = request.getAWSRequestMetrics();
+            if (requestMetrics != null && requestMetrics.getTimingInfo() != null) {
+                // Every attempt is counted, the first one included
+                metrics.recordRetries(count(requestMetrics, AWSRequestMetrics.Field.RequestCount) - 1);
+                metrics.recordThrottles(count(requestMetrics, AWSRequestMetrics.Field.ThrottleException));
+            }
+            collected = true;
+        }
+
+        private int count(AWSRequestMetrics requestMetrics, AWSRequestMetrics.Field field) {
+            Number count = requestMetrics.getTimingInfo().getCounter(field.name());
+            return count == null ? 0 : count.intValue();
+        }
+    }
+}
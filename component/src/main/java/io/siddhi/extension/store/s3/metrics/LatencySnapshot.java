@@ -0,0 +1,50 @@
+package io.siddhi.extension.store.s3.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Summary of a {@link LatencyHistogram} at a point in time, in milliseconds.
+ */
+public class LatencySnapshot {
+
+    private final long count;
+    private final double meanMillis;
+    private final double medianMillis;
+    private final double p99Millis;
+    private final double maxMillis;
+
+    @ConstructorProperties({"count", "meanMillis", "medianMillis", "p99Millis", "maxMillis"})
+    public LatencySnapshot(long count, double meanMillis, double medianMillis, double p99Millis, double maxMillis) {
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.medianMillis = medianMillis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getMedianMillis() {
+        return medianMillis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms", count, meanMillis,
+                medianMillis, p99Millis, maxMillis);
+    }
+}
@@ -0,0 +1,361 @@
+package io.siddhi.extension.store.s3.metrics;
+
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.util.SiddhiConstants;
+import io.siddhi.core.util.parser.helper.QueryParserHelper;
+import io.siddhi.core.util.statistics.LatencyTracker;
+import io.siddhi.core.util.statistics.ThroughputTracker;
+import io.siddhi.core.util.statistics.metrics.Level;
+import io.siddhi.extension.store.s3.buffer.WriteBehindBuffer;
+import io.siddhi.extension.store.s3.cache.RecordCache;
+import io.siddhi.extension.store.s3.throttle.AdaptiveRateLimiter;
+import io.siddhi.extension.store.s3.util.S3RequestPipeline;
+import org.apache.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of an S3 table: latencies of the table operations and of the S3 requests issued for them, request errors,
+ * retries and throttles, bytes transferred, time spent on encoding records, and gauges of the request pipeline, the
+ * record cache, the write-behind buffer and the rate limiter.
+ * <p>
+ * Recording never blocks, so the metrics are always collected. They are read through JMX, once
+ * {@link #register(String, String)} is called, and the S3 requests are also reported to the statistics of the Siddhi
+ * app when its metrics level is {@link Level#DETAIL}.
+ */
+public class S3StoreMetrics implements S3StoreMetricsMXBean {
+
+    public static final String OBJECT_NAME_DOMAIN = "io.siddhi.extension.store.s3";
+    private static final Logger log = Logger.getLogger(S3StoreMetrics.class);
+    // Instance registered under each object name, guarding the registrations of all instances
+    private static final Map<ObjectName, S3StoreMetrics> REGISTERED = new HashMap<>();
+
+    /**
+     * Operations of the table.
+     */
+    public enum Operation {
+        ADD, FIND, CONTAINS, DELETE, UPDATE, UPDATE_OR_ADD
+    }
+
+    /**
+     * Types of the S3 requests issued by the table.
+     */
+    public enum Request {
+        GET, PUT, HEAD, LIST, DELETE, SELECT, MULTIPART, BUCKET
+    }
+
+    private final Map<Operation, LatencyHistogram> operationLatencies = new EnumMap<>(Operation.class);
+    private final Map<Request, LatencyHistogram> requestLatencies = new EnumMap<>(Request.class);
+    private final Map<Request, LongAdder> requestErrors = new EnumMap<>(Request.class);
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder throttles = new LongAdder();
+    private final LatencyHistogram serializationLatency = new LatencyHistogram();
+    private final LatencyHistogram deserializationLatency = new LatencyHistogram();
+
+    private volatile S3RequestPipeline requestPipeline;
+    private volatile RecordCache recordCache;
+    private volatile WriteBehindBuffer writeBehindBuffer;
+    private volatile AdaptiveRateLimiter rateLimiter;
+
+    private SiddhiAppContext siddhiAppContext;
+    private Map<Request, LatencyTracker> requestTrackers;
+    private ThroughputTracker bytesInTracker;
+    private ThroughputTracker bytesOutTracker;
+    private ObjectName objectName;
+
+    public S3StoreMetrics() {
+        for (Operation operation : Operation.values()) {
+            operationLatencies.put(operation, new LatencyHistogram());
+        }
+        for (Request request : Request.values()) {
+            requestLatencies.put(request, new LatencyHistogram());
+            requestErrors.put(request, new LongAdder());
+        }
+    }
+
+    /**
+     * Report the S3 requests to the statistics of the given Siddhi app, under the metrics of the table.
+     *
+     * @param siddhiAppContext context of the Siddhi app
+     * @param tableId          id of the table
+     */
+    public void enableSiddhiStatistics(SiddhiAppContext siddhiAppContext, String tableId) {
+        if (siddhiAppContext == null || siddhiAppContext.getStatisticsManager() == null) {
+            return;
+        }
+        Map<Request, LatencyTracker> trackers = new EnumMap<>(Request.class);
+        for (Request request : Request.values()) {
+            LatencyTracker tracker = QueryParserHelper.createLatencyTracker(siddhiAppContext, tableId,
+                    SiddhiConstants.METRIC_INFIX_TABLES, "s3." + request.name().toLowerCase(Locale.ENGLISH));
+            if (tracker != null) {
+                trackers.put(request, tracker);
+            }
+        }
+        this.bytesInTracker = QueryParserHelper.createThroughputTracker(siddhiAppContext, tableId,
+                SiddhiConstants.METRIC_INFIX_TABLES, "s3.bytes.in");
+        this.bytesOutTracker = QueryParserHelper.createThroughputTracker(siddhiAppContext, tableId,
+                SiddhiConstants.METRIC_INFIX_TABLES, "s3.bytes.out");
+        this.requestTrackers = trackers;
+        this.siddhiAppContext = siddhiAppContext;
+    }
+
+    /**
+     * Register the metrics with the platform MBean server, replacing any left behind by an earlier instance of the
+     * table. The earlier instance no longer unregisters the name once replaced. Failures are logged, as the table
+     * works without them.
+     *
+     * @param appName   name of the Siddhi app
+     * @param tableName name of the table
+     */
+    public synchronized void register(String appName, String tableName) {
+        if (objectName != null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = createObjectName(appName, tableName);
+            synchronized (REGISTERED) {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(this, name);
+                REGISTERED.put(name, this);
+            }
+            objectName = name;
+        } catch (JMException | RuntimeException e) {
+            log.warn("Failed to register the metrics of S3 table '" + tableName + "' with JMX: " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            synchronized (REGISTERED) {
+                // The name may have been taken over by a newer instance of the table
+                if (REGISTERED.remove(objectName, this)) {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+                }
+            }
+        } catch (JMException | RuntimeException e) {
+            log.warn("Failed to unregister the metrics " + objectName + " from JMX: " + e.getMessage(), e);
+        }
+        objectName = null;
+    }
+
+    public static ObjectName createObjectName(String appName, String tableName) throws JMException {
+        return new ObjectName(OBJECT_NAME_DOMAIN + ":type=S3Store,app=" + ObjectName.quote(String.valueOf(appName))
+                + ",table=" + ObjectName.quote(tableName));
+    }
+
+    /**
+     * Read the gauges from the given components of the table, any of which may be null.
+     */
+    public void bind(S3RequestPipeline requestPipeline, RecordCache recordCache, WriteBehindBuffer writeBehindBuffer,
+                     AdaptiveRateLimiter rateLimiter) {
+        this.requestPipeline = requestPipeline;
+        this.recordCache = recordCache;
+        this.writeBehindBuffer = writeBehindBuffer;
+        this.rateLimiter = rateLimiter;
+    }
+
+    public void recordOperation(Operation operation, long startNanos) {
+        operationLatencies.get(operation).record(System.nanoTime() - startNanos);
+    }
+
+    public void recordSerialization(long startNanos) {
+        serializationLatency.record(System.nanoTime() - startNanos);
+    }
+
+    public void recordDeserialization(long startNanos) {
+        deserializationLatency.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Mark the start of an S3 request on the calling thread. Must be followed by
+     * {@link #requestCompleted(Request, long)} or {@link #requestFailed(Request, long, boolean)} on the same thread.
+     *
+     * @param request type of the request
+     * @return start time of the request
+     */
+    public long requestStarted(Request request) {
+        LatencyTracker tracker = getTracker(request);
+        if (tracker != null) {
+            tracker.markIn();
+        }
+        return System.nanoTime();
+    }
+
+    public void requestCompleted(Request request, long startNanos) {
+        requestLatencies.get(request).record(System.nanoTime() - startNanos);
+        LatencyTracker tracker = getTracker(request);
+        if (tracker != null) {
+            tracker.markOut();
+        }
+    }
+
+    /**
+     * @param throttled whether S3 asked to slow down, in which case the request is not counted as an error
+     */
+    public void requestFailed(Request request, long startNanos, boolean throttled) {
+        requestCompleted(request, startNanos);
+        if (!throttled) {
+            requestErrors.get(request).increment();
+        }
+    }
+
+    public void recordBytesIn(long bytes) {
+        if (bytes > 0) {
+            bytesIn.add(bytes);
+            if (bytesInTracker != null && isDetailLevel()) {
+                bytesInTracker.eventsIn((int) Math.min(bytes, Integer.MAX_VALUE));
+            }
+        }
+    }
+
+    public void recordBytesOut(long bytes) {
+        if (bytes > 0) {
+            bytesOut.add(bytes);
+            if (bytesOutTracker != null && isDetailLevel()) {
+                bytesOutTracker.eventsIn((int) Math.min(bytes, Integer.MAX_VALUE));
+            }
+        }
+    }
+
+    public void recordRetries(int count) {
+        if (count > 0) {
+            retries.add(count);
+        }
+    }
+
+    public void recordThrottles(int count) {
+        if (count > 0) {
+            throttles.add(count);
+        }
+    }
+
+    public LatencyHistogram getOperationLatency(Operation operation) {
+        return operationLatencies.get(operation);
+    }
+
+    public LatencyHistogram getRequestLatency(Request request) {
+        return requestLatencies.get(request);
+    }
+
+    public long getRequestErrors(Request request) {
+        return requestErrors.get(request).sum();
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getOperationLatencies() {
+        Map<String, LatencySnapshot> snapshots = new LinkedHashMap<>();
+        operationLatencies.forEach((operation, histogram) -> snapshots.put(operation.name(), histogram.snapshot()));
+        return snapshots;
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getRequestLatencies() {
+        Map<String, LatencySnapshot> snapshots = new LinkedHashMap<>();
+        requestLatencies.forEach((request, histogram) -> snapshots.put(request.name(), histogram.snapshot()));
+        return snapshots;
+    }
+
+    @Override
+    public Map<String, Long> getRequestErrors() {
+        Map<String, Long> errors = new LinkedHashMap<>();
+        requestErrors.forEach((request, count) -> errors.put(request.name(), count.sum()));
+        return errors;
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getThrottles() {
+        return throttles.sum();
+    }
+
+    @Override
+    public LatencySnapshot getSerializationLatency() {
+        return serializationLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getDeserializationLatency() {
+        return deserializationLatency.snapshot();
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        S3RequestPipeline pipeline = requestPipeline;
+        return pipeline == null ? 0 : pipeline.getInFlightRequests();
+    }
+
+    @Override
+    public long getCacheHits() {
+        RecordCache cache = recordCache;
+        return cache == null ? 0 : cache.getHitCount();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        RecordCache cache = recordCache;
+        return cache == null ? 0 : cache.getMissCount();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        RecordCache cache = recordCache;
+        return cache == null ? 0 : cache.getEvictionCount();
+    }
+
+    @Override
+    public int getCacheSize() {
+        RecordCache cache = recordCache;
+        return cache == null ? 0 : cache.size();
+    }
+
+    @Override
+    public int getBufferedWrites() {
+        WriteBehindBuffer buffer = writeBehindBuffer;
+        return buffer == null ? 0 : buffer.size();
+    }
+
+    @Override
+    public int getThrottledPrefixes() {
+        AdaptiveRateLimiter limiter = rateLimiter;
+        return limiter == null ? 0 : limiter.getThrottledPrefixCount();
+    }
+
+    private LatencyTracker getTracker(Request request) {
+        return requestTrackers != null && isDetailLevel() ? requestTrackers.get(request) : null;
+    }
+
+    private boolean isDetailLevel() {
+        return Level.DETAIL.compareTo(siddhiAppContext.getRootMetricsLevel()) <= 0;
+    }
+}
@@ -0,0 +1,59 @@
+package io.siddhi.extension.store.s3.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of the metrics of an S3 table, registered with the platform MBean server.
+ */
+public interface S3StoreMetricsMXBean {
+
+    /**
+     * @return latencies of the table operations, by operation
+     */
+    Map<String, LatencySnapshot> getOperationLatencies();
+
+    /**
+     * @return latencies of the S3 requests, by request type
+     */
+    Map<String, LatencySnapshot> getRequestLatencies();
+
+    /**
+     * @return number of failed S3 requests, by request type
+     */
+    Map<String, Long> getRequestErrors();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    /**
+     * @return number of times the S3 client retried requests
+     */
+    long getRetries();
+
+    /**
+     * @return number of requests S3 throttled, with 503 SlowDown or 429 responses
+     */
+    long getThrottles();
+
+    LatencySnapshot getSerializationLatency();
+
+    LatencySnapshot getDeserializationLatency();
+
+    int getInFlightRequests();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getCacheEvictions();
+
+    int getCacheSize();
+
+    int getBufferedWrites();
+
+    /**
+     * @return number of prefixes whose request rate is lowered after S3 throttled them
+     */
+    int getThrottledPrefixes();
+}
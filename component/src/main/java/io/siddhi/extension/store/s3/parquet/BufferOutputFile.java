@@ -0,0 +1,52 @@
+package io.siddhi.extension.store.s3.parquet;
+
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+
+/**
+ * Parquet file written into memory, to be uploaded as a whole once complete.
+ */
+final class BufferOutputFile implements OutputFile {
+
+    private final RecordOutputBuffer buffer;
+
+    BufferOutputFile(RecordOutputBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public PositionOutputStream create(long blockSizeHint) {
+        return new PositionOutputStream() {
+            @Override
+            public long getPos() {
+                return buffer.length();
+            }
+
+            @Override
+            public void write(int b) {
+                buffer.write(b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                buffer.write(bytes, offset, length);
+            }
+        };
+    }
+
+    @Override
+    public PositionOutputStream createOrOverwrite(long blockSizeHint) {
+        return create(blockSizeHint);
+    }
+
+    @Override
+    public boolean supportsBlockSize() {
+        return false;
+    }
+
+    @Override
+    public long defaultBlockSize() {
+        return 0;
+    }
+}
@@ -0,0 +1,147 @@
+package io.siddhi.extension.store.s3.parquet;
+
+import io.siddhi.extension.store.s3.util.RecordInputBuffer;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Layout of the key files written next to the Parquet files.
+ * <p>
+ * Every roll of a {@link ParquetStore} writes a key file listing the keys of the rows of each Parquet file it wrote,
+ * in the order of the rows, and the keys it deleted:
+ * <pre>
+ * key file := magic (int) | file count (varint) | file* | deleted key count (varint) | key*
+ * file     := object key relative to the prefix (varint length + UTF-8) | object size (long)
+ *             | row count (varint) | key*
+ * key      := varint length + UTF-8
+ * </pre>
+ * The key files are much smaller than the Parquet files, as they hold one column only, uncompressed, so the index of
+ * the keys is built from them on start up without reading the Parquet files.
+ * <p>
+ * A snapshot replaces the key files up to a roll with the live rows of every file as of that roll, each with its row
+ * ordinal, so that the number of key files read on start up stays bounded:
+ * <pre>
+ * snapshot      := snapshot magic (int) | file count (varint) | snapshot file*
+ * snapshot file := object key relative to the prefix (varint length + UTF-8) | object size (long)
+ *                  | live row count (varint) | (row ordinal (varint) | key)*
+ * </pre>
+ */
+final class KeyFile {
+
+    private static final int MAGIC = 0x5333504b;
+    private static final int SNAPSHOT_MAGIC = 0x53335053;
+
+    private KeyFile() {
+    }
+
+    static void write(List<DataFile> files, Collection<String> deletedKeys, RecordOutputBuffer out) {
+        out.writeInt(MAGIC);
+        out.writeVarInt(files.size());
+        for (DataFile file : files) {
+            out.writeString(file.name);
+            out.writeLong(file.size);
+            out.writeVarInt(file.keys.size());
+            file.keys.forEach(out::writeString);
+        }
+        out.writeVarInt(deletedKeys.size());
+        deletedKeys.forEach(out::writeString);
+    }
+
+    static void writeSnapshot(List<DataFile> files, RecordOutputBuffer out) {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeVarInt(files.size());
+        for (DataFile file : files) {
+            out.writeString(file.name);
+            out.writeLong(file.size);
+            out.writeVarInt(file.keys.size());
+            for (int i = 0; i < file.keys.size(); i++) {
+                out.writeVarInt(file.getRow(i));
+                out.writeString(file.keys.get(i));
+            }
+        }
+    }
+
+    /**
+     * @param data        bytes of the key file or snapshot
+     * @param deletedKeys receives the deleted keys
+     * @return files listed by the key file
+     * @throws IOException if the bytes are not a key file
+     */
+    static List<DataFile> read(byte[] data, Collection<String> deletedKeys) throws IOException {
+        RecordInputBuffer in = new RecordInputBuffer(data, 0, data.length);
+        int magic = data.length < Integer.BYTES ? 0 : in.readInt();
+        if (magic == SNAPSHOT_MAGIC) {
+            return readSnapshot(in);
+        }
+        if (magic != MAGIC) {
+            throw new IOException("Not a key file, it does not start with the key file magic number.");
+        }
+        int fileCount = in.readVarInt();
+        List<DataFile> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            String name = in.readString();
+            long size = in.readLong();
+            int rowCount = in.readVarInt();
+            List<String> keys = new ArrayList<>(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                keys.add(in.readString());
+            }
+            files.add(new DataFile(name, size, keys));
+        }
+        int deletedCount = in.readVarInt();
+        for (int i = 0; i < deletedCount; i++) {
+            deletedKeys.add(in.readString());
+        }
+        return files;
+    }
+
+    private static List<DataFile> readSnapshot(RecordInputBuffer in) throws IOException {
+        int fileCount = in.readVarInt();
+        List<DataFile> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            String name = in.readString();
+            long size = in.readLong();
+            int liveCount = in.readVarInt();
+            int[] rows = new int[liveCount];
+            List<String> keys = new ArrayList<>(liveCount);
+            for (int j = 0; j < liveCount; j++) {
+                rows[j] = in.readVarInt();
+                keys.add(in.readString());
+            }
+            files.add(new DataFile(name, size, keys, rows));
+        }
+        return files;
+    }
+
+    /**
+     * A Parquet file, with the keys of its rows, or of its live rows only along with their row ordinals.
+     */
+    static final class DataFile {
+        final String name;
+        final long size;
+        final List<String> keys;
+        private final int[] rows;
+
+        DataFile(String name, long size, List<String> keys) {
+            this(name, size, keys, null);
+        }
+
+        DataFile(String name, long size, List<String> keys, int[] rows) {
+            this.name = name;
+            this.size = size;
+            this.keys = keys;
+            this.rows = rows;
+        }
+
+        /**
+         * @return row ordinal of the i-th key
+         */
+        int getRow(int i) {
+            return rows == null ? i : rows[i];
+        }
+    }
+}
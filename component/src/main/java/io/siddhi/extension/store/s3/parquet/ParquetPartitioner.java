@@ -0,0 +1,112 @@
+package io.siddhi.extension.store.s3.parquet;
+
+import io.siddhi.query.api.definition.Attribute;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Places records into the partitions of a table written as Parquet files, named the way Hive names partition
+ * directories, so that Athena, Hive and Spark prune them: {@code <attribute>=<value>/} for partitions by the value of
+ * an attribute, and {@code dt=<date>/} for partitions by time.
+ * <p>
+ * Characters that are not allowed in a partition directory name are escaped as {@code %XX}, and null values go to the
+ * {@value #DEFAULT_PARTITION} partition, as Hive does.
+ */
+public class ParquetPartitioner {
+
+    static final String DEFAULT_PARTITION = "__HIVE_DEFAULT_PARTITION__";
+    private static final String DATE_PARTITION_NAME = "dt";
+
+    private final int attributeIndex;
+    private final String name;
+    private final DateTimeFormatter formatter;
+
+    /**
+     * @param attributes    attributes of the table
+     * @param attributeName attribute to partition by, or null to partition by time or not at all
+     * @param dateFormat    pattern of the dates to partition by, or null to partition by attribute value or not at
+     *                      all. The date is taken from the attribute if given, else from the time of writing
+     * @throws IllegalArgumentException if the attribute does not exist, the date pattern is invalid, or the
+     *                                  attribute does not hold epoch milliseconds while partitioning by time
+     */
+    public ParquetPartitioner(List<Attribute> attributes, String attributeName, String dateFormat) {
+        int index = -1;
+        if (attributeName != null) {
+            for (int i = 0; i < attributes.size(); i++) {
+                if (attributes.get(i).getName().equals(attributeName)) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                throw new IllegalArgumentException("Partition attribute '" + attributeName + "' is not an "
+                        + "attribute of the table.");
+            }
+            if (dateFormat != null && attributes.get(index).getType() != Attribute.Type.LONG) {
+                throw new IllegalArgumentException("Partition attribute '" + attributeName + "' has to be a LONG "
+                        + "holding epoch milliseconds to partition by date, but is a "
+                        + attributes.get(index).getType() + ".");
+            }
+        }
+        this.attributeIndex = index;
+        this.name = dateFormat != null ? DATE_PARTITION_NAME : attributeName;
+        if (dateFormat != null) {
+            try {
+                this.formatter = DateTimeFormatter.ofPattern(dateFormat).withZone(ZoneOffset.UTC);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid partition date format '" + dateFormat + "': "
+                        + e.getMessage(), e);
+            }
+        } else {
+            this.formatter = null;
+        }
+    }
+
+    /**
+     * @param record record to be written
+     * @param time   time of writing, in epoch milliseconds
+     * @return key prefix of the partition of the record, relative to the prefix of the table, empty if the table is
+     * not partitioned
+     */
+    String getPath(Object[] record, long time) {
+        if (name == null) {
+            return "";
+        }
+        Object value = attributeIndex < 0 ? Long.valueOf(time) : record[attributeIndex];
+        String partition;
+        if (value == null) {
+            partition = DEFAULT_PARTITION;
+        } else if (formatter != null) {
+            partition = escape(formatter.format(Instant.ofEpochMilli(((Number) value).longValue())));
+        } else {
+            partition = escape(value.toString());
+        }
+        return name + "=" + partition + "/";
+    }
+
+    /**
+     * Escape the characters Hive escapes in partition directory names.
+     */
+    static String escape(String value) {
+        if (value.isEmpty()) {
+            return DEFAULT_PARTITION;
+        }
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == 0x7f || "\"#%'*/:=?\\{[]^".indexOf(c) >= 0) {
+                if (escaped == null) {
+                    escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+                }
+                escaped.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4 & 0xf, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xf, 16)));
+            } else if (escaped != null) {
+                escaped.append(c);
+            }
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+}
@@ -0,0 +1,917 @@
+package io.siddhi.extension.store.s3.parquet;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.util.IOUtils;
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+import io.siddhi.extension.store.s3.segment.RecordStore;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import io.siddhi.extension.store.s3.util.S3RequestPipeline;
+import io.siddhi.query.api.definition.Attribute;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+import org.apache.parquet.ParquetReadOptions;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.MessageColumnIO;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.Type;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Stores records in columnar Parquet files, for the bucket to be queried by Athena, Hive or Spark.
+ * <p>
+ * Writes are held in memory until their estimated size reaches the maximum size, the roll interval elapses, or the
+ * store is closed. They are then written to a Parquet file per partition, named
+ * {@code <prefix><partition><sequence>.parquet}, followed by a key file named {@code <prefix>_<sequence>.keys}
+ * listing the keys of the rows of those files. Every {@value #KEY_FILES_PER_SNAPSHOT} rolls the key files are
+ * replaced by a snapshot of the index named {@code <prefix>_<sequence>.snapshot}. Query engines skip objects
+ * starting with an underscore, hence the prefix can be declared as the location of an external table as is.
+ * <p>
+ * An index of every key to the file and row ordinal of its latest row is kept in memory, and rebuilt from the latest
+ * snapshot and the key files written since on start up. A point read downloads the footer of the file, which is
+ * cached, and the column chunks of the row group holding the row, which it decodes up to the row. Row groups are
+ * therefore limited to {@value #MAX_ROW_GROUP_SIZE} bytes, well below the sizes query engines favour for scanning,
+ * so that point reads stay cheap. A scan filtering on a few attributes first reads the primary key and the filtered
+ * columns only, and then the remaining columns of the row groups holding matches.
+ * <p>
+ * Files are never rewritten, hence rows that got updated or deleted through the store are hidden from the table by
+ * the index, but remain in their files for the query engines reading the bucket, which see every version of a record
+ * that got written. A bucket prefix must be written by a single store.
+ */
+public class ParquetStore implements RecordStore {
+
+    public static final int MAX_ROW_GROUP_SIZE = 1024 * 1024;
+
+    private static final Logger log = Logger.getLogger(ParquetStore.class);
+    private static final Object[] TOMBSTONE = new Object[0];
+    private static final int FOOTER_CACHE_SIZE = 128;
+    private static final int INITIAL_FILE_CAPACITY = 1024 * 1024;
+    private static final int INITIAL_KEY_FILE_CAPACITY = 64 * 1024;
+    private static final int MAX_KEYS_PER_DELETE_REQUEST = 1000;
+    private static final int RECORD_OVERHEAD = 64;
+    private static final int VALUE_OVERHEAD = 16;
+    private static final String CONTENT_TYPE = "application/octet-stream";
+    private static final String DATA_FILE_SUFFIX = ".parquet";
+    private static final String KEY_FILE_PREFIX = "_";
+    private static final String KEY_FILE_SUFFIX = ".keys";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final int KEY_FILES_PER_SNAPSHOT = 64;
+
+    private final AmazonS3 client;
+    private final String bucketName;
+    private final String prefix;
+    private final List<Attribute> attributes;
+    private final int primaryKeyIndex;
+    private final MessageType schema;
+    private final ParquetPartitioner partitioner;
+    private final long maxBufferSize;
+    private final long rollInterval;
+    private final int rowGroupSize;
+    private final CompressionCodecName compressionCodec;
+    private final S3RequestPipeline requestPipeline;
+    private final ScheduledExecutorService scheduler;
+    private final ParquetReadOptions readOptions = ParquetReadOptions.builder().build();
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final Map<String, FileInfo> files = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private final ReentrantLock rollLock = new ReentrantLock();
+    // Tails of the most recently read files, holding their footers
+    private final Map<String, byte[]> tails = Collections.synchronizedMap(
+            new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                    return size() > FOOTER_CACHE_SIZE;
+                }
+            });
+    private Map<String, Object[]> active = new LinkedHashMap<>();
+    private long activeSize;
+    private Map<String, Object[]> sealing;
+    private long nextSequence;
+    // Key files written since the snapshot, guarded by the roll lock
+    private final List<String> keyFiles = new ArrayList<>();
+    private String snapshotName;
+
+    /**
+     * @param name            name used for the background thread
+     * @param client          S3 client
+     * @param bucketName      bucket holding the files
+     * @param prefix          key prefix of the files
+     * @param attributes      attributes of the table
+     * @param primaryKeyIndex index of the primary key attribute
+     * @param partitioner     places records into partitions
+     * @param maxBufferSize   estimated size in bytes of the records held in memory at which they are written
+     * @param rollInterval    interval in milliseconds at which the records held in memory are written
+     * @param rowGroupSize    size in bytes of the row groups of the files, at most {@value #MAX_ROW_GROUP_SIZE}
+     * @param compression     compression of the column chunks, none, snappy or gzip
+     * @param requestPipeline pipeline executing the S3 requests
+     * @throws IllegalArgumentException if an attribute has a type that cannot be stored in Parquet files, or if
+     *                                  the row group size exceeds the maximum
+     */
+    public ParquetStore(String name, AmazonS3 client, String bucketName, String prefix, List<Attribute> attributes,
+                        int primaryKeyIndex, ParquetPartitioner partitioner, long maxBufferSize, long rollInterval,
+                        int rowGroupSize, String compression, S3RequestPipeline requestPipeline) {
+        this.client = client;
+        this.bucketName = bucketName;
+        this.prefix = prefix;
+        this.attributes = attributes;
+        this.primaryKeyIndex = primaryKeyIndex;
+        this.schema = RecordWriteSupport.createSchema("record", attributes, primaryKeyIndex);
+        this.partitioner = partitioner;
+        this.maxBufferSize = maxBufferSize;
+        this.rollInterval = rollInterval;
+        if (rowGroupSize > MAX_ROW_GROUP_SIZE) {
+            throw new IllegalArgumentException("Row groups of " + rowGroupSize + " bytes exceed the maximum of "
+                    + MAX_ROW_GROUP_SIZE + " bytes, as point reads decode the row group holding the row.");
+        }
+        this.rowGroupSize = rowGroupSize;
+        this.compressionCodec = "none".equalsIgnoreCase(compression)
+                ? CompressionCodecName.UNCOMPRESSED : CompressionCodecName.fromConf(compression.toLowerCase());
+        this.requestPipeline = requestPipeline;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-parquet-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Build the index from the latest snapshot and the key files written since, and start writing the records held
+     * in memory in the background.
+     *
+     * @throws ConnectionUnavailableException if the key files cannot be read
+     */
+    @Override
+    public void open() throws ConnectionUnavailableException {
+        // Key files and snapshots are at the root of the prefix, the data files are below in their partitions
+        TreeMap<String, Long> listedKeyFiles = new TreeMap<>();
+        TreeMap<String, Long> snapshots = new TreeMap<>();
+        ListObjectsV2Request listRequest = new ListObjectsV2Request().withBucketName(bucketName).withPrefix(prefix)
+                .withDelimiter("/");
+        ListObjectsV2Result listResult;
+        do {
+            listResult = requestPipeline.execute(() -> client.listObjectsV2(listRequest));
+            for (S3ObjectSummary summary : listResult.getObjectSummaries()) {
+                if (parseSequence(summary.getKey(), KEY_FILE_SUFFIX) >= 0) {
+                    listedKeyFiles.put(summary.getKey(), summary.getSize());
+                } else if (parseSequence(summary.getKey(), SNAPSHOT_SUFFIX) >= 0) {
+                    snapshots.put(summary.getKey(), summary.getSize());
+                }
+            }
+            listRequest.setContinuationToken(listResult.getNextContinuationToken());
+        } while (listResult.isTruncated());
+
+        // The latest snapshot covers the key files up to its sequence, and is read before the ones written since
+        Map<String, Long> loaded = new LinkedHashMap<>();
+        List<String> obsolete = new ArrayList<>();
+        long lastSequence = 0;
+        String latestSnapshot = snapshots.isEmpty() ? null : snapshots.lastKey();
+        if (latestSnapshot != null) {
+            obsolete.addAll(snapshots.headMap(latestSnapshot).keySet());
+            lastSequence = parseSequence(latestSnapshot, SNAPSHOT_SUFFIX);
+            loaded.put(latestSnapshot, snapshots.get(latestSnapshot));
+        }
+        List<String> replayed = new ArrayList<>();
+        for (Map.Entry<String, Long> keyFile : listedKeyFiles.entrySet()) {
+            long sequence = parseSequence(keyFile.getKey(), KEY_FILE_SUFFIX);
+            if (latestSnapshot != null && sequence <= lastSequence) {
+                obsolete.add(keyFile.getKey());
+            } else {
+                loaded.put(keyFile.getKey(), keyFile.getValue());
+                replayed.add(keyFile.getKey());
+                lastSequence = sequence;
+            }
+        }
+
+        List<Callable<byte[]>> reads = new ArrayList<>(loaded.size());
+        for (Map.Entry<String, Long> keyFile : loaded.entrySet()) {
+            reads.add(() -> {
+                byte[] data = getRange(keyFile.getKey(), 0, keyFile.getValue() - 1);
+                if (data == null) {
+                    throw new S3TableException("Key file " + keyFile.getKey() + " got deleted from bucket "
+                            + bucketName + " while being loaded.");
+                }
+                return data;
+            });
+        }
+        List<byte[]> contents = requestPipeline.executeAll(reads);
+        synchronized (lock) {
+            int i = 0;
+            for (String keyFile : loaded.keySet()) {
+                List<String> deletedKeys = new ArrayList<>();
+                try {
+                    register(KeyFile.read(contents.get(i++), deletedKeys), deletedKeys);
+                } catch (IOException e) {
+                    throw new S3TableException("Failed to read key file " + keyFile + " of bucket " + bucketName
+                            + ": " + e.getMessage(), e);
+                }
+            }
+            nextSequence = Math.max(lastSequence + 1, System.currentTimeMillis());
+        }
+        rollLock.lock();
+        try {
+            keyFiles.addAll(replayed);
+            snapshotName = latestSnapshot;
+        } finally {
+            rollLock.unlock();
+        }
+        if (!obsolete.isEmpty()) {
+            try {
+                deleteObjects(obsolete);
+            } catch (ConnectionUnavailableException | RuntimeException e) {
+                log.warn("Failed to delete " + obsolete.size() + " superseded key files of bucket " + bucketName
+                        + ", they will be deleted on the next start. " + e.getMessage());
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded " + index.size() + " keys of " + files.size() + " Parquet files from "
+                    + (latestSnapshot == null ? "" : "snapshot " + latestSnapshot + " and ") + replayed.size()
+                    + " key files of bucket " + bucketName);
+        }
+        scheduler.scheduleWithFixedDelay(this::rollQuietly, rollInterval, rollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hold records in memory, writing them to files if their size reached the maximum size.
+     *
+     * @param records records with non null primary keys
+     * @throws ConnectionUnavailableException if the records could not be written; they are retained and written
+     *                                        with the next roll
+     */
+    @Override
+    public void write(List<Object[]> records) throws ConnectionUnavailableException {
+        boolean full;
+        synchronized (lock) {
+            for (Object[] record : records) {
+                active.put((String) record[primaryKeyIndex], record.clone());
+                activeSize += estimateSize(record);
+            }
+            full = activeSize >= maxBufferSize;
+        }
+        if (full) {
+            roll();
+        }
+    }
+
+    /**
+     * Mark the given keys as deleted, in the key file of the next roll.
+     *
+     * @param keys keys to be deleted
+     * @throws ConnectionUnavailableException if the records held in memory could not be written
+     */
+    @Override
+    public void delete(Collection<String> keys) throws ConnectionUnavailableException {
+        boolean full;
+        synchronized (lock) {
+            for (String key : keys) {
+                if (exists(key)) {
+                    active.put(key, TOMBSTONE);
+                    activeSize += RECORD_OVERHEAD + 2L * key.length();
+                }
+            }
+            full = activeSize >= maxBufferSize;
+        }
+        if (full) {
+            roll();
+        }
+    }
+
+    /**
+     * Whether a record exists for the key, answered from memory.
+     */
+    @Override
+    public boolean contains(String key) {
+        synchronized (lock) {
+            return exists(key);
+        }
+    }
+
+    /**
+     * Read the record of a key, from the row group holding its row if the record is not held in memory.
+     *
+     * @param key primary key
+     * @return the record, or null if no record exists for the key
+     * @throws ConnectionUnavailableException if the row cannot be read
+     */
+    @Override
+    public Object[] get(String key) throws ConnectionUnavailableException {
+        Location location;
+        synchronized (lock) {
+            Object[] pending = getPending(key);
+            if (pending != null) {
+                return pending == TOMBSTONE ? null : pending.clone();
+            }
+            location = index.get(key);
+        }
+        if (location == null) {
+            return null;
+        }
+        return requestPipeline.execute(() -> readRow(location));
+    }
+
+    @Override
+    public List<Object[]> scan(Predicate<Object[]> filter) throws ConnectionUnavailableException {
+        return scan(filter, null);
+    }
+
+    /**
+     * Read all the records that pass the filter, reading the files in parallel. Unless the filter reads every
+     * attribute, the other columns are read for the row groups holding matching rows only.
+     *
+     * @param filter           records for which the filter returns false are dropped
+     * @param filterAttributes indices of the attributes the filter reads, or null if it may read any
+     * @return matching records
+     * @throws ConnectionUnavailableException if a file cannot be read
+     */
+    @Override
+    public List<Object[]> scan(Predicate<Object[]> filter, Collection<Integer> filterAttributes)
+            throws ConnectionUnavailableException {
+        Map<String, Object[]> pending = new HashMap<>();
+        List<FileInfo> snapshot = new ArrayList<>();
+        Map<String, Location> locations;
+        synchronized (lock) {
+            if (sealing != null) {
+                pending.putAll(sealing);
+            }
+            pending.putAll(active);
+            for (FileInfo info : files.values()) {
+                if (info.liveRows.get() > 0) {
+                    snapshot.add(info);
+                }
+            }
+            // Rows are checked against the index as of the snapshot, as files rolled since are not read
+            locations = new HashMap<>(index);
+        }
+        boolean[] filterColumns = null;
+        if (filterAttributes != null && filterAttributes.size() + 1 < attributes.size()) {
+            filterColumns = new boolean[attributes.size()];
+            filterColumns[primaryKeyIndex] = true;
+            for (int attribute : filterAttributes) {
+                filterColumns[attribute] = true;
+            }
+        }
+        boolean[] projection = filterColumns;
+        List<Callable<List<Object[]>>> reads = new ArrayList<>(snapshot.size());
+        for (FileInfo info : snapshot) {
+            reads.add(() -> scanFile(info, locations, pending, filter, projection));
+        }
+        List<Object[]> matches = new ArrayList<>();
+        for (List<Object[]> fileMatches : requestPipeline.executeAll(reads)) {
+            matches.addAll(fileMatches);
+        }
+        for (Object[] record : pending.values()) {
+            if (record != TOMBSTONE && filter.test(record)) {
+                matches.add(record.clone());
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Write the records held in memory to a file per partition, followed by the key file listing their keys.
+     *
+     * @throws ConnectionUnavailableException if the files cannot be uploaded; the records are retained and written
+     *                                        with the next roll
+     */
+    public void roll() throws ConnectionUnavailableException {
+        rollLock.lock();
+        try {
+            Map<String, Object[]> records;
+            long recordsSize;
+            synchronized (lock) {
+                if (active.isEmpty()) {
+                    return;
+                }
+                records = active;
+                recordsSize = activeSize;
+                sealing = records;
+                active = new LinkedHashMap<>();
+                activeSize = 0;
+            }
+            long sequence = nextSequence++;
+            long time = System.currentTimeMillis();
+            Map<String, List<Object[]>> partitions = new TreeMap<>();
+            List<String> deletedKeys = new ArrayList<>();
+            for (Map.Entry<String, Object[]> entry : records.entrySet()) {
+                if (entry.getValue() == TOMBSTONE) {
+                    deletedKeys.add(entry.getKey());
+                } else {
+                    partitions.computeIfAbsent(partitioner.getPath(entry.getValue(), time),
+                            partition -> new ArrayList<>()).add(entry.getValue());
+                }
+            }
+            List<KeyFile.DataFile> written = new ArrayList<>(partitions.size());
+            Map<String, byte[]> writtenTails = new HashMap<>();
+            try {
+                for (Map.Entry<String, List<Object[]>> partition : partitions.entrySet()) {
+                    String name = partition.getKey() + String.format("%020d", sequence) + DATA_FILE_SUFFIX;
+                    RecordOutputBuffer body = writeFile(name, partition.getValue());
+                    upload(prefix + name, body);
+                    List<String> keys = new ArrayList<>(partition.getValue().size());
+                    for (Object[] record : partition.getValue()) {
+                        keys.add((String) record[primaryKeyIndex]);
+                    }
+                    written.add(new KeyFile.DataFile(name, body.length(), keys));
+                    writtenTails.put(prefix + name, Arrays.copyOfRange(body.getBuffer(),
+                            Math.max(0, body.size() - RangedInputFile.READ_AHEAD), body.size()));
+                }
+                RecordOutputBuffer keyFile = new RecordOutputBuffer(INITIAL_KEY_FILE_CAPACITY);
+                KeyFile.write(written, deletedKeys, keyFile);
+                String keyFileName = prefix + KEY_FILE_PREFIX + String.format("%020d", sequence) + KEY_FILE_SUFFIX;
+                upload(keyFileName, keyFile);
+                keyFiles.add(keyFileName);
+            } catch (ConnectionUnavailableException | RuntimeException e) {
+                deleteQuietly(written);
+                synchronized (lock) {
+                    // Newer records held in memory have to take precedence over the ones that failed
+                    Map<String, Object[]> merged = new LinkedHashMap<>(records);
+                    merged.putAll(active);
+                    active = merged;
+                    activeSize += recordsSize;
+                    sealing = null;
+                }
+                throw e;
+            }
+            tails.putAll(writtenTails);
+            synchronized (lock) {
+                register(written, deletedKeys);
+                sealing = null;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Wrote " + (records.size() - deletedKeys.size()) + " records to " + written.size()
+                        + " Parquet files and deleted " + deletedKeys.size() + " keys in bucket " + bucketName);
+            }
+            if (keyFiles.size() >= KEY_FILES_PER_SNAPSHOT) {
+                snapshotQuietly();
+            }
+        } finally {
+            rollLock.unlock();
+        }
+    }
+
+    /**
+     * Write a snapshot of the index replacing the previous one and the key files written since, and delete those.
+     *
+     * @throws ConnectionUnavailableException if the snapshot cannot be written
+     */
+    public void snapshot() throws ConnectionUnavailableException {
+        rollLock.lock();
+        try {
+            if (keyFiles.isEmpty()) {
+                return;
+            }
+            // Rolls are held off, hence the index reflects exactly the key files written so far
+            Map<String, List<Map.Entry<String, Location>>> liveRows = new TreeMap<>();
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                liveRows.computeIfAbsent(entry.getValue().file.name, file -> new ArrayList<>()).add(entry);
+            }
+            List<KeyFile.DataFile> dataFiles = new ArrayList<>(liveRows.size());
+            for (Map.Entry<String, List<Map.Entry<String, Location>>> file : liveRows.entrySet()) {
+                List<Map.Entry<String, Location>> rows = file.getValue();
+                List<String> keys = new ArrayList<>(rows.size());
+                int[] rowOrdinals = new int[rows.size()];
+                for (int i = 0; i < rows.size(); i++) {
+                    keys.add(rows.get(i).getKey());
+                    rowOrdinals[i] = rows.get(i).getValue().row;
+                }
+                dataFiles.add(new KeyFile.DataFile(file.getKey().substring(prefix.length()),
+                        rows.get(0).getValue().file.size, keys, rowOrdinals));
+            }
+            RecordOutputBuffer body = new RecordOutputBuffer(INITIAL_KEY_FILE_CAPACITY);
+            KeyFile.writeSnapshot(dataFiles, body);
+            long sequence = parseSequence(keyFiles.get(keyFiles.size() - 1), KEY_FILE_SUFFIX);
+            String name = prefix + KEY_FILE_PREFIX + String.format("%020d", sequence) + SNAPSHOT_SUFFIX;
+            upload(name, body);
+
+            List<String> obsolete = new ArrayList<>(keyFiles);
+            if (snapshotName != null) {
+                obsolete.add(snapshotName);
+            }
+            keyFiles.clear();
+            snapshotName = name;
+            // Files without live rows are left out of the snapshot
+            files.values().removeIf(info -> info.liveRows.get() == 0);
+            try {
+                deleteObjects(obsolete);
+            } catch (ConnectionUnavailableException | RuntimeException e) {
+                log.warn("Failed to delete " + obsolete.size() + " superseded key files of bucket " + bucketName
+                        + ", they will be deleted on the next start. " + e.getMessage());
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Wrote key snapshot " + name + " of bucket " + bucketName + " with " + index.size()
+                        + " keys of " + dataFiles.size() + " Parquet files.");
+            }
+        } finally {
+            rollLock.unlock();
+        }
+    }
+
+    /**
+     * Stop writing in the background, and write the records held in memory.
+     *
+     * @throws ConnectionUnavailableException if the records held in memory cannot be written
+     */
+    @Override
+    public void close() throws ConnectionUnavailableException {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            scheduler.shutdownNow();
+        }
+        roll();
+    }
+
+    /**
+     * @return number of keys in the index
+     */
+    public int getIndexSize() {
+        return index.size();
+    }
+
+    public int getFileCount() {
+        return files.size();
+    }
+
+    /**
+     * @return number of key files written since the snapshot
+     */
+    public int getKeyFileCount() {
+        rollLock.lock();
+        try {
+            return keyFiles.size();
+        } finally {
+            rollLock.unlock();
+        }
+    }
+
+    private void rollQuietly() {
+        try {
+            roll();
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            log.error("Failed to write Parquet files to bucket " + bucketName + ", their records will be written "
+                    + "with the next roll. " + e.getMessage(), e);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            log.error("Failed to write the key snapshot of bucket " + bucketName + ", the key files will be "
+                    + "replaced by the next one. " + e.getMessage(), e);
+        }
+    }
+
+    private boolean exists(String key) {
+        Object[] pending = getPending(key);
+        if (pending != null) {
+            return pending != TOMBSTONE;
+        }
+        return index.containsKey(key);
+    }
+
+    private Object[] getPending(String key) {
+        Object[] pending = active.get(key);
+        if (pending == null && sealing != null) {
+            pending = sealing.get(key);
+        }
+        return pending;
+    }
+
+    private long estimateSize(Object[] record) {
+        long size = RECORD_OVERHEAD;
+        for (Object value : record) {
+            size += value instanceof String ? VALUE_OVERHEAD + 2L * ((String) value).length() : VALUE_OVERHEAD;
+        }
+        return size;
+    }
+
+    /**
+     * Point the index to the rows of the files of a roll, and drop the deleted keys. Called with the lock held, in
+     * the order the rolls happened.
+     */
+    private void register(List<KeyFile.DataFile> dataFiles, List<String> deletedKeys) {
+        for (KeyFile.DataFile dataFile : dataFiles) {
+            FileInfo info = new FileInfo(prefix + dataFile.name, dataFile.size);
+            files.put(info.name, info);
+            for (int i = 0; i < dataFile.keys.size(); i++) {
+                info.liveRows.incrementAndGet();
+                Location previous = index.put(dataFile.keys.get(i), new Location(info, dataFile.getRow(i)));
+                if (previous != null) {
+                    previous.file.liveRows.decrementAndGet();
+                }
+            }
+        }
+        for (String key : deletedKeys) {
+            Location previous = index.remove(key);
+            if (previous != null) {
+                previous.file.liveRows.decrementAndGet();
+            }
+        }
+    }
+
+    private RecordOutputBuffer writeFile(String name, List<Object[]> records) {
+        RecordOutputBuffer body = new RecordOutputBuffer(INITIAL_FILE_CAPACITY);
+        try (ParquetWriter<Object[]> writer = new WriterBuilder(new BufferOutputFile(body), schema, attributes)
+                .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+                .withCompressionCodec(compressionCodec)
+                .withRowGroupSize(rowGroupSize)
+                .build()) {
+            for (Object[] record : records) {
+                writer.write(record);
+            }
+        } catch (IOException e) {
+            throw new S3TableException("Failed to write Parquet file " + name + ": " + e.getMessage(), e);
+        }
+        return body;
+    }
+
+    private Object[] readRow(Location location) throws IOException {
+        RangedInputFile input = openFile(location.file);
+        try (ParquetFileReader reader = new ParquetFileReader(input, readOptions)) {
+            long row = location.row;
+            for (BlockMetaData rowGroup : reader.getRowGroups()) {
+                if (row < rowGroup.getRowCount()) {
+                    RecordReader<Object[]> rows = newRecordReader(reader, reader.readNextRowGroup(), schema);
+                    for (long skipped = 0; skipped < row; skipped++) {
+                        rows.read();
+                    }
+                    return rows.read();
+                }
+                row -= rowGroup.getRowCount();
+                reader.skipNextRowGroup();
+            }
+        } finally {
+            cacheTail(location.file, input);
+        }
+        throw new S3TableException("Parquet file " + location.file.name + " of bucket " + bucketName
+                + " holds less than " + (location.row + 1) + " rows.");
+    }
+
+    private List<Object[]> scanFile(FileInfo info, Map<String, Location> locations, Map<String, Object[]> pending,
+                                    Predicate<Object[]> filter, boolean[] filterColumns) throws IOException {
+        RangedInputFile input = openFile(info);
+        try {
+            MessageType filterSchema = filterColumns == null ? schema : project(filterColumns, true);
+            MessageType otherSchema = filterColumns == null ? null : project(filterColumns, false);
+            List<List<Object[]>> matchesByRowGroup = new ArrayList<>();
+            List<List<Long>> matchingRowsByRowGroup = new ArrayList<>();
+            try (ParquetFileReader reader = new ParquetFileReader(input, readOptions)) {
+                reader.setRequestedSchema(filterSchema);
+                long row = 0;
+                for (BlockMetaData rowGroup : reader.getRowGroups()) {
+                    RecordReader<Object[]> rows = newRecordReader(reader, reader.readNextRowGroup(), filterSchema);
+                    List<Object[]> matches = new ArrayList<>();
+                    List<Long> matchingRows = new ArrayList<>();
+                    for (long i = 0; i < rowGroup.getRowCount(); i++, row++) {
+                        Object[] record = rows.read();
+                        String key = (String) record[primaryKeyIndex];
+                        if (isLive(info, row, key, locations, pending) && filter.test(record)) {
+                            matches.add(record);
+                            matchingRows.add(i);
+                        }
+                    }
+                    matchesByRowGroup.add(matches);
+                    matchingRowsByRowGroup.add(matchingRows);
+                }
+            }
+            if (otherSchema == null) {
+                List<Object[]> matches = new ArrayList<>();
+                matchesByRowGroup.forEach(matches::addAll);
+                return matches;
+            }
+
+            // The other columns are read for the row groups holding matching rows only
+            List<Object[]> matches = new ArrayList<>();
+            try (ParquetFileReader reader = new ParquetFileReader(input, readOptions)) {
+                reader.setRequestedSchema(otherSchema);
+                for (int rowGroup = 0; rowGroup < matchesByRowGroup.size(); rowGroup++) {
+                    List<Object[]> partialMatches = matchesByRowGroup.get(rowGroup);
+                    if (partialMatches.isEmpty()) {
+                        reader.skipNextRowGroup();
+                        continue;
+                    }
+                    List<Long> matchingRows = matchingRowsByRowGroup.get(rowGroup);
+                    RecordReader<Object[]> rows = newRecordReader(reader, reader.readNextRowGroup(), otherSchema);
+                    long next = 0;
+                    for (int i = 0; i < partialMatches.size(); i++) {
+                        Object[] record = null;
+                        for (; next <= matchingRows.get(i); next++) {
+                            record = rows.read();
+                        }
+                        Object[] match = partialMatches.get(i);
+                        for (int attribute = 0; attribute < match.length; attribute++) {
+                            if (!filterColumns[attribute]) {
+                                match[attribute] = record[attribute];
+                            }
+                        }
+                        matches.add(match);
+                    }
+                }
+            }
+            return matches;
+        } finally {
+            cacheTail(info, input);
+        }
+    }
+
+    /**
+     * Only the latest row of each key is live, and records held in memory are newer still.
+     */
+    private boolean isLive(FileInfo info, long row, String key, Map<String, Location> locations,
+                           Map<String, Object[]> pending) {
+        Location location = locations.get(key);
+        return location != null && location.file == info && location.row == row && !pending.containsKey(key);
+    }
+
+    /**
+     * @return schema of the columns that are, or are not, flagged
+     */
+    private MessageType project(boolean[] columns, boolean flagged) {
+        List<Type> fields = new ArrayList<>();
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] == flagged) {
+                fields.add(schema.getType(i));
+            }
+        }
+        return new MessageType(schema.getName(), fields);
+    }
+
+    private RecordReader<Object[]> newRecordReader(ParquetFileReader reader, PageReadStore rowGroup,
+                                                   MessageType requestedSchema) {
+        MessageColumnIO columnIO = new ColumnIOFactory().getColumnIO(requestedSchema,
+                reader.getFileMetaData().getSchema());
+        return columnIO.getRecordReader(rowGroup, new RecordArrayMaterializer(requestedSchema, attributes));
+    }
+
+    private RangedInputFile openFile(FileInfo info) {
+        return new RangedInputFile(info.size, tails.get(info.name), (start, end) -> {
+            byte[] range = getRange(info.name, start, end);
+            if (range == null) {
+                throw new S3TableException("Parquet file " + info.name + " is missing from bucket " + bucketName
+                        + ".");
+            }
+            return range;
+        });
+    }
+
+    private void cacheTail(FileInfo info, RangedInputFile input) throws IOException {
+        if (!tails.containsKey(info.name)) {
+            tails.put(info.name, input.getTail());
+        }
+    }
+
+    /**
+     * @return bytes of the given inclusive range of the object, or null if the object does not exist
+     */
+    private byte[] getRange(String objectKey, long start, long end) throws IOException {
+        GetObjectRequest request = new GetObjectRequest(bucketName, objectKey).withRange(start, end);
+        try (S3Object object = client.getObject(request)) {
+            return IOUtils.toByteArray(object.getObjectContent());
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private void upload(String objectKey, RecordOutputBuffer body) throws ConnectionUnavailableException {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType(CONTENT_TYPE);
+        metadata.setContentLength(body.length());
+        PutObjectRequest request = new PutObjectRequest(bucketName, objectKey, body.newInputStream(), metadata);
+        requestPipeline.execute(() -> client.putObject(request));
+    }
+
+    /**
+     * Delete the files of a failed roll, so that the query engines do not see their rows once more when they get
+     * written by the next roll. Files that cannot be deleted are left behind.
+     */
+    private void deleteQuietly(List<KeyFile.DataFile> dataFiles) {
+        List<String> objectKeys = new ArrayList<>(dataFiles.size());
+        dataFiles.forEach(dataFile -> objectKeys.add(prefix + dataFile.name));
+        try {
+            deleteObjects(objectKeys);
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            log.warn("Failed to delete " + dataFiles.size() + " Parquet files of a failed roll from bucket "
+                    + bucketName + ", their rows will be seen twice by queries of the bucket. " + e.getMessage());
+        }
+    }
+
+    private void deleteObjects(List<String> objectKeys) throws ConnectionUnavailableException {
+        for (int from = 0; from < objectKeys.size(); from += MAX_KEYS_PER_DELETE_REQUEST) {
+            List<DeleteObjectsRequest.KeyVersion> keys = new ArrayList<>();
+            for (String objectKey : objectKeys.subList(from,
+                    Math.min(from + MAX_KEYS_PER_DELETE_REQUEST, objectKeys.size()))) {
+                keys.add(new DeleteObjectsRequest.KeyVersion(objectKey));
+            }
+            DeleteObjectsRequest request = new DeleteObjectsRequest(bucketName).withKeys(keys).withQuiet(true);
+            requestPipeline.execute(() -> client.deleteObjects(request));
+        }
+    }
+
+    /**
+     * @return sequence of a key file or snapshot with the given suffix, or -1 if the object key is not one
+     */
+    private long parseSequence(String objectKey, String suffix) {
+        String name = objectKey.substring(prefix.length());
+        if (!name.startsWith(KEY_FILE_PREFIX) || !name.endsWith(suffix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(KEY_FILE_PREFIX.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Location of the latest row of a key.
+     */
+    private static final class Location {
+        private final FileInfo file;
+        private final int row;
+
+        private Location(FileInfo file, int row) {
+            this.file = file;
+            this.row = row;
+        }
+    }
+
+    /**
+     * A Parquet file, with the number of rows the index points to.
+     */
+    private static final class FileInfo {
+        private final String name;
+        private final long size;
+        private final AtomicInteger liveRows = new AtomicInteger();
+
+        private FileInfo(String name, long size) {
+            this.name = name;
+            this.size = size;
+        }
+    }
+
+    private static final class WriterBuilder extends ParquetWriter.Builder<Object[], WriterBuilder> {
+        private final MessageType schema;
+        private final List<Attribute> attributes;
+
+        private WriterBuilder(OutputFile file, MessageType schema, List<Attribute> attributes) {
+            super(file);
+            this.schema = schema;
+            this.attributes = attributes;
+        }
+
+        @Override
+        protected WriterBuilder self() {
+            return this;
+        }
+
+        @Override
+        protected WriteSupport<Object[]> getWriteSupport(Configuration configuration) {
+            return new RecordWriteSupport(schema, attributes);
+        }
+    }
+}
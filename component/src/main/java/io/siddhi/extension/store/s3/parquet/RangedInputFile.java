@@ -0,0 +1,190 @@
+package io.siddhi.extension.store.s3.parquet;
+
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.SeekableInputStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Parquet file read from an S3 object with ranged requests.
+ * <p>
+ * The tail of the object, which holds the footer, is read ahead with a single request and kept, so that the many
+ * small reads of parsing the footer are served from memory, and so that the tail can be cached for the next reads
+ * of the file. Column chunks are read with a request each for exactly their range, hence only the columns being
+ * read are downloaded.
+ */
+final class RangedInputFile implements InputFile {
+
+    static final int READ_AHEAD = 64 * 1024;
+
+    private final long length;
+    private final RangeReader reader;
+    private byte[] tail;
+    private long tailStart;
+
+    /**
+     * @param length length of the object
+     * @param tail   bytes at the end of the object, if known from an earlier read of the file, or null
+     * @param reader reads ranges of the object
+     */
+    RangedInputFile(long length, byte[] tail, RangeReader reader) {
+        this.length = length;
+        this.reader = reader;
+        if (tail != null) {
+            this.tail = tail;
+            this.tailStart = length - tail.length;
+        }
+    }
+
+    /**
+     * @return bytes at the end of the object, holding the footer unless it is larger than {@value #READ_AHEAD}
+     * bytes
+     * @throws IOException if the tail cannot be read
+     */
+    byte[] getTail() throws IOException {
+        if (tail == null) {
+            tailStart = Math.max(0, length - READ_AHEAD);
+            tail = reader.read(tailStart, length - 1);
+        }
+        return tail;
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public SeekableInputStream newStream() {
+        return new RangedInputStream();
+    }
+
+    /**
+     * Reads a range of the object.
+     */
+    @FunctionalInterface
+    interface RangeReader {
+
+        /**
+         * @param start first byte of the range
+         * @param end   last byte of the range, inclusive
+         * @return bytes of the range
+         * @throws IOException if the range cannot be read
+         */
+        byte[] read(long start, long end) throws IOException;
+    }
+
+    private final class RangedInputStream extends SeekableInputStream {
+        private long position;
+        // Bytes read ahead for the last short read outside of the tail
+        private byte[] window = new byte[0];
+        private long windowStart;
+
+        @Override
+        public long getPos() {
+            return position;
+        }
+
+        @Override
+        public void seek(long newPosition) throws IOException {
+            if (newPosition < 0 || newPosition > length) {
+                throw new EOFException("Cannot seek to " + newPosition + " of a file of " + length + " bytes.");
+            }
+            position = newPosition;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, length - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int count) throws IOException {
+            return read(bytes, offset, count, false);
+        }
+
+        @Override
+        public void readFully(byte[] bytes) throws IOException {
+            read(bytes, 0, bytes.length, true);
+        }
+
+        @Override
+        public void readFully(byte[] bytes, int offset, int count) throws IOException {
+            read(bytes, offset, count, true);
+        }
+
+        @Override
+        public int read(ByteBuffer buffer) throws IOException {
+            return read(buffer, false);
+        }
+
+        @Override
+        public void readFully(ByteBuffer buffer) throws IOException {
+            read(buffer, true);
+        }
+
+        private int read(ByteBuffer buffer, boolean fully) throws IOException {
+            if (buffer.hasArray()) {
+                int read = read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), fully);
+                if (read > 0) {
+                    buffer.position(buffer.position() + read);
+                }
+                return read;
+            }
+            byte[] bytes = new byte[buffer.remaining()];
+            int read = read(bytes, 0, bytes.length, fully);
+            if (read > 0) {
+                buffer.put(bytes, 0, read);
+            }
+            return read;
+        }
+
+        private int read(byte[] bytes, int offset, int count, boolean fully) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+            long available = length - position;
+            if (available <= 0 || (fully && available < count)) {
+                if (fully) {
+                    throw new EOFException("Cannot read " + count + " bytes at " + position + " of a file of "
+                            + length + " bytes.");
+                }
+                return -1;
+            }
+            int wanted = (int) Math.min(count, available);
+            byte[] source;
+            long sourceStart;
+            if (position >= (tail == null ? Math.max(0, length - READ_AHEAD) : tailStart)) {
+                source = getTail();
+                sourceStart = tailStart;
+            } else if (position >= windowStart && position + wanted <= windowStart + window.length) {
+                source = window;
+                sourceStart = windowStart;
+            } else if (fully) {
+                byte[] range = reader.read(position, position + wanted - 1);
+                System.arraycopy(range, 0, bytes, offset, wanted);
+                position += wanted;
+                return wanted;
+            } else {
+                windowStart = position;
+                window = reader.read(position, Math.min(length, position + READ_AHEAD) - 1);
+                source = window;
+                sourceStart = windowStart;
+            }
+            int read = (int) Math.min(wanted, sourceStart + source.length - position);
+            System.arraycopy(source, (int) (position - sourceStart), bytes, offset, read);
+            position += read;
+            return read;
+        }
+    }
+}
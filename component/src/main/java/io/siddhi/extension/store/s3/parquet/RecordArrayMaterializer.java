@@ -0,0 +1,110 @@
+package io.siddhi.extension.store.s3.parquet;
+
+import io.siddhi.query.api.definition.Attribute;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.Converter;
+import org.apache.parquet.io.api.GroupConverter;
+import org.apache.parquet.io.api.PrimitiveConverter;
+import org.apache.parquet.io.api.RecordMaterializer;
+import org.apache.parquet.schema.MessageType;
+
+import java.util.List;
+
+/**
+ * Assembles Parquet rows written by {@link RecordWriteSupport} back into records held as arrays of attribute values.
+ * Only the columns of the requested schema are read, the other attributes of the records are left null.
+ */
+final class RecordArrayMaterializer extends RecordMaterializer<Object[]> {
+
+    private final int attributeCount;
+    private final ValueConverter[] converters;
+    private final GroupConverter root;
+    private Object[] current;
+
+    /**
+     * @param requestedSchema columns to be read, a subset of the columns written for the attributes
+     * @param attributes      attributes of the table
+     */
+    RecordArrayMaterializer(MessageType requestedSchema, List<Attribute> attributes) {
+        this.attributeCount = attributes.size();
+        this.converters = new ValueConverter[requestedSchema.getFieldCount()];
+        for (int i = 0; i < converters.length; i++) {
+            String name = requestedSchema.getFieldName(i);
+            for (int index = 0; index < attributes.size(); index++) {
+                if (attributes.get(index).getName().equals(name)) {
+                    converters[i] = new ValueConverter(index);
+                    break;
+                }
+            }
+            if (converters[i] == null) {
+                throw new IllegalArgumentException("Column '" + name + "' is not an attribute of the table.");
+            }
+        }
+        this.root = new GroupConverter() {
+            @Override
+            public Converter getConverter(int fieldIndex) {
+                return converters[fieldIndex];
+            }
+
+            @Override
+            public void start() {
+                current = new Object[attributeCount];
+            }
+
+            @Override
+            public void end() {
+            }
+        };
+    }
+
+    @Override
+    public Object[] getCurrentRecord() {
+        return current;
+    }
+
+    @Override
+    public GroupConverter getRootConverter() {
+        return root;
+    }
+
+    /**
+     * Sets the value of a column to the attribute at the same index of the current record.
+     */
+    private final class ValueConverter extends PrimitiveConverter {
+        private final int index;
+
+        private ValueConverter(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void addBinary(Binary value) {
+            current[index] = value.toStringUsingUTF8();
+        }
+
+        @Override
+        public void addBoolean(boolean value) {
+            current[index] = value;
+        }
+
+        @Override
+        public void addDouble(double value) {
+            current[index] = value;
+        }
+
+        @Override
+        public void addFloat(float value) {
+            current[index] = value;
+        }
+
+        @Override
+        public void addInt(int value) {
+            current[index] = value;
+        }
+
+        @Override
+        public void addLong(long value) {
+            current[index] = value;
+        }
+    }
+}
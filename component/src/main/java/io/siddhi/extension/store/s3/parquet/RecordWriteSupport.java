@@ -0,0 +1,126 @@
+package io.siddhi.extension.store.s3.parquet;
+
+import io.siddhi.query.api.definition.Attribute;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+import org.apache.parquet.schema.Types;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes records, held as arrays of attribute values, as Parquet rows with a column per attribute.
+ * <p>
+ * Columns take the names of the attributes and the Parquet type matching the attribute type, so that the files can
+ * be declared to Athena, Hive or Spark with the same column names and their usual types: STRING is a UTF-8 BINARY,
+ * INT an INT32, LONG an INT64, FLOAT a FLOAT, DOUBLE a DOUBLE and BOOL a BOOLEAN. The primary key column is
+ * required, the others are optional and hold no value for null attributes.
+ */
+final class RecordWriteSupport extends WriteSupport<Object[]> {
+
+    private final MessageType schema;
+    private final List<Attribute> attributes;
+    private RecordConsumer consumer;
+
+    RecordWriteSupport(MessageType schema, List<Attribute> attributes) {
+        this.schema = schema;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Build the schema of the files of a table.
+     *
+     * @param name            name of the schema
+     * @param attributes      attributes of the table
+     * @param primaryKeyIndex index of the primary key attribute
+     * @return the schema
+     * @throws IllegalArgumentException if an attribute has a type without a Parquet counterpart
+     */
+    static MessageType createSchema(String name, List<Attribute> attributes, int primaryKeyIndex) {
+        Types.MessageTypeBuilder builder = Types.buildMessage();
+        for (int i = 0; i < attributes.size(); i++) {
+            Attribute attribute = attributes.get(i);
+            Type.Repetition repetition = i == primaryKeyIndex ? Type.Repetition.REQUIRED : Type.Repetition.OPTIONAL;
+            switch (attribute.getType()) {
+                case STRING:
+                    builder.primitive(PrimitiveType.PrimitiveTypeName.BINARY, repetition).as(OriginalType.UTF8)
+                            .named(attribute.getName());
+                    break;
+                case INT:
+                    builder.primitive(PrimitiveType.PrimitiveTypeName.INT32, repetition).named(attribute.getName());
+                    break;
+                case LONG:
+                    builder.primitive(PrimitiveType.PrimitiveTypeName.INT64, repetition).named(attribute.getName());
+                    break;
+                case FLOAT:
+                    builder.primitive(PrimitiveType.PrimitiveTypeName.FLOAT, repetition).named(attribute.getName());
+                    break;
+                case DOUBLE:
+                    builder.primitive(PrimitiveType.PrimitiveTypeName.DOUBLE, repetition).named(attribute.getName());
+                    break;
+                case BOOL:
+                    builder.primitive(PrimitiveType.PrimitiveTypeName.BOOLEAN, repetition)
+                            .named(attribute.getName());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Attribute '" + attribute.getName() + "' of type "
+                            + attribute.getType() + " cannot be stored in Parquet files.");
+            }
+        }
+        return builder.named(name);
+    }
+
+    @Override
+    public WriteContext init(Configuration configuration) {
+        return new WriteContext(schema, Collections.emptyMap());
+    }
+
+    @Override
+    public void prepareForWrite(RecordConsumer recordConsumer) {
+        this.consumer = recordConsumer;
+    }
+
+    @Override
+    public void write(Object[] record) {
+        consumer.startMessage();
+        for (int i = 0; i < attributes.size(); i++) {
+            Object value = record[i];
+            if (value == null) {
+                continue;
+            }
+            String name = attributes.get(i).getName();
+            consumer.startField(name, i);
+            switch (attributes.get(i).getType()) {
+                case STRING:
+                    consumer.addBinary(Binary.fromString(value.toString()));
+                    break;
+                case INT:
+                    consumer.addInteger(((Number) value).intValue());
+                    break;
+                case LONG:
+                    consumer.addLong(((Number) value).longValue());
+                    break;
+                case FLOAT:
+                    consumer.addFloat(((Number) value).floatValue());
+                    break;
+                case DOUBLE:
+                    consumer.addDouble(((Number) value).doubleValue());
+                    break;
+                case BOOL:
+                    consumer.addBoolean((Boolean) value);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected attribute type " + attributes.get(i).getType()
+                            + ".");
+            }
+            consumer.endField(name, i);
+        }
+        consumer.endMessage();
+    }
+}
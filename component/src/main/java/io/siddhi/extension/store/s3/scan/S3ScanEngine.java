@@ -0,0 +1,182 @@
+package io.siddhi.extension.store.s3.scan;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import io.siddhi.extension.store.s3.util.S3RequestPipeline;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Scans a bucket for records, streaming the matching ones through a {@link ScanIterator}.
+ * <p>
+ * The key space is split into partitions by key prefix, and each partition is listed on its own thread. While a
+ * partition lists its next page, the objects of the previous pages are fetched through the request pipeline. The
+ * number of objects being fetched per scan is bounded, and fetched records are handed to the consumer through a
+ * bounded queue, so the memory used by a scan does not depend on the number of objects in the bucket.
+ */
+public class S3ScanEngine {
+
+    private final AmazonS3 client;
+    private final String bucketName;
+    private final List<String> prefixes;
+    private final int parallelism;
+    private final int bufferSize;
+    private final S3RequestPipeline requestPipeline;
+    private final RecordReader recordReader;
+    private final ExecutorService listingExecutor;
+
+    /**
+     * @param client          S3 client
+     * @param bucketName      bucket to be scanned
+     * @param prefixes        key prefixes partitioning the key space; an empty list scans the bucket as a whole
+     * @param parallelism     maximum number of objects fetched at a time by a scan
+     * @param bufferSize      maximum number of fetched records waiting to be consumed
+     * @param requestPipeline pipeline executing the object fetches
+     * @param recordReader    fetches and decodes the record of a key
+     */
+    public S3ScanEngine(AmazonS3 client, String bucketName, List<String> prefixes, int parallelism, int bufferSize,
+                        S3RequestPipeline requestPipeline, RecordReader recordReader) {
+        this.client = client;
+        this.bucketName = bucketName;
+        this.prefixes = prefixes.isEmpty() ? Collections.singletonList("") : prefixes;
+        this.parallelism = parallelism;
+        this.bufferSize = bufferSize;
+        this.requestPipeline = requestPipeline;
+        this.recordReader = recordReader;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.listingExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "s3-store-" + bucketName + "-scan-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start scanning the bucket.
+     *
+     * @param filter         records for which the filter returns false are dropped
+     * @param leadingRecords records to be returned before the scanned ones
+     * @return iterator over the matching records, which must be closed if not consumed to the end
+     */
+    public ScanIterator scan(Predicate<Object[]> filter, List<Object[]> leadingRecords) {
+        return scan(filter, leadingRecords, recordReader);
+    }
+
+    /**
+     * Start scanning the bucket, reading the objects with the given reader instead of the default one, e.g. to
+     * filter the objects on the server side.
+     *
+     * @param filter         records for which the filter returns false are dropped
+     * @param leadingRecords records to be returned before the scanned ones
+     * @param reader         fetches and decodes the record of a key, returning null for records to be skipped
+     * @return iterator over the matching records, which must be closed if not consumed to the end
+     */
+    public ScanIterator scan(Predicate<Object[]> filter, List<Object[]> leadingRecords, RecordReader reader) {
+        ScanIterator iterator = new ScanIterator(bufferSize, leadingRecords);
+        Semaphore fetchPermits = new Semaphore(parallelism);
+        AtomicInteger remainingPartitions = new AtomicInteger(prefixes.size());
+        for (String prefix : prefixes) {
+            iterator.addTask(listingExecutor.submit(() -> {
+                try {
+                    scanPartition(prefix, filter, reader, fetchPermits, iterator);
+                    if (remainingPartitions.decrementAndGet() == 0) {
+                        iterator.complete();
+                    }
+                } catch (InterruptedException e) {
+                    // The scan got closed
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    iterator.fail(e);
+                }
+            }));
+        }
+        return iterator;
+    }
+
+    public void shutdown() {
+        listingExecutor.shutdownNow();
+    }
+
+    private void scanPartition(String prefix, Predicate<Object[]> filter, RecordReader reader,
+                               Semaphore fetchPermits, ScanIterator iterator) throws Exception {
+        ListObjectsV2Request listRequest = new ListObjectsV2Request().withBucketName(bucketName);
+        if (!prefix.isEmpty()) {
+            listRequest.setPrefix(prefix);
+        }
+        Deque<Future<Object[]>> fetches = new ArrayDeque<>();
+        ListObjectsV2Result listResult;
+        do {
+            listResult = requestPipeline.execute(() -> client.listObjectsV2(listRequest));
+            for (S3ObjectSummary summary : listResult.getObjectSummaries()) {
+                if (iterator.isClosed()) {
+                    cancelAll(fetches);
+                    return;
+                }
+                // Deliver fetched records in listing order to free up permits, waiting only if there is nothing
+                // of this partition in flight, i.e. the other partitions hold all the permits
+                while (!fetchPermits.tryAcquire()) {
+                    if (fetches.isEmpty()) {
+                        fetchPermits.acquire();
+                        break;
+                    }
+                    deliver(fetches.poll(), filter, fetchPermits, iterator);
+                }
+                String key = summary.getKey();
+                long size = summary.getSize();
+                fetches.add(requestPipeline.submit(() -> reader.read(key, size)));
+                while (!fetches.isEmpty() && fetches.peek().isDone()) {
+                    deliver(fetches.poll(), filter, fetchPermits, iterator);
+                }
+            }
+            listRequest.setContinuationToken(listResult.getNextContinuationToken());
+        } while (listResult.isTruncated());
+        while (!fetches.isEmpty()) {
+            deliver(fetches.poll(), filter, fetchPermits, iterator);
+        }
+    }
+
+    private static void deliver(Future<Object[]> fetch, Predicate<Object[]> filter, Semaphore fetchPermits,
+                                ScanIterator iterator) throws Exception {
+        Object[] record;
+        try {
+            record = fetch.get();
+        } catch (ExecutionException e) {
+            throw S3RequestPipeline.toConnectionUnavailableException(e.getCause());
+        } finally {
+            fetchPermits.release();
+        }
+        if (record != null && filter.test(record)) {
+            iterator.offer(record);
+        }
+    }
+
+    private static void cancelAll(Deque<Future<Object[]>> fetches) {
+        fetches.forEach(fetch -> fetch.cancel(true));
+    }
+
+    /**
+     * Fetches and decodes the record stored under a key.
+     */
+    public interface RecordReader {
+
+        /**
+         * @param key  object key
+         * @param size size of the object as listed
+         * @return the record, or null if no object exists for the key
+         * @throws Exception if the object cannot be fetched or decoded
+         */
+        Object[] read(String key, long size) throws Exception;
+    }
+}
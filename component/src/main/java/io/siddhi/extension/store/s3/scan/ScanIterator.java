@@ -0,0 +1,136 @@
+package io.siddhi.extension.store.s3.scan;
+
+import io.siddhi.core.table.record.RecordIterator;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterator over the records produced by a running scan of {@link S3ScanEngine}. Records are handed over through a
+ * bounded queue, so producers block while the consumer falls behind.
+ */
+public class ScanIterator implements RecordIterator<Object[]> {
+
+    private static final Object[] END = new Object[0];
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final BlockingQueue<Object[]> queue;
+    private final Iterator<Object[]> leadingRecords;
+    private final List<Future<?>> tasks = new ArrayList<>();
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    private Object[] next;
+    private boolean finished;
+
+    ScanIterator(int bufferSize, List<Object[]> leadingRecords) {
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+        this.leadingRecords = leadingRecords.iterator();
+    }
+
+    /**
+     * Create an iterator over records that are already materialized.
+     */
+    public static ScanIterator of(List<Object[]> records) {
+        ScanIterator iterator = new ScanIterator(1, records);
+        iterator.queue.add(END);
+        return iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null || leadingRecords.hasNext()) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        try {
+            next = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new S3TableException("Interrupted while scanning the bucket.", e);
+        }
+        if (next == END) {
+            next = null;
+            finished = true;
+            close();
+            if (failure != null) {
+                throw new S3TableException("Failed to scan the bucket: " + failure.getMessage(), failure);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Object[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (leadingRecords.hasNext()) {
+            return leadingRecords.next();
+        }
+        Object[] record = next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * Stop the scan, releasing producers that are blocked on the queue.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (tasks) {
+            tasks.forEach(task -> task.cancel(true));
+        }
+        queue.clear();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void addTask(Future<?> task) {
+        synchronized (tasks) {
+            if (closed) {
+                task.cancel(true);
+            }
+            tasks.add(task);
+        }
+    }
+
+    void offer(Object[] record) throws InterruptedException {
+        while (!closed) {
+            if (queue.offer(record, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    void complete() throws InterruptedException {
+        offer(END);
+    }
+
+    void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+        try {
+            offer(END);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
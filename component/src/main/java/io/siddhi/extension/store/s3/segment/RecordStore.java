@@ -0,0 +1,83 @@
+package io.siddhi.extension.store.s3.segment;
+
+import io.siddhi.core.exception.ConnectionUnavailableException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Store packing many records into each object, instead of one object per record, and indexing the keys of the
+ * records by itself. Records are buffered in memory before being uploaded, hence the store has to be closed for the
+ * buffered records not to be lost.
+ */
+public interface RecordStore {
+
+    /**
+     * Load the index of the keys from the bucket, and start uploading buffered records in the background.
+     *
+     * @throws ConnectionUnavailableException if the index cannot be read
+     */
+    void open() throws ConnectionUnavailableException;
+
+    /**
+     * Write records, replacing the records of the same keys.
+     *
+     * @param records records with non null primary keys
+     * @throws ConnectionUnavailableException if the buffered records got due for upload but could not be uploaded;
+     *                                        the records are retained and uploaded with the next upload
+     */
+    void write(List<Object[]> records) throws ConnectionUnavailableException;
+
+    /**
+     * Delete the records of the given keys.
+     *
+     * @param keys keys to be deleted
+     * @throws ConnectionUnavailableException if the buffered records got due for upload but could not be uploaded
+     */
+    void delete(Collection<String> keys) throws ConnectionUnavailableException;
+
+    /**
+     * Whether a record exists for the key, answered from memory.
+     */
+    boolean contains(String key);
+
+    /**
+     * Read the record of a key.
+     *
+     * @param key primary key
+     * @return the record, or null if no record exists for the key
+     * @throws ConnectionUnavailableException if the record cannot be read
+     */
+    Object[] get(String key) throws ConnectionUnavailableException;
+
+    /**
+     * Read all the records that pass the filter.
+     *
+     * @param filter records for which the filter returns false are dropped
+     * @return matching records
+     * @throws ConnectionUnavailableException if the records cannot be read
+     */
+    List<Object[]> scan(Predicate<Object[]> filter) throws ConnectionUnavailableException;
+
+    /**
+     * Read all the records that pass a filter reading the given attributes only, which lets stores that keep each
+     * attribute apart read the other attributes of the matching records only.
+     *
+     * @param filter           records for which the filter returns false are dropped
+     * @param filterAttributes indices of the attributes the filter reads
+     * @return matching records
+     * @throws ConnectionUnavailableException if the records cannot be read
+     */
+    default List<Object[]> scan(Predicate<Object[]> filter, Collection<Integer> filterAttributes)
+            throws ConnectionUnavailableException {
+        return scan(filter);
+    }
+
+    /**
+     * Stop uploading in the background, and upload the buffered records.
+     *
+     * @throws ConnectionUnavailableException if the buffered records cannot be uploaded
+     */
+    void close() throws ConnectionUnavailableException;
+}
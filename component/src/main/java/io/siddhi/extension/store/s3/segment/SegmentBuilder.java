@@ -0,0 +1,93 @@
+package io.siddhi.extension.store.s3.segment;
+
+import io.siddhi.extension.store.s3.codec.RecordCodec;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segment under construction. Rows are encoded as they are appended, and the latest record of each key is kept
+ * aside, so that records are readable before the segment is uploaded.
+ */
+final class SegmentBuilder {
+
+    static final Object[] TOMBSTONE = new Object[0];
+
+    private final RecordOutputBuffer data;
+    private final List<SegmentFormat.Entry> entries = new ArrayList<>();
+    private final Map<String, Object[]> records = new LinkedHashMap<>();
+
+    SegmentBuilder(int initialCapacity) {
+        this.data = new RecordOutputBuffer(initialCapacity);
+    }
+
+    /**
+     * @param key    primary key of the row
+     * @param record the record, or {@link #TOMBSTONE} for a deleted key
+     * @param values values of the record to be encoded, excluding the primary key, or null for a tombstone
+     * @param codec  codec encoding the values
+     */
+    void append(String key, Object[] record, Object[] values, RecordCodec codec) throws IOException {
+        int offset = data.length();
+        data.writeString(key);
+        if (record == TOMBSTONE) {
+            data.write(SegmentFormat.TOMBSTONE);
+        } else {
+            data.write(SegmentFormat.RECORD);
+            codec.encode(values, data);
+        }
+        entries.add(new SegmentFormat.Entry(key, record == TOMBSTONE ? SegmentFormat.TOMBSTONE
+                : SegmentFormat.RECORD, offset, data.length() - offset));
+        // Re-inserting moves the key to the end, so that records are replayed in the order of their latest write
+        records.remove(key);
+        records.put(key, record);
+    }
+
+    /**
+     * Append a row that is already encoded, as done when compacting segments. The record is not kept aside.
+     */
+    void appendRow(String key, byte type, byte[] row, int offset, int length) {
+        entries.add(new SegmentFormat.Entry(key, type, data.length(), length));
+        data.write(row, offset, length);
+    }
+
+    /**
+     * @return the latest record appended for the key, {@link #TOMBSTONE} if the key got deleted, or null
+     */
+    Object[] get(String key) {
+        return records.get(key);
+    }
+
+    Map<String, Object[]> getRecords() {
+        return records;
+    }
+
+    List<SegmentFormat.Entry> getEntries() {
+        return entries;
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return number of bytes of the rows appended so far
+     */
+    int size() {
+        return data.length();
+    }
+
+    /**
+     * Append the footer, after which no more rows can be appended.
+     *
+     * @return buffer holding the complete segment
+     */
+    RecordOutputBuffer seal() {
+        SegmentFormat.writeFooter(entries, data);
+        return data;
+    }
+}
@@ -0,0 +1,88 @@
+package io.siddhi.extension.store.s3.segment;
+
+import io.siddhi.extension.store.s3.util.RecordInputBuffer;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Layout of segment objects.
+ * <p>
+ * A segment holds rows back to back, followed by a footer indexing them and a fixed size trailer:
+ * <pre>
+ * row     := key (varint length + UTF-8) | type (1 byte) | encoded values (records only)
+ * footer  := entry count (varint) | entry*
+ * entry   := key (varint length + UTF-8) | type (1 byte) | row offset (int) | row length (int)
+ * trailer := footer offset (long) | magic (int)
+ * </pre>
+ * A reader fetches the trailer and footer with ranged requests to learn where each row is, and then fetches single
+ * rows with ranged requests as well.
+ */
+final class SegmentFormat {
+
+    static final byte RECORD = 0;
+    static final byte TOMBSTONE = 1;
+    static final int TRAILER_LENGTH = 12;
+
+    private static final int MAGIC = 0x53335347;
+
+    private SegmentFormat() {
+    }
+
+    static void writeFooter(List<Entry> entries, RecordOutputBuffer out) {
+        long footerOffset = out.length();
+        out.writeVarInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeString(entry.key);
+            out.write(entry.type);
+            out.writeInt(entry.offset);
+            out.writeInt(entry.length);
+        }
+        out.writeLong(footerOffset);
+        out.writeInt(MAGIC);
+    }
+
+    /**
+     * @param trailer bytes holding the trailer
+     * @param offset  start of the trailer
+     * @return offset of the footer in the segment
+     * @throws IOException if the bytes are not a segment trailer
+     */
+    static long readFooterOffset(byte[] trailer, int offset) throws IOException {
+        RecordInputBuffer in = new RecordInputBuffer(trailer, offset, TRAILER_LENGTH);
+        long footerOffset = in.readLong();
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a segment object, the trailer does not end with the segment magic number.");
+        }
+        return footerOffset;
+    }
+
+    static List<Entry> readFooter(byte[] data, int offset, int length) throws IOException {
+        RecordInputBuffer in = new RecordInputBuffer(data, offset, length);
+        int count = in.readVarInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new Entry(in.readString(), (byte) in.read(), in.readInt(), in.readInt()));
+        }
+        return entries;
+    }
+
+    /**
+     * Index entry of a row.
+     */
+    static final class Entry {
+        final String key;
+        final byte type;
+        final int offset;
+        final int length;
+
+        Entry(String key, byte type, int offset, int length) {
+            this.key = key;
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
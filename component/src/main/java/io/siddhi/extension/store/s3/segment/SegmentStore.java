@@ -0,0 +1,832 @@
+package io.siddhi.extension.store.s3.segment;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.util.IOUtils;
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.extension.store.s3.codec.RecordCodec;
+import io.siddhi.extension.store.s3.codec.RecordCodecFactory;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+import io.siddhi.extension.store.s3.util.RecordInputBuffer;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import io.siddhi.extension.store.s3.util.S3RequestPipeline;
+import io.siddhi.query.api.definition.Attribute;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Stores records in segment objects, each packing many records, instead of one object per record.
+ * <p>
+ * Writes are appended to an in-memory segment that is uploaded as an immutable object once it reaches the maximum
+ * segment size, when the roll interval elapses, or when the store is closed. Until then the records are served from
+ * memory. An index of every key to the segment and byte range of its latest row is kept in memory, and rebuilt from
+ * the segment footers on start up, so that a point read is a single ranged GET.
+ * <p>
+ * Rows that got superseded or deleted stay in their segments until compaction rewrites the live rows of all the
+ * segments into new ones, which happens in the background once the share of garbage reaches the configured ratio.
+ * <p>
+ * Segments are named {@code <sequence>.<generation>.<part>}. Segments written by a compaction take the sequence of
+ * the newest segment they replace with a higher generation, so on start up any segment they supersede is recognized
+ * and ignored, even if the compaction did not get to delete it. A compaction only takes effect once all its parts
+ * are uploaded and an empty {@code <sequence>.<generation>.commit} marker is written after them; the parts of a
+ * compaction that failed before that are deleted instead of the segments they would have replaced. A bucket prefix
+ * must be written by a single store.
+ */
+public class SegmentStore implements RecordStore {
+
+    private static final Logger log = Logger.getLogger(SegmentStore.class);
+    private static final int FOOTER_READ_AHEAD = 64 * 1024;
+    private static final int INITIAL_SEGMENT_CAPACITY = 64 * 1024;
+    private static final int MAX_KEYS_PER_DELETE_REQUEST = 1000;
+    private static final String CONTENT_TYPE = "application/octet-stream";
+    private static final String COMMIT_MARKER_SUFFIX = ".commit";
+
+    private final AmazonS3 client;
+    private final String bucketName;
+    private final String prefix;
+    private final int primaryKeyIndex;
+    private final int attributeCount;
+    private final int[] valueIndices;
+    private final RecordCodec codec;
+    private final int maxSegmentSize;
+    private final long rollInterval;
+    private final long compactionInterval;
+    private final double compactionGarbageRatio;
+    private final S3RequestPipeline requestPipeline;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final Map<String, SegmentInfo> segments = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private final ReentrantLock rollLock = new ReentrantLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    // Segments are not deleted while being scanned
+    private final ReadWriteLock segmentDeletionLock = new ReentrantReadWriteLock();
+    private SegmentBuilder active = new SegmentBuilder(INITIAL_SEGMENT_CAPACITY);
+    private SegmentBuilder sealing;
+    private long nextSequence;
+    // Commit marker of the compaction the segments were last rewritten by
+    private String commitMarker;
+
+    /**
+     * @param name                   name used for the background thread
+     * @param client                 S3 client
+     * @param bucketName             bucket holding the segments
+     * @param prefix                 key prefix of the segment objects
+     * @param attributes             attributes of the table
+     * @param primaryKeyIndex        index of the primary key attribute
+     * @param codecName              name of the codec encoding the rows
+     * @param maxSegmentSize         size in bytes at which a segment is uploaded
+     * @param rollInterval           interval in milliseconds at which the current segment is uploaded
+     * @param compactionInterval     interval in milliseconds at which compaction is considered, or 0 to disable it
+     * @param compactionGarbageRatio share of superseded and deleted rows at which segments are compacted
+     * @param requestPipeline        pipeline executing the S3 requests
+     */
+    public SegmentStore(String name, AmazonS3 client, String bucketName, String prefix, List<Attribute> attributes,
+                        int primaryKeyIndex, String codecName, int maxSegmentSize, long rollInterval,
+                        long compactionInterval, double compactionGarbageRatio, S3RequestPipeline requestPipeline) {
+        this.client = client;
+        this.bucketName = bucketName;
+        this.prefix = prefix;
+        this.primaryKeyIndex = primaryKeyIndex;
+        this.attributeCount = attributes.size();
+        this.valueIndices = new int[attributes.size() - 1];
+        List<Attribute> valueAttributes = new ArrayList<>(valueIndices.length);
+        for (int i = 0, j = 0; i < attributes.size(); i++) {
+            if (i != primaryKeyIndex) {
+                valueIndices[j++] = i;
+                valueAttributes.add(attributes.get(i));
+            }
+        }
+        this.codec = RecordCodecFactory.create(codecName, valueAttributes);
+        this.maxSegmentSize = maxSegmentSize;
+        this.rollInterval = rollInterval;
+        this.compactionInterval = compactionInterval;
+        this.compactionGarbageRatio = compactionGarbageRatio;
+        this.requestPipeline = requestPipeline;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, name + "-segments-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Build the index from the footers of the segments in the bucket, and start rolling and compacting segments in
+     * the background.
+     *
+     * @throws ConnectionUnavailableException if the segments cannot be read
+     */
+    @Override
+    public void open() throws ConnectionUnavailableException {
+        List<SegmentInfo> found = new ArrayList<>();
+        Set<String> commitMarkers = new HashSet<>();
+        ListObjectsV2Request listRequest = new ListObjectsV2Request().withBucketName(bucketName).withPrefix(prefix);
+        ListObjectsV2Result listResult;
+        do {
+            listResult = requestPipeline.execute(() -> client.listObjectsV2(listRequest));
+            for (S3ObjectSummary summary : listResult.getObjectSummaries()) {
+                if (summary.getKey().endsWith(COMMIT_MARKER_SUFFIX)) {
+                    commitMarkers.add(summary.getKey());
+                    continue;
+                }
+                SegmentInfo info = SegmentInfo.parse(summary.getKey(), prefix, summary.getSize());
+                if (info == null) {
+                    log.warn("Ignoring object " + summary.getKey() + " of bucket " + bucketName
+                            + ", which is not a segment.");
+                } else {
+                    found.add(info);
+                }
+            }
+            listRequest.setContinuationToken(listResult.getNextContinuationToken());
+        } while (listResult.isTruncated());
+        Collections.sort(found);
+
+        // A committed compaction supersedes every segment up to its sequence with a lower generation
+        SegmentInfo latestCompaction = null;
+        for (SegmentInfo info : found) {
+            if (info.generation > 0 && commitMarkers.contains(info.commitMarkerName(prefix))
+                    && (latestCompaction == null || info.sequence > latestCompaction.sequence
+                    || (info.sequence == latestCompaction.sequence && info.generation > latestCompaction.generation))) {
+                latestCompaction = info;
+            }
+        }
+        List<SegmentInfo> live = new ArrayList<>(found.size());
+        List<String> obsolete = new ArrayList<>();
+        for (SegmentInfo info : found) {
+            if (info.generation > 0 && !commitMarkers.contains(info.commitMarkerName(prefix))) {
+                // Part of a compaction that failed before it was committed
+                obsolete.add(info.name);
+            } else if (latestCompaction != null && (info.sequence < latestCompaction.sequence
+                    || (info.sequence == latestCompaction.sequence
+                    && info.generation < latestCompaction.generation))) {
+                obsolete.add(info.name);
+            } else {
+                live.add(info);
+            }
+        }
+        commitMarker = latestCompaction == null ? null : latestCompaction.commitMarkerName(prefix);
+        for (String marker : commitMarkers) {
+            if (!marker.equals(commitMarker)) {
+                obsolete.add(marker);
+            }
+        }
+
+        List<Callable<List<SegmentFormat.Entry>>> footerReads = new ArrayList<>(live.size());
+        for (SegmentInfo info : live) {
+            footerReads.add(() -> readFooter(info));
+        }
+        List<List<SegmentFormat.Entry>> footers = requestPipeline.executeAll(footerReads);
+        synchronized (lock) {
+            for (int i = 0; i < live.size(); i++) {
+                register(live.get(i), footers.get(i));
+            }
+            long lastSequence = live.isEmpty() ? 0 : live.get(live.size() - 1).sequence;
+            nextSequence = Math.max(lastSequence + 1, System.currentTimeMillis());
+        }
+        if (!obsolete.isEmpty()) {
+            deleteQuietly(obsolete, "superseded segments");
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded " + index.size() + " keys from " + live.size() + " segments of bucket " + bucketName);
+        }
+
+        scheduler.scheduleWithFixedDelay(this::rollQuietly, rollInterval, rollInterval, TimeUnit.MILLISECONDS);
+        if (compactionInterval > 0) {
+            scheduler.scheduleWithFixedDelay(this::compactQuietly, compactionInterval, compactionInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Append records to the current segment, uploading it if it got full.
+     *
+     * @param records records with non null primary keys
+     * @throws ConnectionUnavailableException if the segment got full but could not be uploaded; the records are
+     *                                        retained and uploaded with the next segment
+     */
+    @Override
+    public void write(List<Object[]> records) throws ConnectionUnavailableException {
+        boolean full;
+        synchronized (lock) {
+            for (Object[] record : records) {
+                append(active, (String) record[primaryKeyIndex], record.clone());
+            }
+            full = active.size() >= maxSegmentSize;
+        }
+        if (full) {
+            roll();
+        }
+    }
+
+    /**
+     * Append tombstones of the given keys to the current segment, uploading it if it got full.
+     *
+     * @param keys keys to be deleted
+     * @throws ConnectionUnavailableException if the segment got full but could not be uploaded
+     */
+    @Override
+    public void delete(Collection<String> keys) throws ConnectionUnavailableException {
+        boolean full;
+        synchronized (lock) {
+            for (String key : keys) {
+                if (exists(key)) {
+                    append(active, key, SegmentBuilder.TOMBSTONE);
+                }
+            }
+            full = active.size() >= maxSegmentSize;
+        }
+        if (full) {
+            roll();
+        }
+    }
+
+    /**
+     * Whether a record exists for the key, answered from memory.
+     */
+    @Override
+    public boolean contains(String key) {
+        synchronized (lock) {
+            return exists(key);
+        }
+    }
+
+    /**
+     * Read the record of a key, with a ranged request for the row if the record is not held in memory.
+     *
+     * @param key primary key
+     * @return the record, or null if no record exists for the key
+     * @throws ConnectionUnavailableException if the row cannot be read
+     */
+    @Override
+    public Object[] get(String key) throws ConnectionUnavailableException {
+        Location location;
+        synchronized (lock) {
+            Object[] pending = getPending(key);
+            if (pending != null) {
+                return pending == SegmentBuilder.TOMBSTONE ? null : pending.clone();
+            }
+            location = index.get(key);
+        }
+        for (int attempt = 0; ; attempt++) {
+            if (location == null || location.tombstone) {
+                return null;
+            }
+            Location rowLocation = location;
+            byte[] row = requestPipeline.execute(() -> getRange(rowLocation.segment.name, rowLocation.offset,
+                    rowLocation.offset + rowLocation.length - 1));
+            if (row != null) {
+                return decodeRow(row, 0, row.length);
+            }
+            Location current = index.get(key);
+            if (attempt > 0 || current == location) {
+                throw new S3TableException("Segment " + location.segment.name + " holding the record with key '"
+                        + key + "' is missing from bucket " + bucketName + ".");
+            }
+            // The segment got compacted in the meantime
+            location = current;
+        }
+    }
+
+    /**
+     * Read all the records that pass the filter, reading the segments in parallel.
+     *
+     * @param filter records for which the filter returns false are dropped
+     * @return matching records
+     * @throws ConnectionUnavailableException if a segment cannot be read
+     */
+    @Override
+    public List<Object[]> scan(Predicate<Object[]> filter) throws ConnectionUnavailableException {
+        segmentDeletionLock.readLock().lock();
+        try {
+            Map<String, Object[]> pending = new ConcurrentHashMap<>();
+            List<SegmentInfo> snapshot;
+            Map<String, Location> locations;
+            synchronized (lock) {
+                if (sealing != null) {
+                    pending.putAll(sealing.getRecords());
+                }
+                pending.putAll(active.getRecords());
+                snapshot = new ArrayList<>(segments.values());
+                // Rows are checked against the index as of the snapshot, as segments rolled since are not read
+                locations = new HashMap<>(index);
+            }
+            List<Callable<List<Object[]>>> reads = new ArrayList<>(snapshot.size());
+            for (SegmentInfo info : snapshot) {
+                reads.add(() -> scanSegment(info, locations, pending, filter));
+            }
+            List<Object[]> matches = new ArrayList<>();
+            for (List<Object[]> segmentMatches : requestPipeline.executeAll(reads)) {
+                matches.addAll(segmentMatches);
+            }
+            for (Object[] record : pending.values()) {
+                if (record != SegmentBuilder.TOMBSTONE && filter.test(record)) {
+                    matches.add(record.clone());
+                }
+            }
+            return matches;
+        } finally {
+            segmentDeletionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Upload the current segment, if it holds any rows.
+     *
+     * @throws ConnectionUnavailableException if the segment cannot be uploaded; its rows are retained and uploaded
+     *                                        with the next segment
+     */
+    public void roll() throws ConnectionUnavailableException {
+        rollLock.lock();
+        try {
+            SegmentBuilder segment;
+            synchronized (lock) {
+                if (active.isEmpty()) {
+                    return;
+                }
+                segment = active;
+                sealing = segment;
+                active = new SegmentBuilder(INITIAL_SEGMENT_CAPACITY);
+            }
+            SegmentInfo info = new SegmentInfo(prefix, nextSequence++, 0, 0);
+            info.dataSize = segment.size();
+            try {
+                upload(info, segment.seal());
+            } catch (ConnectionUnavailableException | RuntimeException e) {
+                synchronized (lock) {
+                    // Newer rows of the current segment have to stay after the rows of the failed one
+                    SegmentBuilder merged = new SegmentBuilder(INITIAL_SEGMENT_CAPACITY);
+                    for (Map.Entry<String, Object[]> entry : segment.getRecords().entrySet()) {
+                        append(merged, entry.getKey(), entry.getValue());
+                    }
+                    for (Map.Entry<String, Object[]> entry : active.getRecords().entrySet()) {
+                        append(merged, entry.getKey(), entry.getValue());
+                    }
+                    active = merged;
+                    sealing = null;
+                }
+                throw e;
+            }
+            synchronized (lock) {
+                register(info, segment.getEntries());
+                sealing = null;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Uploaded segment " + info.name + " with " + segment.getEntries().size() + " rows to bucket "
+                        + bucketName);
+            }
+        } finally {
+            rollLock.unlock();
+        }
+    }
+
+    /**
+     * Rewrite the live rows of all the segments into new ones, if the share of superseded and deleted rows reached
+     * the compaction ratio, and delete the old segments.
+     *
+     * @throws ConnectionUnavailableException if the segments cannot be read or written
+     */
+    public void compact() throws ConnectionUnavailableException {
+        if (!compactionLock.tryLock()) {
+            return;
+        }
+        try {
+            List<SegmentInfo> candidates = new ArrayList<>(segments.values());
+            Collections.sort(candidates);
+            long totalBytes = 0;
+            long liveBytes = 0;
+            for (SegmentInfo info : candidates) {
+                totalBytes += info.dataSize;
+                liveBytes += info.liveBytes.get();
+            }
+            if (totalBytes == 0 || (totalBytes - liveBytes) < compactionGarbageRatio * totalBytes) {
+                return;
+            }
+            SegmentInfo newest = candidates.get(candidates.size() - 1);
+            int generation = 0;
+            for (SegmentInfo info : candidates) {
+                generation = Math.max(generation, info.generation);
+            }
+            generation++;
+
+            List<SegmentBuilder> outputs = new ArrayList<>();
+            List<List<Location>> movedLocations = new ArrayList<>();
+            Map<String, Location> droppedTombstones = new HashMap<>();
+            SegmentBuilder output = new SegmentBuilder(INITIAL_SEGMENT_CAPACITY);
+            List<Location> moved = new ArrayList<>();
+            for (SegmentInfo info : candidates) {
+                byte[] data = requestPipeline.execute(() -> getRange(info.name, 0, info.objectSize - 1));
+                if (data == null) {
+                    throw new S3TableException("Segment " + info.name + " is missing from bucket " + bucketName
+                            + ".");
+                }
+                long footerOffset = SegmentFormat.readFooterOffset(data, data.length - SegmentFormat.TRAILER_LENGTH);
+                for (SegmentFormat.Entry entry : SegmentFormat.readFooter(data, (int) footerOffset,
+                        data.length - SegmentFormat.TRAILER_LENGTH - (int) footerOffset)) {
+                    Location location = index.get(entry.key);
+                    if (location == null || location.segment != info || location.offset != entry.offset) {
+                        continue;
+                    }
+                    if (location.tombstone) {
+                        // No older segment is left that the tombstone has to hide rows of
+                        droppedTombstones.put(entry.key, location);
+                        continue;
+                    }
+                    output.appendRow(entry.key, entry.type, data, entry.offset, entry.length);
+                    moved.add(location);
+                    if (output.size() >= maxSegmentSize) {
+                        outputs.add(output);
+                        movedLocations.add(moved);
+                        output = new SegmentBuilder(INITIAL_SEGMENT_CAPACITY);
+                        moved = new ArrayList<>();
+                    }
+                }
+            }
+            // An empty segment is still written, as it marks the old segments as superseded
+            if (!output.isEmpty() || outputs.isEmpty()) {
+                outputs.add(output);
+                movedLocations.add(moved);
+            }
+
+            List<SegmentInfo> outputInfos = new ArrayList<>(outputs.size());
+            String outputCommitMarker = newest.commitMarkerName(prefix, generation);
+            try {
+                for (int part = 0; part < outputs.size(); part++) {
+                    SegmentInfo info = new SegmentInfo(prefix, newest.sequence, generation, part);
+                    info.dataSize = outputs.get(part).size();
+                    upload(info, outputs.get(part).seal());
+                    outputInfos.add(info);
+                }
+                // Only once the marker exists do the new segments supersede the old ones on start up
+                uploadCommitMarker(outputCommitMarker);
+            } catch (ConnectionUnavailableException | RuntimeException e) {
+                List<String> uploaded = new ArrayList<>(outputInfos.size());
+                outputInfos.forEach(info -> uploaded.add(info.name));
+                deleteQuietly(uploaded, "segments of a failed compaction");
+                throw e;
+            }
+
+            int movedRows = 0;
+            List<String> superseded = new ArrayList<>(candidates.size() + 1);
+            // Scans read the segments and the index they were listed with, so both are swapped while none runs
+            segmentDeletionLock.writeLock().lock();
+            try {
+                for (int part = 0; part < outputs.size(); part++) {
+                    SegmentInfo info = outputInfos.get(part);
+                    segments.put(info.name, info);
+                    List<SegmentFormat.Entry> entries = outputs.get(part).getEntries();
+                    List<Location> locations = movedLocations.get(part);
+                    for (int i = 0; i < entries.size(); i++) {
+                        SegmentFormat.Entry entry = entries.get(i);
+                        Location location = new Location(info, entry.offset, entry.length, false);
+                        // Keys written since the compaction started keep their newer location
+                        if (index.replace(entry.key, locations.get(i), location)) {
+                            info.liveBytes.addAndGet(entry.length);
+                            movedRows++;
+                        }
+                    }
+                }
+                droppedTombstones.forEach(index::remove);
+                for (SegmentInfo info : candidates) {
+                    segments.remove(info.name);
+                    superseded.add(info.name);
+                }
+                if (commitMarker != null) {
+                    superseded.add(commitMarker);
+                }
+                commitMarker = outputCommitMarker;
+                deleteQuietly(superseded, "compacted segments");
+            } finally {
+                segmentDeletionLock.writeLock().unlock();
+            }
+            log.info("Compacted " + candidates.size() + " segments of bucket " + bucketName + " holding "
+                    + totalBytes + " bytes into " + outputInfos.size() + " segments holding " + movedRows
+                    + " records.");
+        } catch (IOException e) {
+            throw new S3TableException("Failed to read the segments of bucket " + bucketName + ": "
+                    + e.getMessage(), e);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Stop rolling and compacting in the background, and upload the current segment.
+     *
+     * @throws ConnectionUnavailableException if the current segment cannot be uploaded
+     */
+    @Override
+    public void close() throws ConnectionUnavailableException {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            scheduler.shutdownNow();
+        }
+        roll();
+    }
+
+    /**
+     * @return number of keys in the index, including deleted ones that have not been compacted yet
+     */
+    public int getIndexSize() {
+        return index.size();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    private void rollQuietly() {
+        try {
+            roll();
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            log.error("Failed to upload a segment to bucket " + bucketName + ", its records will be uploaded with "
+                    + "the next segment. " + e.getMessage(), e);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            log.error("Failed to compact the segments of bucket " + bucketName + ". " + e.getMessage(), e);
+        }
+    }
+
+    private boolean exists(String key) {
+        Object[] pending = getPending(key);
+        if (pending != null) {
+            return pending != SegmentBuilder.TOMBSTONE;
+        }
+        Location location = index.get(key);
+        return location != null && !location.tombstone;
+    }
+
+    private Object[] getPending(String key) {
+        Object[] pending = active.get(key);
+        if (pending == null && sealing != null) {
+            pending = sealing.get(key);
+        }
+        return pending;
+    }
+
+    private void append(SegmentBuilder segment, String key, Object[] record) {
+        Object[] values = null;
+        if (record != SegmentBuilder.TOMBSTONE) {
+            values = new Object[valueIndices.length];
+            for (int i = 0; i < valueIndices.length; i++) {
+                values[i] = record[valueIndices[i]];
+            }
+        }
+        try {
+            segment.append(key, record, values, codec);
+        } catch (IOException e) {
+            throw new S3TableException("Failed to encode the record with key '" + key + "'.", e);
+        }
+    }
+
+    /**
+     * Point the index to the rows of a segment. Called with the lock held, in the order the segments were written.
+     */
+    private void register(SegmentInfo info, List<SegmentFormat.Entry> entries) {
+        segments.put(info.name, info);
+        for (SegmentFormat.Entry entry : entries) {
+            info.liveBytes.addAndGet(entry.length);
+            Location previous = index.put(entry.key, new Location(info, entry.offset, entry.length,
+                    entry.type == SegmentFormat.TOMBSTONE));
+            if (previous != null) {
+                previous.segment.liveBytes.addAndGet(-previous.length);
+            }
+        }
+    }
+
+    private List<Object[]> scanSegment(SegmentInfo info, Map<String, Location> locations, Map<String, Object[]> pending,
+                                       Predicate<Object[]> filter) throws IOException {
+        byte[] data = getRange(info.name, 0, info.objectSize - 1);
+        if (data == null) {
+            throw new S3TableException("Segment " + info.name + " is missing from bucket " + bucketName + ".");
+        }
+        long footerOffset = SegmentFormat.readFooterOffset(data, data.length - SegmentFormat.TRAILER_LENGTH);
+        List<Object[]> matches = new ArrayList<>();
+        for (SegmentFormat.Entry entry : SegmentFormat.readFooter(data, (int) footerOffset,
+                data.length - SegmentFormat.TRAILER_LENGTH - (int) footerOffset)) {
+            Location location = locations.get(entry.key);
+            // Only the latest row of each key is live, and records held in memory are newer still
+            if (location == null || location.tombstone || location.segment != info
+                    || location.offset != entry.offset || pending.containsKey(entry.key)) {
+                continue;
+            }
+            Object[] record = decodeRow(data, entry.offset, entry.length);
+            if (record != null && filter.test(record)) {
+                matches.add(record);
+            }
+        }
+        return matches;
+    }
+
+    private Object[] decodeRow(byte[] data, int offset, int length) {
+        try {
+            RecordInputBuffer in = new RecordInputBuffer(data, offset, length);
+            String key = in.readString();
+            if (in.read() == SegmentFormat.TOMBSTONE) {
+                return null;
+            }
+            int valuesOffset = in.position();
+            Object[] values = codec.decode(data, valuesOffset, offset + length - valuesOffset);
+            Object[] record = new Object[attributeCount];
+            record[primaryKeyIndex] = key;
+            for (int i = 0; i < valueIndices.length; i++) {
+                record[valueIndices[i]] = values[i];
+            }
+            return record;
+        } catch (IOException e) {
+            throw new S3TableException("Failed to decode a segment row of bucket " + bucketName + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+    private List<SegmentFormat.Entry> readFooter(SegmentInfo info) throws IOException {
+        long start = Math.max(0, info.objectSize - FOOTER_READ_AHEAD);
+        byte[] tail = getRange(info.name, start, info.objectSize - 1);
+        if (tail == null) {
+            throw new S3TableException("Segment " + info.name + " got deleted from bucket " + bucketName
+                    + " while being loaded.");
+        }
+        long footerOffset = SegmentFormat.readFooterOffset(tail, tail.length - SegmentFormat.TRAILER_LENGTH);
+        info.dataSize = footerOffset;
+        if (footerOffset >= start) {
+            int offset = (int) (footerOffset - start);
+            return SegmentFormat.readFooter(tail, offset, tail.length - SegmentFormat.TRAILER_LENGTH - offset);
+        }
+        byte[] footer = getRange(info.name, footerOffset, info.objectSize - SegmentFormat.TRAILER_LENGTH - 1);
+        if (footer == null) {
+            throw new S3TableException("Segment " + info.name + " got deleted from bucket " + bucketName
+                    + " while being loaded.");
+        }
+        return SegmentFormat.readFooter(footer, 0, footer.length);
+    }
+
+    /**
+     * @return bytes of the given inclusive range of the object, or null if the object does not exist
+     */
+    private byte[] getRange(String objectKey, long start, long end) throws IOException {
+        GetObjectRequest request = new GetObjectRequest(bucketName, objectKey).withRange(start, end);
+        try (S3Object object = client.getObject(request)) {
+            return IOUtils.toByteArray(object.getObjectContent());
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private void upload(SegmentInfo info, RecordOutputBuffer body) throws ConnectionUnavailableException {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType(CONTENT_TYPE);
+        metadata.setContentLength(body.length());
+        PutObjectRequest request = new PutObjectRequest(bucketName, info.name, body.newInputStream(), metadata);
+        requestPipeline.execute(() -> client.putObject(request));
+        info.objectSize = body.length();
+    }
+
+    private void uploadCommitMarker(String name) throws ConnectionUnavailableException {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType(CONTENT_TYPE);
+        metadata.setContentLength(0);
+        PutObjectRequest request = new PutObjectRequest(bucketName, name, new ByteArrayInputStream(new byte[0]),
+                metadata);
+        requestPipeline.execute(() -> client.putObject(request));
+    }
+
+    /**
+     * Delete the given objects, logging instead of failing if they cannot be, as objects that are left behind get
+     * recognized and deleted on the next start.
+     */
+    private void deleteQuietly(List<String> names, String description) {
+        try {
+            for (int from = 0; from < names.size(); from += MAX_KEYS_PER_DELETE_REQUEST) {
+                List<DeleteObjectsRequest.KeyVersion> keys = new ArrayList<>();
+                for (String name : names.subList(from, Math.min(from + MAX_KEYS_PER_DELETE_REQUEST, names.size()))) {
+                    keys.add(new DeleteObjectsRequest.KeyVersion(name));
+                }
+                DeleteObjectsRequest request = new DeleteObjectsRequest(bucketName).withKeys(keys).withQuiet(true);
+                requestPipeline.execute(() -> client.deleteObjects(request));
+            }
+        } catch (ConnectionUnavailableException | RuntimeException e) {
+            log.warn("Failed to delete " + names.size() + " " + description + " of bucket " + bucketName
+                    + ", they will be deleted on the next start. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Location of the latest row of a key.
+     */
+    private static final class Location {
+        private final SegmentInfo segment;
+        private final int offset;
+        private final int length;
+        private final boolean tombstone;
+
+        private Location(SegmentInfo segment, int offset, int length, boolean tombstone) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.tombstone = tombstone;
+        }
+    }
+
+    /**
+     * A segment object, ordered by the time its rows were written.
+     */
+    private static final class SegmentInfo implements Comparable<SegmentInfo> {
+        private final String name;
+        private final long sequence;
+        private final int generation;
+        private final int part;
+        private final AtomicLong liveBytes = new AtomicLong();
+        private volatile long objectSize;
+        private volatile long dataSize;
+
+        private SegmentInfo(String prefix, long sequence, int generation, int part) {
+            this.name = prefix + String.format("%020d.%05d.%05d", sequence, generation, part);
+            this.sequence = sequence;
+            this.generation = generation;
+            this.part = part;
+        }
+
+        /**
+         * @return the segment, or null if the object key is not a segment name
+         */
+        private static SegmentInfo parse(String objectKey, String prefix, long objectSize) {
+            String[] fields = objectKey.substring(prefix.length()).split("\\.");
+            if (fields.length != 3) {
+                return null;
+            }
+            try {
+                SegmentInfo info = new SegmentInfo(prefix, Long.parseLong(fields[0]), Integer.parseInt(fields[1]),
+                        Integer.parseInt(fields[2]));
+                if (!info.name.equals(objectKey)) {
+                    return null;
+                }
+                info.objectSize = objectSize;
+                return info;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return name of the marker committing the compaction that wrote this segment
+         */
+        private String commitMarkerName(String prefix) {
+            return commitMarkerName(prefix, generation);
+        }
+
+        /**
+         * @return name of the marker committing a compaction into the given generation up to this segment
+         */
+        private String commitMarkerName(String prefix, int generation) {
+            return prefix + String.format("%020d.%05d", sequence, generation) + COMMIT_MARKER_SUFFIX;
+        }
+
+        @Override
+        public int compareTo(SegmentInfo other) {
+            return name.compareTo(other.name);
+        }
+    }
+}
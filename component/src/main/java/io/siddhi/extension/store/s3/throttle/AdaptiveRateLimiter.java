@@ -0,0 +1,167 @@
+package io.siddhi.extension.store.s3.throttle;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Paces the requests sent to each prefix of a bucket, adapting the pace to the throttling of S3.
+ * <p>
+ * S3 scales the request rate it accepts per prefix, and answers with 503 SlowDown while a prefix is over it. The
+ * read and write rates of each prefix start at the given maximums and follow additive-increase, multiplicative
+ * decrease: every throttled request halves the rate, and successful requests add back {@code increase} requests per
+ * second every second. Requests sent under a rate that was already lowered do not lower it again, so a burst of
+ * requests throttled together counts once.
+ * <p>
+ * Requests over the rate are held back on the calling thread, which is how backpressure reaches the callers. Slots
+ * left unused for a short while are given to bursts of requests.
+ */
+public class AdaptiveRateLimiter {
+
+    static final double DECREASE_FACTOR = 0.5;
+    // Slots left unused for this long are given to bursts of requests
+    private static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // Prefixes beyond this many are forgotten once they are back at the maximum rate
+    private static final int MAX_IDLE_PREFIXES = 1024;
+
+    private final ConcurrentMap<String, PrefixRate> rates = new ConcurrentHashMap<>();
+    private final int readRate;
+    private final int writeRate;
+    private final int minRate;
+    private final int increase;
+
+    /**
+     * @param readRate  highest rate of reads per prefix, in requests per second
+     * @param writeRate highest rate of writes per prefix, in requests per second
+     * @param minRate   lowest rate throttling may bring a prefix down to, in requests per second
+     * @param increase  requests per second regained every second of successful requests
+     */
+    public AdaptiveRateLimiter(int readRate, int writeRate, int minRate, int increase) {
+        this.readRate = readRate;
+        this.writeRate = writeRate;
+        this.minRate = minRate;
+        this.increase = increase;
+    }
+
+    /**
+     * Wait until a request may be sent to the given prefix.
+     *
+     * @param prefix        prefix of the object keys of the request
+     * @param write         whether the request writes or deletes objects
+     * @param deadlineNanos {@link System#nanoTime()} by which the request has to be sent
+     * @return rate of the prefix, to be told the outcome of the request
+     * @throws TimeoutException     if the request could not be sent before the deadline
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public PrefixRate acquire(String prefix, boolean write, long deadlineNanos)
+            throws TimeoutException, InterruptedException {
+        String name = (write ? "write:" : "read:") + prefix;
+        PrefixRate rate = rates.get(name);
+        if (rate == null) {
+            if (rates.size() >= MAX_IDLE_PREFIXES) {
+                rates.values().removeIf(PrefixRate::isIdle);
+            }
+            rate = rates.computeIfAbsent(name, key -> new PrefixRate(write ? writeRate : readRate));
+        }
+        long waitNanos = rate.reserve(System.nanoTime(), deadlineNanos);
+        if (waitNanos < 0) {
+            throw new TimeoutException("Requests to prefix '" + prefix + "' are limited to "
+                    + Math.round(rate.getRate()) + " per second after being throttled by S3.");
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return rate;
+    }
+
+    /**
+     * @return current rate of the prefix, in requests per second
+     */
+    public double getRate(String prefix, boolean write) {
+        PrefixRate rate = rates.get((write ? "write:" : "read:") + prefix);
+        return rate == null ? (write ? writeRate : readRate) : rate.getRate();
+    }
+
+    /**
+     * @return number of prefixes held below their maximum rate
+     */
+    public int getThrottledPrefixCount() {
+        int count = 0;
+        for (PrefixRate rate : rates.values()) {
+            if (rate.getRate() < rate.maxRate) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Rate of the reads or writes of a prefix.
+     */
+    public final class PrefixRate {
+        private final double maxRate;
+        private double rate;
+        private long nextFreeNanos;
+        private long lastDecreaseNanos;
+        private boolean decreased;
+
+        private PrefixRate(double maxRate) {
+            this.maxRate = maxRate;
+            this.rate = maxRate;
+            this.nextFreeNanos = System.nanoTime();
+        }
+
+        /**
+         * Reserve the next free slot of the prefix.
+         *
+         * @return nanoseconds to wait for the slot, or -1 if the slot is past the deadline
+         */
+        synchronized long reserve(long nowNanos, long deadlineNanos) {
+            long startNanos = Math.max(nextFreeNanos, nowNanos - BURST_NANOS);
+            if (startNanos - deadlineNanos > 0) {
+                return -1;
+            }
+            nextFreeNanos = startNanos + intervalNanos();
+            return Math.max(0, startNanos - nowNanos);
+        }
+
+        /**
+         * Raise the rate after a request the prefix accepted.
+         */
+        public synchronized void onSuccess() {
+            // Spread over the requests of a second, the rate grows by the increase every second
+            rate = Math.min(maxRate, rate + increase / rate);
+        }
+
+        /**
+         * Lower the rate after a request S3 throttled.
+         *
+         * @param sentNanos {@link System#nanoTime()} the request was sent at
+         */
+        public synchronized void onThrottle(long sentNanos) {
+            long nowNanos = System.nanoTime();
+            if (decreased && sentNanos - lastDecreaseNanos < 0) {
+                // Sent before the rate was lowered, hence it says nothing of the lowered rate
+                return;
+            }
+            rate = Math.max(minRate, rate * DECREASE_FACTOR);
+            decreased = true;
+            lastDecreaseNanos = nowNanos;
+            // Give the prefix a pause of a slot before the next request
+            nextFreeNanos = Math.max(nextFreeNanos, nowNanos + intervalNanos());
+        }
+
+        public synchronized double getRate() {
+            return rate;
+        }
+
+        private synchronized boolean isIdle() {
+            return rate >= maxRate && nextFreeNanos - System.nanoTime() < 0;
+        }
+
+        private long intervalNanos() {
+            return (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package io.siddhi.extension.store.s3.throttle;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.CreateBucketRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.SelectObjectContentRequest;
+import com.amazonaws.services.s3.model.SelectObjectContentResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link AmazonS3} of a single table, pacing its requests with an {@link AdaptiveRateLimiter}. Only the operations
+ * used by the store are supported.
+ * <p>
+ * Requests S3 throttles lower the rate of their prefix and are sent again once the lowered rate allows, instead of
+ * failing, for as long as {@code maxWait} allows. Uploads are sent again only if their body can be rewound.
+ */
+public class RateLimitedAmazonS3 extends AbstractAmazonS3 {
+
+    private static final Logger log = Logger.getLogger(RateLimitedAmazonS3.class);
+
+    private final AmazonS3 client;
+    private final AdaptiveRateLimiter rateLimiter;
+    private final long maxWaitNanos;
+
+    /**
+     * @param client      client the requests are sent through
+     * @param rateLimiter limiter pacing the requests
+     * @param maxWait     milliseconds a request may be held back, while waiting for its prefix and while being sent
+     *                    again after being throttled, or 0 for no limit
+     */
+    public RateLimitedAmazonS3(AmazonS3 client, AdaptiveRateLimiter rateLimiter, long maxWait) {
+        this.client = client;
+        this.rateLimiter = rateLimiter;
+        this.maxWaitNanos = maxWait == 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(maxWait);
+    }
+
+    @Override
+    public PutObjectResult putObject(PutObjectRequest request) {
+        return execute(prefixOf(request.getKey()), true, request.getInputStream(),
+                () -> client.putObject(request));
+    }
+
+    @Override
+    public S3Object getObject(String bucketName, String key) {
+        return execute(prefixOf(key), false, null, () -> client.getObject(bucketName, key));
+    }
+
+    @Override
+    public S3Object getObject(GetObjectRequest request) {
+        return execute(prefixOf(request.getKey()), false, null, () -> client.getObject(request));
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+        return execute(prefixOf(key), false, null, () -> client.getObjectMetadata(bucketName, key));
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+        return execute(prefixOf(request.getKey()), false, null, () -> client.getObjectMetadata(request));
+    }
+
+    @Override
+    public boolean doesObjectExist(String bucketName, String objectName) {
+        return execute(prefixOf(objectName), false, null, () -> client.doesObjectExist(bucketName, objectName));
+    }
+
+    @Override
+    public boolean doesBucketExistV2(String bucketName) {
+        return execute("", false, null, () -> client.doesBucketExistV2(bucketName));
+    }
+
+    @Override
+    public Bucket createBucket(CreateBucketRequest request) {
+        return execute("", true, null, () -> client.createBucket(request));
+    }
+
+    @Override
+    public ListObjectsV2Result listObjectsV2(ListObjectsV2Request request) {
+        return execute(prefixOf(request.getPrefix()), false, null, () -> client.listObjectsV2(request));
+    }
+
+    @Override
+    public DeleteObjectsResult deleteObjects(DeleteObjectsRequest request) {
+        // A batch may span prefixes, it is paced by the one of its first key
+        String prefix = request.getKeys().isEmpty() ? "" : prefixOf(request.getKeys().get(0).getKey());
+        return execute(prefix, true, null, () -> client.deleteObjects(request));
+    }
+
+    @Override
+    public SelectObjectContentResult selectObjectContent(SelectObjectContentRequest request) {
+        return execute(prefixOf(request.getKey()), false, null, () -> client.selectObjectContent(request));
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+        return execute(prefixOf(request.getKey()), true, null, () -> client.initiateMultipartUpload(request));
+    }
+
+    @Override
+    public UploadPartResult uploadPart(UploadPartRequest request) {
+        return execute(prefixOf(request.getKey()), true, request.getInputStream(), () -> client.uploadPart(request));
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        return execute(prefixOf(request.getKey()), true, null, () -> client.completeMultipartUpload(request));
+    }
+
+    @Override
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+        execute(prefixOf(request.getKey()), true, null, () -> {
+            client.abortMultipartUpload(request);
+            return null;
+        });
+    }
+
+    /**
+     * The client is shut down by its owner.
+     */
+    @Override
+    public void shutdown() {
+    }
+
+    /**
+     * @return the part of the key up to its last delimiter, which S3 scales the request rate by
+     */
+    static String prefixOf(String key) {
+        if (key == null) {
+            return "";
+        }
+        return key.substring(0, key.lastIndexOf('/') + 1);
+    }
+
+    private <T> T execute(String prefix, boolean write, InputStream body, Callable<T> call) {
+        // Deadlines are compared by difference, which holds for half the range of the clock
+        long deadlineNanos = System.nanoTime() + Math.min(maxWaitNanos, Long.MAX_VALUE / 2);
+        int attempts = 0;
+        while (true) {
+            AdaptiveRateLimiter.PrefixRate rate = acquire(prefix, write, deadlineNanos);
+            long sentNanos = System.nanoTime();
+            attempts++;
+            try {
+                T result = call.call();
+                rate.onSuccess();
+                return result;
+            } catch (AmazonServiceException e) {
+                if (!RetryUtils.isThrottlingException(e)) {
+                    throw e;
+                }
+                rate.onThrottle(sentNanos);
+                if (!rewind(body)) {
+                    throw e;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("S3 throttled attempt " + attempts + " of a request to prefix '" + prefix
+                            + "', sending it again at " + Math.round(rate.getRate()) + " requests per second.");
+                }
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                // None of the delegated calls throw checked exceptions
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private AdaptiveRateLimiter.PrefixRate acquire(String prefix, boolean write, long deadlineNanos) {
+        try {
+            return rateLimiter.acquire(prefix, write, deadlineNanos);
+        } catch (TimeoutException e) {
+            throw new SdkClientException(e.getMessage() + " The request could not be sent within "
+                    + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException("Interrupted while waiting to send a request to prefix '" + prefix + "'.", e);
+        }
+    }
+
+    /**
+     * Rewind the body of an upload to where the client started reading it, so that it can be sent again.
+     *
+     * @return whether the request can be sent again
+     */
+    private static boolean rewind(InputStream body) {
+        if (body == null) {
+            return true;
+        }
+        if (!body.markSupported()) {
+            return false;
+        }
+        try {
+            body.reset();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
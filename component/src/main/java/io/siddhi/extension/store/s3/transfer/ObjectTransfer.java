@@ -0,0 +1,294 @@
+package io.siddhi.extension.store.s3.transfer;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.util.IOUtils;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import org.apache.log4j.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads and downloads object bodies, splitting large ones into parts transferred in parallel.
+ * <p>
+ * Bodies of at least the threshold are uploaded with a multipart upload whose parts are streamed straight from the
+ * encoded record, so a large object is never copied as a whole on its way out. A failed upload is aborted, so that
+ * the parts uploaded so far are not left behind to be billed. Objects are read with a ranged GET of the first part,
+ * which also tells the size of the object; the remaining parts of a large object are then fetched in parallel into
+ * a single array of the exact size. Every part after the first is fetched only if the object still has the ETag
+ * of the first one, so that an object overwritten in the meantime is not read as a mix of two versions.
+ * <p>
+ * Parts are transferred by a pool of threads of its own, as the callers typically already run on the workers of
+ * the request pipeline.
+ */
+public class ObjectTransfer {
+
+    private static final Logger log = Logger.getLogger(ObjectTransfer.class);
+    private static final int MAX_DOWNLOAD_ATTEMPTS = 3;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final AmazonS3 client;
+    private final String bucketName;
+    private final int threshold;
+    private final int partSize;
+    private final ExecutorService executor;
+
+    /**
+     * @param name        name of the table, naming the transfer threads
+     * @param client      S3 client
+     * @param bucketName  bucket of the objects
+     * @param threshold   size from which bodies are transferred in parts, or 0 to transfer every body in one request
+     * @param partSize    size of the parts
+     * @param concurrency number of parts transferred at a time
+     */
+    public ObjectTransfer(String name, AmazonS3 client, String bucketName, int threshold, int partSize,
+                          int concurrency) {
+        this.client = client;
+        this.bucketName = bucketName;
+        this.threshold = threshold;
+        this.partSize = partSize;
+        if (threshold > 0) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, name + "-transfer-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * @return whether a body of the given length is uploaded in parts
+     */
+    public boolean isMultipart(long length) {
+        return threshold > 0 && length >= threshold;
+    }
+
+    /**
+     * Upload a body with a multipart upload, on the calling thread and the transfer threads.
+     *
+     * @param objectKey key of the object
+     * @param metadata  metadata of the object, without the content length
+     * @param body      the body, which must not be reset until the upload returns
+     * @return ETag of the object
+     */
+    public String upload(String objectKey, ObjectMetadata metadata, RecordOutputBuffer body) {
+        String uploadId = client.initiateMultipartUpload(
+                new InitiateMultipartUploadRequest(bucketName, objectKey, metadata)).getUploadId();
+        List<Future<PartETag>> futures = new ArrayList<>();
+        try {
+            int length = body.length();
+            int partCount = (length + partSize - 1) / partSize;
+            for (int part = 0; part < partCount; part++) {
+                int offset = part * partSize;
+                int partLength = Math.min(partSize, length - offset);
+                UploadPartRequest request = new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(objectKey)
+                        .withUploadId(uploadId)
+                        .withPartNumber(part + 1)
+                        .withPartSize(partLength)
+                        .withInputStream(body.newInputStream(offset, partLength))
+                        .withLastPart(part == partCount - 1);
+                futures.add(executor.submit(() -> client.uploadPart(request).getPartETag()));
+            }
+            List<PartETag> partETags = awaitAll(futures, "uploading object " + objectKey);
+            String etag = client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, objectKey,
+                    uploadId, partETags)).getETag();
+            if (log.isDebugEnabled()) {
+                log.debug("Uploaded object " + objectKey + " of " + length + " bytes in " + partCount
+                        + " parts to bucket " + bucketName + ".");
+            }
+            return etag;
+        } catch (RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            abort(objectKey, uploadId);
+            throw e;
+        }
+    }
+
+    /**
+     * Read an object, on the calling thread and the transfer threads.
+     *
+     * @param objectKey key of the object
+     * @return the object
+     * @throws IOException if the body cannot be read
+     * @throws AmazonS3Exception with a 404 status code if there is no object
+     */
+    public Download download(String objectKey) throws IOException {
+        if (threshold == 0) {
+            try (S3Object object = client.getObject(bucketName, objectKey)) {
+                return new Download(object.getObjectMetadata(), IOUtils.toByteArray(object.getObjectContent()));
+            }
+        }
+        for (int attempt = 1; attempt <= MAX_DOWNLOAD_ATTEMPTS; attempt++) {
+            Download download = downloadParts(objectKey);
+            if (download != null) {
+                return download;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Object " + objectKey + " of bucket " + bucketName + " changed while being read, "
+                        + "attempt " + attempt + " of " + MAX_DOWNLOAD_ATTEMPTS + ".");
+            }
+        }
+        throw new S3TableException("Gave up reading object " + objectKey + " of bucket " + bucketName + " after "
+                + MAX_DOWNLOAD_ATTEMPTS + " attempts, as it kept being overwritten while being read.");
+    }
+
+    public void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Read an object in parts.
+     *
+     * @return the object, or null if it was overwritten while being read
+     */
+    private Download downloadParts(String objectKey) throws IOException {
+        ObjectMetadata metadata;
+        byte[] body;
+        try (S3Object object = client.getObject(new GetObjectRequest(bucketName, objectKey)
+                .withRange(0, partSize - 1))) {
+            metadata = object.getObjectMetadata();
+            long size = metadata.getInstanceLength();
+            if (size > MAX_ARRAY_SIZE) {
+                throw new S3TableException("Cannot read object " + objectKey + " of bucket " + bucketName + ", as "
+                        + "its " + size + " bytes do not fit in a record.");
+            }
+            body = new byte[(int) size];
+            readFully(object.getObjectContent(), body, 0, (int) Math.min(partSize, size));
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() != 416) {
+                throw e;
+            }
+            // Empty objects have no range to read
+            try (S3Object object = client.getObject(bucketName, objectKey)) {
+                return new Download(object.getObjectMetadata(), IOUtils.toByteArray(object.getObjectContent()));
+            }
+        }
+        if (body.length <= partSize) {
+            return new Download(metadata, body);
+        }
+
+        String etag = metadata.getETag();
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int offset = partSize; offset < body.length; offset += partSize) {
+            int partOffset = offset;
+            int partLength = Math.min(partSize, body.length - offset);
+            GetObjectRequest request = new GetObjectRequest(bucketName, objectKey)
+                    .withRange(partOffset, partOffset + partLength - 1)
+                    .withMatchingETagConstraint(etag);
+            futures.add(executor.submit(() -> {
+                // The client returns no object when the ETag constraint does not hold
+                try (S3Object part = client.getObject(request)) {
+                    if (part == null) {
+                        return false;
+                    }
+                    readFully(part.getObjectContent(), body, partOffset, partLength);
+                    return true;
+                }
+            }));
+        }
+        try {
+            List<Boolean> results = awaitAll(futures, "reading object " + objectKey);
+            return results.contains(Boolean.FALSE) ? null : new Download(metadata, body);
+        } catch (RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+    }
+
+    private <T> List<T> awaitAll(List<Future<T>> futures, String action) {
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new S3TableException("Failed " + action + " of bucket " + bucketName + ".", cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new S3TableException("Interrupted while " + action + " of bucket " + bucketName + ".", e);
+            }
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    private void abort(String objectKey, String uploadId) {
+        try {
+            client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectKey, uploadId));
+        } catch (RuntimeException e) {
+            // A lifecycle rule aborting incomplete uploads cleans up the parts otherwise
+            log.warn("Failed to abort the multipart upload of object " + objectKey + " to bucket " + bucketName
+                    + ": " + e.getMessage());
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] bytes, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = in.read(bytes, offset + read, length - read);
+            if (count < 0) {
+                throw new EOFException("Object ended after " + read + " of " + length + " bytes.");
+            }
+            read += count;
+        }
+    }
+
+    /**
+     * Object read by a download.
+     */
+    public static final class Download {
+        private final ObjectMetadata metadata;
+        private final byte[] body;
+
+        private Download(ObjectMetadata metadata, byte[] body) {
+            this.metadata = metadata;
+            this.body = body;
+        }
+
+        public ObjectMetadata getMetadata() {
+            return metadata;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
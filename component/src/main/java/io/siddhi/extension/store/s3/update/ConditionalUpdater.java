@@ -0,0 +1,272 @@
+package io.siddhi.extension.store.s3.update;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+import io.siddhi.extension.store.s3.codec.RecordMapper;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+import io.siddhi.extension.store.s3.util.RecordBufferPool;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-modify-write of single records that does not lose concurrent writes to the same object.
+ * <p>
+ * The object is read along with its version, the mutation is applied, and the result is written only if the object
+ * is still at the version that was read; otherwise the object is read again and the mutation reapplied, up to a
+ * bounded number of attempts. By default the write is made conditional by S3 itself, with an If-Match header on the
+ * ETag that was read, or an If-None-Match header if there was no object. ETags only cover the object body, so a
+ * concurrent write changing nothing but attributes stored as metadata goes unnoticed in this mode.
+ * <p>
+ * S3 compatible stores that ignore conditional headers can use version metadata instead: every write stamps the
+ * object with a fresh version token, and the token is checked with a HEAD request right before the write. That check
+ * and the write are not atomic, so it narrows the window for lost updates down to the time between the two requests
+ * rather than closing it.
+ */
+public class ConditionalUpdater {
+
+    public static final String VERSION_METADATA_KEY = "siddhi-version";
+
+    private static final Logger log = Logger.getLogger(ConditionalUpdater.class);
+    private static final long MAX_BACKOFF_MILLIS = 100;
+
+    private final AmazonS3 client;
+    private final String bucketName;
+    private final String contentType;
+    private final RecordMapper recordMapper;
+    private final RecordBufferPool recordBufferPool;
+    private final boolean versionMetadata;
+    private final int maxAttempts;
+
+    /**
+     * Mutation of a record. It is applied once per attempt, each time to a freshly read copy of the record, hence
+     * it must not have effects beyond its result.
+     */
+    public interface Mutation {
+
+        /**
+         * @param record current record, which may be modified in place, or null if there is no object
+         * @return the record to be written, or null to leave the object as it is
+         */
+        Object[] apply(Object[] record);
+    }
+
+    /**
+     * @param client           S3 client
+     * @param bucketName       bucket of the records
+     * @param contentType      content type of the objects
+     * @param recordMapper     mapper converting records to objects and back
+     * @param recordBufferPool pool of buffers the object bodies are encoded to
+     * @param versionMetadata  whether to check version metadata instead of making the writes conditional
+     * @param maxAttempts      maximum number of times a record is read and written before giving up on conflicts
+     */
+    public ConditionalUpdater(AmazonS3 client, String bucketName, String contentType, RecordMapper recordMapper,
+                              RecordBufferPool recordBufferPool, boolean versionMetadata, int maxAttempts) {
+        this.client = client;
+        this.bucketName = bucketName;
+        this.contentType = contentType;
+        this.recordMapper = recordMapper;
+        this.recordBufferPool = recordBufferPool;
+        this.versionMetadata = versionMetadata;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Stamp the metadata of an object about to be written with a new version token.
+     */
+    public static void stampVersion(ObjectMetadata metadata) {
+        metadata.addUserMetadata(VERSION_METADATA_KEY, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Apply a mutation to a record, on the calling thread.
+     *
+     * @param key       primary key of the record
+     * @param objectKey key of the object of the record
+     * @param mutation  the mutation
+     * @return the outcome
+     * @throws IOException     if the object cannot be read
+     * @throws S3TableException if the object kept being changed concurrently for all the attempts
+     */
+    public Result update(String key, String objectKey, Mutation mutation) throws IOException {
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            Version version = new Version();
+            Object[] current = read(key, objectKey, version);
+            Object[] updated = mutation.apply(current);
+            if (updated == null) {
+                return new Result(null, 0, false, attempt);
+            }
+            long length = write(key, objectKey, updated, version);
+            if (length >= 0) {
+                return new Result(updated, length, current == null, attempt);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Object " + objectKey + " of bucket " + bucketName + " changed while being updated, "
+                        + "attempt " + attempt + " of " + maxAttempts + ".");
+            }
+            backOff(attempt);
+        }
+        throw new S3TableException("Gave up updating record '" + key + "' in bucket " + bucketName + " after "
+                + maxAttempts + " attempts, as its object kept being changed concurrently.");
+    }
+
+    private Object[] read(String key, String objectKey, Version version) throws IOException {
+        try (S3Object object = client.getObject(bucketName, objectKey)) {
+            byte[] body = IOUtils.toByteArray(object.getObjectContent());
+            version.set(object.getObjectMetadata());
+            return recordMapper.toRecord(key, object.getObjectMetadata(), body, 0, body.length);
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Write the record if the object is still at the given version.
+     *
+     * @return length of the object written, or -1 if the object changed
+     */
+    private long write(String key, String objectKey, Object[] record, Version expected) {
+        ObjectMetadata metadata = recordMapper.createMetadata(record);
+        if (versionMetadata) {
+            Version latest = new Version();
+            try {
+                latest.set(client.getObjectMetadata(bucketName, objectKey));
+            } catch (AmazonS3Exception e) {
+                if (e.getStatusCode() != 404) {
+                    throw e;
+                }
+            }
+            if (!latest.isSameAs(expected)) {
+                return -1;
+            }
+            stampVersion(metadata);
+        }
+        RecordOutputBuffer body = encodeBody(key, record, metadata);
+        try {
+            metadata.setContentType(contentType);
+            metadata.setContentLength(body.length());
+            PutObjectRequest request = new PutObjectRequest(bucketName, objectKey, body.newInputStream(), metadata);
+            if (!versionMetadata) {
+                if (expected.exists) {
+                    request.putCustomRequestHeader("If-Match", "\"" + expected.etag + "\"");
+                } else {
+                    request.putCustomRequestHeader("If-None-Match", "*");
+                }
+            }
+            client.putObject(request);
+            return body.length();
+        } catch (AmazonS3Exception e) {
+            // 412 when the condition does not hold, 409 when a conflicting conditional write is in progress
+            if (e.getStatusCode() == 412 || e.getStatusCode() == 409) {
+                return -1;
+            }
+            throw e;
+        } finally {
+            recordBufferPool.release(body);
+        }
+    }
+
+    private RecordOutputBuffer encodeBody(String key, Object[] record, ObjectMetadata metadata) {
+        RecordOutputBuffer buffer = recordBufferPool.acquire();
+        try {
+            recordMapper.encodeBody(record, buffer);
+            return recordMapper.compressBody(buffer, metadata, recordBufferPool);
+        } catch (IOException e) {
+            recordBufferPool.release(buffer);
+            throw new S3TableException("Failed to encode the record with key '" + key + "'.", e);
+        }
+    }
+
+    /**
+     * Wait a random time before the next attempt, growing with the attempts, so that writers that keep conflicting
+     * fall out of step.
+     */
+    private void backOff(int attempt) {
+        long maxMillis = Math.min(MAX_BACKOFF_MILLIS, 1L << Math.min(attempt, 20));
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(maxMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new S3TableException("Interrupted while updating records in bucket " + bucketName + ".",
+                    e);
+        }
+    }
+
+    /**
+     * Outcome of an update.
+     */
+    public static final class Result {
+        private final Object[] record;
+        private final long length;
+        private final boolean created;
+        private final int attempts;
+
+        private Result(Object[] record, long length, boolean created, int attempts) {
+            this.record = record;
+            this.length = length;
+            this.created = created;
+            this.attempts = attempts;
+        }
+
+        /**
+         * @return the record written, or null if the object was left as it is
+         */
+        public Object[] getRecord() {
+            return record;
+        }
+
+        /**
+         * @return length of the object written
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * @return whether there was no object before the write
+         */
+        public boolean isCreated() {
+            return created;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+
+    /**
+     * Version of an object as seen by a read.
+     */
+    private static final class Version {
+        private boolean exists;
+        private String etag;
+        private String token;
+
+        private void set(ObjectMetadata metadata) {
+            this.exists = true;
+            this.etag = metadata.getETag();
+            this.token = metadata.getUserMetaDataOf(VERSION_METADATA_KEY);
+        }
+
+        private boolean isSameAs(Version other) {
+            if (exists != other.exists) {
+                return false;
+            }
+            // Objects written before version metadata was enabled carry no token, their ETags are compared instead
+            return token != null || other.token != null ? Objects.equals(token, other.token)
+                    : Objects.equals(etag, other.etag);
+        }
+    }
+}
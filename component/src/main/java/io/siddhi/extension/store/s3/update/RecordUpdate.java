@@ -0,0 +1,99 @@
+package io.siddhi.extension.store.s3.update;
+
+import io.siddhi.extension.store.s3.condition.S3CompiledCondition;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Events of an update batch that may change the record of one primary key, applied to the record in the order the
+ * events arrived. An event updates the record if the record matches the condition of the event, as it stands after
+ * the events before it.
+ * <p>
+ * For update or add, the record of an event that updates nothing is to be added. When the record can only match
+ * through its primary key, such an event is folded in by replacing the record with the one to be added, provided it
+ * has the same key; other events that update nothing are left for the caller to add once every record is updated.
+ */
+public class RecordUpdate implements ConditionalUpdater.Mutation {
+
+    private final String key;
+    private final int keyIndex;
+    private final S3CompiledCondition condition;
+    private final List<Map<String, Object>> conditionParameterMaps;
+    private final UpdateSet updateSet;
+    private final List<Map<String, Object>> setParameterMaps;
+    private final List<Object[]> addingRecords;
+    private final boolean foldAdds;
+    private final int[] events;
+    private final boolean[] handled;
+
+    /**
+     * @param key                    primary key of the record
+     * @param keyIndex               index of the primary key attribute
+     * @param condition              condition of the update
+     * @param conditionParameterMaps values of the stream variables of the condition, by event
+     * @param updateSet              set clause of the update
+     * @param setParameterMaps       values of the stream variables of the set clause, by event
+     * @param addingRecords          records to be added for events that update nothing, by event, or null for
+     *                               updates that do not add
+     * @param events                 indices of the events that may change the record, in the order they arrived
+     */
+    public RecordUpdate(String key, int keyIndex, S3CompiledCondition condition,
+                        List<Map<String, Object>> conditionParameterMaps, UpdateSet updateSet,
+                        List<Map<String, Object>> setParameterMaps, List<Object[]> addingRecords,
+                        List<Integer> events) {
+        this.key = key;
+        this.keyIndex = keyIndex;
+        this.condition = condition;
+        this.conditionParameterMaps = conditionParameterMaps;
+        this.updateSet = updateSet;
+        this.setParameterMaps = setParameterMaps;
+        this.addingRecords = addingRecords;
+        this.foldAdds = addingRecords != null && condition.isPrimaryKeyLookup();
+        this.events = new int[events.size()];
+        for (int i = 0; i < this.events.length; i++) {
+            this.events[i] = events.get(i);
+        }
+        this.handled = new boolean[this.events.length];
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public Object[] apply(Object[] record) {
+        boolean changed = false;
+        for (int i = 0; i < events.length; i++) {
+            int event = events[i];
+            handled[i] = false;
+            if (record != null && condition.matches(record, conditionParameterMaps.get(event))) {
+                updateSet.apply(record, setParameterMaps.get(event));
+                handled[i] = true;
+                changed = true;
+            } else if (foldAdds && key.equals(addingRecords.get(event)[keyIndex])) {
+                record = addingRecords.get(event).clone();
+                handled[i] = true;
+                changed = true;
+            }
+        }
+        if (changed && !key.equals(record[keyIndex])) {
+            throw new S3TableException("Cannot change the primary key of record '" + key + "' to '"
+                    + record[keyIndex] + "', as records are stored by their primary key.");
+        }
+        return changed ? record : null;
+    }
+
+    /**
+     * Mark the events that the last application of the update handled, either by updating the record or by
+     * adding it.
+     *
+     * @param handledEvents flags of the events of the batch, by event
+     */
+    public void markHandled(boolean[] handledEvents) {
+        for (int i = 0; i < events.length; i++) {
+            handledEvents[events[i]] |= handled[i];
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.siddhi.extension.store.s3.update;
+
+import io.siddhi.core.util.collection.operator.CompiledExpression;
+import io.siddhi.extension.store.s3.condition.S3CompiledExpression;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Set clause of an update, assigning values to attributes of the matching records.
+ */
+public class UpdateSet {
+
+    private final int[] indices;
+    private final Attribute.Type[] types;
+    private final S3CompiledExpression[] expressions;
+    private final boolean recordIndependent;
+
+    /**
+     * @param setExpressions compiled expressions of the values, by the name of the attribute they are assigned to
+     * @param attributes     attributes of the table
+     * @throws IllegalArgumentException if an expression is assigned to an attribute the table does not have
+     */
+    public UpdateSet(Map<String, CompiledExpression> setExpressions, List<Attribute> attributes) {
+        this.indices = new int[setExpressions.size()];
+        this.types = new Attribute.Type[indices.length];
+        this.expressions = new S3CompiledExpression[indices.length];
+        boolean independent = true;
+        int i = 0;
+        for (Map.Entry<String, CompiledExpression> entry : setExpressions.entrySet()) {
+            indices[i] = indexOf(attributes, entry.getKey());
+            types[i] = attributes.get(indices[i]).getType();
+            expressions[i] = (S3CompiledExpression) entry.getValue();
+            independent &= expressions[i].isRecordIndependent();
+            i++;
+        }
+        this.recordIndependent = independent;
+    }
+
+    /**
+     * Assign the values to the attributes of a record. All the values are evaluated against the record as it was
+     * before the update.
+     *
+     * @param record     the record, which is modified in place
+     * @param parameters values of the stream variables of the set clause
+     */
+    public void apply(Object[] record, Map<String, Object> parameters) {
+        Object[] values = new Object[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            values[i] = expressions[i].evaluate(record, parameters, types[i]);
+        }
+        for (int i = 0; i < indices.length; i++) {
+            record[indices[i]] = values[i];
+        }
+    }
+
+    /**
+     * Whether updating any record gives the given record, i.e. the values do not depend on the record being updated,
+     * and they match the given record in every attribute. A record known to end up as the given one either way can
+     * simply be written, without reading it first.
+     *
+     * @param record     the record
+     * @param parameters values of the stream variables of the set clause
+     * @param keyIndex   index of the primary key, which need not be assigned as the record is located by it
+     */
+    public boolean yields(Object[] record, Map<String, Object> parameters, int keyIndex) {
+        if (!recordIndependent) {
+            return false;
+        }
+        boolean[] assigned = new boolean[record.length];
+        assigned[keyIndex] = true;
+        for (int i = 0; i < indices.length; i++) {
+            if (!Objects.equals(expressions[i].evaluate(null, parameters, types[i]), record[indices[i]])) {
+                return false;
+            }
+            assigned[indices[i]] = true;
+        }
+        for (boolean attributeAssigned : assigned) {
+            if (!attributeAssigned) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(List<Attribute> attributes, String name) {
+        for (int i = 0; i < attributes.size(); i++) {
+            if (attributes.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Cannot update attribute '" + name + "', which the table does not have.");
+    }
+}
@@ -0,0 +1,33 @@
+package io.siddhi.extension.store.s3.util;
+
+import io.siddhi.core.table.record.RecordIterator;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * {@link RecordIterator} over records that are already materialized.
+ */
+public class ListRecordIterator implements RecordIterator<Object[]> {
+
+    private final Iterator<Object[]> iterator;
+
+    public ListRecordIterator(List<Object[]> records) {
+        this.iterator = records.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public Object[] next() {
+        return iterator.next();
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
@@ -0,0 +1,50 @@
+package io.siddhi.extension.store.s3.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of {@link RecordOutputBuffer}s that records are encoded into before being uploaded. A buffer is taken for each
+ * record and given back once its upload has completed, so the object body is handed to the S3 client straight from
+ * the buffer instead of from a copy.
+ * <p>
+ * Buffers that are never given back, e.g. because their upload got cancelled, are simply garbage collected. Buffers
+ * that grew beyond {@code maxRetainedCapacity} are dropped on release, so that a few large records do not pin memory.
+ */
+public class RecordBufferPool {
+
+    private final BlockingQueue<RecordOutputBuffer> buffers;
+    private final int initialCapacity;
+    private final int maxRetainedCapacity;
+
+    /**
+     * @param maxPooledBuffers    maximum number of idle buffers kept
+     * @param initialCapacity     capacity of newly created buffers
+     * @param maxRetainedCapacity maximum capacity of a buffer kept for reuse
+     */
+    public RecordBufferPool(int maxPooledBuffers, int initialCapacity, int maxRetainedCapacity) {
+        this.buffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+    }
+
+    public RecordOutputBuffer acquire() {
+        RecordOutputBuffer buffer = buffers.poll();
+        return buffer == null ? new RecordOutputBuffer(initialCapacity) : buffer;
+    }
+
+    /**
+     * Give a buffer back to the pool. The buffer must no longer be used by the caller, nor be read through streams
+     * created from it.
+     */
+    public void release(RecordOutputBuffer buffer) {
+        buffer.reset();
+        if (buffer.capacity() <= maxRetainedCapacity) {
+            buffers.offer(buffer);
+        }
+    }
+
+    public int size() {
+        return buffers.size();
+    }
+}
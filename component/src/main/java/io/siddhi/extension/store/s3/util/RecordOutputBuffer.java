@@ -0,0 +1,348 @@
+package io.siddhi.extension.store.s3.util;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable byte buffer that records are encoded into. Unlike {@link java.io.ByteArrayOutputStream} it exposes its
+ * backing array, so that an encoded record can be handed over without an extra copy, and it is not synchronized.
+ * Instances are meant to be reset and reused by a single thread.
+ * <p>
+ * Large byte arrays can be appended by reference through {@link #writeReference(byte[], int, int)}, in which case
+ * they are read straight from the given array by {@link #newInputStream()} instead of being copied into the buffer.
+ */
+public class RecordOutputBuffer extends OutputStream {
+
+    /**
+     * Size from which byte arrays are worth appending by reference rather than by copying them.
+     */
+    public static final int REFERENCE_THRESHOLD = 16 * 1024;
+
+    private final List<Reference> references = new ArrayList<>();
+    private byte[] buffer;
+    private int size;
+    private int referencedLength;
+
+    public RecordOutputBuffer(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return number of bytes held in the backing array, excluding the ones appended by reference
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return total number of bytes written, including the ones appended by reference
+     */
+    public int length() {
+        return size + referencedLength;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public void reset() {
+        size = 0;
+        referencedLength = 0;
+        // Do not hold on to the referenced arrays while the buffer is idle
+        references.clear();
+    }
+
+    public byte[] toByteArray() {
+        if (references.isEmpty()) {
+            return Arrays.copyOf(buffer, size);
+        }
+        byte[] bytes = new byte[length()];
+        int position = 0;
+        int copied = 0;
+        for (Reference reference : references) {
+            System.arraycopy(buffer, copied, bytes, position, reference.position - copied);
+            position += reference.position - copied;
+            copied = reference.position;
+            System.arraycopy(reference.bytes, reference.offset, bytes, position, reference.length);
+            position += reference.length;
+        }
+        System.arraycopy(buffer, copied, bytes, position, size - copied);
+        return bytes;
+    }
+
+    /**
+     * Create a stream over the written bytes, without copying them. The stream supports mark and reset, so that
+     * failed uploads can be retried from it, and it is valid only until the buffer is reset.
+     *
+     * @return stream of {@link #length()} bytes
+     */
+    public InputStream newInputStream() {
+        return newInputStream(0, length());
+    }
+
+    /**
+     * Create a stream over a range of the written bytes, without copying them, such as a part of a multipart
+     * upload. The stream behaves as the one of {@link #newInputStream()}.
+     *
+     * @param offset position of the first byte of the range
+     * @param length number of bytes of the range
+     * @return stream of {@code length} bytes
+     */
+    public InputStream newInputStream(int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > length()) {
+            throw new IndexOutOfBoundsException("Range of " + length + " bytes at " + offset + " is out of the "
+                    + length() + " bytes written.");
+        }
+        List<byte[]> arrays = new ArrayList<>(2 * references.size() + 1);
+        List<int[]> ranges = new ArrayList<>(2 * references.size() + 1);
+        int start = 0;
+        int copied = 0;
+        for (Reference reference : references) {
+            start = addSlice(arrays, ranges, buffer, copied, reference.position - copied, start, offset, length);
+            start = addSlice(arrays, ranges, reference.bytes, reference.offset, reference.length, start, offset,
+                    length);
+            copied = reference.position;
+        }
+        addSlice(arrays, ranges, buffer, copied, size - copied, start, offset, length);
+        return new SegmentInputStream(arrays, ranges);
+    }
+
+    /**
+     * Add the part of a region, starting at the given position of the stream, that falls within the range.
+     *
+     * @return position of the stream after the region
+     */
+    private static int addSlice(List<byte[]> arrays, List<int[]> ranges, byte[] array, int regionOffset,
+                                int regionLength, int start, int offset, int length) {
+        int from = Math.max(start, offset);
+        int to = Math.min(start + regionLength, offset + length);
+        if (from < to) {
+            arrays.add(array);
+            ranges.add(new int[]{regionOffset + from - start, to - from});
+        }
+        return start + regionLength;
+    }
+
+    /**
+     * Append bytes without copying them. The array must not be modified until the buffer is reset.
+     */
+    public void writeReference(byte[] bytes, int offset, int length) {
+        references.add(new Reference(size, bytes, offset, length));
+        referencedLength += length;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(size + 1);
+        buffer[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+    }
+
+    public void writeBoolean(boolean value) {
+        write(value ? 1 : 0);
+    }
+
+    public void writeInt(int value) {
+        ensureCapacity(size + 4);
+        buffer[size++] = (byte) (value >>> 24);
+        buffer[size++] = (byte) (value >>> 16);
+        buffer[size++] = (byte) (value >>> 8);
+        buffer[size++] = (byte) value;
+    }
+
+    public void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    public void writeFloat(float value) {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    public void writeDouble(double value) {
+        writeLong(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Write an unsigned variable length integer, using 7 bits per byte.
+     */
+    public void writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        write(value);
+    }
+
+    /**
+     * Write the given string as UTF-8, prefixed with its encoded length, without creating an intermediate array.
+     */
+    public void writeString(String value) {
+        int length = value.length();
+        int encodedLength = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                encodedLength++;
+            } else if (c < 0x800) {
+                encodedLength += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                encodedLength += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                encodedLength++;
+            } else {
+                encodedLength += 3;
+            }
+        }
+        writeVarInt(encodedLength);
+        ensureCapacity(size + encodedLength);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[size++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[size++] = (byte) (0xC0 | (c >> 6));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[size++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced the same way String.getBytes(UTF_8) does
+                buffer[size++] = (byte) '?';
+            } else {
+                buffer[size++] = (byte) (0xE0 | (c >> 12));
+                buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length << 1));
+        }
+    }
+
+    private static class Reference {
+        private final int position;
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+
+        private Reference(int position, byte[] bytes, int offset, int length) {
+            this.position = position;
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Reads a sequence of byte array regions as a single stream.
+     */
+    private static class SegmentInputStream extends InputStream {
+        private final List<byte[]> arrays;
+        private final List<int[]> ranges;
+        private int segment;
+        private int position;
+        private int markSegment;
+        private int markPosition;
+
+        private SegmentInputStream(List<byte[]> arrays, List<int[]> ranges) {
+            this.arrays = arrays;
+            this.ranges = ranges;
+        }
+
+        @Override
+        public int read() {
+            if (!advance()) {
+                return -1;
+            }
+            return arrays.get(segment)[ranges.get(segment)[0] + position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!advance()) {
+                return -1;
+            }
+            int[] range = ranges.get(segment);
+            int count = Math.min(length, range[1] - position);
+            System.arraycopy(arrays.get(segment), range[0] + position, bytes, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = 0;
+            while (skipped < n && advance()) {
+                int count = (int) Math.min(n - skipped, ranges.get(segment)[1] - position);
+                position += count;
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            long available = 0;
+            for (int i = segment; i < ranges.size(); i++) {
+                available += ranges.get(i)[1] - (i == segment ? position : 0);
+            }
+            return (int) Math.min(available, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readLimit) {
+            markSegment = segment;
+            markPosition = position;
+        }
+
+        @Override
+        public void reset() {
+            segment = markSegment;
+            position = markPosition;
+        }
+
+        /**
+         * Move to the next segment that has bytes left to read.
+         *
+         * @return false at the end of the stream
+         */
+        private boolean advance() {
+            while (segment < ranges.size() && position == ranges.get(segment)[1]) {
+                segment++;
+                position = 0;
+            }
+            return segment < ranges.size();
+        }
+    }
+}
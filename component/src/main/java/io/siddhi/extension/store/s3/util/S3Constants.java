@@ -1,6 +1,12 @@
-package org.wso2.extension.siddhi.store.s3.util;
+package io.siddhi.extension.store.s3.util;
 
 public class S3Constants {
+    public static final String STORAGE_MODE_OBJECT = "object";
+    public static final String STORAGE_MODE_SEGMENT = "segment";
+    public static final String STORAGE_MODE_PARQUET = "parquet";
+    // Smallest part S3 accepts in a multipart upload, except for the last part
+    public static final int MIN_MULTIPART_PART_SIZE = 5 * 1024 * 1024;
+
     public class StoreParams {
         public static final String CREDENTIAL_PROVIDER = "credential.provider";
         public static final String BUCKET_NAME = "bucket.name";
@@ -14,7 +20,118 @@ public class S3Constants {
         public static final String OBJECT_ACL_CANONICAL = "object.acl.canonical.list";
         public static final String OBJECT_ACL_GROUP_LIST = "object.acl.group.list";
         public static final String OBJECT_ACL_EMAIL_LIST = "object.acl.email.list";
+        public static final String WORKER_COUNT = "worker.count";
+        public static final String MAX_IN_FLIGHT_REQUESTS = "max.in.flight.requests";
+        public static final String CODEC = "codec";
+        public static final String RECORD_CACHE_SIZE = "record.cache.size";
+        public static final String RECORD_CACHE_MAX_WEIGHT = "record.cache.max.weight";
+        public static final String RECORD_CACHE_EXPIRY_TIME = "record.cache.expiry.time";
+        public static final String RECORD_CACHE_MISSING_KEYS = "record.cache.missing.keys";
+        public static final String WRITE_BEHIND_MAX_SIZE = "write.behind.max.size";
+        public static final String WRITE_BEHIND_FLUSH_INTERVAL = "write.behind.flush.interval";
+        public static final String SCAN_PREFIXES = "scan.prefixes";
+        public static final String SCAN_PARALLELISM = "scan.parallelism";
+        public static final String SCAN_BUFFER_SIZE = "scan.buffer.size";
+        public static final String KEY_LAYOUT = "key.layout";
+        public static final String KEY_LAYOUT_HASH_LENGTH = "key.layout.hash.length";
+        public static final String KEY_LAYOUT_TIMESTAMP_ATTRIBUTE = "key.layout.timestamp.attribute";
+        public static final String KEY_LAYOUT_DATE_FORMAT = "key.layout.date.format";
+        public static final String COMPRESSION = "compression";
+        public static final String COMPRESSION_THRESHOLD = "compression.threshold";
+        public static final String STORAGE_MODE = "storage.mode";
+        public static final String SEGMENT_PREFIX = "segment.prefix";
+        public static final String SEGMENT_MAX_SIZE = "segment.max.size";
+        public static final String SEGMENT_ROLL_INTERVAL = "segment.roll.interval";
+        public static final String SEGMENT_COMPACTION_INTERVAL = "segment.compaction.interval";
+        public static final String SEGMENT_COMPACTION_GARBAGE_RATIO = "segment.compaction.garbage.ratio";
+        public static final String PARQUET_PREFIX = "parquet.prefix";
+        public static final String PARQUET_PARTITION_ATTRIBUTE = "parquet.partition.attribute";
+        public static final String PARQUET_PARTITION_DATE_FORMAT = "parquet.partition.date.format";
+        public static final String PARQUET_MAX_SIZE = "parquet.max.size";
+        public static final String PARQUET_ROLL_INTERVAL = "parquet.roll.interval";
+        public static final String PARQUET_ROW_GROUP_SIZE = "parquet.row.group.size";
+        public static final String PARQUET_COMPRESSION = "parquet.compression";
+        public static final String KEY_INDEX = "key.index";
+        public static final String KEY_INDEX_PREFIX = "key.index.prefix";
+        public static final String KEY_INDEX_CACHE_DIRECTORY = "key.index.cache.directory";
+        public static final String KEY_INDEX_SNAPSHOT_INTERVAL = "key.index.snapshot.interval";
+        public static final String SELECT_PUSHDOWN = "select.pushdown";
+        public static final String SELECT_PUSHDOWN_MIN_SIZE = "select.pushdown.min.size";
+        public static final String UPDATE_MAX_ATTEMPTS = "update.max.attempts";
+        public static final String MULTIPART_THRESHOLD = "multipart.threshold";
+        public static final String MULTIPART_PART_SIZE = "multipart.part.size";
+        public static final String MULTIPART_CONCURRENCY = "multipart.concurrency";
+        public static final String ENDPOINT = "endpoint";
+        public static final String PATH_STYLE_ACCESS = "path.style.access";
+        public static final String AWS_ACCESS_KEY = "aws.access.key";
+        public static final String AWS_SECRET_KEY = "aws.secret.key";
+        public static final String CLIENT_MAX_CONNECTIONS = "client.max.connections";
+        public static final String CLIENT_CONNECTION_TIMEOUT = "client.connection.timeout";
+        public static final String CLIENT_SOCKET_TIMEOUT = "client.socket.timeout";
+        public static final String CLIENT_REQUEST_TIMEOUT = "client.request.timeout";
+        public static final String CLIENT_CONNECTION_TTL = "client.connection.ttl";
+        public static final String CLIENT_TCP_KEEP_ALIVE = "client.tcp.keep.alive";
+        public static final String CLIENT_MAX_ERROR_RETRY = "client.max.error.retry";
+        public static final String RATE_LIMIT_ENABLED = "rate.limit.enabled";
+        public static final String RATE_LIMIT_READ_RATE = "rate.limit.read.rate";
+        public static final String RATE_LIMIT_WRITE_RATE = "rate.limit.write.rate";
+        public static final String RATE_LIMIT_MIN_RATE = "rate.limit.min.rate";
+        public static final String RATE_LIMIT_INCREASE = "rate.limit.increase";
+        public static final String RATE_LIMIT_MAX_WAIT = "rate.limit.max.wait";
     }
-}
-
 
+    public class Defaults {
+        public static final int WORKER_COUNT = 16;
+        public static final int MAX_IN_FLIGHT_REQUESTS = 64;
+        public static final String CODEC = "binary";
+        public static final int RECORD_CACHE_SIZE = 0;
+        public static final long RECORD_CACHE_MAX_WEIGHT = 0;
+        public static final long RECORD_CACHE_EXPIRY_TIME = 0;
+        public static final boolean RECORD_CACHE_MISSING_KEYS = true;
+        public static final int WRITE_BEHIND_MAX_SIZE = 0;
+        public static final long WRITE_BEHIND_FLUSH_INTERVAL = 1000;
+        public static final int SCAN_PARALLELISM = 32;
+        public static final int SCAN_BUFFER_SIZE = 1000;
+        public static final String KEY_LAYOUT = "raw";
+        public static final int KEY_LAYOUT_HASH_LENGTH = 2;
+        public static final String KEY_LAYOUT_DATE_FORMAT = "yyyy/MM/dd";
+        public static final String COMPRESSION = "none";
+        public static final int COMPRESSION_THRESHOLD = 1024;
+        public static final String STORAGE_MODE = "object";
+        public static final String SEGMENT_PREFIX = "segments/";
+        public static final int SEGMENT_MAX_SIZE = 8 * 1024 * 1024;
+        public static final long SEGMENT_ROLL_INTERVAL = 10000;
+        public static final long SEGMENT_COMPACTION_INTERVAL = 600000;
+        public static final double SEGMENT_COMPACTION_GARBAGE_RATIO = 0.5;
+        public static final String PARQUET_PREFIX = "parquet/";
+        public static final int PARQUET_MAX_SIZE = 64 * 1024 * 1024;
+        public static final long PARQUET_ROLL_INTERVAL = 300000;
+        public static final int PARQUET_ROW_GROUP_SIZE = 1024 * 1024;
+        public static final String PARQUET_COMPRESSION = "snappy";
+        public static final boolean KEY_INDEX = false;
+        public static final String KEY_INDEX_PREFIX = "_index/";
+        public static final String KEY_INDEX_CACHE_DIRECTORY = "siddhi-s3-key-index";
+        public static final long KEY_INDEX_SNAPSHOT_INTERVAL = 300000;
+        public static final boolean SELECT_PUSHDOWN = false;
+        public static final long SELECT_PUSHDOWN_MIN_SIZE = 64 * 1024;
+        public static final int UPDATE_MAX_ATTEMPTS = 5;
+        public static final int MULTIPART_THRESHOLD = 64 * 1024 * 1024;
+        public static final int MULTIPART_PART_SIZE = 8 * 1024 * 1024;
+        public static final int MULTIPART_CONCURRENCY = 4;
+        public static final boolean PATH_STYLE_ACCESS = false;
+        public static final int CLIENT_MAX_CONNECTIONS = 64;
+        public static final int CLIENT_CONNECTION_TIMEOUT = 10000;
+        public static final int CLIENT_SOCKET_TIMEOUT = 50000;
+        public static final int CLIENT_REQUEST_TIMEOUT = 0;
+        public static final long CLIENT_CONNECTION_TTL = 0;
+        public static final boolean CLIENT_TCP_KEEP_ALIVE = true;
+        public static final int CLIENT_MAX_ERROR_RETRY = 3;
+        public static final boolean RATE_LIMIT_ENABLED = true;
+        // Request rates S3 supports per prefix of a bucket
+        public static final int RATE_LIMIT_READ_RATE = 5500;
+        public static final int RATE_LIMIT_WRITE_RATE = 3500;
+        public static final int RATE_LIMIT_MIN_RATE = 10;
+        public static final int RATE_LIMIT_INCREASE = 50;
+        public static final long RATE_LIMIT_MAX_WAIT = 60000;
+    }
+}
@@ -0,0 +1,199 @@
+package io.siddhi.extension.store.s3.util;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes S3 requests on a bounded worker pool.
+ * <p>
+ * A batch submitted through {@link #executeAll(List)} returns only after every request in it has completed, so the
+ * caller can treat the whole batch as durable once the method returns. The number of requests outstanding at any
+ * time, across all callers sharing the pipeline, is capped by {@code maxInFlightRequests}; submitters block when the
+ * cap is reached instead of queueing an unbounded amount of work.
+ */
+public class S3RequestPipeline {
+
+    private final ExecutorService executor;
+    private final Semaphore inFlightPermits;
+    private final int maxInFlightRequests;
+
+    public S3RequestPipeline(String name, int workerCount, int maxInFlightRequests) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, name + "-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.inFlightPermits = new Semaphore(maxInFlightRequests);
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    /**
+     * Execute all the given requests in parallel and wait for them to complete.
+     *
+     * @param requests requests to be executed
+     * @param <T>      result type of the requests
+     * @return results of the requests, in the order the requests were given
+     * @throws ConnectionUnavailableException if any of the requests failed due to a connectivity or server side
+     *                                        error, after all the other requests of the batch have completed
+     */
+    public <T> List<T> executeAll(List<? extends Callable<T>> requests) throws ConnectionUnavailableException {
+        if (requests.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (requests.size() == 1) {
+            // Handing a single request over to a worker only adds a thread hop
+            return Collections.singletonList(execute(requests.get(0)));
+        }
+
+        List<Future<T>> futures = new ArrayList<>(requests.size());
+        try {
+            for (Callable<T> request : requests) {
+                futures.add(submit(request));
+            }
+        } catch (ConnectionUnavailableException e) {
+            cancelAll(futures);
+            throw e;
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        Throwable failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+                results.add(null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelAll(futures);
+                throw new ConnectionUnavailableException("Interrupted while waiting for S3 requests.", e);
+            }
+        }
+        if (failure != null) {
+            throw toConnectionUnavailableException(failure);
+        }
+        return results;
+    }
+
+    /**
+     * Submit a request for asynchronous execution, blocking while the in-flight limit is reached.
+     *
+     * @param request request to be executed
+     * @param <T>     result type of the request
+     * @return future of the request result
+     * @throws ConnectionUnavailableException if interrupted while waiting, or if the pipeline is shut down
+     */
+    public <T> Future<T> submit(Callable<T> request) throws ConnectionUnavailableException {
+        try {
+            inFlightPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionUnavailableException("Interrupted while submitting S3 request.", e);
+        }
+        FutureTask<T> task = new FutureTask<T>(request) {
+            @Override
+            protected void done() {
+                // Invoked exactly once, whether the request completed, failed or got cancelled
+                inFlightPermits.release();
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            inFlightPermits.release();
+            throw new ConnectionUnavailableException("S3 request pipeline is not accepting requests.", e);
+        }
+        return task;
+    }
+
+    /**
+     * Execute a single request on the calling thread, honouring the in-flight limit of the pipeline.
+     *
+     * @param request request to be executed
+     * @param <T>     result type of the request
+     * @return result of the request
+     * @throws ConnectionUnavailableException if the request failed due to a connectivity or server side error
+     */
+    public <T> T execute(Callable<T> request) throws ConnectionUnavailableException {
+        try {
+            inFlightPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionUnavailableException("Interrupted while submitting S3 request.", e);
+        }
+        try {
+            return request.call();
+        } catch (Exception e) {
+            throw toConnectionUnavailableException(e);
+        } finally {
+            inFlightPermits.release();
+        }
+    }
+
+    /**
+     * @return number of requests currently being executed, or waiting for a worker
+     */
+    public int getInFlightRequests() {
+        return maxInFlightRequests - inFlightPermits.availablePermits();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Map a failure of an S3 request to a {@link ConnectionUnavailableException} so that Siddhi retries the
+     * operation. Failures that a retry cannot fix, such as access denied or malformed requests, are rethrown as
+     * {@link S3TableException}s instead.
+     *
+     * @param e failure of the S3 request
+     * @return exception to be thrown by the caller
+     */
+    public static ConnectionUnavailableException toConnectionUnavailableException(Throwable e) {
+        if (e instanceof AmazonServiceException) {
+            AmazonServiceException serviceException = (AmazonServiceException) e;
+            if (serviceException.getStatusCode() >= 500 || serviceException.getStatusCode() == 429) {
+                return new ConnectionUnavailableException("S3 request failed: " + e.getMessage(), e);
+            }
+            throw new S3TableException("S3 request failed: " + e.getMessage(), e);
+        }
+        if (e instanceof SdkClientException) {
+            return new ConnectionUnavailableException("Unable to reach S3: " + e.getMessage(), e);
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        throw new S3TableException("S3 request failed: " + e.getMessage(), e);
+    }
+
+    private static void cancelAll(List<? extends Future<?>> futures) {
+        futures.forEach(future -> future.cancel(true));
+    }
+}
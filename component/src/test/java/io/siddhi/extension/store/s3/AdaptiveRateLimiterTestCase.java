@@ -0,0 +1,215 @@
+package io.siddhi.extension.store.s3;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import io.siddhi.extension.store.s3.client.DefaultS3ClientFactory;
+import io.siddhi.extension.store.s3.client.S3ClientSettings;
+import io.siddhi.extension.store.s3.throttle.AdaptiveRateLimiter;
+import io.siddhi.extension.store.s3.throttle.RateLimitedAmazonS3;
+import io.siddhi.query.api.annotation.Annotation;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveRateLimiterTestCase {
+
+    private static final String BUCKET = "rate-limit-test";
+
+    @Test
+    public void testThrottlingHalvesRateAndSuccessesRaiseIt() throws Exception {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1000, 1000, 10, 100);
+        AdaptiveRateLimiter.PrefixRate rate = limiter.acquire("a/", true, deadline(1000));
+        long sentBeforeDecrease = System.nanoTime();
+        rate.onThrottle(System.nanoTime());
+        Assert.assertEquals(rate.getRate(), 500.0);
+        // Sent under the rate before it was lowered, hence not lowering it again
+        rate.onThrottle(sentBeforeDecrease);
+        Assert.assertEquals(rate.getRate(), 500.0);
+        rate.onThrottle(System.nanoTime());
+        Assert.assertEquals(rate.getRate(), 250.0);
+        Assert.assertEquals(limiter.getThrottledPrefixCount(), 1);
+        // Reads and other prefixes are paced apart
+        Assert.assertEquals(limiter.getRate("a/", false), 1000.0);
+        Assert.assertEquals(limiter.getRate("b/", true), 1000.0);
+
+        // A second worth of requests at the lowered rate regains the increase
+        for (int i = 0; i < 250; i++) {
+            rate.onSuccess();
+        }
+        Assert.assertTrue(rate.getRate() > 330 && rate.getRate() < 350, String.valueOf(rate.getRate()));
+    }
+
+    @Test
+    public void testRateStaysWithinBounds() throws Exception {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1000, 200, 10, 100);
+        AdaptiveRateLimiter.PrefixRate rate = limiter.acquire("", true, deadline(1000));
+        for (int i = 0; i < 20; i++) {
+            rate.onThrottle(System.nanoTime());
+        }
+        Assert.assertEquals(rate.getRate(), 10.0);
+        for (int i = 0; i < 10000; i++) {
+            rate.onSuccess();
+        }
+        Assert.assertEquals(rate.getRate(), 200.0);
+        Assert.assertEquals(limiter.getThrottledPrefixCount(), 0);
+    }
+
+    @Test
+    public void testRequestsArePacedAtLoweredRate() throws Exception {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(100, 100, 1, 1);
+        limiter.acquire("a/", false, deadline(1000)).onThrottle(System.nanoTime());
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire("a/", false, deadline(5000));
+        }
+        // 50 requests per second, less a burst of a tenth of a second
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+    }
+
+    @Test
+    public void testThrottledWritesAreSentAgainInsteadOfFailing() throws Exception {
+        InMemoryAmazonS3 fake = new InMemoryAmazonS3();
+        fake.setThrottleRate(200);
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(5500, 3500, 10, 50);
+        AmazonS3 client = new RateLimitedAmazonS3(fake, limiter, 30000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int offset = thread * 50;
+                futures.add(executor.submit(() -> {
+                    for (int i = offset; i < offset + 50; i++) {
+                        client.putObject(putRequest("p/k-" + i, new ByteArrayInputStream(body(i))));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(fake.getObjectCount(BUCKET), 400);
+        Assert.assertTrue(fake.getThrottledCount() > 0);
+        Assert.assertTrue(limiter.getRate("p/", true) < 3500);
+        // Bodies of the throttled attempts were rewound before being sent again
+        for (int i = 0; i < 400; i++) {
+            Assert.assertEquals(fake.getObjectContent(BUCKET, "p/k-" + i), body(i));
+        }
+    }
+
+    @Test
+    public void testPersistentThrottlingFailsAfterMaxWait() {
+        InMemoryAmazonS3 fake = new InMemoryAmazonS3();
+        fake.setThrottledKey("k");
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(5500, 3500, 10, 50);
+        AmazonS3 client = new RateLimitedAmazonS3(fake, limiter, 300);
+        long start = System.nanoTime();
+        try {
+            client.getObject(BUCKET, "k");
+            Assert.fail("Request was expected to fail.");
+        } catch (SdkClientException e) {
+            Assert.assertFalse(e instanceof AmazonServiceException, e.toString());
+        }
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        Assert.assertTrue(fake.getThrottledCount() > 1);
+        Assert.assertTrue(limiter.getRate("", false) < 5500);
+    }
+
+    @Test
+    public void testUploadsThatCannotBeRewoundAreNotSentAgain() {
+        InMemoryAmazonS3 fake = new InMemoryAmazonS3();
+        fake.setThrottledKey("k");
+        AmazonS3 client = new RateLimitedAmazonS3(fake, new AdaptiveRateLimiter(5500, 3500, 10, 50), 30000);
+        InputStream body = new FilterInputStream(new ByteArrayInputStream(body(1))) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+        try {
+            client.putObject(putRequest("k", body));
+            Assert.fail("Request was expected to fail.");
+        } catch (AmazonServiceException e) {
+            Assert.assertEquals(e.getErrorCode(), "SlowDown");
+        }
+        Assert.assertEquals(fake.getThrottledCount(), 1);
+    }
+
+    @Test
+    public void testOtherFailuresAreNotRetried() {
+        InMemoryAmazonS3 fake = new InMemoryAmazonS3();
+        fake.setFailingKey("k");
+        AmazonS3 client = new RateLimitedAmazonS3(fake, new AdaptiveRateLimiter(5500, 3500, 10, 50), 30000);
+        try {
+            client.getObject(BUCKET, "k");
+            Assert.fail("Request was expected to fail.");
+        } catch (AmazonServiceException e) {
+            Assert.assertEquals(e.getErrorCode(), "ServiceUnavailable");
+        }
+        Assert.assertEquals(fake.getThrottledCount(), 0);
+    }
+
+    @Test
+    public void testClientLeavesThrottledRequestsToRateLimiter() {
+        AmazonServiceException slowDown = new AmazonServiceException("Please reduce your request rate.");
+        slowDown.setStatusCode(503);
+        slowDown.setErrorCode("SlowDown");
+        AmazonServiceException internalError = new AmazonServiceException("Internal error");
+        internalError.setStatusCode(500);
+        internalError.setErrorCode("InternalError");
+        GetObjectRequest request = new GetObjectRequest(BUCKET, "k");
+
+        S3ClientSettings limited = new S3ClientSettings(new S3StoreConfig(store()));
+        RetryPolicy.RetryCondition condition = DefaultS3ClientFactory.createClientConfiguration(limited)
+                .getRetryPolicy().getRetryCondition();
+        Assert.assertFalse(condition.shouldRetry(request, slowDown, 0));
+        Assert.assertTrue(condition.shouldRetry(request, internalError, 0));
+
+        S3ClientSettings unlimited = new S3ClientSettings(new S3StoreConfig(store()
+                .element("rate.limit.enabled", "false")));
+        Assert.assertNotEquals(unlimited, limited);
+        Assert.assertTrue(DefaultS3ClientFactory.createClientConfiguration(unlimited).getRetryPolicy()
+                .getRetryCondition().shouldRetry(request, slowDown, 0));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMinimumRateAboveMaximumIsRejected() {
+        new S3StoreConfig(store().element("rate.limit.write.rate", "100").element("rate.limit.min.rate", "200"));
+    }
+
+    private static long deadline(long millis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static byte[] body(int index) {
+        return ("record-" + index).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static PutObjectRequest putRequest(String key, InputStream body) {
+        return new PutObjectRequest(BUCKET, key, body, new ObjectMetadata());
+    }
+
+    private static Annotation store() {
+        return Annotation.annotation("store")
+                .element("type", "s3")
+                .element("bucket.name", BUCKET)
+                .element("object.fields", "payload");
+    }
+}
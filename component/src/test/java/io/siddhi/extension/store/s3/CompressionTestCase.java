@@ -0,0 +1,91 @@
+package io.siddhi.extension.store.s3;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import io.siddhi.extension.store.s3.codec.RecordMapper;
+import io.siddhi.extension.store.s3.util.RecordBufferPool;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import io.siddhi.query.api.definition.Attribute;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class CompressionTestCase {
+
+    private static final List<Attribute> ATTRIBUTES = Arrays.asList(
+            new Attribute("id", Attribute.Type.STRING),
+            new Attribute("payload", Attribute.Type.STRING));
+    private static final List<Integer> OBJECT_INDICES = Arrays.asList(1);
+
+    private final RecordBufferPool pool = new RecordBufferPool(4, 1024, 1024 * 1024);
+
+    @DataProvider(name = "compressions")
+    public Object[][] compressions() {
+        return new Object[][]{{"gzip"}, {"lz4"}, {"zstd"}};
+    }
+
+    @Test(dataProvider = "compressions")
+    public void testRoundTrip(String compression) throws IOException {
+        RecordMapper mapper = new RecordMapper(ATTRIBUTES, 0, OBJECT_INDICES, "json", compression, 100);
+        Object[] record = {"order-1", repetitivePayload()};
+        ObjectMetadata metadata = mapper.createMetadata(record);
+        byte[] body = encode(mapper, record, metadata);
+        Assert.assertEquals(metadata.getUserMetadata().get(RecordMapper.COMPRESSION_METADATA_KEY), compression);
+        int uncompressedLength = new RecordMapper(ATTRIBUTES, 0, OBJECT_INDICES, "json").encodeBody(record).length;
+        Assert.assertTrue(body.length * 5 < uncompressedLength);
+
+        // Objects are decompressed based on their metadata, whatever compression the reader is configured with
+        RecordMapper reader = new RecordMapper(ATTRIBUTES, 0, OBJECT_INDICES, "binary");
+        Assert.assertEquals(reader.toRecord("order-1", metadata, body, 0, body.length), record);
+    }
+
+    @Test
+    public void testSmallBodiesAreNotCompressed() throws IOException {
+        RecordMapper mapper = new RecordMapper(ATTRIBUTES, 0, OBJECT_INDICES, "binary", "zstd", 1024);
+        Object[] record = {"order-1", "small"};
+        ObjectMetadata metadata = mapper.createMetadata(record);
+        byte[] body = encode(mapper, record, metadata);
+        Assert.assertNull(metadata.getUserMetadata().get(RecordMapper.COMPRESSION_METADATA_KEY));
+        Assert.assertEquals(mapper.toRecord("order-1", metadata, body, 0, body.length), record);
+    }
+
+    @Test
+    public void testIncompressibleBodiesAreStoredAsIs() throws IOException {
+        List<Attribute> attributes = Arrays.asList(new Attribute("id", Attribute.Type.STRING),
+                new Attribute("payload", Attribute.Type.OBJECT));
+        RecordMapper mapper = new RecordMapper(attributes, 0, OBJECT_INDICES, "binary", "gzip", 0);
+        byte[] random = new byte[4096];
+        new Random(42).nextBytes(random);
+        Object[] record = {"order-1", random};
+        ObjectMetadata metadata = mapper.createMetadata(record);
+        encode(mapper, record, metadata);
+        Assert.assertNull(metadata.getUserMetadata().get(RecordMapper.COMPRESSION_METADATA_KEY));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownCompression() {
+        new RecordMapper(ATTRIBUTES, 0, OBJECT_INDICES, "binary", "snappy", 0);
+    }
+
+    private byte[] encode(RecordMapper mapper, Object[] record, ObjectMetadata metadata) throws IOException {
+        RecordOutputBuffer buffer = pool.acquire();
+        mapper.encodeBody(record, buffer);
+        RecordOutputBuffer body = mapper.compressBody(buffer, metadata, pool);
+        byte[] bytes = body.toByteArray();
+        pool.release(body);
+        return bytes;
+    }
+
+    private static String repetitivePayload() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append("{\"item\":\"widget-").append(i % 10).append("\",\"quantity\":").append(i % 3)
+                    .append(",\"status\":\"SHIPPED\"}");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,266 @@
+package io.siddhi.extension.store.s3;
+
+import io.siddhi.core.table.record.ExpressionVisitor;
+import io.siddhi.core.util.collection.operator.CompiledExpression;
+import io.siddhi.extension.store.s3.codec.RecordMapper;
+import io.siddhi.extension.store.s3.condition.S3CompiledCondition;
+import io.siddhi.extension.store.s3.condition.S3CompiledExpression;
+import io.siddhi.extension.store.s3.condition.S3ConditionVisitor;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+import io.siddhi.extension.store.s3.update.ConditionalUpdater;
+import io.siddhi.extension.store.s3.update.RecordUpdate;
+import io.siddhi.extension.store.s3.update.UpdateSet;
+import io.siddhi.extension.store.s3.util.RecordBufferPool;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.condition.Compare;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConditionalUpdaterTestCase {
+
+    private static final String BUCKET = "update-test";
+    private static final List<Attribute> ATTRIBUTES = Arrays.asList(
+            new Attribute("id", Attribute.Type.STRING),
+            new Attribute("count", Attribute.Type.LONG),
+            new Attribute("note", Attribute.Type.STRING));
+
+    private final RecordMapper mapper = new RecordMapper(ATTRIBUTES, 0, Arrays.asList(1, 2), "binary");
+    private final RecordBufferPool pool = new RecordBufferPool(4, 1024, 1024 * 1024);
+    private InMemoryAmazonS3 client;
+
+    @BeforeMethod
+    public void init() {
+        client = new InMemoryAmazonS3();
+    }
+
+    @Test
+    public void testConcurrentIncrementsLoseNoUpdates() throws Exception {
+        ConditionalUpdater updater = newUpdater(false, 1000);
+        client.setLatencyMillis(1);
+        int threads = 8;
+        int increments = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < increments; j++) {
+                        updater.update("counter", "counter", this::increment);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(read(updater, "counter")[1], (long) threads * increments);
+    }
+
+    @Test
+    public void testConcurrentWriteIsDetectedByETag() throws IOException {
+        assertConcurrentWriteIsDetected(newUpdater(false, 5));
+    }
+
+    @Test
+    public void testConcurrentWriteIsDetectedByVersionMetadata() throws IOException {
+        assertConcurrentWriteIsDetected(newUpdater(true, 5));
+    }
+
+    @Test
+    public void testCreateFailsIfObjectAppears() throws IOException {
+        ConditionalUpdater updater = newUpdater(false, 5);
+        boolean[] interfered = new boolean[1];
+        ConditionalUpdater.Result result = updater.update("a", "a", record -> {
+            if (!interfered[0]) {
+                interfered[0] = true;
+                updateQuietly(updater, "a", this::increment);
+            }
+            return increment(record);
+        });
+        Assert.assertEquals(result.getAttempts(), 2);
+        Assert.assertFalse(result.isCreated());
+        Assert.assertEquals(read(updater, "a")[1], 2L);
+    }
+
+    @Test(expectedExceptions = S3TableException.class)
+    public void testUpdateGivesUpAfterMaxAttempts() throws IOException {
+        ConditionalUpdater updater = newUpdater(false, 3);
+        updater.update("a", "a", this::increment);
+        updater.update("a", "a", record -> {
+            updateQuietly(updater, "a", this::increment);
+            return increment(record);
+        });
+    }
+
+    @Test
+    public void testUpdateSetEvaluatesAgainstRecordBeforeUpdate() {
+        Map<String, CompiledExpression> setExpressions = new LinkedHashMap<>();
+        // count = count + 1, note = note
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.endVisitStoreVariable("CounterTable", "count", Attribute.Type.LONG);
+        visitor.endVisitConstant(1L, Attribute.Type.LONG);
+        visitor.endVisitMath(ExpressionVisitor.MathOperator.ADD);
+        setExpressions.put("count", new S3CompiledExpression(visitor.getCondition(), ATTRIBUTES));
+        visitor = new S3ConditionVisitor();
+        visitor.endVisitStoreVariable("CounterTable", "note", Attribute.Type.STRING);
+        setExpressions.put("note", new S3CompiledExpression(visitor.getCondition(), ATTRIBUTES));
+        UpdateSet updateSet = new UpdateSet(setExpressions, ATTRIBUTES);
+
+        Object[] record = {"a", 41L, "x"};
+        updateSet.apply(record, Collections.emptyMap());
+        Assert.assertEquals(record, new Object[]{"a", 42L, "x"});
+        Assert.assertFalse(updateSet.yields(record, Collections.emptyMap(), 0));
+    }
+
+    @Test
+    public void testUpdateSetOfStreamValuesYieldsRecord() {
+        UpdateSet updateSet = streamUpdateSet();
+        Map<String, Object> parameters = setParameters(7L, "seven");
+        Assert.assertTrue(updateSet.yields(new Object[]{"a", 7L, "seven"}, parameters, 0));
+        Assert.assertFalse(updateSet.yields(new Object[]{"a", 7L, "six"}, parameters, 0));
+
+        Object[] record = {"a", 1L, null};
+        updateSet.apply(record, parameters);
+        // Stream values are converted to the type of the attribute they are assigned to
+        Assert.assertEquals(record, new Object[]{"a", 7L, "seven"});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUpdateSetRejectsUnknownAttribute() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.endVisitConstant(1L, Attribute.Type.LONG);
+        new UpdateSet(Collections.singletonMap("missing",
+                new S3CompiledExpression(visitor.getCondition(), ATTRIBUTES)), ATTRIBUTES);
+    }
+
+    @Test
+    public void testRecordUpdateAppliesEventsInOrderAndFoldsAdds() {
+        S3CompiledCondition condition = keyCondition();
+        List<Map<String, Object>> conditionParameters = Arrays.asList(
+                Collections.singletonMap("id-param", "a"), Collections.singletonMap("id-param", "a"));
+        List<Map<String, Object>> setParameters = Arrays.asList(setParameters(1L, "first"),
+                setParameters(2L, "second"));
+        List<Object[]> addingRecords = Arrays.asList(new Object[]{"a", 1L, "added"},
+                new Object[]{"a", 2L, "added"});
+        RecordUpdate update = new RecordUpdate("a", 0, condition, conditionParameters, streamUpdateSet(),
+                setParameters, addingRecords, Arrays.asList(0, 1));
+
+        // The first event adds the missing record, the second one updates it
+        Object[] record = update.apply(null);
+        Assert.assertEquals(record, new Object[]{"a", 2L, "second"});
+        boolean[] handled = new boolean[2];
+        update.markHandled(handled);
+        Assert.assertEquals(handled, new boolean[]{true, true});
+
+        RecordUpdate noAdds = new RecordUpdate("a", 0, condition, conditionParameters, streamUpdateSet(),
+                setParameters, null, Arrays.asList(0, 1));
+        Assert.assertNull(noAdds.apply(null));
+        handled = new boolean[2];
+        noAdds.markHandled(handled);
+        Assert.assertEquals(handled, new boolean[]{false, false});
+    }
+
+    @Test(expectedExceptions = S3TableException.class)
+    public void testRecordUpdateRejectsKeyChange() {
+        Map<String, CompiledExpression> setExpressions = new LinkedHashMap<>();
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.endVisitConstant("b", Attribute.Type.STRING);
+        setExpressions.put("id", new S3CompiledExpression(visitor.getCondition(), ATTRIBUTES));
+        RecordUpdate update = new RecordUpdate("a", 0, keyCondition(),
+                Collections.singletonList(Collections.singletonMap("id-param", "a")),
+                new UpdateSet(setExpressions, ATTRIBUTES), Collections.singletonList(Collections.emptyMap()),
+                null, Collections.singletonList(0));
+        update.apply(new Object[]{"a", 1L, null});
+    }
+
+    private void assertConcurrentWriteIsDetected(ConditionalUpdater updater) throws IOException {
+        Assert.assertTrue(updater.update("a", "a", this::increment).isCreated());
+        boolean[] interfered = new boolean[1];
+        ConditionalUpdater.Result result = updater.update("a", "a", record -> {
+            if (!interfered[0]) {
+                interfered[0] = true;
+                updateQuietly(updater, "a", current -> {
+                    current[2] = "concurrent";
+                    return increment(current);
+                });
+            }
+            return increment(record);
+        });
+        Assert.assertEquals(result.getAttempts(), 2);
+        Object[] record = read(updater, "a");
+        Assert.assertEquals(record[1], 3L);
+        Assert.assertEquals(record[2], "concurrent");
+    }
+
+    private ConditionalUpdater newUpdater(boolean versionMetadata, int maxAttempts) {
+        return new ConditionalUpdater(client, BUCKET, "application/octet-stream", mapper, pool, versionMetadata,
+                maxAttempts);
+    }
+
+    private Object[] increment(Object[] record) {
+        if (record == null) {
+            return new Object[]{"counter", 1L, null};
+        }
+        record[1] = (long) record[1] + 1;
+        return record;
+    }
+
+    private static void updateQuietly(ConditionalUpdater updater, String key, ConditionalUpdater.Mutation mutation) {
+        try {
+            updater.update(key, key, mutation);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object[] read(ConditionalUpdater updater, String key) throws IOException {
+        Object[][] record = new Object[1][];
+        updater.update(key, key, current -> {
+            record[0] = current;
+            return null;
+        });
+        return record[0];
+    }
+
+    private static S3CompiledCondition keyCondition() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.beginVisitCompare(Compare.Operator.EQUAL);
+        visitor.endVisitStoreVariable("CounterTable", "id", Attribute.Type.STRING);
+        visitor.endVisitStreamVariable("id-param", "CounterStream", "id", Attribute.Type.STRING);
+        visitor.endVisitCompare(Compare.Operator.EQUAL);
+        return new S3CompiledCondition(visitor.getCondition(), ATTRIBUTES, "id");
+    }
+
+    private static UpdateSet streamUpdateSet() {
+        Map<String, CompiledExpression> setExpressions = new LinkedHashMap<>();
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.endVisitStreamVariable("count-param", "CounterStream", "count", Attribute.Type.INT);
+        setExpressions.put("count", new S3CompiledExpression(visitor.getCondition(), ATTRIBUTES));
+        visitor = new S3ConditionVisitor();
+        visitor.endVisitStreamVariable("note-param", "CounterStream", "note", Attribute.Type.STRING);
+        setExpressions.put("note", new S3CompiledExpression(visitor.getCondition(), ATTRIBUTES));
+        return new UpdateSet(setExpressions, ATTRIBUTES);
+    }
+
+    private static Map<String, Object> setParameters(long count, String note) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("count-param", (int) count);
+        parameters.put("note-param", note);
+        return parameters;
+    }
+}
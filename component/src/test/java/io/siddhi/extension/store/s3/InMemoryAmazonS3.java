@@ -0,0 +1,602 @@
+package io.siddhi.extension.store.s3;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.CreateBucketRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.Md5Utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * In-memory stand-in for {@link com.amazonaws.services.s3.AmazonS3} used by the tests and the benchmarks. Only the
+ * operations used by the store are implemented.
+ * <p>
+ * Requests can be slowed down by a fixed latency, throttled per prefix and made to fail, to exercise the store
+ * against the behaviour of S3 without a network.
+ */
+public class InMemoryAmazonS3 extends AbstractAmazonS3 {
+
+    private final Map<String, ConcurrentSkipListMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger putCount = new AtomicInteger();
+    private final AtomicInteger getCount = new AtomicInteger();
+    private final AtomicInteger listCount = new AtomicInteger();
+    private volatile long latencyMillis;
+    private final Map<String, PendingUpload> uploads = new ConcurrentHashMap<>();
+    private final AtomicInteger partCount = new AtomicInteger();
+    private volatile String failingKey;
+    private volatile String throttledKey;
+    private volatile int throttleRate;
+    private final Map<String, TokenBucket> tokenBuckets = new ConcurrentHashMap<>();
+    private final AtomicInteger throttledCount = new AtomicInteger();
+    private volatile boolean shutdown;
+    private volatile int failingPartNumber;
+    private volatile double failureRate;
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private final Map<String, String> deleteErrors = new ConcurrentHashMap<>();
+    private final List<Integer> deleteRequestSizes = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger activeDeletes = new AtomicInteger();
+    private final AtomicInteger maxActiveDeletes = new AtomicInteger();
+    private volatile Consumer<String> getHook;
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Make requests on the given key fail with a 503 service unavailable error.
+     */
+    public void setFailingKey(String failingKey) {
+        this.failingKey = failingKey;
+    }
+
+    /**
+     * Make requests on the given key fail with a 503 slow down error, as S3 does when throttling requests.
+     */
+    public void setThrottledKey(String throttledKey) {
+        this.throttledKey = throttledKey;
+    }
+
+    /**
+     * Throttle the requests to each prefix beyond the given rate with 503 slow down errors, as S3 does while it
+     * scales a prefix. Each prefix takes a burst of a tenth of a second of requests.
+     *
+     * @param throttleRate requests per second accepted per prefix, or 0 for no limit
+     */
+    public void setThrottleRate(int throttleRate) {
+        this.throttleRate = throttleRate;
+        tokenBuckets.clear();
+    }
+
+    public int getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * Make uploads of the part with the given number fail with a 500 internal error.
+     */
+    public void setFailingPartNumber(int failingPartNumber) {
+        this.failingPartNumber = failingPartNumber;
+    }
+
+    /**
+     * Make the given fraction of requests fail at random with a 500 internal error, which clients send again.
+     *
+     * @param failureRate fraction of requests to fail, from 0 for none to 1 for all
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Run the given action with the key of each object once it is read, before it is returned, to hold readers at a
+     * point of a test.
+     */
+    public void setGetHook(Consumer<String> getHook) {
+        this.getHook = getHook;
+    }
+
+    /**
+     * Make the next delete of the object with the given key fail with the given error code. The error is reported
+     * for the key alone in the response of a multi-object delete, as S3 does, while the other keys are deleted.
+     */
+    public void failNextDelete(String key, String code) {
+        deleteErrors.put(key, code);
+    }
+
+    /**
+     * @return number of keys of each multi-object delete request received, in the order received
+     */
+    public List<Integer> getDeleteRequestSizes() {
+        synchronized (deleteRequestSizes) {
+            return new ArrayList<>(deleteRequestSizes);
+        }
+    }
+
+    /**
+     * @return largest number of multi-object delete requests served at once
+     */
+    public int getMaxConcurrentDeletes() {
+        return maxActiveDeletes.get();
+    }
+
+    public int getPartCount() {
+        return partCount.get();
+    }
+
+    public int getPendingUploadCount() {
+        return uploads.size();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    public int getPutCount() {
+        return putCount.get();
+    }
+
+    public int getGetCount() {
+        return getCount.get();
+    }
+
+    public int getListCount() {
+        return listCount.get();
+    }
+
+    public int getObjectCount(String bucketName) {
+        Map<String, StoredObject> objects = buckets.get(bucketName);
+        return objects == null ? 0 : objects.size();
+    }
+
+    public byte[] getObjectContent(String bucketName, String key) {
+        Map<String, StoredObject> objects = buckets.get(bucketName);
+        StoredObject object = objects == null ? null : objects.get(key);
+        return object == null ? null : object.content;
+    }
+
+    @Override
+    public boolean doesBucketExistV2(String bucketName) {
+        simulateRequest(null);
+        return buckets.containsKey(bucketName);
+    }
+
+    @Override
+    public Bucket createBucket(CreateBucketRequest request) {
+        simulateRequest(null);
+        buckets.computeIfAbsent(request.getBucketName(), name -> new ConcurrentSkipListMap<>());
+        return new Bucket(request.getBucketName());
+    }
+
+    @Override
+    public PutObjectResult putObject(PutObjectRequest request) {
+        simulateRequest(request.getKey());
+        byte[] content;
+        try {
+            content = IOUtils.toByteArray(request.getInputStream());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        ObjectMetadata metadata = request.getMetadata() == null ? new ObjectMetadata() : request.getMetadata().clone();
+        PutObjectResult result = new PutObjectResult();
+        result.setETag(store(request.getBucketName(), request.getKey(), content, metadata,
+                BinaryUtils.toHex(Md5Utils.computeMD5Hash(content)), request.getCustomRequestHeaders()));
+        putCount.incrementAndGet();
+        return result;
+    }
+
+    private String store(String bucketName, String key, byte[] content, ObjectMetadata metadata, String etag,
+                         Map<String, String> headers) {
+        metadata.setHeader(Headers.ETAG, etag);
+        ConcurrentSkipListMap<String, StoredObject> objects =
+                buckets.computeIfAbsent(bucketName, name -> new ConcurrentSkipListMap<>());
+        synchronized (objects) {
+            checkPrecondition(headers, objects.get(key));
+            objects.put(key, new StoredObject(content, metadata));
+        }
+        return etag;
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+        simulateRequest(request.getKey());
+        String uploadId = UUID.randomUUID().toString();
+        ObjectMetadata metadata = request.getObjectMetadata() == null ? new ObjectMetadata()
+                : request.getObjectMetadata().clone();
+        uploads.put(uploadId, new PendingUpload(metadata));
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setUploadId(uploadId);
+        return result;
+    }
+
+    @Override
+    public UploadPartResult uploadPart(UploadPartRequest request) {
+        simulateRequest(request.getKey());
+        if (request.getPartNumber() == failingPartNumber) {
+            AmazonServiceException exception = new AmazonServiceException("Internal Error");
+            exception.setStatusCode(500);
+            exception.setErrorCode("InternalError");
+            throw exception;
+        }
+        PendingUpload upload = getUpload(request.getUploadId());
+        byte[] content = new byte[(int) request.getPartSize()];
+        try {
+            new DataInputStream(request.getInputStream()).readFully(content);
+            if (request.getInputStream().read() != -1) {
+                throw new IllegalStateException("Part " + request.getPartNumber() + " is longer than its size.");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        upload.parts.put(request.getPartNumber(), content);
+        partCount.incrementAndGet();
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag(BinaryUtils.toHex(Md5Utils.computeMD5Hash(content)));
+        return result;
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        simulateRequest(request.getKey());
+        PendingUpload upload = getUpload(request.getUploadId());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ByteArrayOutputStream partDigests = new ByteArrayOutputStream();
+        int previousPartNumber = 0;
+        for (PartETag partETag : request.getPartETags()) {
+            byte[] part = upload.parts.get(partETag.getPartNumber());
+            if (part == null || partETag.getPartNumber() <= previousPartNumber) {
+                AmazonS3Exception exception = new AmazonS3Exception("Invalid part " + partETag.getPartNumber());
+                exception.setStatusCode(400);
+                exception.setErrorCode("InvalidPart");
+                throw exception;
+            }
+            previousPartNumber = partETag.getPartNumber();
+            content.write(part, 0, part.length);
+            byte[] digest = Md5Utils.computeMD5Hash(part);
+            partDigests.write(digest, 0, digest.length);
+        }
+        uploads.remove(request.getUploadId());
+        // The ETag of a multipart object is the digest of the part digests, followed by the number of parts
+        String etag = BinaryUtils.toHex(Md5Utils.computeMD5Hash(partDigests.toByteArray())) + "-"
+                + request.getPartETags().size();
+        store(request.getBucketName(), request.getKey(), content.toByteArray(), upload.metadata, etag, null);
+        CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setETag(etag);
+        return result;
+    }
+
+    @Override
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+        simulateRequest(request.getKey());
+        getUpload(request.getUploadId());
+        uploads.remove(request.getUploadId());
+    }
+
+    private PendingUpload getUpload(String uploadId) {
+        PendingUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            AmazonS3Exception exception = new AmazonS3Exception("The specified upload does not exist.");
+            exception.setStatusCode(404);
+            exception.setErrorCode("NoSuchUpload");
+            throw exception;
+        }
+        return upload;
+    }
+
+    /**
+     * Honour the If-Match and If-None-Match headers of conditional writes.
+     */
+    private static void checkPrecondition(Map<String, String> headers, StoredObject current) {
+        if (headers == null) {
+            return;
+        }
+        String ifMatch = headers.get("If-Match");
+        String ifNoneMatch = headers.get("If-None-Match");
+        boolean holds = true;
+        if (ifMatch != null) {
+            holds = current != null && ifMatch.replace("\"", "").equals(current.metadata.getETag());
+        }
+        if ("*".equals(ifNoneMatch)) {
+            holds &= current == null;
+        }
+        if (!holds) {
+            AmazonS3Exception exception = new AmazonS3Exception("At least one of the pre-conditions you specified "
+                    + "did not hold.");
+            exception.setStatusCode(412);
+            exception.setErrorCode("PreconditionFailed");
+            throw exception;
+        }
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+        return getObjectMetadata(new GetObjectMetadataRequest(bucketName, key));
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+        String bucketName = request.getBucketName();
+        String key = request.getKey();
+        simulateRequest(key);
+        Map<String, StoredObject> objects = buckets.get(bucketName);
+        StoredObject stored = objects == null ? null : objects.get(key);
+        if (stored == null) {
+            AmazonS3Exception exception = new AmazonS3Exception("Not Found");
+            exception.setStatusCode(404);
+            throw exception;
+        }
+        ObjectMetadata metadata = stored.metadata.clone();
+        metadata.setContentLength(stored.content.length);
+        return metadata;
+    }
+
+    @Override
+    public boolean doesObjectExist(String bucketName, String objectName) {
+        simulateRequest(objectName);
+        Map<String, StoredObject> objects = buckets.get(bucketName);
+        return objects != null && objects.containsKey(objectName);
+    }
+
+    @Override
+    public S3Object getObject(String bucketName, String key) {
+        return getObject(new GetObjectRequest(bucketName, key));
+    }
+
+    @Override
+    public S3Object getObject(GetObjectRequest request) {
+        String bucketName = request.getBucketName();
+        String key = request.getKey();
+        simulateRequest(key);
+        getCount.incrementAndGet();
+        Map<String, StoredObject> objects = buckets.get(bucketName);
+        StoredObject stored = objects == null ? null : objects.get(key);
+        if (stored == null) {
+            AmazonS3Exception exception = new AmazonS3Exception("The specified key does not exist.");
+            exception.setStatusCode(404);
+            exception.setErrorCode("NoSuchKey");
+            throw exception;
+        }
+        if (!request.getMatchingETagConstraints().isEmpty()
+                && !request.getMatchingETagConstraints().contains(stored.metadata.getETag())) {
+            // The client returns no object when a constraint does not hold
+            return null;
+        }
+        S3Object object = new S3Object();
+        object.setBucketName(bucketName);
+        object.setKey(key);
+        object.setObjectMetadata(stored.metadata.clone());
+        byte[] content = stored.content;
+        long[] range = request.getRange();
+        if (range != null) {
+            if (range[0] >= content.length) {
+                AmazonS3Exception exception = new AmazonS3Exception("The requested range is not satisfiable");
+                exception.setStatusCode(416);
+                exception.setErrorCode("InvalidRange");
+                throw exception;
+            }
+            int end = (int) Math.min(range[1], content.length - 1);
+            object.getObjectMetadata().setHeader(Headers.CONTENT_RANGE,
+                    "bytes " + range[0] + "-" + end + "/" + content.length);
+            content = Arrays.copyOfRange(content, (int) range[0], end + 1);
+        }
+        object.getObjectMetadata().setContentLength(content.length);
+        object.setObjectContent(new ByteArrayInputStream(content));
+        Consumer<String> hook = getHook;
+        if (hook != null) {
+            hook.accept(key);
+        }
+        return object;
+    }
+
+    @Override
+    public DeleteObjectsResult deleteObjects(DeleteObjectsRequest request) {
+        int active = activeDeletes.incrementAndGet();
+        maxActiveDeletes.accumulateAndGet(active, Math::max);
+        try {
+            simulateRequest(null);
+            deleteRequestSizes.add(request.getKeys().size());
+            Map<String, StoredObject> objects = buckets.get(request.getBucketName());
+            List<DeleteObjectsResult.DeletedObject> deleted = new ArrayList<>();
+            List<MultiObjectDeleteException.DeleteError> errors = new ArrayList<>();
+            for (DeleteObjectsRequest.KeyVersion keyVersion : request.getKeys()) {
+                String errorCode = deleteErrors.remove(keyVersion.getKey());
+                if (errorCode != null) {
+                    MultiObjectDeleteException.DeleteError error = new MultiObjectDeleteException.DeleteError();
+                    error.setKey(keyVersion.getKey());
+                    error.setCode(errorCode);
+                    error.setMessage("Injected failure");
+                    errors.add(error);
+                    continue;
+                }
+                if (objects != null) {
+                    objects.remove(keyVersion.getKey());
+                }
+                DeleteObjectsResult.DeletedObject deletedObject = new DeleteObjectsResult.DeletedObject();
+                deletedObject.setKey(keyVersion.getKey());
+                deleted.add(deletedObject);
+            }
+            if (!errors.isEmpty()) {
+                throw new MultiObjectDeleteException(errors, deleted);
+            }
+            return new DeleteObjectsResult(deleted);
+        } finally {
+            activeDeletes.decrementAndGet();
+        }
+    }
+
+    @Override
+    public ListObjectsV2Result listObjectsV2(ListObjectsV2Request request) {
+        simulateRequest(null);
+        listCount.incrementAndGet();
+        int maxKeys = request.getMaxKeys() == null ? 1000 : request.getMaxKeys();
+        String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+        ListObjectsV2Result result = new ListObjectsV2Result();
+        result.setBucketName(request.getBucketName());
+        result.setPrefix(request.getPrefix());
+        NavigableMap<String, StoredObject> objects = buckets.get(request.getBucketName());
+        if (objects == null) {
+            return result;
+        }
+        // Continuation tokens are simply the last key returned
+        NavigableMap<String, StoredObject> remaining = request.getContinuationToken() == null
+                ? objects.tailMap(prefix, true) : objects.tailMap(request.getContinuationToken(), false);
+        for (Map.Entry<String, StoredObject> entry : remaining.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            int delimiterIndex = request.getDelimiter() == null ? -1
+                    : entry.getKey().indexOf(request.getDelimiter(), prefix.length());
+            if (delimiterIndex >= 0) {
+                // Keys below a delimiter are rolled up into their common prefix
+                String commonPrefix = entry.getKey().substring(0, delimiterIndex + request.getDelimiter().length());
+                List<String> commonPrefixes = result.getCommonPrefixes();
+                if (commonPrefixes.isEmpty() || !commonPrefixes.get(commonPrefixes.size() - 1).equals(commonPrefix)) {
+                    commonPrefixes.add(commonPrefix);
+                }
+                continue;
+            }
+            if (result.getKeyCount() == maxKeys) {
+                result.setTruncated(true);
+                result.setNextContinuationToken(result.getObjectSummaries()
+                        .get(result.getKeyCount() - 1).getKey());
+                break;
+            }
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setBucketName(request.getBucketName());
+            summary.setKey(entry.getKey());
+            summary.setSize(entry.getValue().content.length);
+            result.getObjectSummaries().add(summary);
+            result.setKeyCount(result.getKeyCount() + 1);
+        }
+        return result;
+    }
+
+    private void simulateRequest(String key) {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (key != null && key.equals(failingKey)) {
+            AmazonServiceException exception = new AmazonServiceException("Service Unavailable");
+            exception.setStatusCode(503);
+            exception.setErrorCode("ServiceUnavailable");
+            throw exception;
+        }
+        if (key != null && (key.equals(throttledKey) || throttleRate > 0 && !acquireToken(key))) {
+            throttledCount.incrementAndGet();
+            AmazonServiceException exception = new AmazonServiceException("Please reduce your request rate.");
+            exception.setStatusCode(503);
+            exception.setErrorCode("SlowDown");
+            throw exception;
+        }
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            failedCount.incrementAndGet();
+            AmazonServiceException exception = new AmazonServiceException("We encountered an internal error.");
+            exception.setStatusCode(500);
+            exception.setErrorCode("InternalError");
+            throw exception;
+        }
+    }
+
+    private boolean acquireToken(String key) {
+        int rate = throttleRate;
+        TokenBucket bucket = tokenBuckets.computeIfAbsent(key.substring(0, key.lastIndexOf('/') + 1),
+                prefix -> new TokenBucket(Math.max(1, rate / 10.0)));
+        synchronized (bucket) {
+            long now = System.nanoTime();
+            bucket.tokens = Math.min(bucket.capacity, bucket.tokens + (now - bucket.refilledNanos) * rate / 1e9);
+            bucket.refilledNanos = now;
+            if (bucket.tokens < 1) {
+                return false;
+            }
+            bucket.tokens--;
+            return true;
+        }
+    }
+
+    private static class TokenBucket {
+        private final double capacity;
+        private double tokens;
+        private long refilledNanos = System.nanoTime();
+
+        private TokenBucket(double capacity) {
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+    }
+
+    private static class PendingUpload {
+        private final ObjectMetadata metadata;
+        private final Map<Integer, byte[]> parts = new ConcurrentHashMap<>();
+
+        private PendingUpload(ObjectMetadata metadata) {
+            this.metadata = metadata;
+        }
+    }
+
+    private static class StoredObject {
+        private final byte[] content;
+        private final ObjectMetadata metadata;
+
+        private StoredObject(byte[] content, ObjectMetadata metadata) {
+            this.content = content;
+            this.metadata = metadata;
+        }
+    }
+}
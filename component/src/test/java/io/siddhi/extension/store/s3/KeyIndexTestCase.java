@@ -0,0 +1,181 @@
+package io.siddhi.extension.store.s3;
+
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.extension.store.s3.index.KeyIndex;
+import io.siddhi.extension.store.s3.util.S3RequestPipeline;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class KeyIndexTestCase {
+
+    private static final String BUCKET = "index-test";
+    private static final String PREFIX = "_index/";
+    private static final KeyIndex.KeySource NO_LISTING = consumer -> {
+        throw new AssertionError("The bucket should not be listed once the index has a snapshot.");
+    };
+
+    private InMemoryAmazonS3 client;
+    private S3RequestPipeline pipeline;
+    private Path cacheDirectory;
+    private List<KeyIndex> indexes;
+
+    @BeforeMethod
+    public void init() throws IOException {
+        client = new InMemoryAmazonS3();
+        pipeline = new S3RequestPipeline("test", 4, 8);
+        cacheDirectory = Files.createTempDirectory("key-index-test");
+        indexes = new ArrayList<>();
+    }
+
+    @AfterMethod
+    public void shutdown() throws ConnectionUnavailableException, IOException {
+        for (KeyIndex index : indexes) {
+            index.close();
+        }
+        pipeline.shutdown();
+        try (Stream<Path> files = Files.walk(cacheDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testFirstOpenListsTheKeys() throws ConnectionUnavailableException {
+        KeyIndex index = openIndex(cacheDirectory, listing("a", "b", "c"));
+        Assert.assertTrue(index.contains("a"));
+        Assert.assertTrue(index.contains("c"));
+        Assert.assertFalse(index.contains("d"));
+        // The first snapshot is written right away
+        Assert.assertEquals(client.getObjectCount(BUCKET), 1);
+        Assert.assertEquals(index.getJournalCount(), 0);
+    }
+
+    @Test
+    public void testChangesAreJournaled() throws ConnectionUnavailableException {
+        KeyIndex index = openIndex(cacheDirectory, listing("a"));
+        index.recordWrites(Arrays.asList("b", "c"));
+        index.recordDeletes(Collections.singletonList("a"));
+        Assert.assertFalse(index.contains("a"));
+        Assert.assertTrue(index.contains("b"));
+        Assert.assertEquals(index.getJournalCount(), 2);
+        Assert.assertEquals(client.getObjectCount(BUCKET), 3);
+
+        // A crash before the next snapshot loses nothing, the journals are replayed
+        KeyIndex reopened = openIndex(cacheDirectory, NO_LISTING);
+        Assert.assertFalse(reopened.contains("a"));
+        Assert.assertTrue(reopened.contains("b"));
+        Assert.assertTrue(reopened.contains("c"));
+        Assert.assertEquals(reopened.getJournalCount(), 2);
+    }
+
+    @Test
+    public void testSnapshotMergesJournals() throws ConnectionUnavailableException {
+        KeyIndex index = openIndex(cacheDirectory, listing("a", "b"));
+        index.recordWrites(Arrays.asList("c", "d"));
+        index.recordDeletes(Arrays.asList("b", "c"));
+        index.snapshot();
+        Assert.assertEquals(index.getJournalCount(), 0);
+        Assert.assertEquals(client.getObjectCount(BUCKET), 1);
+        Assert.assertTrue(index.contains("a"));
+        Assert.assertFalse(index.contains("b"));
+        Assert.assertFalse(index.contains("c"));
+        Assert.assertTrue(index.contains("d"));
+    }
+
+    @Test
+    public void testSnapshotIsLoadedFromTheLocalCache() throws ConnectionUnavailableException {
+        KeyIndex index = openIndex(cacheDirectory, listing("a"));
+        index.recordWrites(Collections.singletonList("b"));
+        index.close();
+        indexes.remove(index);
+
+        int gets = client.getGetCount();
+        KeyIndex reopened = openIndex(cacheDirectory, NO_LISTING);
+        Assert.assertEquals(client.getGetCount(), gets);
+        Assert.assertTrue(reopened.contains("a"));
+        Assert.assertTrue(reopened.contains("b"));
+
+        // Without the cached copy, the snapshot is downloaded once
+        Path otherCacheDirectory = cacheDirectory.resolve("other");
+        KeyIndex downloaded = openIndex(otherCacheDirectory, NO_LISTING);
+        Assert.assertEquals(client.getGetCount(), gets + 1);
+        Assert.assertTrue(downloaded.contains("b"));
+        Assert.assertFalse(downloaded.contains("c"));
+    }
+
+    @Test
+    public void testLargeIndex() throws ConnectionUnavailableException {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            keys.add("order-" + i);
+        }
+        KeyIndex index = openIndex(cacheDirectory, listing(keys.subList(0, 10000).toArray(new String[0])));
+        index.recordWrites(keys.subList(10000, 20000));
+        index.recordWrites(Collections.singletonList("order-\u00e9"));
+        index.recordDeletes(Collections.singletonList("order-5"));
+        index.snapshot();
+        for (String key : keys) {
+            Assert.assertEquals(index.contains(key), !key.equals("order-5"), key);
+        }
+        for (int i = 20000; i < 30000; i++) {
+            Assert.assertFalse(index.contains("order-" + i));
+        }
+        Assert.assertTrue(index.contains("order-\u00e9"));
+        Assert.assertFalse(index.contains("order-\u00e8"));
+    }
+
+    @Test
+    public void testObjectKeysAreRecorded() throws ConnectionUnavailableException {
+        KeyIndex index = openIndex(cacheDirectory, consumer -> {
+            consumer.accept("a", "2019/07/24/a");
+            consumer.accept("b", null);
+        });
+        Map<String, String> written = new LinkedHashMap<>();
+        written.put("a", "2019/07/25/a");
+        written.put("c", "2019/07/24/c");
+        index.recordWrites(written);
+        Assert.assertEquals(index.getObjectKey("a"), "2019/07/25/a");
+        Assert.assertNull(index.getObjectKey("b"));
+        Assert.assertTrue(index.contains("b"));
+
+        // Journals and snapshots keep the object keys
+        KeyIndex reopened = openIndex(cacheDirectory, NO_LISTING);
+        Assert.assertEquals(reopened.getObjectKey("a"), "2019/07/25/a");
+        Assert.assertEquals(reopened.getObjectKey("c"), "2019/07/24/c");
+        reopened.recordDeletes(Collections.singletonList("c"));
+        reopened.snapshot();
+        Assert.assertEquals(reopened.getObjectKey("a"), "2019/07/25/a");
+        Assert.assertNull(reopened.getObjectKey("b"));
+        Assert.assertNull(reopened.getObjectKey("c"));
+        Assert.assertTrue(reopened.contains("b"));
+        Assert.assertFalse(reopened.contains("c"));
+    }
+
+    private static KeyIndex.KeySource listing(String... keys) {
+        return consumer -> {
+            for (String key : keys) {
+                consumer.accept(key, null);
+            }
+        };
+    }
+
+    private KeyIndex openIndex(Path directory, KeyIndex.KeySource source) throws ConnectionUnavailableException {
+        KeyIndex index = new KeyIndex("test", client, BUCKET, PREFIX, directory, 60000, pipeline);
+        index.open(source);
+        indexes.add(index);
+        return index;
+    }
+}
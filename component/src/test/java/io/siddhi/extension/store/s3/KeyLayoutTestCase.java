@@ -0,0 +1,94 @@
+package io.siddhi.extension.store.s3;
+
+import io.siddhi.extension.store.s3.key.DatePartitionedKeyLayout;
+import io.siddhi.extension.store.s3.key.HashPrefixKeyLayout;
+import io.siddhi.extension.store.s3.key.KeyLayout;
+import io.siddhi.extension.store.s3.key.KeyLayoutFactory;
+import io.siddhi.extension.store.s3.key.RawKeyLayout;
+import io.siddhi.query.api.definition.Attribute;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class KeyLayoutTestCase {
+
+    private static final List<Attribute> ATTRIBUTES = Arrays.asList(
+            new Attribute("id", Attribute.Type.STRING),
+            new Attribute("timestamp", Attribute.Type.LONG),
+            new Attribute("payload", Attribute.Type.OBJECT));
+
+    @Test
+    public void testRawLayout() {
+        KeyLayout layout = new RawKeyLayout();
+        Assert.assertEquals(layout.toObjectKey("order-1", null), "order-1");
+        Assert.assertEquals(layout.toKey("order-1"), "order-1");
+        Assert.assertTrue(layout.getScanPrefixes().isEmpty());
+    }
+
+    @Test
+    public void testHashLayoutIsReversible() {
+        KeyLayout layout = new HashPrefixKeyLayout(3);
+        for (String key : Arrays.asList("1", "order-1001", "a/b/c", "")) {
+            String objectKey = layout.toObjectKey(key, null);
+            Assert.assertTrue(objectKey.matches("[0-9a-f]{3}/.*"), objectKey);
+            Assert.assertEquals(layout.toKey(objectKey), key);
+            Assert.assertTrue(objectKey.startsWith(prefixOf(layout, objectKey)));
+        }
+        // Objects of other layouts are not mistaken for records
+        Assert.assertNull(layout.toKey("order-1001"));
+        Assert.assertNull(layout.toKey("zzz/order-1001"));
+        Assert.assertNull(layout.toKey(new HashPrefixKeyLayout(2).toObjectKey("order-1001", null)));
+    }
+
+    @Test
+    public void testHashLayoutSpreadsSequentialKeys() {
+        KeyLayout layout = new HashPrefixKeyLayout(1);
+        Map<String, Integer> counts = new HashMap<>();
+        int keys = 16000;
+        for (int i = 0; i < keys; i++) {
+            counts.merge(layout.toObjectKey(String.valueOf(i), null).substring(0, 1), 1, Integer::sum);
+        }
+        Assert.assertEquals(counts.size(), 16);
+        for (int count : counts.values()) {
+            Assert.assertTrue(Math.abs(count - keys / 16) < keys / 16 / 5, "Uneven distribution " + counts);
+        }
+    }
+
+    @Test
+    public void testDateLayout() {
+        KeyLayout layout = KeyLayoutFactory.create(DatePartitionedKeyLayout.NAME, 2, "timestamp",
+                DatePartitionedKeyLayout.DEFAULT_FORMAT, ATTRIBUTES);
+        Assert.assertFalse(layout.isKeyAddressable());
+        // 2019-07-24T10:15:30Z
+        String objectKey = layout.toObjectKey("a/1", new Object[]{"a/1", 1563963330000L, null});
+        Assert.assertEquals(objectKey, "2019/07/24/a/1");
+        Assert.assertEquals(layout.toKey(objectKey), "a/1");
+        Assert.assertNull(layout.toObjectKey("a/1", new Object[]{"a/1", null, null}));
+        Assert.assertNull(layout.toKey("2019/07"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDateLayoutRequiresLongTimestamp() {
+        KeyLayoutFactory.create(DatePartitionedKeyLayout.NAME, 2, "id", DatePartitionedKeyLayout.DEFAULT_FORMAT,
+                ATTRIBUTES);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownLayout() {
+        KeyLayoutFactory.create("range", 2, null, DatePartitionedKeyLayout.DEFAULT_FORMAT, ATTRIBUTES);
+    }
+
+    private static String prefixOf(KeyLayout layout, String objectKey) {
+        for (String prefix : layout.getScanPrefixes()) {
+            if (objectKey.startsWith(prefix)) {
+                return prefix;
+            }
+        }
+        Assert.fail("Object key " + objectKey + " is not covered by the scan prefixes");
+        return null;
+    }
+}
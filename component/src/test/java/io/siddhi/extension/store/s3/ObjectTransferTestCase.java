@@ -0,0 +1,152 @@
+package io.siddhi.extension.store.s3;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.util.IOUtils;
+import io.siddhi.extension.store.s3.transfer.ObjectTransfer;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ObjectTransferTestCase {
+
+    private static final String BUCKET = "transfer-test";
+    private static final int PART_SIZE = 1000;
+
+    private InMemoryAmazonS3 client;
+    private ObjectTransfer transfer;
+
+    @BeforeMethod
+    public void init() {
+        client = new InMemoryAmazonS3();
+        transfer = new ObjectTransfer("test", client, BUCKET, 4096, PART_SIZE, 4);
+    }
+
+    @AfterMethod
+    public void shutdown() {
+        transfer.shutdown();
+    }
+
+    @Test
+    public void testRangesOfBufferSpanReferences() throws IOException {
+        RecordOutputBuffer buffer = new RecordOutputBuffer(16);
+        byte[] expected = body(buffer);
+        for (int offset = 0; offset <= expected.length; offset += 7) {
+            for (int length : new int[]{0, 1, 13, 100, expected.length - offset}) {
+                length = Math.min(length, expected.length - offset);
+                Assert.assertEquals(IOUtils.toByteArray(buffer.newInputStream(offset, length)),
+                        Arrays.copyOfRange(expected, offset, offset + length));
+            }
+        }
+        Assert.assertEquals(IOUtils.toByteArray(buffer.newInputStream()), expected);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testRangeBeyondBufferIsRejected() {
+        RecordOutputBuffer buffer = new RecordOutputBuffer(16);
+        buffer.write(new byte[10], 0, 10);
+        buffer.newInputStream(5, 6);
+    }
+
+    @Test
+    public void testLargeBodyIsUploadedInParts() throws IOException {
+        RecordOutputBuffer buffer = new RecordOutputBuffer(16);
+        byte[] expected = body(buffer);
+        Assert.assertTrue(transfer.isMultipart(buffer.length()));
+        Assert.assertFalse(transfer.isMultipart(4095));
+
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.addUserMetadata("price", "55.5");
+        String etag = transfer.upload("large", metadata, buffer);
+        Assert.assertEquals(client.getPartCount(), (expected.length + PART_SIZE - 1) / PART_SIZE);
+        Assert.assertEquals(client.getPendingUploadCount(), 0);
+        Assert.assertEquals(client.getObjectContent(BUCKET, "large"), expected);
+
+        int gets = client.getGetCount();
+        ObjectTransfer.Download download = transfer.download("large");
+        Assert.assertEquals(download.getBody(), expected);
+        Assert.assertEquals(download.getMetadata().getUserMetaDataOf("price"), "55.5");
+        Assert.assertEquals(download.getMetadata().getETag(), etag);
+        Assert.assertEquals(client.getGetCount() - gets, client.getPartCount());
+    }
+
+    @Test
+    public void testFailedUploadIsAborted() {
+        RecordOutputBuffer buffer = new RecordOutputBuffer(16);
+        body(buffer);
+        client.setFailingPartNumber(3);
+        try {
+            transfer.upload("large", new ObjectMetadata(), buffer);
+            Assert.fail("The upload should have failed.");
+        } catch (AmazonServiceException e) {
+            Assert.assertEquals(e.getStatusCode(), 500);
+        }
+        Assert.assertEquals(client.getPendingUploadCount(), 0);
+        Assert.assertNull(client.getObjectContent(BUCKET, "large"));
+    }
+
+    @Test
+    public void testSmallObjectsAreReadInOneRequest() throws IOException {
+        put("small", new byte[]{1, 2, 3});
+        put("empty", new byte[0]);
+        int gets = client.getGetCount();
+        Assert.assertEquals(transfer.download("small").getBody(), new byte[]{1, 2, 3});
+        Assert.assertEquals(client.getGetCount() - gets, 1);
+        Assert.assertEquals(transfer.download("empty").getBody(), new byte[0]);
+    }
+
+    @Test
+    public void testMissingObjectIsReported() throws IOException {
+        try {
+            transfer.download("missing");
+            Assert.fail("The download should have failed.");
+        } catch (AmazonS3Exception e) {
+            Assert.assertEquals(e.getStatusCode(), 404);
+        }
+    }
+
+    @Test
+    public void testDisabledTransferReadsWholeObjects() throws IOException {
+        ObjectTransfer disabled = new ObjectTransfer("test", client, BUCKET, 0, PART_SIZE, 4);
+        byte[] content = new byte[5 * PART_SIZE];
+        new Random(7).nextBytes(content);
+        put("object", content);
+        Assert.assertFalse(disabled.isMultipart(Integer.MAX_VALUE));
+        int gets = client.getGetCount();
+        Assert.assertEquals(disabled.download("object").getBody(), content);
+        Assert.assertEquals(client.getGetCount() - gets, 1);
+        disabled.shutdown();
+    }
+
+    /**
+     * Write a body of a few small writes around large arrays appended by reference.
+     */
+    private static byte[] body(RecordOutputBuffer buffer) {
+        Random random = new Random(42);
+        byte[] first = new byte[2500];
+        byte[] second = new byte[3100];
+        random.nextBytes(first);
+        random.nextBytes(second);
+        buffer.writeInt(first.length);
+        buffer.writeReference(first, 0, first.length);
+        buffer.writeString("separator");
+        buffer.writeReference(second, 100, 3000);
+        buffer.writeLong(42L);
+        return buffer.toByteArray();
+    }
+
+    private void put(String key, byte[] content) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        client.putObject(new PutObjectRequest(BUCKET, key, new ByteArrayInputStream(content), metadata));
+    }
+}
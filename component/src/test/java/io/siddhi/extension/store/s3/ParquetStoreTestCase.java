@@ -0,0 +1,370 @@
+package io.siddhi.extension.store.s3;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.extension.store.s3.metrics.InstrumentedAmazonS3;
+import io.siddhi.extension.store.s3.metrics.S3StoreMetrics;
+import io.siddhi.extension.store.s3.parquet.ParquetPartitioner;
+import io.siddhi.extension.store.s3.parquet.ParquetStore;
+import io.siddhi.extension.store.s3.util.S3RequestPipeline;
+import io.siddhi.query.api.definition.Attribute;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class ParquetStoreTestCase {
+
+    private static final String BUCKET = "parquet-test";
+    private static final List<Attribute> ATTRIBUTES = Arrays.asList(
+            new Attribute("symbol", Attribute.Type.STRING),
+            new Attribute("price", Attribute.Type.DOUBLE),
+            new Attribute("volume", Attribute.Type.LONG),
+            new Attribute("exchange", Attribute.Type.STRING),
+            new Attribute("timestamp", Attribute.Type.LONG),
+            new Attribute("payload", Attribute.Type.STRING));
+    // 2024-03-01T10:00:00Z
+    private static final long TIMESTAMP = 1709287200000L;
+
+    private InMemoryAmazonS3 client;
+    private S3StoreMetrics metrics;
+    private S3RequestPipeline pipeline;
+    private List<ParquetStore> stores;
+
+    @BeforeMethod
+    public void init() {
+        client = new InMemoryAmazonS3();
+        metrics = new S3StoreMetrics();
+        pipeline = new S3RequestPipeline("test", 4, 8);
+        stores = new ArrayList<>();
+    }
+
+    @AfterMethod
+    public void shutdown() throws ConnectionUnavailableException {
+        client.setFailureRate(0);
+        for (ParquetStore store : stores) {
+            store.close();
+        }
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void testRecordsAreWrittenToPartitionedFiles() throws ConnectionUnavailableException {
+        ParquetStore store = openStore("exchange", null, 1024 * 1024);
+        store.write(records(1000, 1.0));
+        Assert.assertEquals(client.getPutCount(), 0);
+        // Records are readable before they are written
+        assertRecord(store.get("key-10"), "key-10", 1.0);
+
+        store.roll();
+        List<String> objectKeys = listObjectKeys();
+        Assert.assertEquals(objectKeys.size(), 3, objectKeys.toString());
+        Assert.assertTrue(objectKeys.get(0).matches("parquet/_\\d{20}\\.keys"), objectKeys.get(0));
+        Assert.assertTrue(objectKeys.get(1).matches("parquet/exchange=NASDAQ/\\d{20}\\.parquet"), objectKeys.get(1));
+        Assert.assertTrue(objectKeys.get(2).matches("parquet/exchange=NYSE/\\d{20}\\.parquet"), objectKeys.get(2));
+        byte[] file = client.getObjectContent(BUCKET, objectKeys.get(1));
+        Assert.assertEquals(new String(file, 0, 4, StandardCharsets.US_ASCII), "PAR1");
+        Assert.assertEquals(new String(file, file.length - 4, 4, StandardCharsets.US_ASCII), "PAR1");
+
+        assertRecord(store.get("key-999"), "key-999", 1.0);
+        Assert.assertTrue(store.contains("key-0"));
+        Assert.assertFalse(store.contains("key-1000"));
+        Assert.assertNull(store.get("key-1000"));
+    }
+
+    @Test
+    public void testPointReadsReuseCachedFooters() throws ConnectionUnavailableException {
+        ParquetStore store = openStore(null, null, 16 * 1024 * 1024);
+        store.write(records(20000, 1.0));
+        store.roll();
+
+        ParquetStore reopened = openStore(null, null, 16 * 1024 * 1024);
+        int gets = client.getGetCount();
+        assertRecord(reopened.get("key-500"), "key-500", 1.0);
+        // The tail holding the footer, and the row group
+        Assert.assertEquals(client.getGetCount(), gets + 2);
+        assertRecord(reopened.get("key-501"), "key-501", 1.0);
+        Assert.assertEquals(client.getGetCount(), gets + 3);
+    }
+
+    @Test
+    public void testPointReadsDownloadOneRowGroup() throws ConnectionUnavailableException {
+        ParquetStore store = openStore(null, null, 64 * 1024 * 1024);
+        store.write(records(100000, 1.0));
+        store.roll();
+        long fileSize = client.listObjectsV2(BUCKET, "parquet/").getObjectSummaries().stream()
+                .filter(summary -> summary.getKey().endsWith(".parquet")).mapToLong(S3ObjectSummary::getSize).sum();
+
+        ParquetStore reopened = openStore(null, null, 64 * 1024 * 1024);
+        long bytesIn = metrics.getBytesIn();
+        assertRecord(reopened.get("key-99999"), "key-99999", 1.0);
+        long pointReadBytes = metrics.getBytesIn() - bytesIn;
+        Assert.assertTrue(pointReadBytes * 2 < fileSize, pointReadBytes + " of " + fileSize);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testLargeRowGroupsAreRejected() throws ConnectionUnavailableException {
+        openStore(null, null, 1024 * 1024, ParquetStore.MAX_ROW_GROUP_SIZE + 1);
+    }
+
+    @Test
+    public void testIndexIsRebuiltFromKeyFiles() throws ConnectionUnavailableException {
+        ParquetStore store = openStore("exchange", null, 1024 * 1024);
+        store.write(records(100, 1.0));
+        store.roll();
+        store.write(records(10, 2.0));
+        store.delete(Arrays.asList("key-50", "key-51"));
+        store.roll();
+
+        ParquetStore reopened = openStore("exchange", null, 1024 * 1024);
+        Assert.assertEquals(reopened.getFileCount(), 4);
+        Assert.assertEquals(reopened.getIndexSize(), 98);
+        assertRecord(reopened.get("key-5"), "key-5", 2.0);
+        assertRecord(reopened.get("key-20"), "key-20", 1.0);
+        Assert.assertNull(reopened.get("key-50"));
+        Assert.assertFalse(reopened.contains("key-51"));
+        Assert.assertEquals(reopened.scan(record -> true).size(), 98);
+    }
+
+    @Test
+    public void testSnapshotReplacesKeyFiles() throws ConnectionUnavailableException {
+        ParquetStore store = openStore("exchange", null, 1024 * 1024);
+        store.write(records(100, 1.0));
+        store.roll();
+        store.write(records(10, 2.0));
+        store.delete(Arrays.asList("key-50", "key-51"));
+        store.roll();
+        store.snapshot();
+        Assert.assertEquals(store.getKeyFileCount(), 0);
+        List<String> indexObjects = listIndexObjectKeys();
+        Assert.assertEquals(indexObjects.size(), 1, indexObjects.toString());
+        Assert.assertTrue(indexObjects.get(0).matches("parquet/_\\d{20}\\.snapshot"), indexObjects.get(0));
+        store.write(Collections.singletonList(record(20, 3.0)));
+        store.roll();
+
+        ParquetStore reopened = openStore("exchange", null, 1024 * 1024);
+        Assert.assertEquals(reopened.getKeyFileCount(), 1);
+        Assert.assertEquals(reopened.getIndexSize(), 98);
+        assertRecord(reopened.get("key-5"), "key-5", 2.0);
+        // Rows of the first files keep their ordinals although the rows before them are no longer live
+        assertRecord(reopened.get("key-21"), "key-21", 1.0);
+        assertRecord(reopened.get("key-20"), "key-20", 3.0);
+        Assert.assertNull(reopened.get("key-50"));
+        Assert.assertFalse(reopened.contains("key-51"));
+        Assert.assertEquals(reopened.scan(record -> true).size(), 98);
+    }
+
+    @Test
+    public void testKeyFilesAreSnapshottedPeriodically() throws ConnectionUnavailableException {
+        ParquetStore store = openStore(null, null, 1024 * 1024);
+        for (int i = 0; i < 64; i++) {
+            store.write(Collections.singletonList(record(i, i)));
+            store.roll();
+        }
+        Assert.assertEquals(store.getKeyFileCount(), 0);
+        Assert.assertEquals(listIndexObjectKeys().size(), 1);
+
+        ParquetStore reopened = openStore(null, null, 1024 * 1024);
+        Assert.assertEquals(reopened.getIndexSize(), 64);
+        assertRecord(reopened.get("key-0"), "key-0", 0.0);
+        assertRecord(reopened.get("key-63"), "key-63", 63.0);
+    }
+
+    @Test
+    public void testScanReturnsLatestRecords() throws ConnectionUnavailableException {
+        ParquetStore store = openStore(null, null, 1024 * 1024);
+        store.write(records(100, 1.0));
+        store.roll();
+        store.write(records(10, 2.0));
+        store.delete(Collections.singletonList("key-99"));
+
+        List<Object[]> matches = store.scan(record -> (Double) record[1] > 1.5, Collections.singletonList(1));
+        Assert.assertEquals(matches.size(), 10);
+        Assert.assertEquals(store.scan(record -> true).size(), 99);
+        store.roll();
+        matches = store.scan(record -> (Double) record[1] > 1.5, Collections.singletonList(1));
+        Assert.assertEquals(matches.size(), 10);
+        matches.forEach(record -> assertRecord(record, (String) record[0], 2.0));
+    }
+
+    @Test
+    public void testScanReadsOtherColumnsOfMatchingRowGroupsOnly() throws ConnectionUnavailableException {
+        ParquetStore store = openStore(null, null, 16 * 1024 * 1024, 16 * 1024);
+        store.write(records(20000, 1.0));
+        store.write(Collections.singletonList(record(1234, 7.0)));
+        store.roll();
+        // Footers of the files written are cached, read the footer of the file first
+        ParquetStore reopened = openStore(null, null, 16 * 1024 * 1024, 16 * 1024);
+        assertRecord(reopened.get("key-1"), "key-1", 1.0);
+
+        long bytesIn = metrics.getBytesIn();
+        Assert.assertEquals(reopened.scan(record -> true).size(), 20000);
+        long fullScanBytes = metrics.getBytesIn() - bytesIn;
+
+        bytesIn = metrics.getBytesIn();
+        List<Object[]> matches = reopened.scan(record -> (Double) record[1] > 5, Collections.singletonList(1));
+        long filteredScanBytes = metrics.getBytesIn() - bytesIn;
+        Assert.assertEquals(matches.size(), 1);
+        assertRecord(matches.get(0), "key-1234", 7.0);
+        Assert.assertTrue(filteredScanBytes * 4 < fullScanBytes, filteredScanBytes + " of " + fullScanBytes);
+    }
+
+    @Test
+    public void testFilesArePartitionedByDate() throws ConnectionUnavailableException {
+        ParquetStore store = openStore("timestamp", "yyyy-MM-dd", 1024 * 1024);
+        Object[] nextDay = record(1, 1.0);
+        nextDay[4] = TIMESTAMP + 24 * 3600 * 1000;
+        Object[] undated = record(2, 1.0);
+        undated[4] = null;
+        store.write(Arrays.asList(record(0, 1.0), nextDay, undated));
+        store.roll();
+
+        List<String> objectKeys = listObjectKeys();
+        Assert.assertEquals(objectKeys.size(), 4, objectKeys.toString());
+        Assert.assertTrue(objectKeys.get(1).startsWith("parquet/dt=2024-03-01/"), objectKeys.get(1));
+        Assert.assertTrue(objectKeys.get(2).startsWith("parquet/dt=2024-03-02/"), objectKeys.get(2));
+        Assert.assertTrue(objectKeys.get(3).startsWith("parquet/dt=__HIVE_DEFAULT_PARTITION__/"), objectKeys.get(3));
+        Assert.assertNull(store.get("key-2")[4]);
+    }
+
+    @Test
+    public void testPartitionValuesAreEscaped() throws ConnectionUnavailableException {
+        ParquetStore store = openStore("exchange", null, 1024 * 1024);
+        Object[] record = record(0, 1.0);
+        record[3] = "LSE/IOB:1";
+        store.write(Collections.singletonList(record));
+        store.roll();
+        Assert.assertTrue(listObjectKeys().get(1).startsWith("parquet/exchange=LSE%2FIOB%3A1/"),
+                listObjectKeys().toString());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDatePartitionRequiresLongAttribute() {
+        new ParquetPartitioner(ATTRIBUTES, "exchange", "yyyy-MM-dd");
+    }
+
+    @Test
+    public void testFilesRollWhenFull() throws ConnectionUnavailableException {
+        ParquetStore store = openStore(null, null, 64 * 1024);
+        for (int i = 0; i < 10; i++) {
+            store.write(records(100, i));
+        }
+        Assert.assertTrue(client.getPutCount() >= 4);
+        assertRecord(store.get("key-50"), "key-50", 9.0);
+    }
+
+    @Test
+    public void testFailedRollRetainsRecords() throws ConnectionUnavailableException {
+        ParquetStore store = openStore("exchange", null, 1024 * 1024);
+        store.write(records(100, 1.0));
+        client.setFailureRate(1);
+        try {
+            store.roll();
+            Assert.fail("Roll was expected to fail.");
+        } catch (ConnectionUnavailableException e) {
+            // expected
+        }
+        client.setFailureRate(0);
+        store.write(Collections.singletonList(record(5, 2.0)));
+        assertRecord(store.get("key-5"), "key-5", 2.0);
+        store.roll();
+        Assert.assertEquals(listObjectKeys().size(), 3);
+        assertRecord(store.get("key-5"), "key-5", 2.0);
+        assertRecord(store.get("key-6"), "key-6", 1.0);
+    }
+
+    @Test
+    public void testRollDuringScanKeepsRewrittenRecords() throws Exception {
+        ParquetStore store = openStore(null, null, 1024 * 1024);
+        store.write(records(200, 1.0));
+        store.roll();
+        // Opened again, so that the scan downloads the files instead of finding them cached
+        ParquetStore reopened = openStore(null, null, 1024 * 1024);
+        Thread testThread = Thread.currentThread();
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch rolled = new CountDownLatch(1);
+        // Hold the scan once it listed the files, until a newer file got rolled
+        client.setGetHook(key -> {
+            if (Thread.currentThread() != testThread) {
+                scanning.countDown();
+                try {
+                    rolled.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Object[]>> scan = executor.submit(() -> reopened.scan(record -> true));
+            Assert.assertTrue(scanning.await(10, TimeUnit.SECONDS));
+            reopened.write(Collections.singletonList(record(5, 2.0)));
+            reopened.roll();
+            rolled.countDown();
+            List<Object[]> matches = scan.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(matches.size(), 200);
+            Assert.assertTrue(matches.stream().anyMatch(record -> "key-5".equals(record[0])));
+        } finally {
+            client.setGetHook(null);
+            executor.shutdownNow();
+        }
+        assertRecord(reopened.get("key-5"), "key-5", 2.0);
+        Assert.assertEquals(reopened.scan(record -> true).size(), 200);
+    }
+
+    private ParquetStore openStore(String partitionAttribute, String partitionDateFormat, int maxSize)
+            throws ConnectionUnavailableException {
+        return openStore(partitionAttribute, partitionDateFormat, maxSize, ParquetStore.MAX_ROW_GROUP_SIZE);
+    }
+
+    private ParquetStore openStore(String partitionAttribute, String partitionDateFormat, int maxSize,
+                                   int rowGroupSize) throws ConnectionUnavailableException {
+        ParquetStore store = new ParquetStore("test", new InstrumentedAmazonS3(client, metrics), BUCKET, "parquet/",
+                ATTRIBUTES, 0, new ParquetPartitioner(ATTRIBUTES, partitionAttribute, partitionDateFormat), maxSize,
+                60000, rowGroupSize, "snappy", pipeline);
+        store.open();
+        stores.add(store);
+        return store;
+    }
+
+    private List<String> listObjectKeys() {
+        return client.listObjectsV2(BUCKET, "parquet/").getObjectSummaries().stream()
+                .map(S3ObjectSummary::getKey).collect(Collectors.toList());
+    }
+
+    private List<String> listIndexObjectKeys() {
+        return listObjectKeys().stream().filter(key -> key.startsWith("parquet/_")).collect(Collectors.toList());
+    }
+
+    private static List<Object[]> records(int count, double price) {
+        List<Object[]> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(record(i, price));
+        }
+        return records;
+    }
+
+    private static Object[] record(int i, double price) {
+        return new Object[]{"key-" + i, price, (long) i, i % 3 == 0 ? "NASDAQ" : "NYSE", TIMESTAMP,
+                "order " + i + " of " + Integer.toHexString(i * 40503) + " filled at " + price};
+    }
+
+    private static void assertRecord(Object[] record, String key, double price) {
+        Assert.assertNotNull(record, "Record " + key + " not found");
+        int i = Integer.parseInt(key.substring(4));
+        Object[] expected = record(i, price);
+        Assert.assertEquals(record, expected, "Record " + key);
+    }
+}
@@ -0,0 +1,96 @@
+package io.siddhi.extension.store.s3;
+
+import io.siddhi.extension.store.s3.cache.RecordCache;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RecordCacheTestCase {
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        RecordCache cache = new RecordCache(2, 0, 0, true);
+        cache.put("a", new Object[]{"a"}, 1);
+        cache.put("b", new Object[]{"b"}, 1);
+        Assert.assertNotNull(cache.get("a"));
+        cache.put("c", new Object[]{"c"}, 1);
+
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNotNull(cache.get("c"));
+        Assert.assertEquals(cache.getEvictionCount(), 1);
+        Assert.assertEquals(cache.getHitCount(), 3);
+        Assert.assertEquals(cache.getMissCount(), 1);
+    }
+
+    @Test
+    public void testWeightLimit() {
+        RecordCache cache = new RecordCache(100, 10, 0, true);
+        cache.put("a", new Object[]{"a"}, 6);
+        cache.put("b", new Object[]{"b"}, 6);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertNotNull(cache.get("b"));
+
+        // Records heavier than the whole cache are not cached at all
+        cache.put("c", new Object[]{"c"}, 11);
+        Assert.assertNull(cache.get("c"));
+        Assert.assertNotNull(cache.get("b"));
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        RecordCache cache = new RecordCache(10, 0, 20, true);
+        cache.put("a", new Object[]{"a"}, 1);
+        Assert.assertNotNull(cache.get("a"));
+        Thread.sleep(40);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testMissingKeys() {
+        RecordCache cache = new RecordCache(10, 0, 0, true);
+        cache.putMissingIfAbsent("a", cache.getVersion("a"));
+        RecordCache.Entry entry = cache.get("a");
+        Assert.assertNotNull(entry);
+        Assert.assertNull(entry.getRecord());
+
+        RecordCache withoutMissingKeys = new RecordCache(10, 0, 0, false);
+        withoutMissingKeys.putMissingIfAbsent("a", withoutMissingKeys.getVersion("a"));
+        Assert.assertNull(withoutMissingKeys.get("a"));
+    }
+
+    @Test
+    public void testReadsDoNotReplaceWrites() {
+        RecordCache cache = new RecordCache(10, 0, 0, true);
+        long version = cache.getVersion("a");
+        cache.put("a", new Object[]{"new"}, 1);
+        cache.putIfAbsent("a", new Object[]{"old"}, 1, version);
+        Assert.assertEquals(cache.get("a").getRecord()[0], "new");
+
+        cache.invalidate("a");
+        Assert.assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testReadsStartedBeforeAWriteAreNotCached() {
+        RecordCache cache = new RecordCache(10, 0, 0, true);
+        // A read starts, and the record gets deleted before the read completes
+        long version = cache.getVersion("a");
+        cache.invalidate("a");
+        cache.putIfAbsent("a", new Object[]{"deleted"}, 1, version);
+        Assert.assertNull(cache.get("a"));
+        cache.putMissingIfAbsent("a", version);
+        Assert.assertNull(cache.get("a"));
+
+        // Reads started afterwards are cached
+        cache.putIfAbsent("a", new Object[]{"current"}, 1, cache.getVersion("a"));
+        Assert.assertEquals(cache.get("a").getRecord()[0], "current");
+
+        // A written record too heavy to be cached still keeps reads started before out of the cache
+        RecordCache light = new RecordCache(10, 1, 0, true);
+        version = light.getVersion("a");
+        light.put("a", new Object[]{"new"}, 2);
+        light.putIfAbsent("a", new Object[]{"old"}, 1, version);
+        Assert.assertNull(light.get("a"));
+    }
+}
@@ -0,0 +1,173 @@
+package io.siddhi.extension.store.s3;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.util.IOUtils;
+import io.siddhi.extension.store.s3.codec.RecordCodec;
+import io.siddhi.extension.store.s3.codec.RecordCodecFactory;
+import io.siddhi.extension.store.s3.codec.RecordMapper;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+import io.siddhi.extension.store.s3.util.RecordBufferPool;
+import io.siddhi.extension.store.s3.util.RecordInputBuffer;
+import io.siddhi.extension.store.s3.util.RecordOutputBuffer;
+import io.siddhi.query.api.definition.Attribute;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RecordCodecTestCase {
+
+    private static final List<Attribute> ATTRIBUTES = Arrays.asList(
+            new Attribute("symbol", Attribute.Type.STRING),
+            new Attribute("volume", Attribute.Type.INT),
+            new Attribute("timestamp", Attribute.Type.LONG),
+            new Attribute("price", Attribute.Type.FLOAT),
+            new Attribute("average", Attribute.Type.DOUBLE),
+            new Attribute("active", Attribute.Type.BOOL),
+            new Attribute("payload", Attribute.Type.OBJECT));
+
+    @DataProvider(name = "codecs")
+    public Object[][] codecs() {
+        return new Object[][]{{"binary"}, {"json"}, {"java"}};
+    }
+
+    @Test(dataProvider = "codecs")
+    public void testRoundTrip(String codecName) throws IOException {
+        RecordCodec codec = RecordCodecFactory.create(codecName, ATTRIBUTES);
+        Object[] values = {"WSO2 \u00e9\u4e2d\ud83d\ude00", 100, 1565067600000L, 55.6f, 1.0e-3, true,
+                new byte[]{1, 2, 3}};
+        assertRecordEquals(roundTrip(codec, values), values);
+    }
+
+    @Test(dataProvider = "codecs")
+    public void testNullValues(String codecName) throws IOException {
+        RecordCodec codec = RecordCodecFactory.create(codecName, ATTRIBUTES);
+        Object[] values = new Object[ATTRIBUTES.size()];
+        assertRecordEquals(roundTrip(codec, values), values);
+    }
+
+    @Test
+    public void testBinaryCodecSerializesOtherObjects() throws IOException {
+        RecordCodec codec = RecordCodecFactory.create("binary", ATTRIBUTES);
+        Object[] values = {null, null, null, null, null, null, Arrays.asList("a", "b")};
+        assertRecordEquals(roundTrip(codec, values), values);
+    }
+
+    @Test
+    public void testBinaryCodecIsSmallerThanJavaSerialization() throws IOException {
+        Object[] values = {"WSO2", 100, 1565067600000L, 55.6f, 1.0e-3, true, new byte[16]};
+        RecordOutputBuffer binary = new RecordOutputBuffer(16);
+        RecordCodecFactory.create("binary", ATTRIBUTES).encode(values, binary);
+        RecordOutputBuffer java = new RecordOutputBuffer(16);
+        RecordCodecFactory.create("java", ATTRIBUTES).encode(values, java);
+        Assert.assertTrue(binary.size() * 4 < java.size());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownCodec() {
+        RecordCodecFactory.create("avro", ATTRIBUTES);
+    }
+
+    @Test
+    public void testRecordMapper() throws IOException {
+        RecordMapper binaryMapper = new RecordMapper(ATTRIBUTES, 0, Arrays.asList(2, 6), "binary");
+        Object[] record = {"WSO2", 100, 1565067600000L, 55.6f, null, true, new byte[]{4, 2}};
+        byte[] body = binaryMapper.encodeBody(record);
+        ObjectMetadata metadata = binaryMapper.createMetadata(record);
+        assertRecordEquals(binaryMapper.toRecord("WSO2", metadata, body, 0, body.length), record);
+
+        // Objects are decoded with the codec they were written with
+        RecordMapper jsonMapper = new RecordMapper(ATTRIBUTES, 0, Arrays.asList(2, 6), "json");
+        assertRecordEquals(jsonMapper.toRecord("WSO2", metadata, body, 0, body.length), record);
+    }
+
+    @Test
+    public void testMetadataWithinTheS3Limit() {
+        RecordMapper mapper = new RecordMapper(Arrays.asList(new Attribute("symbol", Attribute.Type.STRING),
+                new Attribute("description", Attribute.Type.STRING)), 0, Collections.emptyList(), "binary");
+        ObjectMetadata metadata = mapper.createMetadata(new Object[]{"WSO2", repeat('a', 1800)});
+        Assert.assertEquals(metadata.getUserMetaDataOf("description").length(), 1800);
+        try {
+            mapper.createMetadata(new Object[]{"WSO2", repeat('a', 2100)});
+            Assert.fail("Metadata over the S3 limit was accepted");
+        } catch (S3TableException e) {
+            Assert.assertTrue(e.getMessage().contains("'WSO2'"), e.getMessage());
+        }
+        // Encoded values count, rather than the values as given
+        try {
+            mapper.createMetadata(new Object[]{"WSO2", repeat('\u00e9', 400)});
+            Assert.fail("Metadata over the S3 limit was accepted");
+        } catch (S3TableException e) {
+            Assert.assertTrue(e.getMessage().contains("object.fields"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testLargeValuesAreNotCopied() throws IOException {
+        RecordCodec codec = RecordCodecFactory.create("binary", ATTRIBUTES);
+        byte[] payload = new byte[RecordOutputBuffer.REFERENCE_THRESHOLD * 4];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        Object[] values = {"WSO2", 100, null, null, null, null, payload};
+        RecordOutputBuffer buffer = new RecordOutputBuffer(64);
+        codec.encode(values, buffer);
+        Assert.assertTrue(buffer.size() < 64, "Large value was copied into the buffer");
+        Assert.assertEquals(buffer.length(), buffer.size() + payload.length);
+
+        InputStream in = buffer.newInputStream();
+        Assert.assertTrue(in.markSupported());
+        in.mark(Integer.MAX_VALUE);
+        Assert.assertEquals(in.skip(1000), 1000);
+        in.reset();
+        byte[] body = IOUtils.toByteArray(in);
+        Assert.assertEquals(body, buffer.toByteArray());
+        assertRecordEquals(codec.decode(body, 0, body.length), values);
+    }
+
+    @Test(expectedExceptions = StreamCorruptedException.class)
+    public void testMalformedVarInt() throws IOException {
+        byte[] bytes = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1};
+        new RecordInputBuffer(bytes, 0, bytes.length).readVarInt();
+    }
+
+    @Test
+    public void testBufferPool() {
+        RecordBufferPool pool = new RecordBufferPool(2, 16, 1024);
+        RecordOutputBuffer buffer = pool.acquire();
+        buffer.writeLong(1);
+        pool.release(buffer);
+        Assert.assertEquals(pool.size(), 1);
+        RecordOutputBuffer reused = pool.acquire();
+        Assert.assertSame(reused, buffer);
+        Assert.assertEquals(reused.length(), 0);
+
+        // Buffers that grew too large are not kept
+        reused.write(new byte[2048], 0, 2048);
+        pool.release(reused);
+        Assert.assertEquals(pool.size(), 0);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static Object[] roundTrip(RecordCodec codec, Object[] values) throws IOException {
+        RecordOutputBuffer buffer = new RecordOutputBuffer(4);
+        codec.encode(values, buffer);
+        return codec.decode(buffer.getBuffer(), 0, buffer.size());
+    }
+
+    private static void assertRecordEquals(Object[] actual, Object[] expected) {
+        Assert.assertTrue(Arrays.deepEquals(actual, expected),
+                Arrays.deepToString(actual) + " is not equal to " + Arrays.deepToString(expected));
+    }
+}
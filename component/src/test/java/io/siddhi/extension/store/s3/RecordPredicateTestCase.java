@@ -0,0 +1,169 @@
+package io.siddhi.extension.store.s3;
+
+import io.siddhi.core.table.record.ExpressionVisitor;
+import io.siddhi.extension.store.s3.condition.ConditionNode;
+import io.siddhi.extension.store.s3.condition.RecordPredicate;
+import io.siddhi.extension.store.s3.condition.S3ConditionVisitor;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.condition.Compare;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class RecordPredicateTestCase {
+
+    private static final List<Attribute> ATTRIBUTES = Arrays.asList(
+            new Attribute("symbol", Attribute.Type.STRING),
+            new Attribute("price", Attribute.Type.FLOAT),
+            new Attribute("volume", Attribute.Type.LONG),
+            new Attribute("count", Attribute.Type.INT),
+            new Attribute("ratio", Attribute.Type.DOUBLE),
+            new Attribute("active", Attribute.Type.BOOL));
+    private static final Object[][] VALUES = {
+            {"WSO2", "IBM", "", null},
+            {55.5f, 10f, -0.0f, Float.NaN, null},
+            {10L, 100L, Long.MAX_VALUE, null},
+            {10, -1, 0, null},
+            {55.5, 10.0, 1e300, Double.NaN, null},
+            {true, false, null}};
+    private static final Compare.Operator[] OPERATORS = Compare.Operator.values();
+
+    @Test
+    public void testComparisonsOfAttributesWithConstants() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.beginVisitAnd();
+        visitCompare(visitor, Compare.Operator.GREATER_THAN, "price", 50);
+        visitor.beginVisitCompare(Compare.Operator.LESS_THAN_EQUAL);
+        visitor.endVisitConstant("IBM", Attribute.Type.STRING);
+        visitor.endVisitStoreVariable("StockTable", "symbol", Attribute.Type.STRING);
+        visitor.endVisitCompare(Compare.Operator.LESS_THAN_EQUAL);
+        visitor.endVisitAnd();
+        RecordPredicate predicate = RecordPredicate.compile(visitor.getCondition(), ATTRIBUTES);
+
+        Map<String, Object> parameters = Collections.emptyMap();
+        Assert.assertTrue(predicate.test(new Object[]{"WSO2", 55.5f, 10L, 1, 0.5, true}, parameters));
+        Assert.assertTrue(predicate.test(new Object[]{"IBM", 50.5f, 10L, 1, 0.5, true}, parameters));
+        Assert.assertFalse(predicate.test(new Object[]{"IBM", 50f, 10L, 1, 0.5, true}, parameters));
+        Assert.assertFalse(predicate.test(new Object[]{"APPL", 55.5f, 10L, 1, 0.5, true}, parameters));
+        Assert.assertFalse(predicate.test(new Object[]{null, 55.5f, 10L, 1, 0.5, true}, parameters));
+    }
+
+    @Test
+    public void testNullsAndMixedTypes() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.beginVisitOr();
+        visitor.beginVisitIsNull(null);
+        visitor.endVisitStoreVariable("StockTable", "symbol", Attribute.Type.STRING);
+        visitor.endVisitIsNull(null);
+        visitor.beginVisitCompare(Compare.Operator.EQUAL);
+        visitor.endVisitStoreVariable("StockTable", "volume", Attribute.Type.LONG);
+        visitor.endVisitStreamVariable("count-param", "StockStream", "count", Attribute.Type.INT);
+        visitor.endVisitCompare(Compare.Operator.EQUAL);
+        visitor.endVisitOr();
+        RecordPredicate predicate = RecordPredicate.compile(visitor.getCondition(), ATTRIBUTES);
+
+        Map<String, Object> parameters = Collections.singletonMap("count-param", 10);
+        Assert.assertTrue(predicate.test(new Object[]{null, 1f, 5L, 1, 0.5, true}, parameters));
+        Assert.assertTrue(predicate.test(new Object[]{"IBM", 1f, 10L, 1, 0.5, true}, parameters));
+        Assert.assertFalse(predicate.test(new Object[]{"IBM", 1f, 5L, 1, 0.5, true}, parameters));
+        Assert.assertFalse(predicate.test(new Object[]{"IBM", 1f, null, 1, 0.5, true},
+                Collections.singletonMap("count-param", null)));
+    }
+
+    @Test
+    public void testSameResultsAsConditionTree() {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            S3ConditionVisitor visitor = new S3ConditionVisitor();
+            visitCondition(visitor, random, 3);
+            ConditionNode condition = visitor.getCondition();
+            RecordPredicate predicate = RecordPredicate.compile(condition, ATTRIBUTES);
+            for (int j = 0; j < 50; j++) {
+                Object[] record = new Object[ATTRIBUTES.size()];
+                Map<String, Object> recordMap = new HashMap<>();
+                Map<String, Object> parameters = new HashMap<>();
+                for (int k = 0; k < record.length; k++) {
+                    record[k] = pick(random, VALUES[k]);
+                    recordMap.put(ATTRIBUTES.get(k).getName(), record[k]);
+                    parameters.put(ATTRIBUTES.get(k).getName() + "-param", pick(random, VALUES[k]));
+                }
+                Assert.assertEquals(predicate.test(record, parameters),
+                        Boolean.TRUE.equals(condition.evaluate(recordMap, parameters)),
+                        "Condition " + i + " on " + Arrays.toString(record) + " with " + parameters);
+            }
+        }
+    }
+
+    private static void visitCondition(S3ConditionVisitor visitor, Random random, int depth) {
+        switch (depth == 0 ? 3 + random.nextInt(2) : random.nextInt(5)) {
+            case 0:
+                visitor.beginVisitAnd();
+                visitCondition(visitor, random, depth - 1);
+                visitCondition(visitor, random, depth - 1);
+                visitor.endVisitAnd();
+                break;
+            case 1:
+                visitor.beginVisitOr();
+                visitCondition(visitor, random, depth - 1);
+                visitCondition(visitor, random, depth - 1);
+                visitor.endVisitOr();
+                break;
+            case 2:
+                visitor.beginVisitNot();
+                visitCondition(visitor, random, depth - 1);
+                visitor.endVisitNot();
+                break;
+            case 3:
+                visitor.beginVisitIsNull(null);
+                visitOperand(visitor, random);
+                visitor.endVisitIsNull(null);
+                break;
+            default:
+                Compare.Operator operator = OPERATORS[random.nextInt(OPERATORS.length)];
+                visitor.beginVisitCompare(operator);
+                visitOperand(visitor, random);
+                visitOperand(visitor, random);
+                visitor.endVisitCompare(operator);
+        }
+    }
+
+    private static void visitOperand(S3ConditionVisitor visitor, Random random) {
+        int attribute = random.nextInt(ATTRIBUTES.size());
+        Attribute.Type type = ATTRIBUTES.get(attribute).getType();
+        String name = ATTRIBUTES.get(attribute).getName();
+        switch (random.nextInt(4)) {
+            case 0:
+                visitor.endVisitStoreVariable("StockTable", name, type);
+                break;
+            case 1:
+                visitor.endVisitStreamVariable(name + "-param", "StockStream", name, type);
+                break;
+            case 2:
+                visitor.endVisitConstant(pick(random, VALUES[attribute]), type);
+                break;
+            default:
+                visitor.beginVisitMath(ExpressionVisitor.MathOperator.ADD);
+                visitor.endVisitStoreVariable("StockTable", name, type);
+                visitor.endVisitConstant(pick(random, VALUES[random.nextInt(5)]), type);
+                visitor.endVisitMath(ExpressionVisitor.MathOperator.ADD);
+        }
+    }
+
+    private static Object pick(Random random, Object[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static void visitCompare(S3ConditionVisitor visitor, Compare.Operator operator, String attribute,
+                                     Object constant) {
+        visitor.beginVisitCompare(operator);
+        visitor.endVisitStoreVariable("StockTable", attribute, Attribute.Type.STRING);
+        visitor.endVisitConstant(constant, Attribute.Type.OBJECT);
+        visitor.endVisitCompare(operator);
+    }
+}
@@ -0,0 +1,126 @@
+package io.siddhi.extension.store.s3;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.services.s3.AmazonS3;
+import io.siddhi.core.util.config.InMemoryConfigReader;
+import io.siddhi.extension.store.s3.client.DefaultS3ClientFactory;
+import io.siddhi.extension.store.s3.client.S3ClientRegistry;
+import io.siddhi.extension.store.s3.client.S3ClientSettings;
+import io.siddhi.query.api.annotation.Annotation;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+public class S3ClientRegistryTestCase {
+
+    private final S3ClientRegistry registry = S3ClientRegistry.getInstance();
+
+    @BeforeMethod
+    public void init() {
+        registry.setClientFactory(settings -> new InMemoryAmazonS3());
+    }
+
+    @AfterMethod
+    public void reset() {
+        registry.setClientFactory(null);
+    }
+
+    @Test
+    public void testTablesWithEqualSettingsShareClient() {
+        int clients = registry.size();
+        S3ClientSettings settings = new S3ClientSettings(new S3StoreConfig(store("first")));
+        // The bucket is not part of the client settings
+        S3ClientSettings sameSettings = new S3ClientSettings(new S3StoreConfig(store("second")));
+        S3ClientSettings otherSettings = new S3ClientSettings(new S3StoreConfig(store("third")
+                .element("client.max.connections", "8")));
+        Assert.assertEquals(settings, sameSettings);
+        Assert.assertNotEquals(settings, otherSettings);
+
+        AmazonS3 client = registry.acquire(settings);
+        Assert.assertSame(registry.acquire(sameSettings), client);
+        AmazonS3 otherClient = registry.acquire(otherSettings);
+        Assert.assertNotSame(otherClient, client);
+        Assert.assertEquals(registry.size(), clients + 2);
+
+        registry.release(settings);
+        Assert.assertFalse(((InMemoryAmazonS3) client).isShutdown());
+        registry.release(sameSettings);
+        Assert.assertTrue(((InMemoryAmazonS3) client).isShutdown());
+        registry.release(otherSettings);
+        Assert.assertTrue(((InMemoryAmazonS3) otherClient).isShutdown());
+        Assert.assertEquals(registry.size(), clients);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testReleaseOfUnheldClientIsRejected() {
+        registry.release(new S3ClientSettings(new S3StoreConfig(store("bucket")
+                .element("endpoint", "http://unheld:9000"))));
+    }
+
+    @Test
+    public void testSettingsFallBackToSystemConfiguration() {
+        InMemoryConfigReader configReader = new InMemoryConfigReader("store.s3", Collections.singletonMap(
+                "store.s3.client.max.connections", "128"));
+        Assert.assertEquals(new S3StoreConfig(store("bucket"), configReader).getClientMaxConnections(), 128);
+        Assert.assertEquals(new S3StoreConfig(store("bucket").element("client.max.connections", "16"),
+                configReader).getClientMaxConnections(), 16);
+        Assert.assertEquals(new S3StoreConfig(store("bucket")).getClientMaxConnections(), 64);
+    }
+
+    @Test
+    public void testClientConfigurationFollowsSettings() {
+        S3ClientSettings settings = new S3ClientSettings(new S3StoreConfig(store("bucket")
+                .element("client.max.connections", "200")
+                .element("client.connection.timeout", "1000")
+                .element("client.socket.timeout", "2000")
+                .element("client.request.timeout", "3000")
+                .element("client.connection.ttl", "60000")
+                .element("client.tcp.keep.alive", "false")
+                .element("client.max.error.retry", "7")));
+        ClientConfiguration configuration = DefaultS3ClientFactory.createClientConfiguration(settings);
+        Assert.assertEquals(configuration.getMaxConnections(), 200);
+        Assert.assertEquals(configuration.getConnectionTimeout(), 1000);
+        Assert.assertEquals(configuration.getSocketTimeout(), 2000);
+        Assert.assertEquals(configuration.getRequestTimeout(), 3000);
+        Assert.assertEquals(configuration.getConnectionTTL(), 60000);
+        Assert.assertFalse(configuration.useTcpKeepAlive());
+        Assert.assertEquals(configuration.getRetryPolicy().getMaxErrorRetry(), 7);
+    }
+
+    @Test
+    public void testEndpointOverrideWithPathStyleAccess() {
+        S3ClientSettings settings = new S3ClientSettings(new S3StoreConfig(store("bucket")
+                .element("region", "us-west-2")
+                .element("endpoint", "http://localhost:9000")
+                .element("path.style.access", "true")
+                .element("aws.access.key", "access")
+                .element("aws.secret.key", "secret")));
+        AmazonS3 client = new DefaultS3ClientFactory().create(settings);
+        try {
+            Assert.assertEquals(client.getUrl("bucket", "key").toString(), "http://localhost:9000/bucket/key");
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testAccessKeyRequiresSecretKey() {
+        new S3StoreConfig(store("bucket").element("aws.access.key", "access"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownCredentialProviderIsRejected() {
+        new DefaultS3ClientFactory().create(new S3ClientSettings(new S3StoreConfig(store("bucket")
+                .element("credential.provider", "com.example.MissingProvider"))));
+    }
+
+    private static Annotation store(String bucketName) {
+        return Annotation.annotation("store")
+                .element("type", "s3")
+                .element("bucket.name", bucketName)
+                .element("object.fields", "payload");
+    }
+}
@@ -0,0 +1,85 @@
+package io.siddhi.extension.store.s3;
+
+import io.siddhi.extension.store.s3.condition.S3CompiledCondition;
+import io.siddhi.extension.store.s3.condition.S3ConditionVisitor;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.condition.Compare;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class S3CompiledConditionTestCase {
+
+    private static final List<Attribute> ATTRIBUTES = Arrays.asList(
+            new Attribute("symbol", Attribute.Type.STRING),
+            new Attribute("price", Attribute.Type.FLOAT),
+            new Attribute("volume", Attribute.Type.LONG));
+
+    @Test
+    public void testPrimaryKeyEquality() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitCompare(visitor, Compare.Operator.EQUAL, "symbol", null);
+        S3CompiledCondition condition = compile(visitor);
+
+        Map<String, Object> parameters = Collections.singletonMap("symbol-param", "WSO2");
+        Assert.assertTrue(condition.isPrimaryKeyLookup());
+        Assert.assertTrue(condition.isPrimaryKeyOnly());
+        Assert.assertEquals(condition.getPrimaryKey(parameters), "WSO2");
+    }
+
+    @Test
+    public void testPrimaryKeyEqualityWithResidualCondition() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.beginVisitAnd();
+        visitCompare(visitor, Compare.Operator.EQUAL, "symbol", null);
+        visitCompare(visitor, Compare.Operator.GREATER_THAN, "price", 50.0f);
+        visitor.endVisitAnd();
+        S3CompiledCondition condition = compile(visitor);
+
+        Map<String, Object> parameters = Collections.singletonMap("symbol-param", "WSO2");
+        Assert.assertTrue(condition.isPrimaryKeyLookup());
+        Assert.assertFalse(condition.isPrimaryKeyOnly());
+        Assert.assertTrue(condition.matches(new Object[]{"WSO2", 55.5f, 10L}, parameters));
+        Assert.assertFalse(condition.matches(new Object[]{"WSO2", 45.5f, 10L}, parameters));
+    }
+
+    @Test
+    public void testNonKeyConditionFallsBackToScan() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.beginVisitOr();
+        visitCompare(visitor, Compare.Operator.EQUAL, "symbol", null);
+        visitCompare(visitor, Compare.Operator.LESS_THAN_EQUAL, "volume", 100);
+        visitor.endVisitOr();
+        S3CompiledCondition condition = compile(visitor);
+
+        Map<String, Object> parameters = Collections.singletonMap("symbol-param", "WSO2");
+        Assert.assertFalse(condition.isPrimaryKeyLookup());
+        Assert.assertTrue(condition.matches(new Object[]{"IBM", 55.5f, 100L}, parameters));
+        Assert.assertTrue(condition.matches(new Object[]{"WSO2", 55.5f, 500L}, parameters));
+        Assert.assertFalse(condition.matches(new Object[]{"IBM", 55.5f, 500L}, parameters));
+        Assert.assertFalse(condition.matches(new Object[]{"IBM", 55.5f, null}, parameters));
+    }
+
+    /**
+     * Visit a comparison of a store attribute with either a constant or, if the constant is null, a stream variable.
+     */
+    private static void visitCompare(S3ConditionVisitor visitor, Compare.Operator operator, String attribute,
+                                     Object constant) {
+        visitor.beginVisitCompare(operator);
+        visitor.endVisitStoreVariable("StockTable", attribute, Attribute.Type.STRING);
+        if (constant == null) {
+            visitor.endVisitStreamVariable(attribute + "-param", "StockStream", attribute, Attribute.Type.STRING);
+        } else {
+            visitor.endVisitConstant(constant, Attribute.Type.OBJECT);
+        }
+        visitor.endVisitCompare(operator);
+    }
+
+    private static S3CompiledCondition compile(S3ConditionVisitor visitor) {
+        return new S3CompiledCondition(visitor.getCondition(), ATTRIBUTES, "symbol");
+    }
+}
@@ -0,0 +1,93 @@
+package io.siddhi.extension.store.s3;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+import io.siddhi.extension.store.s3.util.S3RequestPipeline;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public class S3RequestPipelineTestCase {
+
+    private static final Logger log = Logger.getLogger(S3RequestPipelineTestCase.class);
+    private static final String BUCKET = "pipeline-test";
+
+    private InMemoryAmazonS3 client;
+    private S3RequestPipeline pipeline;
+
+    @BeforeMethod
+    public void init() {
+        client = new InMemoryAmazonS3();
+        pipeline = new S3RequestPipeline("test", 8, 16);
+    }
+
+    @AfterMethod
+    public void shutdown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void testBatchCompletesBeforeReturning() throws ConnectionUnavailableException {
+        client.setLatencyMillis(5);
+        pipeline.executeAll(putRequests(100));
+        Assert.assertEquals(client.getObjectCount(BUCKET), 100);
+    }
+
+    @Test
+    public void testParallelUploadThroughput() throws ConnectionUnavailableException {
+        int records = 80;
+        long latency = 20;
+        client.setLatencyMillis(latency);
+        long start = System.nanoTime();
+        pipeline.executeAll(putRequests(records));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Uploaded " + records + " objects with " + latency + "ms latency in " + elapsedMillis + "ms ("
+                + (records * 1000L / Math.max(elapsedMillis, 1)) + " objects/s)");
+        // A sequential upload would take records * latency
+        Assert.assertTrue(elapsedMillis < records * latency / 2, "Uploads were not executed in parallel");
+    }
+
+    @Test
+    public void testServerErrorMapsToConnectionUnavailable() {
+        client.setFailingKey("key-7");
+        try {
+            pipeline.executeAll(putRequests(20));
+            Assert.fail("Expected the batch to fail");
+        } catch (ConnectionUnavailableException e) {
+            // Every other object of the batch should still have been written
+            Assert.assertEquals(client.getObjectCount(BUCKET), 19);
+        }
+    }
+
+    @Test(expectedExceptions = S3TableException.class)
+    public void testClientErrorIsNotRetried() throws ConnectionUnavailableException {
+        List<Callable<Object>> requests = new ArrayList<>();
+        requests.add(() -> {
+            AmazonServiceException exception = new AmazonServiceException("Access Denied");
+            exception.setStatusCode(403);
+            throw exception;
+        });
+        pipeline.executeAll(requests);
+    }
+
+    private List<Callable<PutObjectResult>> putRequests(int count) {
+        List<Callable<PutObjectResult>> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PutObjectRequest request = new PutObjectRequest(BUCKET, "key-" + i,
+                    new ByteArrayInputStream(new byte[]{(byte) i}), new ObjectMetadata());
+            requests.add(() -> client.putObject(request));
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,99 @@
+package io.siddhi.extension.store.s3;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+import io.siddhi.extension.store.s3.exception.S3TableException;
+import io.siddhi.extension.store.s3.scan.S3ScanEngine;
+import io.siddhi.extension.store.s3.scan.ScanIterator;
+import io.siddhi.extension.store.s3.util.S3RequestPipeline;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class S3ScanEngineTestCase {
+
+    private static final String BUCKET = "scan-test";
+
+    private InMemoryAmazonS3 client;
+    private S3RequestPipeline pipeline;
+    private S3ScanEngine engine;
+
+    @BeforeMethod
+    public void init() {
+        client = new InMemoryAmazonS3();
+        pipeline = new S3RequestPipeline("test", 8, 16);
+        engine = new S3ScanEngine(client, BUCKET, Arrays.asList("a/", "b/", "c/"), 8, 10, pipeline, (key, size) -> {
+            try (S3Object object = client.getObject(BUCKET, key)) {
+                return new Object[]{key, new String(IOUtils.toByteArray(object.getObjectContent()),
+                        StandardCharsets.UTF_8)};
+            }
+        });
+        for (String prefix : Arrays.asList("a/", "b/", "c/")) {
+            for (int i = 0; i < 1100; i++) {
+                put(prefix + i, i % 2 == 0 ? "even" : "odd");
+            }
+        }
+    }
+
+    @AfterMethod
+    public void shutdown() {
+        engine.shutdown();
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void testScanCoversAllPartitions() {
+        Set<String> keys = new HashSet<>();
+        try (ScanIterator iterator = engine.scan(record -> "even".equals(record[1]),
+                Collections.singletonList(new Object[]{"buffered", "even"}))) {
+            Assert.assertEquals(iterator.next()[0], "buffered");
+            while (iterator.hasNext()) {
+                Assert.assertTrue(keys.add((String) iterator.next()[0]), "Record returned more than once");
+            }
+        }
+        Assert.assertEquals(keys.size(), 3 * 550);
+        Assert.assertTrue(keys.contains("c/1098"));
+        // Each partition of 1100 keys takes two pages to list
+        Assert.assertEquals(client.getListCount(), 6);
+    }
+
+    @Test
+    public void testClosingStopsTheScan() throws InterruptedException {
+        client.setLatencyMillis(1);
+        try (ScanIterator iterator = engine.scan(record -> true, Collections.emptyList())) {
+            Assert.assertTrue(iterator.hasNext());
+        }
+        int fetched = client.getGetCount();
+        Thread.sleep(200);
+        // Only the fetches in flight at the time of closing may complete
+        Assert.assertTrue(client.getGetCount() - fetched <= 16);
+        Assert.assertTrue(client.getGetCount() < 3 * 1100, "Scan was not stopped");
+    }
+
+    @Test(expectedExceptions = S3TableException.class)
+    public void testFailureIsReportedToTheConsumer() {
+        client.setFailingKey("b/500");
+        try (ScanIterator iterator = engine.scan(record -> true, Collections.emptyList())) {
+            while (iterator.hasNext()) {
+                iterator.next();
+            }
+        }
+    }
+
+    private void put(String key, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(bytes.length);
+        client.putObject(new PutObjectRequest(BUCKET, key, new ByteArrayInputStream(bytes), metadata));
+    }
+}
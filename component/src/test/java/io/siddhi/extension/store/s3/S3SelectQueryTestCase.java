@@ -0,0 +1,190 @@
+package io.siddhi.extension.store.s3;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import io.siddhi.extension.store.s3.codec.RecordMapper;
+import io.siddhi.extension.store.s3.condition.S3ConditionVisitor;
+import io.siddhi.extension.store.s3.condition.S3SelectQuery;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.condition.Compare;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class S3SelectQueryTestCase {
+
+    private static final String PREFIX = "SELECT * FROM S3Object s WHERE ";
+    private static final Map<String, Attribute.Type> FIELDS = new HashMap<>();
+
+    static {
+        FIELDS.put("symbol", Attribute.Type.STRING);
+        FIELDS.put("volume", Attribute.Type.LONG);
+        FIELDS.put("price", Attribute.Type.DOUBLE);
+        FIELDS.put("ratio", Attribute.Type.FLOAT);
+        FIELDS.put("active", Attribute.Type.BOOL);
+        FIELDS.put("payload", Attribute.Type.OBJECT);
+    }
+
+    @Test
+    public void testComparisonWithConstant() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitCompare(visitor, Compare.Operator.GREATER_THAN_EQUAL, "volume", 100L);
+        Assert.assertEquals(toSql(visitor, Collections.emptyMap()), PREFIX + "(s.\"volume\" >= 100)");
+    }
+
+    @Test
+    public void testComparisonWithStreamVariable() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitCompare(visitor, Compare.Operator.EQUAL, "symbol", null);
+        Assert.assertEquals(toSql(visitor, Collections.singletonMap("symbol-param", "O'Reilly")),
+                PREFIX + "(s.\"symbol\" = 'O''Reilly')");
+        // A null value matches nothing, as in Siddhi
+        Assert.assertEquals(toSql(visitor, Collections.singletonMap("symbol-param", null)),
+                PREFIX + "(s.\"symbol\" = NULL)");
+    }
+
+    @Test
+    public void testFieldOnTheRightIsFlipped() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.beginVisitCompare(Compare.Operator.LESS_THAN);
+        visitor.endVisitConstant(10.5, Attribute.Type.DOUBLE);
+        visitor.endVisitStoreVariable("StockTable", "price", Attribute.Type.DOUBLE);
+        visitor.endVisitCompare(Compare.Operator.LESS_THAN);
+        Assert.assertEquals(toSql(visitor, Collections.emptyMap()), PREFIX + "(s.\"price\" > 10.5)");
+    }
+
+    @Test
+    public void testAndOrAndIsNull() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.beginVisitAnd();
+        visitor.beginVisitOr();
+        visitCompare(visitor, Compare.Operator.NOT_EQUAL, "active", true);
+        visitor.beginVisitIsNull(null);
+        visitor.endVisitStoreVariable("StockTable", "symbol", Attribute.Type.STRING);
+        visitor.endVisitIsNull(null);
+        visitor.endVisitOr();
+        visitCompare(visitor, Compare.Operator.LESS_THAN, "price", 1e10);
+        visitor.endVisitAnd();
+        Assert.assertEquals(toSql(visitor, Collections.emptyMap()), PREFIX
+                + "(((s.\"active\" != true OR s.\"symbol\" IS NULL) AND s.\"price\" < 10000000000))");
+    }
+
+    @Test
+    public void testUntranslatableConjunctsAreLeftOut() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.beginVisitAnd();
+        visitor.beginVisitAnd();
+        // Attributes stored as metadata and FLOAT fields are filtered on the client side
+        visitCompare(visitor, Compare.Operator.EQUAL, "exchange", "NYSE");
+        visitCompare(visitor, Compare.Operator.GREATER_THAN, "ratio", 0.1f);
+        visitor.endVisitAnd();
+        visitor.beginVisitNot();
+        visitCompare(visitor, Compare.Operator.EQUAL, "volume", 5L);
+        visitor.endVisitNot();
+        visitor.endVisitAnd();
+        Assert.assertNull(S3SelectQuery.translate(visitor.getCondition(), FIELDS));
+
+        visitor = new S3ConditionVisitor();
+        visitor.beginVisitAnd();
+        visitCompare(visitor, Compare.Operator.EQUAL, "exchange", "NYSE");
+        visitCompare(visitor, Compare.Operator.LESS_THAN_EQUAL, "volume", 5);
+        visitor.endVisitAnd();
+        Assert.assertEquals(toSql(visitor, Collections.emptyMap()), PREFIX + "(s.\"volume\" <= 5)");
+    }
+
+    @Test
+    public void testPartiallyTranslatableDisjunctionIsLeftOut() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitor.beginVisitOr();
+        visitCompare(visitor, Compare.Operator.EQUAL, "symbol", "WSO2");
+        visitCompare(visitor, Compare.Operator.EQUAL, "exchange", "NYSE");
+        visitor.endVisitOr();
+        Assert.assertNull(S3SelectQuery.translate(visitor.getCondition(), FIELDS));
+
+        visitor = new S3ConditionVisitor();
+        visitor.beginVisitOr();
+        visitCompare(visitor, Compare.Operator.EQUAL, "symbol", "WSO2");
+        visitor.beginVisitCompare(Compare.Operator.GREATER_THAN);
+        visitor.beginVisitMath(S3ConditionVisitor.MathOperator.ADD);
+        visitor.endVisitStoreVariable("StockTable", "volume", Attribute.Type.LONG);
+        visitor.endVisitConstant(1L, Attribute.Type.LONG);
+        visitor.endVisitMath(S3ConditionVisitor.MathOperator.ADD);
+        visitor.endVisitConstant(10L, Attribute.Type.LONG);
+        visitor.endVisitCompare(Compare.Operator.GREATER_THAN);
+        visitor.endVisitOr();
+        Assert.assertNull(S3SelectQuery.translate(visitor.getCondition(), FIELDS));
+    }
+
+    @Test
+    public void testUnsupportedOperatorsAndValues() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitCompare(visitor, Compare.Operator.GREATER_THAN, "active", true);
+        Assert.assertNull(S3SelectQuery.translate(visitor.getCondition(), FIELDS));
+
+        visitor = new S3ConditionVisitor();
+        visitCompare(visitor, Compare.Operator.EQUAL, "payload", "bytes");
+        Assert.assertNull(S3SelectQuery.translate(visitor.getCondition(), FIELDS));
+
+        // Values that cannot be compared the way Siddhi compares them leave the filtering to the client
+        visitor = new S3ConditionVisitor();
+        visitCompare(visitor, Compare.Operator.EQUAL, "volume", null);
+        Assert.assertNull(toSql(visitor, Collections.singletonMap("volume-param", "100")));
+        Assert.assertNull(toSql(visitor, Collections.singletonMap("volume-param", Double.NaN)));
+        Assert.assertEquals(toSql(visitor, Collections.singletonMap("volume-param", 100.25f)),
+                PREFIX + "(s.\"volume\" = 100.25)");
+    }
+
+    @Test
+    public void testQueryMatchesAnyParameterSet() {
+        S3ConditionVisitor visitor = new S3ConditionVisitor();
+        visitCompare(visitor, Compare.Operator.EQUAL, "symbol", null);
+        S3SelectQuery query = S3SelectQuery.translate(visitor.getCondition(), FIELDS);
+        List<Map<String, Object>> parameterMaps = Arrays.asList(
+                Collections.singletonMap("symbol-param", "WSO2"),
+                Collections.singletonMap("symbol-param", "IBM"));
+        Assert.assertEquals(query.toSql(parameterMaps),
+                PREFIX + "(s.\"symbol\" = 'WSO2') OR (s.\"symbol\" = 'IBM')");
+    }
+
+    @Test
+    public void testSelectOutputIsDecoded() throws IOException {
+        List<Attribute> attributes = Arrays.asList(
+                new Attribute("symbol", Attribute.Type.STRING),
+                new Attribute("price", Attribute.Type.DOUBLE),
+                new Attribute("exchange", Attribute.Type.STRING));
+        RecordMapper mapper = new RecordMapper(attributes, 0, Collections.singletonList(1), "json", "gzip", 0);
+        Assert.assertTrue(mapper.hasMetadataAttributes());
+        ObjectMetadata metadata = mapper.createMetadata(new Object[]{"WSO2", 55.5, "NYSE"});
+        // Compression is undone by S3 Select, hence recorded compression does not apply to the output
+        metadata.addUserMetadata(RecordMapper.COMPRESSION_METADATA_KEY, "gzip");
+        byte[] output = "{\"price\":55.5}\n".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(mapper.fromSelectOutput("WSO2", metadata, output), new Object[]{"WSO2", 55.5, "NYSE"});
+    }
+
+    private static String toSql(S3ConditionVisitor visitor, Map<String, Object> parameters) {
+        S3SelectQuery query = S3SelectQuery.translate(visitor.getCondition(), FIELDS);
+        Assert.assertNotNull(query);
+        return query.toSql(Collections.singletonList(parameters));
+    }
+
+    /**
+     * Visit a comparison of a store attribute with either a constant or, if the constant is null, a stream variable.
+     */
+    private static void visitCompare(S3ConditionVisitor visitor, Compare.Operator operator, String attribute,
+                                     Object constant) {
+        visitor.beginVisitCompare(operator);
+        visitor.endVisitStoreVariable("StockTable", attribute, Attribute.Type.STRING);
+        if (constant == null) {
+            visitor.endVisitStreamVariable(attribute + "-param", "StockStream", attribute, Attribute.Type.STRING);
+        } else {
+            visitor.endVisitConstant(constant, Attribute.Type.OBJECT);
+        }
+        visitor.endVisitCompare(operator);
+    }
+}
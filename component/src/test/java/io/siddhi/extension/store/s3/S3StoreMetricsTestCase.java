@@ -0,0 +1,211 @@
+package io.siddhi.extension.store.s3;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import io.siddhi.extension.store.s3.metrics.InstrumentedAmazonS3;
+import io.siddhi.extension.store.s3.metrics.LatencyHistogram;
+import io.siddhi.extension.store.s3.metrics.LatencySnapshot;
+import io.siddhi.extension.store.s3.metrics.S3StoreMetrics;
+import io.siddhi.extension.store.s3.metrics.S3StoreMetricsMXBean;
+import io.siddhi.extension.store.s3.util.S3RequestPipeline;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class S3StoreMetricsTestCase {
+
+    private static final String BUCKET = "metrics-test";
+
+    @Test
+    public void testHistogramQuantilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value * 1000);
+        }
+        Assert.assertEquals(histogram.getCount(), 10000);
+        Assert.assertEquals(histogram.getMaxNanos(), 10_000_000);
+        assertWithin(histogram.getQuantileNanos(0.5), 5_000_000);
+        assertWithin(histogram.getQuantileNanos(0.99), 9_900_000);
+        Assert.assertEquals(histogram.getQuantileNanos(1), 10_000_000);
+
+        LatencySnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(snapshot.getMeanMillis(), 5.0005, 0.0001);
+        Assert.assertEquals(snapshot.getMaxMillis(), 10.0, 0.0001);
+        Assert.assertEquals(new LatencyHistogram().getQuantileNanos(0.5), 0);
+    }
+
+    @Test
+    public void testHistogramRecordsExtremeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(0);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(histogram.getCount(), 3);
+        Assert.assertEquals(histogram.getQuantileNanos(0.5), 0);
+        Assert.assertEquals(histogram.getQuantileNanos(1), Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testRequestsAreCountedByType() throws IOException {
+        S3StoreMetrics metrics = new S3StoreMetrics();
+        AmazonS3 client = new InstrumentedAmazonS3(new InMemoryAmazonS3(), metrics);
+        byte[] body = new byte[300];
+        client.putObject(putRequest("a", body));
+        client.putObject(putRequest("b", body));
+        try (S3Object object = client.getObject(BUCKET, "a")) {
+            Assert.assertEquals(object.getObjectMetadata().getContentLength(), 300);
+        }
+        Assert.assertEquals(client.getObjectMetadata(BUCKET, "b").getContentLength(), 300);
+
+        Assert.assertEquals(metrics.getRequestLatency(S3StoreMetrics.Request.PUT).getCount(), 2);
+        Assert.assertEquals(metrics.getRequestLatency(S3StoreMetrics.Request.GET).getCount(), 1);
+        Assert.assertEquals(metrics.getRequestLatency(S3StoreMetrics.Request.HEAD).getCount(), 1);
+        Assert.assertEquals(metrics.getRequestLatency(S3StoreMetrics.Request.LIST).getCount(), 0);
+        Assert.assertEquals(metrics.getBytesOut(), 600);
+        Assert.assertEquals(metrics.getBytesIn(), 300);
+        Assert.assertEquals(metrics.getRequestErrors(S3StoreMetrics.Request.GET), 0);
+    }
+
+    @Test
+    public void testFailedRequestsAreCountedAsErrorsOrThrottles() {
+        S3StoreMetrics metrics = new S3StoreMetrics();
+        InMemoryAmazonS3 fake = new InMemoryAmazonS3();
+        AmazonS3 client = new InstrumentedAmazonS3(fake, metrics);
+        fake.setFailingKey("failing");
+        fake.setThrottledKey("throttled");
+        assertRequestFails(() -> client.getObject(BUCKET, "failing"), 503);
+        assertRequestFails(() -> client.getObject(BUCKET, "throttled"), 503);
+        assertRequestFails(() -> client.putObject(putRequest("throttled", new byte[1])), 503);
+        // Missing objects are errors too, the table tells them apart by the status code
+        assertRequestFails(() -> client.getObject(BUCKET, "missing"), 404);
+
+        Assert.assertEquals(metrics.getRequestLatency(S3StoreMetrics.Request.GET).getCount(), 3);
+        Assert.assertEquals(metrics.getRequestErrors(S3StoreMetrics.Request.GET), 2);
+        Assert.assertEquals(metrics.getRequestErrors(S3StoreMetrics.Request.PUT), 0);
+        Assert.assertEquals(metrics.getThrottles(), 2);
+        Assert.assertEquals((long) metrics.getRequestErrors().get("GET"), 2);
+        Assert.assertEquals(metrics.getBytesOut(), 0);
+    }
+
+    @Test
+    public void testInjectedFailuresAreCountedAsErrors() {
+        S3StoreMetrics metrics = new S3StoreMetrics();
+        InMemoryAmazonS3 fake = new InMemoryAmazonS3();
+        AmazonS3 client = new InstrumentedAmazonS3(fake, metrics);
+        client.putObject(putRequest("a", new byte[1]));
+        fake.setFailureRate(1);
+        assertRequestFails(() -> client.doesObjectExist(BUCKET, "a"), 500);
+        fake.setFailureRate(0);
+        Assert.assertTrue(client.doesObjectExist(BUCKET, "a"));
+        Assert.assertFalse(client.doesObjectExist(BUCKET, "b"));
+
+        Assert.assertEquals(fake.getFailedCount(), 1);
+        Assert.assertEquals(metrics.getRequestLatency(S3StoreMetrics.Request.HEAD).getCount(), 3);
+        Assert.assertEquals(metrics.getRequestErrors(S3StoreMetrics.Request.HEAD), 1);
+        Assert.assertEquals(metrics.getThrottles(), 0);
+    }
+
+    @Test
+    public void testSharedClientIsNotShutDownByTable() {
+        InMemoryAmazonS3 fake = new InMemoryAmazonS3();
+        new InstrumentedAmazonS3(fake, new S3StoreMetrics()).shutdown();
+        Assert.assertFalse(fake.isShutdown());
+    }
+
+    @Test
+    public void testGaugesFollowBoundComponents() throws Exception {
+        S3StoreMetrics metrics = new S3StoreMetrics();
+        Assert.assertEquals(metrics.getInFlightRequests(), 0);
+        Assert.assertEquals(metrics.getCacheSize(), 0);
+        Assert.assertEquals(metrics.getBufferedWrites(), 0);
+
+        S3RequestPipeline pipeline = new S3RequestPipeline("metrics-test", 2, 4);
+        metrics.bind(pipeline, null, null, null);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Future<Boolean> first = pipeline.submit(() -> release.await(10, TimeUnit.SECONDS));
+            Future<Boolean> second = pipeline.submit(() -> release.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(metrics.getInFlightRequests(), 2);
+            release.countDown();
+            first.get();
+            second.get();
+            // Permits are released once the futures completed, which may be just after get returns
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (metrics.getInFlightRequests() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals(metrics.getInFlightRequests(), 0);
+        } finally {
+            release.countDown();
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    public void testMetricsAreReadableOverJmx() throws JMException {
+        S3StoreMetrics metrics = new S3StoreMetrics();
+        metrics.recordOperation(S3StoreMetrics.Operation.FIND, System.nanoTime() - 2_000_000);
+        metrics.recordBytesIn(42);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = S3StoreMetrics.createObjectName("MetricsApp", "StockTable");
+        metrics.register("MetricsApp", "StockTable");
+        try {
+            Assert.assertTrue(server.isRegistered(name));
+            S3StoreMetricsMXBean proxy = JMX.newMXBeanProxy(server, name, S3StoreMetricsMXBean.class);
+            Assert.assertEquals(proxy.getBytesIn(), 42);
+            LatencySnapshot find = proxy.getOperationLatencies().get("FIND");
+            Assert.assertEquals(find.getCount(), 1);
+            Assert.assertTrue(find.getMaxMillis() >= 2, find.toString());
+            Assert.assertEquals(proxy.getOperationLatencies().get("ADD").getCount(), 0);
+
+            // A table created again under the same name takes over the registration
+            S3StoreMetrics recreated = new S3StoreMetrics();
+            recreated.register("MetricsApp", "StockTable");
+            try {
+                Assert.assertEquals(JMX.newMXBeanProxy(server, name, S3StoreMetricsMXBean.class).getBytesIn(), 0);
+                // The replaced instance shutting down later leaves the registration of the new one alone
+                metrics.unregister();
+                Assert.assertTrue(server.isRegistered(name));
+                Assert.assertEquals(JMX.newMXBeanProxy(server, name, S3StoreMetricsMXBean.class).getBytesIn(), 0);
+            } finally {
+                recreated.unregister();
+            }
+        } finally {
+            metrics.unregister();
+        }
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    private static PutObjectRequest putRequest(String key, byte[] body) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(body.length);
+        return new PutObjectRequest(BUCKET, key, new ByteArrayInputStream(body), metadata);
+    }
+
+    private static void assertRequestFails(Runnable request, int statusCode) {
+        try {
+            request.run();
+            Assert.fail("Request was expected to fail.");
+        } catch (AmazonServiceException e) {
+            Assert.assertEquals(e.getStatusCode(), statusCode);
+        }
+    }
+
+    private static void assertWithin(long actual, long expected) {
+        Assert.assertTrue(actual >= expected && actual <= expected + expected / 8,
+                actual + " is not within an eighth above " + expected);
+    }
+}
@@ -0,0 +1,303 @@
+package io.siddhi.extension.store.s3;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.extension.store.s3.segment.SegmentStore;
+import io.siddhi.extension.store.s3.util.S3RequestPipeline;
+import io.siddhi.query.api.definition.Attribute;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class SegmentStoreTestCase {
+
+    private static final String BUCKET = "segment-test";
+    private static final List<Attribute> ATTRIBUTES = Arrays.asList(
+            new Attribute("price", Attribute.Type.DOUBLE),
+            new Attribute("id", Attribute.Type.STRING),
+            new Attribute("payload", Attribute.Type.OBJECT));
+
+    private InMemoryAmazonS3 client;
+    private S3RequestPipeline pipeline;
+    private List<SegmentStore> stores;
+
+    @BeforeMethod
+    public void init() {
+        client = new InMemoryAmazonS3();
+        pipeline = new S3RequestPipeline("test", 4, 8);
+        stores = new ArrayList<>();
+    }
+
+    @AfterMethod
+    public void shutdown() throws ConnectionUnavailableException {
+        for (SegmentStore store : stores) {
+            store.close();
+        }
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void testRecordsArePackedIntoSegments() throws ConnectionUnavailableException {
+        SegmentStore store = openStore(1024 * 1024);
+        store.write(records(1000, 1.0));
+        Assert.assertEquals(client.getPutCount(), 0);
+        // Records are readable before the segment is uploaded
+        assertRecord(store.get("key-10"), "key-10", 1.0);
+
+        store.roll();
+        Assert.assertEquals(client.getPutCount(), 1);
+        int gets = client.getGetCount();
+        assertRecord(store.get("key-999"), "key-999", 1.0);
+        Assert.assertEquals(client.getGetCount(), gets + 1);
+        Assert.assertTrue(store.contains("key-0"));
+        Assert.assertFalse(store.contains("key-1000"));
+        Assert.assertNull(store.get("key-1000"));
+    }
+
+    @Test
+    public void testSegmentsRollWhenFull() throws ConnectionUnavailableException {
+        SegmentStore store = openStore(4096);
+        for (int i = 0; i < 10; i++) {
+            store.write(records(100, i));
+        }
+        Assert.assertTrue(client.getPutCount() >= 2);
+        assertRecord(store.get("key-50"), "key-50", 9.0);
+    }
+
+    @Test
+    public void testIndexIsRebuiltOnOpen() throws ConnectionUnavailableException {
+        SegmentStore store = openStore(1024 * 1024);
+        store.write(records(100, 1.0));
+        store.roll();
+        store.write(records(10, 2.0));
+        store.delete(Arrays.asList("key-50", "key-51"));
+        store.roll();
+
+        SegmentStore reopened = openStore(1024 * 1024);
+        Assert.assertEquals(reopened.getSegmentCount(), 2);
+        assertRecord(reopened.get("key-5"), "key-5", 2.0);
+        assertRecord(reopened.get("key-20"), "key-20", 1.0);
+        Assert.assertNull(reopened.get("key-50"));
+        Assert.assertFalse(reopened.contains("key-51"));
+        Assert.assertEquals(reopened.scan(record -> true).size(), 98);
+    }
+
+    @Test
+    public void testScanReturnsLatestRecords() throws ConnectionUnavailableException {
+        SegmentStore store = openStore(1024 * 1024);
+        store.write(records(100, 1.0));
+        store.roll();
+        store.write(records(10, 2.0));
+        store.delete(Collections.singletonList("key-99"));
+
+        List<Object[]> matches = store.scan(record -> (Double) record[0] > 1.5);
+        Assert.assertEquals(matches.size(), 10);
+        Assert.assertEquals(store.scan(record -> true).size(), 99);
+    }
+
+    @Test
+    public void testCompactionDropsSupersededRecords() throws ConnectionUnavailableException {
+        SegmentStore store = openStore(1024 * 1024);
+        for (int i = 0; i < 4; i++) {
+            store.write(records(100, i));
+            store.roll();
+        }
+        store.delete(Arrays.asList("key-1", "key-2"));
+        store.roll();
+        Assert.assertEquals(client.getObjectCount(BUCKET), 5);
+
+        store.compact();
+        Assert.assertEquals(store.getSegmentCount(), 1);
+        // The compacted segment and the marker committing it
+        Assert.assertEquals(client.getObjectCount(BUCKET), 2);
+        // Tombstones are not needed once no older segments remain
+        Assert.assertEquals(store.getIndexSize(), 98);
+        assertRecord(store.get("key-7"), "key-7", 3.0);
+        Assert.assertNull(store.get("key-1"));
+
+        SegmentStore reopened = openStore(1024 * 1024);
+        assertRecord(reopened.get("key-7"), "key-7", 3.0);
+        Assert.assertNull(reopened.get("key-2"));
+        Assert.assertEquals(reopened.scan(record -> true).size(), 98);
+    }
+
+    @Test
+    public void testSupersededSegmentsAreIgnoredOnOpen() throws ConnectionUnavailableException {
+        SegmentStore store = openStore(1024 * 1024);
+        store.write(records(10, 1.0));
+        store.roll();
+        String firstSegment = client.listObjectsV2(BUCKET, "segments/").getObjectSummaries().get(0).getKey();
+        byte[] firstSegmentContent = client.getObjectContent(BUCKET, firstSegment);
+        store.delete(Arrays.asList("key-0", "key-1", "key-2", "key-3", "key-4", "key-5", "key-6", "key-7"));
+        store.roll();
+        store.compact();
+        Assert.assertNull(client.getObjectContent(BUCKET, firstSegment));
+        // Put back a segment that the compaction replaced, as if the compaction failed before deleting it
+        client.putObject(new PutObjectRequest(BUCKET, firstSegment,
+                new ByteArrayInputStream(firstSegmentContent), new ObjectMetadata()));
+
+        SegmentStore reopened = openStore(1024 * 1024);
+        Assert.assertEquals(reopened.getSegmentCount(), 1);
+        Assert.assertNull(reopened.get("key-3"));
+    }
+
+    @Test
+    public void testFailedCompactionKeepsSegments() throws ConnectionUnavailableException {
+        SegmentStore store = openStore(4096);
+        for (int i = 0; i < 3; i++) {
+            store.write(records(200, i));
+            store.roll();
+        }
+        List<S3ObjectSummary> summaries = client.listObjectsV2(BUCKET, "segments/").getObjectSummaries();
+        Assert.assertEquals(summaries.size(), 3);
+        String newest = summaries.get(2).getKey();
+        client.setFailingKey(newest.substring(0, newest.indexOf('.')) + ".00001.00001");
+        try {
+            store.compact();
+            Assert.fail("Compaction succeeded while a segment could not be uploaded");
+        } catch (ConnectionUnavailableException e) {
+            // expected
+        }
+        client.setFailingKey(null);
+        // The part uploaded before the failure got deleted
+        Assert.assertEquals(client.getObjectCount(BUCKET), 3);
+        Assert.assertEquals(store.scan(record -> true).size(), 200);
+
+        SegmentStore reopened = openStore(4096);
+        Assert.assertEquals(reopened.getSegmentCount(), 3);
+        Assert.assertEquals(reopened.scan(record -> true).size(), 200);
+        assertRecord(reopened.get("key-150"), "key-150", 2.0);
+    }
+
+    @Test
+    public void testUncommittedCompactionIsIgnoredOnOpen() throws ConnectionUnavailableException {
+        SegmentStore store = openStore(1024 * 1024);
+        for (int i = 0; i < 3; i++) {
+            store.write(records(200, i));
+            store.roll();
+        }
+        List<S3ObjectSummary> summaries = client.listObjectsV2(BUCKET, "segments/").getObjectSummaries();
+        String newest = summaries.get(2).getKey();
+        String uncommitted = newest.substring(0, newest.indexOf('.')) + ".00001.00000";
+        // Upload a part holding older rows, as if the store stopped before committing a compaction
+        byte[] oldestContent = client.getObjectContent(BUCKET, summaries.get(0).getKey());
+        client.putObject(new PutObjectRequest(BUCKET, uncommitted, new ByteArrayInputStream(oldestContent),
+                new ObjectMetadata()));
+
+        SegmentStore reopened = openStore(1024 * 1024);
+        Assert.assertEquals(reopened.getSegmentCount(), 3);
+        assertRecord(reopened.get("key-150"), "key-150", 2.0);
+        Assert.assertEquals(reopened.scan(record -> true).size(), 200);
+        Assert.assertNull(client.getObjectContent(BUCKET, uncommitted));
+    }
+
+    @Test
+    public void testScanDuringCompactionReturnsAllRecords() throws Exception {
+        SegmentStore store = openStore(1024 * 1024);
+        for (int i = 0; i < 3; i++) {
+            store.write(records(200, i));
+            store.roll();
+        }
+        Thread compactingThread = Thread.currentThread();
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch compacted = new CountDownLatch(1);
+        // Hold the scan once it listed the segments, until the compaction swapped them or could not do so
+        client.setGetHook(key -> {
+            if (Thread.currentThread() != compactingThread) {
+                scanning.countDown();
+                try {
+                    compacted.await(500, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Object[]>> scan = executor.submit(() -> store.scan(record -> true));
+            Assert.assertTrue(scanning.await(10, TimeUnit.SECONDS));
+            store.compact();
+            compacted.countDown();
+            Assert.assertEquals(scan.get(10, TimeUnit.SECONDS).size(), 200);
+        } finally {
+            client.setGetHook(null);
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(store.getSegmentCount(), 1);
+        Assert.assertEquals(store.scan(record -> true).size(), 200);
+    }
+
+    @Test
+    public void testRollDuringScanKeepsRewrittenRecords() throws Exception {
+        SegmentStore store = openStore(1024 * 1024);
+        store.write(records(200, 1.0));
+        store.roll();
+        Thread testThread = Thread.currentThread();
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch rolled = new CountDownLatch(1);
+        // Hold the scan once it listed the segments, until a newer segment got rolled
+        client.setGetHook(key -> {
+            if (Thread.currentThread() != testThread) {
+                scanning.countDown();
+                try {
+                    rolled.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Object[]>> scan = executor.submit(() -> store.scan(record -> true));
+            Assert.assertTrue(scanning.await(10, TimeUnit.SECONDS));
+            store.write(Collections.singletonList(new Object[]{2.0, "key-5", new byte[]{5}}));
+            store.roll();
+            rolled.countDown();
+            List<Object[]> matches = scan.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(matches.size(), 200);
+            Assert.assertTrue(matches.stream().anyMatch(record -> "key-5".equals(record[1])));
+        } finally {
+            client.setGetHook(null);
+            executor.shutdownNow();
+        }
+        assertRecord(store.get("key-5"), "key-5", 2.0);
+        Assert.assertEquals(store.scan(record -> true).size(), 200);
+    }
+
+    private SegmentStore openStore(int maxSegmentSize) throws ConnectionUnavailableException {
+        SegmentStore store = new SegmentStore("test", client, BUCKET, "segments/", ATTRIBUTES, 1, "binary",
+                maxSegmentSize, 60000, 0, 0.5, pipeline);
+        store.open();
+        stores.add(store);
+        return store;
+    }
+
+    private static List<Object[]> records(int count, double price) {
+        List<Object[]> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(new Object[]{price, "key-" + i, new byte[]{(byte) i}});
+        }
+        return records;
+    }
+
+    private static void assertRecord(Object[] record, String key, double price) {
+        Assert.assertNotNull(record, "Record " + key + " not found");
+        Assert.assertEquals(record[1], key);
+        Assert.assertEquals(record[0], price);
+        Assert.assertEquals(record[2], new byte[]{(byte) Integer.parseInt(key.substring(4))});
+    }
+}
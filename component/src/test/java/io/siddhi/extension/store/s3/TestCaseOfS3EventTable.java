@@ -1,6 +1,419 @@
 package io.siddhi.extension.store.s3;
 
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.extension.store.s3.client.S3ClientRegistry;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the S3 table through a Siddhi app, with its records stored in an {@link InMemoryAmazonS3}.
+ */
 public class TestCaseOfS3EventTable {
-        // If you will know about this related testcase,
-        // refer https://github.com/wso2-extensions/siddhi-store-rdbms/tree/master/component/src/test
+
+    private static final String BUCKET = "siddhi-test";
+
+    private InMemoryAmazonS3 s3;
+    private SiddhiManager siddhiManager;
+    private SiddhiAppRuntime runtime;
+    private List<Object[]> containsEvents;
+
+    @BeforeMethod
+    public void init() {
+        s3 = new InMemoryAmazonS3();
+        S3ClientRegistry.getInstance().setClientFactory(settings -> s3);
+        siddhiManager = new SiddhiManager();
+        siddhiManager.setExtension("store:s3", S3EventTable.class);
+        containsEvents = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @AfterMethod
+    public void shutdown() {
+        try {
+            if (runtime != null) {
+                runtime.shutdown();
+                runtime = null;
+            }
+            siddhiManager.shutdown();
+        } finally {
+            S3ClientRegistry.getInstance().setClientFactory(null);
+        }
+        Assert.assertTrue(s3.isShutdown());
+    }
+
+    @Test
+    public void testInsertAndFindByPrimaryKey() throws InterruptedException {
+        start("");
+        insert(stock("WSO2", 55.6, 100L), stock("IBM", 75.6, 200L), stock("MSFT", 57.6, 300L));
+        Assert.assertEquals(s3.getObjectCount(BUCKET), 3);
+
+        Event[] events = runtime.query("from StockTable on symbol == 'IBM' select symbol, price, volume");
+        assertEvents(events, stock("IBM", 75.6, 200L));
+        Assert.assertNull(runtime.query("from StockTable on symbol == 'ORCL' select symbol, price, volume"));
+
+        // Inserting an existing key replaces the record
+        insert(stock("IBM", 80.0, 250L));
+        events = runtime.query("from StockTable on symbol == 'IBM' select symbol, price, volume");
+        assertEvents(events, stock("IBM", 80.0, 250L));
+        Assert.assertEquals(s3.getObjectCount(BUCKET), 3);
+    }
+
+    @Test
+    public void testContainsByPrimaryKey() throws InterruptedException {
+        start("");
+        insert(stock("WSO2", 55.6, 100L), stock("IBM", 75.6, 200L));
+        InputHandler checkStream = runtime.getInputHandler("CheckStream");
+        checkStream.send(new Object[]{"WSO2"});
+        checkStream.send(new Object[]{"ORCL"});
+        checkStream.send(new Object[]{"IBM"});
+        Assert.assertEquals(containsEvents.size(), 2);
+        Assert.assertEquals(containsEvents.get(0), new Object[]{"WSO2"});
+        Assert.assertEquals(containsEvents.get(1), new Object[]{"IBM"});
+    }
+
+    @Test
+    public void testFindByNonKeyCondition() throws InterruptedException {
+        start("");
+        insert(stock("WSO2", 55.6, 100L), stock("IBM", 75.6, 200L), stock("MSFT", 57.6, 300L),
+                stock("ORCL", 45.6, 400L));
+
+        Event[] events = runtime.query("from StockTable on price > 50 and volume < 300 "
+                + "select symbol, price, volume");
+        assertEvents(events, stock("IBM", 75.6, 200L), stock("WSO2", 55.6, 100L));
+        events = runtime.query("from StockTable select symbol, price, volume");
+        Assert.assertEquals(events.length, 4);
+        Assert.assertNull(runtime.query("from StockTable on price > 100 select symbol, price, volume"));
+    }
+
+    @Test
+    public void testDeleteByPrimaryKeyAndCondition() throws InterruptedException {
+        start("");
+        insert(stock("WSO2", 55.6, 100L), stock("IBM", 75.6, 200L), stock("MSFT", 57.6, 300L),
+                stock("ORCL", 45.6, 400L));
+
+        runtime.getInputHandler("DeleteStream").send(new Object[]{"WSO2"});
+        Assert.assertNull(runtime.query("from StockTable on symbol == 'WSO2' select symbol, price, volume"));
+        Assert.assertEquals(s3.getObjectCount(BUCKET), 3);
+
+        // Records matching a non-key condition are found by a scan and then deleted in bulk
+        runtime.getInputHandler("DeleteByVolumeStream").send(new Object[]{350L});
+        Event[] events = runtime.query("from StockTable select symbol, price, volume");
+        assertEvents(events, stock("ORCL", 45.6, 400L));
+        Assert.assertEquals(s3.getObjectCount(BUCKET), 1);
+    }
+
+    @Test
+    public void testDeleteSplitsKeysIntoParallelRequests() throws InterruptedException {
+        start(", worker.count='4'");
+        insert(stocks(2500));
+        s3.setLatencyMillis(20);
+
+        runtime.getInputHandler("DeleteStream").send(symbolEvents(2500));
+        List<Integer> requestSizes = s3.getDeleteRequestSizes();
+        Collections.sort(requestSizes);
+        Assert.assertEquals(requestSizes, Arrays.asList(500, 1000, 1000));
+        Assert.assertTrue(s3.getMaxConcurrentDeletes() > 1, "Delete requests were not sent in parallel");
+        Assert.assertEquals(s3.getObjectCount(BUCKET), 0);
+    }
+
+    @Test
+    public void testDeleteByConditionDeletesMatchesInBulk() throws InterruptedException {
+        start("");
+        insert(stocks(1200));
+
+        runtime.getInputHandler("DeleteByVolumeStream").send(new Object[]{1100L});
+        List<Integer> requestSizes = s3.getDeleteRequestSizes();
+        Collections.sort(requestSizes);
+        Assert.assertEquals(requestSizes, Arrays.asList(100, 1000));
+        Assert.assertEquals(s3.getObjectCount(BUCKET), 100);
+        Assert.assertNull(runtime.query("from StockTable on volume < 1100 select symbol, price, volume"));
+        Assert.assertEquals(runtime.query("from StockTable select symbol, price, volume").length, 100);
+    }
+
+    @Test
+    public void testDeleteIsRetriedOnRetryableKeyErrors() throws InterruptedException {
+        start("");
+        insert(stocks(10));
+        s3.failNextDelete("STOCK-3", "SlowDown");
+
+        // Siddhi reconnects and deletes the batch again, which deletes the key that failed
+        runtime.getInputHandler("DeleteStream").send(symbolEvents(5));
+        Assert.assertEquals(s3.getDeleteRequestSizes(), Arrays.asList(5, 5));
+        Assert.assertEquals(s3.getObjectCount(BUCKET), 5);
+        Assert.assertNull(runtime.query("from StockTable on symbol == 'STOCK-3' select symbol, price, volume"));
+    }
+
+    @Test
+    public void testDeleteReportsFatalKeyErrors() throws InterruptedException {
+        start("");
+        insert(stocks(10));
+        s3.failNextDelete("STOCK-3", "AccessDenied");
+
+        try {
+            runtime.getInputHandler("DeleteStream").send(symbolEvents(5));
+        } catch (RuntimeException e) {
+            // The failure is reported to the caller or logged by Siddhi, depending on the error handling of the app
+        }
+        // Errors a retry would not fix are not retried, and only the keys that failed are kept
+        Assert.assertEquals(s3.getDeleteRequestSizes(), Collections.singletonList(5));
+        Assert.assertEquals(s3.getObjectCount(BUCKET), 6);
+        assertEvents(runtime.query("from StockTable on symbol == 'STOCK-3' select symbol, price, volume"),
+                stock("STOCK-3", 3.5, 3L));
+        Assert.assertNull(runtime.query("from StockTable on symbol == 'STOCK-2' select symbol, price, volume"));
+    }
+
+    @Test
+    public void testUpdate() throws InterruptedException {
+        start("");
+        insert(stock("WSO2", 55.6, 100L), stock("IBM", 75.6, 200L));
+
+        InputHandler updateStream = runtime.getInputHandler("UpdateStream");
+        updateStream.send(new Object[]{"IBM", 99.0});
+        // Updating a key that is not stored adds nothing
+        updateStream.send(new Object[]{"ORCL", 10.0});
+
+        Event[] events = runtime.query("from StockTable select symbol, price, volume");
+        assertEvents(events, stock("IBM", 99.0, 200L), stock("WSO2", 55.6, 100L));
+    }
+
+    @Test
+    public void testUpdateOrInsert() throws InterruptedException {
+        start("");
+        insert(stock("WSO2", 55.6, 100L));
+
+        InputHandler upsertStream = runtime.getInputHandler("UpsertStream");
+        upsertStream.send(new Object[]{"WSO2", 60.0, 150L});
+        upsertStream.send(new Object[]{"ORCL", 45.6, 400L});
+
+        Event[] events = runtime.query("from StockTable select symbol, price, volume");
+        assertEvents(events, stock("ORCL", 45.6, 400L), stock("WSO2", 60.0, 150L));
+        Assert.assertEquals(s3.getObjectCount(BUCKET), 2);
+    }
+
+    @Test
+    public void testSegmentStorageMode() throws InterruptedException {
+        start(", storage.mode='segment'");
+        insert(stock("WSO2", 55.6, 100L), stock("IBM", 75.6, 200L), stock("MSFT", 57.6, 300L));
+        runtime.getInputHandler("DeleteStream").send(new Object[]{"MSFT"});
+        runtime.getInputHandler("UpdateStream").send(new Object[]{"IBM", 99.0});
+
+        Event[] events = runtime.query("from StockTable on symbol == 'IBM' select symbol, price, volume");
+        assertEvents(events, stock("IBM", 99.0, 200L));
+        events = runtime.query("from StockTable on volume >= 100 select symbol, price, volume");
+        assertEvents(events, stock("IBM", 99.0, 200L), stock("WSO2", 55.6, 100L));
+    }
+
+    @Test
+    public void testSegmentStorageModeCachesLookups() throws InterruptedException {
+        // Every write uploads a segment, so that lookups read the records back from S3
+        start(", storage.mode='segment', segment.max.size='1', record.cache.size='10'");
+        insert(stock("WSO2", 55.6, 100L));
+
+        Event[] events = runtime.query("from StockTable on symbol == 'WSO2' select symbol, price, volume");
+        assertEvents(events, stock("WSO2", 55.6, 100L));
+        int getCount = s3.getGetCount();
+        events = runtime.query("from StockTable on symbol == 'WSO2' select symbol, price, volume");
+        assertEvents(events, stock("WSO2", 55.6, 100L));
+        Assert.assertEquals(s3.getGetCount(), getCount);
+
+        runtime.getInputHandler("UpdateStream").send(new Object[]{"WSO2", 60.0});
+        events = runtime.query("from StockTable on symbol == 'WSO2' select symbol, price, volume");
+        assertEvents(events, stock("WSO2", 60.0, 100L));
+    }
+
+    @Test
+    public void testDateKeyLayoutFindsObjectsThroughTheKeyIndex() throws InterruptedException {
+        // Volumes stand in for timestamps, the records of the first day are stored under 1970/01/01/
+        start(", key.layout='date', key.layout.timestamp.attribute='volume', key.index='true'");
+        insert(stock("WSO2", 55.6, 100L), stock("IBM", 75.6, 200L));
+        int listCount = s3.getListCount();
+
+        Event[] events = runtime.query("from StockTable on symbol == 'WSO2' select symbol, price, volume");
+        assertEvents(events, stock("WSO2", 55.6, 100L));
+        runtime.getInputHandler("UpdateStream").send(new Object[]{"IBM", 99.0});
+        runtime.getInputHandler("DeleteStream").send(new Object[]{"IBM"});
+        Assert.assertNull(runtime.query("from StockTable on symbol == 'IBM' select symbol, price, volume"));
+        Assert.assertEquals(s3.getListCount(), listCount);
+
+        // Inserted again with another date, the record moves to the object of that date
+        insert(stock("WSO2", 60.0, 2 * 86400000L));
+        events = runtime.query("from StockTable on symbol == 'WSO2' select symbol, price, volume");
+        assertEvents(events, stock("WSO2", 60.0, 2 * 86400000L));
+        Assert.assertTrue(s3.doesObjectExist(BUCKET, "1970/01/03/WSO2"));
+        Assert.assertFalse(s3.doesObjectExist(BUCKET, "1970/01/01/WSO2"));
+    }
+
+    @Test
+    public void testSelectPushdownDownloadsSmallObjects() throws InterruptedException {
+        // The in-memory client does not implement S3 Select, hence the scan only succeeds with plain downloads
+        start(", codec='json', compression='none', select.pushdown='true'");
+        insert(stock("WSO2", 55.6, 100L), stock("IBM", 75.6, 200L));
+        int getCount = s3.getGetCount();
+
+        Event[] events = runtime.query("from StockTable on price > 60.0 select symbol, price, volume");
+        assertEvents(events, stock("IBM", 75.6, 200L));
+        Assert.assertEquals(s3.getGetCount(), getCount + 2);
+    }
+
+    @Test
+    public void testRecordsSurviveRestart() throws InterruptedException {
+        start("");
+        insert(stock("WSO2", 55.6, 100L), stock("IBM", 75.6, 200L));
+        runtime.shutdown();
+        runtime = null;
+
+        start("");
+        Event[] events = runtime.query("from StockTable select symbol, price, volume");
+        assertEvents(events, stock("IBM", 75.6, 200L), stock("WSO2", 55.6, 100L));
+    }
+
+    @Test
+    public void testReadDuringDeleteDoesNotCacheDeletedRecord() throws Exception {
+        start(", record.cache.size='1'");
+        // The record written last evicts the other from the cache
+        insert(stock("IBM", 75.6, 200L));
+        insert(stock("WSO2", 55.6, 100L));
+        Thread testThread = Thread.currentThread();
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch deleted = new CountDownLatch(1);
+        // Hold the lookup once it started downloading the record, until the record got deleted
+        s3.setGetHook(key -> {
+            if (key.contains("IBM") && Thread.currentThread() != testThread) {
+                reading.countDown();
+                try {
+                    deleted.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Event[]> lookup = executor.submit(() -> runtime.query(
+                    "from StockTable on symbol == 'IBM' select symbol, price, volume"));
+            Assert.assertTrue(reading.await(10, TimeUnit.SECONDS));
+            runtime.getInputHandler("DeleteStream").send(new Object[]{"IBM"});
+            deleted.countDown();
+            // The lookup returns what it read before the delete, but does not cache it
+            assertEvents(lookup.get(10, TimeUnit.SECONDS), stock("IBM", 75.6, 200L));
+        } finally {
+            s3.setGetHook(null);
+            executor.shutdownNow();
+        }
+        Assert.assertNull(runtime.query("from StockTable on symbol == 'IBM' select symbol, price, volume"));
+    }
+
+    @Test
+    public void testFailedConnectReleasesClient() {
+        int clients = S3ClientRegistry.getInstance().size();
+        s3.setFailureRate(1);
+        start("");
+        // Siddhi connects again later, until then the table holds no client
+        Assert.assertTrue(s3.getFailedCount() > 0);
+        Assert.assertEquals(S3ClientRegistry.getInstance().size(), clients);
+        Assert.assertTrue(s3.isShutdown());
+    }
+
+    private void start(String storeOptions) {
+        String app = "@app:name('S3StoreTest')\n"
+                + "define stream StockStream (symbol string, price double, volume long);\n"
+                + "define stream CheckStream (symbol string);\n"
+                + "define stream DeleteStream (symbol string);\n"
+                + "define stream DeleteByVolumeStream (volume long);\n"
+                + "define stream UpdateStream (symbol string, price double);\n"
+                + "define stream UpsertStream (symbol string, price double, volume long);\n"
+                + "@store(type='s3', bucket.name='" + BUCKET + "', object.fields='price,volume'"
+                + storeOptions + ")\n"
+                + "@PrimaryKey('symbol')\n"
+                + "define table StockTable (symbol string, price double, volume long);\n"
+                + "from StockStream\n"
+                + "insert into StockTable;\n"
+                + "from CheckStream[(StockTable.symbol == symbol) in StockTable]\n"
+                + "insert into ContainsStream;\n"
+                + "from DeleteStream\n"
+                + "delete StockTable on StockTable.symbol == symbol;\n"
+                + "from DeleteByVolumeStream\n"
+                + "delete StockTable on StockTable.volume < volume;\n"
+                + "from UpdateStream\n"
+                + "update StockTable set StockTable.price = price on StockTable.symbol == symbol;\n"
+                + "from UpsertStream\n"
+                + "update or insert into StockTable set StockTable.price = price, StockTable.volume = volume\n"
+                + "    on StockTable.symbol == symbol;\n";
+        runtime = siddhiManager.createSiddhiAppRuntime(app);
+        runtime.addCallback("ContainsStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    containsEvents.add(event.getData());
+                }
+            }
+        });
+        runtime.start();
+    }
+
+    private void insert(Object[]... stocks) throws InterruptedException {
+        Event[] events = new Event[stocks.length];
+        for (int i = 0; i < stocks.length; i++) {
+            events[i] = new Event(System.currentTimeMillis(), stocks[i]);
+        }
+        runtime.getInputHandler("StockStream").send(events);
+    }
+
+    /**
+     * @return stocks with indices from 0 up to the given count, whose symbol, price and volume the index determines
+     */
+    private static Object[][] stocks(int count) {
+        Object[][] stocks = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            stocks[i] = stock("STOCK-" + i, i + 0.5, i);
+        }
+        return stocks;
+    }
+
+    /**
+     * @return events holding the symbols of the stocks with indices from 0 up to the given count
+     */
+    private static Event[] symbolEvents(int count) {
+        Event[] events = new Event[count];
+        for (int i = 0; i < count; i++) {
+            events[i] = new Event(System.currentTimeMillis(), new Object[]{"STOCK-" + i});
+        }
+        return events;
+    }
+
+    private static Object[] stock(String symbol, double price, long volume) {
+        return new Object[]{symbol, price, volume};
+    }
+
+    /**
+     * Assert the events hold the given stocks, sorted by symbol, in any order.
+     */
+    private static void assertEvents(Event[] events, Object[]... expected) {
+        Assert.assertNotNull(events);
+        List<Object[]> actual = new ArrayList<>();
+        for (Event event : events) {
+            actual.add(event.getData());
+        }
+        actual.sort(Comparator.comparing(data -> (String) data[0]));
+        Assert.assertEquals(actual.size(), expected.length, Arrays.deepToString(actual.toArray()));
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(actual.get(i), expected[i]);
+        }
+    }
 }
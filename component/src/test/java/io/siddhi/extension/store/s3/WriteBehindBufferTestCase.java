@@ -0,0 +1,107 @@
+package io.siddhi.extension.store.s3;
+
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.extension.store.s3.buffer.WriteBehindBuffer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class WriteBehindBufferTestCase {
+
+    @Test
+    public void testWritesOfSameKeyAreCoalesced() throws ConnectionUnavailableException {
+        List<Map<String, Object[]>> flushes = new ArrayList<>();
+        WriteBehindBuffer buffer = new WriteBehindBuffer("test", 10, 60000,
+                records -> flushes.add(new LinkedHashMap<>(records)));
+        for (int i = 0; i < 100; i++) {
+            buffer.put("WSO2", new Object[]{"WSO2", i});
+            buffer.flushIfFull();
+        }
+        buffer.put("IBM", new Object[]{"IBM", 1});
+        buffer.delete("ORCL");
+        Assert.assertEquals(buffer.get("WSO2")[1], 99);
+        Assert.assertSame(buffer.get("ORCL"), WriteBehindBuffer.TOMBSTONE);
+        Assert.assertNull(buffer.get("MSFT"));
+        Assert.assertTrue(flushes.isEmpty());
+
+        buffer.close();
+        Assert.assertEquals(flushes.size(), 1);
+        Assert.assertEquals(flushes.get(0).size(), 3);
+        Assert.assertEquals(flushes.get(0).get("WSO2")[1], 99);
+        Assert.assertNull(buffer.get("WSO2"));
+    }
+
+    @Test
+    public void testFlushWhenFull() throws ConnectionUnavailableException {
+        List<Map<String, Object[]>> flushes = new ArrayList<>();
+        WriteBehindBuffer buffer = new WriteBehindBuffer("test", 2, 60000,
+                records -> flushes.add(new LinkedHashMap<>(records)));
+        buffer.put("a", new Object[]{"a"});
+        buffer.flushIfFull();
+        Assert.assertTrue(flushes.isEmpty());
+        buffer.put("b", new Object[]{"b"});
+        buffer.flushIfFull();
+        Assert.assertEquals(flushes.size(), 1);
+        Assert.assertEquals(buffer.size(), 0);
+        buffer.close();
+    }
+
+    @Test
+    public void testFailedWritesAreRetained() {
+        WriteBehindBuffer buffer = new WriteBehindBuffer("test", 10, 60000, records -> {
+            throw new ConnectionUnavailableException("S3 is down");
+        });
+        buffer.put("a", new Object[]{"a"});
+        try {
+            buffer.flush();
+            Assert.fail("Expected the flush to fail");
+        } catch (ConnectionUnavailableException e) {
+            Assert.assertEquals(buffer.size(), 1);
+            Assert.assertNotNull(buffer.get("a"));
+        }
+    }
+
+    @Test
+    public void testWritesAreVisibleWhileFlushing() throws Exception {
+        CountDownLatch flushStarted = new CountDownLatch(1);
+        CountDownLatch releaseFlush = new CountDownLatch(1);
+        WriteBehindBuffer buffer = new WriteBehindBuffer("test", 10, 60000, records -> {
+            flushStarted.countDown();
+            try {
+                releaseFlush.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        buffer.put("a", new Object[]{"a"});
+        Thread flusher = new Thread(() -> {
+            try {
+                buffer.flush();
+            } catch (ConnectionUnavailableException e) {
+                Assert.fail(e.getMessage());
+            }
+        });
+        flusher.start();
+        Assert.assertTrue(flushStarted.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(buffer.size(), 0);
+        Assert.assertNotNull(buffer.get("a"));
+        releaseFlush.countDown();
+        flusher.join();
+        Assert.assertNull(buffer.get("a"));
+    }
+
+    @Test
+    public void testPeriodicFlush() throws InterruptedException {
+        CountDownLatch flushed = new CountDownLatch(1);
+        WriteBehindBuffer buffer = new WriteBehindBuffer("test", 10, 20, records -> flushed.countDown());
+        buffer.put("a", new Object[]{"a"});
+        Assert.assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        buffer.close();
+    }
+}